@@ -0,0 +1,301 @@
+/*
+ * Copyright (C) 2022 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.settings.applications;
+
+import android.app.AppOpsManager;
+import android.app.AppOpsManager.OpEntry;
+import android.app.AppOpsManager.PackageOps;
+import android.content.pm.IPackageManager;
+import android.content.pm.PackageInfo;
+import android.content.pm.ParceledListSlice;
+import android.os.RemoteException;
+import android.os.SystemClock;
+import android.os.UserHandle;
+import android.text.format.DateUtils;
+import android.util.ArrayMap;
+import android.util.ArraySet;
+import android.util.SparseArray;
+import android.util.SparseBooleanArray;
+import android.util.SparseIntArray;
+
+import androidx.annotation.VisibleForTesting;
+
+import com.android.settingslib.applications.ApplicationsState;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.WeakHashMap;
+
+/**
+ * Package and app op state read by {@link AppStateAppOpsBridge}, sharded by profile and shared by
+ * every bridge created for the same {@link ApplicationsState}.
+ *
+ * Each piece of state is read with one bulk query the first time a bridge needs it, so opening
+ * one special access screen after another reuses what the previous screen loaded. Single packages
+ * are refreshed through {@link #updatePackage} when a bridge is force updated, and the whole
+ * snapshot is dropped when the package list changes or it gets older than {@link #MAX_AGE_MS},
+ * since app ops can also be changed outside of Settings.
+ */
+class AppOpsStateSnapshot {
+
+    @VisibleForTesting
+    static final long MAX_AGE_MS = DateUtils.MINUTE_IN_MILLIS;
+
+    private static final Map<ApplicationsState, AppOpsStateSnapshot> sSnapshots =
+            new WeakHashMap<>();
+
+    // Permission name to the packages requesting it, across all users.
+    private final Map<String, Set<String>> mAppOpPermissionPackages = new ArrayMap<>();
+    private final SparseArray<ProfileShard> mShards = new SparseArray<>();
+    // Op codes whose modes were read for every package.
+    private final SparseBooleanArray mLoadedOpCodes = new SparseBooleanArray();
+    private long mCreationTime;
+
+    /**
+     * @return the snapshot shared by all bridges of {@param appState}, or a new unshared one if
+     * {@param appState} is {@code null}.
+     */
+    static AppOpsStateSnapshot get(ApplicationsState appState) {
+        if (appState == null) {
+            return new AppOpsStateSnapshot();
+        }
+        synchronized (sSnapshots) {
+            AppOpsStateSnapshot snapshot = sSnapshots.get(appState);
+            if (snapshot == null) {
+                snapshot = new AppOpsStateSnapshot();
+                sSnapshots.put(appState, snapshot);
+            }
+            return snapshot;
+        }
+    }
+
+    @VisibleForTesting
+    AppOpsStateSnapshot() {
+        mCreationTime = SystemClock.elapsedRealtime();
+    }
+
+    /**
+     * @return the packages requesting {@param permission}.
+     */
+    synchronized Set<String> getAppOpPermissionPackages(IPackageManager packageManager,
+            String permission) throws RemoteException {
+        checkAge();
+        Set<String> packages = mAppOpPermissionPackages.get(permission);
+        if (packages == null) {
+            packages = new ArraySet<>();
+            final String[] pkgs = packageManager.getAppOpPermissionPackages(permission);
+            if (pkgs != null) {
+                packages.addAll(Arrays.asList(pkgs));
+            }
+            mAppOpPermissionPackages.put(permission, packages);
+        }
+        return packages;
+    }
+
+    /**
+     * @return whether {@param packageName} is installed for {@param profileId}.
+     */
+    synchronized boolean isPackageInstalled(IPackageManager packageManager, String packageName,
+            int profileId) throws RemoteException {
+        checkAge();
+        final ProfileShard shard = getShard(profileId);
+        if (shard.mInstalledPackages == null) {
+            shard.mInstalledPackages = new ArraySet<>();
+            final List<PackageInfo> packageInfos =
+                    getList(packageManager.getInstalledPackages(0 /* flags */, profileId));
+            for (PackageInfo packageInfo : packageInfos) {
+                shard.mInstalledPackages.add(packageInfo.packageName);
+            }
+        }
+        return shard.mInstalledPackages.contains(packageName);
+    }
+
+    /**
+     * @return the package info of {@param packageName} if it holds {@param permission} in
+     * {@param profileId}, or {@code null} otherwise.
+     */
+    synchronized PackageInfo getPermissionHolder(IPackageManager packageManager,
+            String permission, String packageName, int profileId) throws RemoteException {
+        checkAge();
+        final ProfileShard shard = getShard(profileId);
+        Map<String, PackageInfo> holders = shard.mPermissionHolders.get(permission);
+        if (holders == null) {
+            holders = new ArrayMap<>();
+            final List<PackageInfo> packageInfos = getList(packageManager
+                    .getPackagesHoldingPermissions(new String[]{permission}, 0 /* flags */,
+                            profileId));
+            for (PackageInfo packageInfo : packageInfos) {
+                holders.put(packageInfo.packageName, packageInfo);
+            }
+            shard.mPermissionHolders.put(permission, holders);
+        }
+        return holders.get(packageName);
+    }
+
+    /**
+     * @return the mode of the first of {@param opCodes} set for {@param packageName} in
+     * {@param profileId}, or {@code null} if none of them is set.
+     */
+    synchronized Integer getOpMode(AppOpsManager appOpsManager, int[] opCodes,
+            String packageName, int profileId) {
+        checkAge();
+        loadOpModes(appOpsManager, opCodes);
+        final SparseIntArray modes = getShard(profileId).mOpModes.get(packageName);
+        if (modes == null) {
+            return null;
+        }
+        for (int opCode : opCodes) {
+            final int index = modes.indexOfKey(opCode);
+            if (index >= 0) {
+                return modes.valueAt(index);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Replaces the cached state of one package with freshly read state.
+     *
+     * @param packageInfo the package info read with {@code GET_PERMISSIONS}, may be {@code null}
+     * @param permissions the permissions the caller checked
+     * @param opCodes     the app ops the caller read into {@param ops}
+     */
+    synchronized void updatePackage(String packageName, int profileId, PackageInfo packageInfo,
+            String[] permissions, int[] opCodes, List<PackageOps> ops) {
+        final ProfileShard shard = mShards.get(profileId);
+        if (shard == null) {
+            return;
+        }
+        for (String permission : permissions) {
+            final Map<String, PackageInfo> holders = shard.mPermissionHolders.get(permission);
+            if (holders == null) {
+                continue;
+            }
+            if (isPermissionGranted(packageInfo, permission)) {
+                holders.put(packageName, packageInfo);
+            } else {
+                holders.remove(packageName);
+            }
+        }
+
+        SparseIntArray modes = shard.mOpModes.get(packageName);
+        if (modes == null) {
+            modes = new SparseIntArray();
+            shard.mOpModes.put(packageName, modes);
+        }
+        for (int opCode : opCodes) {
+            modes.delete(opCode);
+        }
+        if (ops != null) {
+            for (PackageOps packageOps : ops) {
+                for (OpEntry entry : packageOps.getOps()) {
+                    // Modes of the ops not loaded yet are read with all the packages later.
+                    if (mLoadedOpCodes.get(entry.getOp())) {
+                        modes.put(entry.getOp(), entry.getMode());
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Drops all the cached state, so it is read again when next needed.
+     */
+    synchronized void invalidate() {
+        mAppOpPermissionPackages.clear();
+        mShards.clear();
+        mLoadedOpCodes.clear();
+        mCreationTime = SystemClock.elapsedRealtime();
+    }
+
+    private void checkAge() {
+        if (SystemClock.elapsedRealtime() - mCreationTime > MAX_AGE_MS) {
+            invalidate();
+        }
+    }
+
+    /**
+     * Reads the modes of the {@param opCodes} not read yet, for every package. Each bridge only
+     * asks for its own ops, so the snapshot ends up holding the union of the ops of the bridges
+     * which used it rather than the modes of every op.
+     */
+    private void loadOpModes(AppOpsManager appOpsManager, int[] opCodes) {
+        final int[] missingOpCodes = Arrays.stream(opCodes)
+                .filter(opCode -> !mLoadedOpCodes.get(opCode))
+                .distinct()
+                .toArray();
+        if (missingOpCodes.length == 0) {
+            return;
+        }
+        final List<PackageOps> packageOps = appOpsManager.getPackagesForOps(missingOpCodes);
+        final int packageOpsCount = packageOps != null ? packageOps.size() : 0;
+        for (int i = 0; i < packageOpsCount; i++) {
+            final PackageOps packageOp = packageOps.get(i);
+            final ProfileShard shard = getShard(UserHandle.getUserId(packageOp.getUid()));
+            SparseIntArray modes = shard.mOpModes.get(packageOp.getPackageName());
+            if (modes == null) {
+                modes = new SparseIntArray();
+                shard.mOpModes.put(packageOp.getPackageName(), modes);
+            }
+            for (OpEntry entry : packageOp.getOps()) {
+                modes.put(entry.getOp(), entry.getMode());
+            }
+        }
+        for (int opCode : missingOpCodes) {
+            mLoadedOpCodes.put(opCode, true);
+        }
+    }
+
+    private ProfileShard getShard(int profileId) {
+        ProfileShard shard = mShards.get(profileId);
+        if (shard == null) {
+            shard = new ProfileShard();
+            mShards.put(profileId, shard);
+        }
+        return shard;
+    }
+
+    private static boolean isPermissionGranted(PackageInfo packageInfo, String permission) {
+        if (packageInfo == null || packageInfo.requestedPermissions == null) {
+            return false;
+        }
+        for (int i = 0; i < packageInfo.requestedPermissions.length; i++) {
+            if (permission.equals(packageInfo.requestedPermissions[i])) {
+                return (packageInfo.requestedPermissionsFlags[i]
+                        & PackageInfo.REQUESTED_PERMISSION_GRANTED) != 0;
+            }
+        }
+        return false;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static List<PackageInfo> getList(ParceledListSlice slice) {
+        final List<PackageInfo> list = slice != null ? slice.getList() : null;
+        return list != null ? list : List.of();
+    }
+
+    private static class ProfileShard {
+        // Lazily loaded, null until first needed.
+        private Set<String> mInstalledPackages;
+        // Permission name to the packages holding it.
+        private final Map<String, Map<String, PackageInfo>> mPermissionHolders = new ArrayMap<>();
+        // Package name to the non default app op modes of the package.
+        private final Map<String, SparseIntArray> mOpModes = new ArrayMap<>();
+    }
+}
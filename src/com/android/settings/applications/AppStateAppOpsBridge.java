@@ -34,7 +34,6 @@ import androidx.annotation.VisibleForTesting;
 import com.android.settingslib.applications.ApplicationsState;
 import com.android.settingslib.applications.ApplicationsState.AppEntry;
 
-import java.util.Arrays;
 import java.util.Collection;
 import java.util.HashSet;
 import java.util.List;
@@ -55,6 +54,7 @@ public abstract class AppStateAppOpsBridge extends AppStateBaseBridge {
     private final Context mContext;
     private final int[] mAppOpsOpCodes;
     private final String[] mPermissions;
+    private final AppOpsStateSnapshot mSnapshot;
 
     public AppStateAppOpsBridge(Context context, ApplicationsState appState, Callback callback,
             int appOpsOpCode, String[] permissions) {
@@ -85,6 +85,13 @@ public abstract class AppStateAppOpsBridge extends AppStateBaseBridge {
         mAppOpsManager = (AppOpsManager) context.getSystemService(Context.APP_OPS_SERVICE);
         mAppOpsOpCodes = appOpsOpCodes;
         mPermissions = permissions;
+        mSnapshot = AppOpsStateSnapshot.get(appState);
+    }
+
+    @Override
+    public void onPackageListChanged() {
+        mSnapshot.invalidate();
+        super.onPackageListChanged();
     }
 
     private boolean isThisUserAProfileOfCurrentUser(final int userId) {
@@ -137,6 +144,9 @@ public abstract class AppStateAppOpsBridge extends AppStateBaseBridge {
             if (ops != null && ops.size() > 0 && ops.get(0).getOps().size() > 0) {
                 permissionState.appOpMode = ops.get(0).getOps().get(0).getMode();
             }
+            // Keep the shared snapshot current for the other screens reading this package.
+            mSnapshot.updatePackage(pkg, permissionState.userHandle.getIdentifier(),
+                    permissionState.packageInfo, mPermissions, mAppOpsOpCodes, ops);
         } catch (RemoteException e) {
             Log.w(TAG, "PackageManager is dead. Can't get package info " + pkg, e);
         }
@@ -174,10 +184,8 @@ public abstract class AppStateAppOpsBridge extends AppStateBaseBridge {
         try {
             Set<String> packagesSet = new HashSet<>();
             for (String permission : mPermissions) {
-                String[] pkgs = mIPackageManager.getAppOpPermissionPackages(permission);
-                if (pkgs != null) {
-                    packagesSet.addAll(Arrays.asList(pkgs));
-                }
+                packagesSet.addAll(mSnapshot.getAppOpPermissionPackages(mIPackageManager,
+                        permission));
             }
 
             if (packagesSet.isEmpty()) {
@@ -193,8 +201,8 @@ public abstract class AppStateAppOpsBridge extends AppStateBaseBridge {
                 final int profileId = profile.getIdentifier();
                 entries.put(profileId, entriesForProfile);
                 for (final String packageName : packagesSet) {
-                    final boolean isAvailable = mIPackageManager.isPackageAvailable(packageName,
-                            profileId);
+                    final boolean isAvailable = mSnapshot.isPackageInstalled(mIPackageManager,
+                            packageName, profileId);
                     if (!shouldIgnorePackage(packageName) && isAvailable) {
                         final PermissionState newEntry = new PermissionState(packageName, profile);
                         entriesForProfile.put(packageName, newEntry);
@@ -227,17 +235,16 @@ public abstract class AppStateAppOpsBridge extends AppStateBaseBridge {
                 if (entriesForProfile == null) {
                     continue;
                 }
-                @SuppressWarnings("unchecked") final List<PackageInfo> packageInfos =
-                        mIPackageManager
-                                .getPackagesHoldingPermissions(mPermissions, 0,
-                                        profileId).getList();
-                final int packageInfoCount = packageInfos != null ? packageInfos.size() : 0;
-                for (int i = 0; i < packageInfoCount; i++) {
-                    final PackageInfo packageInfo = packageInfos.get(i);
-                    final PermissionState pe = entriesForProfile.get(packageInfo.packageName);
-                    if (pe != null) {
-                        pe.packageInfo = packageInfo;
-                        pe.staticPermissionGranted = true;
+                for (int i = 0; i < entriesForProfile.size(); i++) {
+                    final PermissionState pe = entriesForProfile.valueAt(i);
+                    for (String permission : mPermissions) {
+                        final PackageInfo packageInfo = mSnapshot.getPermissionHolder(
+                                mIPackageManager, permission, pe.packageName, profileId);
+                        if (packageInfo != null) {
+                            pe.packageInfo = packageInfo;
+                            pe.staticPermissionGranted = true;
+                            break;
+                        }
                     }
                 }
             }
@@ -258,34 +265,21 @@ public abstract class AppStateAppOpsBridge extends AppStateBaseBridge {
         }
 
         // Find out which packages have been granted permission from AppOps.
-        final List<AppOpsManager.PackageOps> packageOps = mAppOpsManager.getPackagesForOps(
-                mAppOpsOpCodes);
-        final int packageOpsCount = packageOps != null ? packageOps.size() : 0;
-        for (int i = 0; i < packageOpsCount; i++) {
-            final AppOpsManager.PackageOps packageOp = packageOps.get(i);
-            final int userId = UserHandle.getUserId(packageOp.getUid());
+        for (int i = 0; i < entries.size(); i++) {
+            final int userId = entries.keyAt(i);
             if (!isThisUserAProfileOfCurrentUser(userId)) {
                 // This AppOp does not belong to any of this user's profiles.
                 continue;
             }
-
-            final ArrayMap<String, PermissionState> entriesForProfile = entries.get(userId);
-            if (entriesForProfile == null) {
-                continue;
-            }
-            final PermissionState pe = entriesForProfile.get(packageOp.getPackageName());
-            if (pe == null) {
-                Log.w(TAG, "AppOp permission exists for package " + packageOp.getPackageName()
-                        + " of user " + userId + " but package doesn't exist or did not request "
-                        + Arrays.toString(mPermissions) + " access");
-                continue;
-            }
-
-            if (packageOp.getOps().size() < 1) {
-                Log.w(TAG, "No AppOps permission exists for package " + packageOp.getPackageName());
-                continue;
+            final ArrayMap<String, PermissionState> entriesForProfile = entries.valueAt(i);
+            for (int j = 0; j < entriesForProfile.size(); j++) {
+                final PermissionState pe = entriesForProfile.valueAt(j);
+                final Integer mode = mSnapshot.getOpMode(mAppOpsManager, mAppOpsOpCodes,
+                        pe.packageName, userId);
+                if (mode != null) {
+                    pe.appOpMode = mode;
+                }
             }
-            pe.appOpMode = packageOp.getOps().get(0).getMode();
         }
     }
 
@@ -18,17 +18,20 @@ package com.android.settings.applications;
 import android.app.usage.IUsageStatsManager;
 import android.app.usage.UsageEvents;
 import android.content.Context;
+import android.content.pm.ApplicationInfo;
 import android.os.RemoteException;
 import android.os.UserHandle;
 import android.os.UserManager;
 import android.text.format.DateUtils;
 import android.util.ArrayMap;
 import android.util.Log;
+import android.util.SparseArray;
 import android.widget.CompoundButton;
 
 import com.android.settings.R;
 import com.android.settings.Utils;
 import com.android.settings.notification.NotificationBackend;
+import com.android.settings.notification.NotificationBackend.BlockState;
 import com.android.settingslib.applications.ApplicationsState;
 import com.android.settingslib.applications.ApplicationsState.AppEntry;
 import com.android.settingslib.applications.ApplicationsState.AppFilter;
@@ -53,6 +56,11 @@ public class AppStateNotificationBridge extends AppStateBaseBridge {
     private NotificationBackend mBackend;
     private static final int DAYS_TO_CHECK = 7;
 
+    // Block state keyed by getKey(), only accessed while holding its own lock.
+    private final Map<String, BlockState> mBlockStateCache = new ArrayMap<>();
+    // Usage events aggregated by the last full load, shared with single package updates.
+    private volatile Map<String, NotificationsSentState> mAggregatedUsageEvents;
+
     public AppStateNotificationBridge(Context context, ApplicationsState appState,
             Callback callback, IUsageStatsManager usageStatsManager,
             UserManager userManager, NotificationBackend backend) {
@@ -68,6 +76,19 @@ public class AppStateNotificationBridge extends AppStateBaseBridge {
         }
     }
 
+    @Override
+    public void resume(boolean forceLoadAllApps) {
+        // Notification state may have changed outside of this screen while it was paused.
+        invalidateCaches();
+        super.resume(forceLoadAllApps);
+    }
+
+    @Override
+    public void onPackageListChanged() {
+        invalidateCaches();
+        super.onPackageListChanged();
+    }
+
     @Override
     protected void loadAllExtraInfo() {
         ArrayList<AppEntry> apps = mAppSession.getAllApps();
@@ -79,24 +100,39 @@ public class AppStateNotificationBridge extends AppStateBaseBridge {
         }
 
         final Map<String, NotificationsSentState> map = getAggregatedUsageEvents();
+        mAggregatedUsageEvents = map;
+        final Map<String, BlockState> blockStates = getBlockStates(apps);
         for (AppEntry entry : apps) {
-            NotificationsSentState stats =
-                    map.get(getKey(UserHandle.getUserId(entry.info.uid), entry.info.packageName));
+            final String key = getKey(UserHandle.getUserId(entry.info.uid), entry.info.packageName);
+            NotificationsSentState stats = copyOf(map.get(key));
             if (stats == null) {
                 stats = new NotificationsSentState();
             }
             calculateAvgSentCounts(stats);
-            addBlockStatus(entry, stats);
+            addBlockStatus(stats, blockStates.get(key));
             entry.extraInfo = stats;
         }
     }
 
     @Override
     protected void updateExtraInfo(AppEntry entry, String pkg, int uid) {
-        NotificationsSentState stats = getAggregatedUsageEvents(
-                UserHandle.getUserId(entry.info.uid), entry.info.packageName);
+        final int userId = UserHandle.getUserId(entry.info.uid);
+        final Map<String, NotificationsSentState> aggregatedUsageEvents = mAggregatedUsageEvents;
+        NotificationsSentState stats = aggregatedUsageEvents != null
+                ? copyOf(aggregatedUsageEvents.get(getKey(userId, entry.info.packageName)))
+                : getAggregatedUsageEvents(userId, entry.info.packageName);
         calculateAvgSentCounts(stats);
-        addBlockStatus(entry, stats);
+        if (stats != null) {
+            // The package was updated individually, typically because its notification settings
+            // were just changed, so its cached block state cannot be trusted.
+            final BlockState blockState = new BlockState(
+                    mBackend.getNotificationsBanned(entry.info.packageName, entry.info.uid),
+                    mBackend.enableSwitch(mContext, entry.info));
+            synchronized (mBlockStateCache) {
+                mBlockStateCache.put(getKey(userId, entry.info.packageName), blockState);
+            }
+            addBlockStatus(stats, blockState);
+        }
         entry.extraInfo = stats;
     }
 
@@ -120,11 +156,65 @@ public class AppStateNotificationBridge extends AppStateBaseBridge {
         }
     }
 
-    private void addBlockStatus(AppEntry entry, NotificationsSentState stats) {
-        if (stats != null) {
-            stats.blocked = mBackend.getNotificationsBanned(entry.info.packageName, entry.info.uid);
-            stats.blockable = mBackend.enableSwitch(mContext, entry.info);
+    /**
+     * @return the block state of every app in {@param apps}, keyed by {@link #getKey}. Apps
+     * which are not cached yet are loaded with one bulk backend call per user.
+     */
+    private Map<String, BlockState> getBlockStates(List<AppEntry> apps) {
+        final SparseArray<List<ApplicationInfo>> missingByUser = new SparseArray<>();
+        synchronized (mBlockStateCache) {
+            for (AppEntry entry : apps) {
+                final int userId = UserHandle.getUserId(entry.info.uid);
+                if (mBlockStateCache.containsKey(getKey(userId, entry.info.packageName))) {
+                    continue;
+                }
+                List<ApplicationInfo> missing = missingByUser.get(userId);
+                if (missing == null) {
+                    missing = new ArrayList<>();
+                    missingByUser.put(userId, missing);
+                }
+                missing.add(entry.info);
+            }
         }
+
+        final Map<String, BlockState> loaded = new ArrayMap<>();
+        for (int i = 0; i < missingByUser.size(); i++) {
+            final int userId = missingByUser.keyAt(i);
+            final Map<String, BlockState> states =
+                    mBackend.getBlockStates(mContext, userId, missingByUser.valueAt(i));
+            for (Map.Entry<String, BlockState> state : states.entrySet()) {
+                loaded.put(getKey(userId, state.getKey()), state.getValue());
+            }
+        }
+
+        synchronized (mBlockStateCache) {
+            mBlockStateCache.putAll(loaded);
+            return new ArrayMap<>(mBlockStateCache);
+        }
+    }
+
+    private static void addBlockStatus(NotificationsSentState stats, BlockState blockState) {
+        if (stats != null && blockState != null) {
+            stats.blocked = blockState.blocked;
+            stats.blockable = blockState.blockable;
+        }
+    }
+
+    private void invalidateCaches() {
+        mAggregatedUsageEvents = null;
+        synchronized (mBlockStateCache) {
+            mBlockStateCache.clear();
+        }
+    }
+
+    private static NotificationsSentState copyOf(NotificationsSentState stats) {
+        if (stats == null) {
+            return null;
+        }
+        final NotificationsSentState copy = new NotificationsSentState();
+        copy.lastSent = stats.lastSent;
+        copy.sentCount = stats.sentCount;
+        return copy;
     }
 
     private void calculateAvgSentCounts(NotificationsSentState stats) {
@@ -230,6 +320,10 @@ public class AppStateNotificationBridge extends AppStateBaseBridge {
                     mBackend.setNotificationsEnabledForPackage(
                             entry.info.packageName, entry.info.uid, isChecked);
                     stats.blocked = !isChecked;
+                    synchronized (mBlockStateCache) {
+                        mBlockStateCache.remove(getKey(
+                                UserHandle.getUserId(entry.info.uid), entry.info.packageName));
+                    }
                 }
             }
         };
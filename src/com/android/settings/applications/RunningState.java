@@ -39,10 +39,13 @@ import android.os.Message;
 import android.os.RemoteException;
 import android.os.UserHandle;
 import android.os.UserManager;
+import android.text.TextUtils;
 import android.text.format.Formatter;
 import android.util.Log;
 import android.util.SparseArray;
 
+import androidx.annotation.VisibleForTesting;
+
 import com.android.settings.R;
 import com.android.settingslib.Utils;
 import com.android.settingslib.applications.InterestingConfigChanges;
@@ -53,6 +56,7 @@ import java.util.Comparator;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Objects;
 
 /**
  * Singleton for retrieving and monitoring the state about all running
@@ -72,6 +76,8 @@ public class RunningState {
 
     static final long TIME_UPDATE_DELAY = 1000;
     static final long CONTENTS_UPDATE_DELAY = 2000;
+    // Longest delay the contents update backs off to while nothing changes.
+    static final long MAX_CONTENTS_UPDATE_DELAY = 16000;
 
     static final int MAX_SERVICES = 100;
 
@@ -244,12 +250,17 @@ public class RunningState {
                             return;
                         }
                     }
-                    Message cmd = mHandler.obtainMessage(MSG_REFRESH_UI);
-                    cmd.arg1 = update(mApplicationContext, mAm) ? 1 : 0;
-                    mHandler.sendMessage(cmd);
+                    final int refresh = update(mApplicationContext, mAm);
+                    if (refresh != OnRefreshUiListener.REFRESH_TIME) {
+                        Message cmd = mHandler.obtainMessage(MSG_REFRESH_UI);
+                        cmd.arg1 = refresh == OnRefreshUiListener.REFRESH_STRUCTURE ? 1 : 0;
+                        mHandler.sendMessage(cmd);
+                    }
+                    mContentsUpdateDelay = getNextContentsUpdateDelay(mContentsUpdateDelay,
+                            refresh);
                     removeMessages(MSG_UPDATE_CONTENTS);
                     msg = obtainMessage(MSG_UPDATE_CONTENTS);
-                    sendMessageDelayed(msg, CONTENTS_UPDATE_DELAY);
+                    sendMessageDelayed(msg, mContentsUpdateDelay);
                     break;
             }
         }
@@ -257,6 +268,15 @@ public class RunningState {
 
     final BackgroundHandler mBackgroundHandler;
 
+    // Delay until the next contents update, reset whenever an update is requested or the
+    // contents change.
+    volatile long mContentsUpdateDelay = CONTENTS_UPDATE_DELAY;
+
+    // Fingerprint of the services and processes the item graph was last built from, only
+    // accessed from the background thread.
+    long mLastFingerprint;
+    boolean mHaveFingerprint;
+
     final Handler mHandler = new Handler() {
         int mNextUpdate = OnRefreshUiListener.REFRESH_TIME;
 
@@ -798,6 +818,7 @@ public class RunningState {
     void resume(OnRefreshUiListener listener) {
         synchronized (mLock) {
             mResumed = true;
+            mContentsUpdateDelay = CONTENTS_UPDATE_DELAY;
             mRefreshUiListener = listener;
             boolean usersChanged = mUmBroadcastReceiver.checkUsersChangedLocked();
             boolean configChanged =
@@ -817,6 +838,7 @@ public class RunningState {
 
     void updateNow() {
         synchronized (mLock) {
+            mContentsUpdateDelay = CONTENTS_UPDATE_DELAY;
             mBackgroundHandler.removeMessages(MSG_UPDATE_CONTENTS);
             mBackgroundHandler.sendEmptyMessage(MSG_UPDATE_CONTENTS);
         }
@@ -868,6 +890,20 @@ public class RunningState {
         mRunningProcesses.clear();
         mProcessItems.clear();
         mAllProcessItems.clear();
+        mHaveFingerprint = false;
+        mContentsUpdateDelay = CONTENTS_UPDATE_DELAY;
+    }
+
+    /**
+     * @return the delay until the contents update following one that returned {@code refresh}.
+     */
+    @VisibleForTesting
+    static long getNextContentsUpdateDelay(long delay, int refresh) {
+        if (refresh != OnRefreshUiListener.REFRESH_TIME) {
+            return CONTENTS_UPDATE_DELAY;
+        }
+        // Nothing shown changed, poll less often until something does.
+        return Math.min(delay * 2, MAX_CONTENTS_UPDATE_DELAY);
     }
 
     private void addOtherUserItem(Context context, ArrayList<MergedItem> newMergedItems,
@@ -899,13 +935,14 @@ public class RunningState {
         userItem.mChildren.add(newItem);
     }
 
-    private boolean update(Context context, ActivityManager am) {
-        final PackageManager pm = context.getPackageManager();
-
-        mSequence++;
-
-        boolean changed = false;
-
+    /**
+     * Updates the running items.
+     *
+     * @return {@link OnRefreshUiListener#REFRESH_STRUCTURE} if the items changed,
+     * {@link OnRefreshUiListener#REFRESH_DATA} if only their sizes changed, or
+     * {@link OnRefreshUiListener#REFRESH_TIME} if nothing shown changed.
+     */
+    private int update(Context context, ActivityManager am) {
         // Retrieve list of services, filtering out anything that definitely
         // won't be shown in the UI.
         List<ActivityManager.RunningServiceInfo> services
@@ -938,6 +975,255 @@ public class RunningState {
         List<ActivityManager.RunningAppProcessInfo> processes
                 = am.getRunningAppProcesses();
         final int NP = processes != null ? processes.size() : 0;
+
+        // The item graph only depends on these lists, so it is kept as is while they stay the
+        // same; only the memory use of the processes is refreshed then.
+        boolean changed = false;
+        if (checkFingerprintChanged(fingerprint(services, NS, processes, NP))) {
+            mSequence++;
+            changed = updateItems(context, services, NS, processes, NP);
+        }
+        boolean dataChanged = changed;
+
+        // Count number of interesting other (non-active) processes, and
+        // build a list of all processes we will retrieve memory for.
+        mAllProcessItems.clear();
+        mAllProcessItems.addAll(mProcessItems);
+        int numBackgroundProcesses = 0;
+        int numForegroundProcesses = 0;
+        int numServiceProcesses = 0;
+        int NRP = mRunningProcesses.size();
+        for (int i = 0; i < NRP; i++) {
+            ProcessItem proc = mRunningProcesses.valueAt(i);
+            if (proc.mCurSeq != mSequence) {
+                // We didn't hit this process as a dependency on one
+                // of our active ones, so add it up if needed.
+                if (proc.mRunningProcessInfo.importance >=
+                        ActivityManager.RunningAppProcessInfo.IMPORTANCE_BACKGROUND) {
+                    numBackgroundProcesses++;
+                    mAllProcessItems.add(proc);
+                } else if (proc.mRunningProcessInfo.importance <=
+                        ActivityManager.RunningAppProcessInfo.IMPORTANCE_VISIBLE) {
+                    numForegroundProcesses++;
+                    mAllProcessItems.add(proc);
+                } else {
+                    Log.i("RunningState", "Unknown non-service process: "
+                            + proc.mProcessName + " #" + proc.mPid);
+                }
+            } else {
+                numServiceProcesses++;
+            }
+        }
+
+        long backgroundProcessMemory = 0;
+        long foregroundProcessMemory = 0;
+        long serviceProcessMemory = 0;
+        ArrayList<MergedItem> newBackgroundItems = null;
+        ArrayList<MergedItem> newUserBackgroundItems = null;
+        boolean diffUsers = false;
+        try {
+            final int numProc = mAllProcessItems.size();
+            int[] pids = new int[numProc];
+            for (int i = 0; i < numProc; i++) {
+                pids[i] = mAllProcessItems.get(i).mPid;
+            }
+            long[] pss = ActivityManager.getService()
+                    .getProcessPss(pids);
+            int bgIndex = 0;
+            for (int i = 0; i < pids.length; i++) {
+                ProcessItem proc = mAllProcessItems.get(i);
+                final String sizeStr = proc.mSizeStr;
+                changed |= proc.updateSize(context, pss[i], mSequence);
+                dataChanged |= !TextUtils.equals(proc.mSizeStr, sizeStr);
+                if (proc.mCurSeq == mSequence) {
+                    serviceProcessMemory += proc.mSize;
+                } else if (proc.mRunningProcessInfo.importance >=
+                        ActivityManager.RunningAppProcessInfo.IMPORTANCE_BACKGROUND) {
+                    backgroundProcessMemory += proc.mSize;
+                    MergedItem mergedItem;
+                    if (newBackgroundItems != null) {
+                        mergedItem = proc.mMergedItem = new MergedItem(proc.mUserId);
+                        proc.mMergedItem.mProcess = proc;
+                        diffUsers |= mergedItem.mUserId != mMyUserId;
+                        newBackgroundItems.add(mergedItem);
+                    } else {
+                        if (bgIndex >= mBackgroundItems.size()
+                                || mBackgroundItems.get(bgIndex).mProcess != proc) {
+                            newBackgroundItems = new ArrayList<MergedItem>(numBackgroundProcesses);
+                            for (int bgi = 0; bgi < bgIndex; bgi++) {
+                                mergedItem = mBackgroundItems.get(bgi);
+                                diffUsers |= mergedItem.mUserId != mMyUserId;
+                                newBackgroundItems.add(mergedItem);
+                            }
+                            mergedItem = proc.mMergedItem = new MergedItem(proc.mUserId);
+                            proc.mMergedItem.mProcess = proc;
+                            diffUsers |= mergedItem.mUserId != mMyUserId;
+                            newBackgroundItems.add(mergedItem);
+                        } else {
+                            mergedItem = mBackgroundItems.get(bgIndex);
+                        }
+                    }
+                    mergedItem.update(context, true);
+                    dataChanged |= updateSize(context, mergedItem);
+                    bgIndex++;
+                } else if (proc.mRunningProcessInfo.importance <=
+                        ActivityManager.RunningAppProcessInfo.IMPORTANCE_VISIBLE) {
+                    foregroundProcessMemory += proc.mSize;
+                }
+            }
+        } catch (RemoteException e) {
+        }
+
+        if (newBackgroundItems == null) {
+            // One or more at the bottom may no longer exist.
+            if (mBackgroundItems.size() > numBackgroundProcesses) {
+                newBackgroundItems = new ArrayList<MergedItem>(numBackgroundProcesses);
+                for (int bgi = 0; bgi < numBackgroundProcesses; bgi++) {
+                    MergedItem mergedItem = mBackgroundItems.get(bgi);
+                    diffUsers |= mergedItem.mUserId != mMyUserId;
+                    newBackgroundItems.add(mergedItem);
+                }
+            }
+        }
+
+        if (newBackgroundItems != null) {
+            dataChanged = true;
+            // The background items have changed; we need to re-build the
+            // per-user items.
+            if (!diffUsers) {
+                // Easy: there are no other users, we can just use the same array.
+                newUserBackgroundItems = newBackgroundItems;
+            } else {
+                // We now need to re-build the per-user list so that background
+                // items for users are collapsed together.
+                newUserBackgroundItems = new ArrayList<MergedItem>();
+                final int NB = newBackgroundItems.size();
+                for (int i = 0; i < NB; i++) {
+                    MergedItem mergedItem = newBackgroundItems.get(i);
+                    if (mergedItem.mUserId != mMyUserId) {
+                        addOtherUserItem(context, newUserBackgroundItems,
+                                mOtherUserBackgroundItems, mergedItem);
+                    } else {
+                        newUserBackgroundItems.add(mergedItem);
+                    }
+                }
+                // And user aggregated merged items need to be
+                // updated now that they have all of their children.
+                final int NU = mOtherUserBackgroundItems.size();
+                for (int i = 0; i < NU; i++) {
+                    MergedItem user = mOtherUserBackgroundItems.valueAt(i);
+                    if (user.mCurSeq == mSequence) {
+                        user.update(context, true);
+                        user.updateSize(context);
+                    }
+                }
+            }
+        }
+
+        for (int i = 0; i < mMergedItems.size(); i++) {
+            dataChanged |= updateSize(context, mMergedItems.get(i));
+        }
+
+        synchronized (mLock) {
+            dataChanged |= mNumBackgroundProcesses != numBackgroundProcesses
+                    || mNumForegroundProcesses != numForegroundProcesses
+                    || mNumServiceProcesses != numServiceProcesses;
+            mNumBackgroundProcesses = numBackgroundProcesses;
+            mNumForegroundProcesses = numForegroundProcesses;
+            mNumServiceProcesses = numServiceProcesses;
+            mBackgroundProcessMemory = backgroundProcessMemory;
+            mForegroundProcessMemory = foregroundProcessMemory;
+            mServiceProcessMemory = serviceProcessMemory;
+            if (newBackgroundItems != null) {
+                mBackgroundItems = newBackgroundItems;
+                mUserBackgroundItems = newUserBackgroundItems;
+                if (mWatchingBackgroundItems) {
+                    changed = true;
+                }
+            }
+            if (!mHaveData) {
+                mHaveData = true;
+                mLock.notifyAll();
+            }
+        }
+
+        if (changed) {
+            return OnRefreshUiListener.REFRESH_STRUCTURE;
+        }
+        return dataChanged ? OnRefreshUiListener.REFRESH_DATA : OnRefreshUiListener.REFRESH_TIME;
+    }
+
+    /**
+     * Updates the size of {@code item}, returning whether its size text changed.
+     */
+    private static boolean updateSize(Context context, MergedItem item) {
+        final String sizeStr = item.mSizeStr;
+        item.updateSize(context);
+        return !TextUtils.equals(item.mSizeStr, sizeStr);
+    }
+
+    /**
+     * Records {@code fingerprint} as the one the item graph is built from.
+     *
+     * @return whether it differs from the previous one, so that the graph must be rebuilt.
+     */
+    @VisibleForTesting
+    boolean checkFingerprintChanged(long fingerprint) {
+        if (mHaveFingerprint && fingerprint == mLastFingerprint) {
+            return false;
+        }
+        mLastFingerprint = fingerprint;
+        mHaveFingerprint = true;
+        return true;
+    }
+
+    /**
+     * Hashes the fields of the running services and processes that the item graph is built
+     * from, so that an unchanged list can be detected without rebuilding the graph.
+     */
+    @VisibleForTesting
+    static long fingerprint(List<ActivityManager.RunningServiceInfo> services, int NS,
+            List<ActivityManager.RunningAppProcessInfo> processes, int NP) {
+        long hash = NS;
+        for (int i = 0; i < NS; i++) {
+            ActivityManager.RunningServiceInfo si = services.get(i);
+            hash = 31 * hash + Objects.hashCode(si.service);
+            hash = 31 * hash + Objects.hashCode(si.process);
+            hash = 31 * hash + Objects.hashCode(si.clientPackage);
+            hash = 31 * hash + si.uid;
+            hash = 31 * hash + si.pid;
+            hash = 31 * hash + si.restarting;
+            hash = 31 * hash + si.activeSince;
+            hash = 31 * hash + si.clientLabel;
+            hash = 31 * hash + si.flags;
+            hash = 31 * hash + (si.started ? 1 : 0);
+            hash = 31 * hash + (si.foreground ? 1 : 0);
+        }
+        hash = 31 * hash + NP;
+        for (int i = 0; i < NP; i++) {
+            ActivityManager.RunningAppProcessInfo pi = processes.get(i);
+            hash = 31 * hash + Objects.hashCode(pi.processName);
+            hash = 31 * hash + pi.uid;
+            hash = 31 * hash + pi.pid;
+            hash = 31 * hash + pi.importance;
+            hash = 31 * hash + pi.importanceReasonCode;
+            hash = 31 * hash + pi.importanceReasonPid;
+            hash = 31 * hash + pi.flags;
+        }
+        return hash;
+    }
+
+    /**
+     * Rebuilds the item graph from the running services and processes, reusing the items of
+     * the previous build.
+     *
+     * @return whether the items changed.
+     */
+    private boolean updateItems(Context context, List<ActivityManager.RunningServiceInfo> services,
+            int NS, List<ActivityManager.RunningAppProcessInfo> processes, int NP) {
+        final PackageManager pm = context.getPackageManager();
+        boolean changed = false;
+
         mTmpAppProcesses.clear();
         for (int i = 0; i < NP; i++) {
             ActivityManager.RunningAppProcessInfo pi = processes.get(i);
@@ -1282,162 +1568,6 @@ public class RunningState {
             }
         }
 
-        // Count number of interesting other (non-active) processes, and
-        // build a list of all processes we will retrieve memory for.
-        mAllProcessItems.clear();
-        mAllProcessItems.addAll(mProcessItems);
-        int numBackgroundProcesses = 0;
-        int numForegroundProcesses = 0;
-        int numServiceProcesses = 0;
-        NRP = mRunningProcesses.size();
-        for (int i = 0; i < NRP; i++) {
-            ProcessItem proc = mRunningProcesses.valueAt(i);
-            if (proc.mCurSeq != mSequence) {
-                // We didn't hit this process as a dependency on one
-                // of our active ones, so add it up if needed.
-                if (proc.mRunningProcessInfo.importance >=
-                        ActivityManager.RunningAppProcessInfo.IMPORTANCE_BACKGROUND) {
-                    numBackgroundProcesses++;
-                    mAllProcessItems.add(proc);
-                } else if (proc.mRunningProcessInfo.importance <=
-                        ActivityManager.RunningAppProcessInfo.IMPORTANCE_VISIBLE) {
-                    numForegroundProcesses++;
-                    mAllProcessItems.add(proc);
-                } else {
-                    Log.i("RunningState", "Unknown non-service process: "
-                            + proc.mProcessName + " #" + proc.mPid);
-                }
-            } else {
-                numServiceProcesses++;
-            }
-        }
-
-        long backgroundProcessMemory = 0;
-        long foregroundProcessMemory = 0;
-        long serviceProcessMemory = 0;
-        ArrayList<MergedItem> newBackgroundItems = null;
-        ArrayList<MergedItem> newUserBackgroundItems = null;
-        boolean diffUsers = false;
-        try {
-            final int numProc = mAllProcessItems.size();
-            int[] pids = new int[numProc];
-            for (int i = 0; i < numProc; i++) {
-                pids[i] = mAllProcessItems.get(i).mPid;
-            }
-            long[] pss = ActivityManager.getService()
-                    .getProcessPss(pids);
-            int bgIndex = 0;
-            for (int i = 0; i < pids.length; i++) {
-                ProcessItem proc = mAllProcessItems.get(i);
-                changed |= proc.updateSize(context, pss[i], mSequence);
-                if (proc.mCurSeq == mSequence) {
-                    serviceProcessMemory += proc.mSize;
-                } else if (proc.mRunningProcessInfo.importance >=
-                        ActivityManager.RunningAppProcessInfo.IMPORTANCE_BACKGROUND) {
-                    backgroundProcessMemory += proc.mSize;
-                    MergedItem mergedItem;
-                    if (newBackgroundItems != null) {
-                        mergedItem = proc.mMergedItem = new MergedItem(proc.mUserId);
-                        proc.mMergedItem.mProcess = proc;
-                        diffUsers |= mergedItem.mUserId != mMyUserId;
-                        newBackgroundItems.add(mergedItem);
-                    } else {
-                        if (bgIndex >= mBackgroundItems.size()
-                                || mBackgroundItems.get(bgIndex).mProcess != proc) {
-                            newBackgroundItems = new ArrayList<MergedItem>(numBackgroundProcesses);
-                            for (int bgi = 0; bgi < bgIndex; bgi++) {
-                                mergedItem = mBackgroundItems.get(bgi);
-                                diffUsers |= mergedItem.mUserId != mMyUserId;
-                                newBackgroundItems.add(mergedItem);
-                            }
-                            mergedItem = proc.mMergedItem = new MergedItem(proc.mUserId);
-                            proc.mMergedItem.mProcess = proc;
-                            diffUsers |= mergedItem.mUserId != mMyUserId;
-                            newBackgroundItems.add(mergedItem);
-                        } else {
-                            mergedItem = mBackgroundItems.get(bgIndex);
-                        }
-                    }
-                    mergedItem.update(context, true);
-                    mergedItem.updateSize(context);
-                    bgIndex++;
-                } else if (proc.mRunningProcessInfo.importance <=
-                        ActivityManager.RunningAppProcessInfo.IMPORTANCE_VISIBLE) {
-                    foregroundProcessMemory += proc.mSize;
-                }
-            }
-        } catch (RemoteException e) {
-        }
-
-        if (newBackgroundItems == null) {
-            // One or more at the bottom may no longer exist.
-            if (mBackgroundItems.size() > numBackgroundProcesses) {
-                newBackgroundItems = new ArrayList<MergedItem>(numBackgroundProcesses);
-                for (int bgi = 0; bgi < numBackgroundProcesses; bgi++) {
-                    MergedItem mergedItem = mBackgroundItems.get(bgi);
-                    diffUsers |= mergedItem.mUserId != mMyUserId;
-                    newBackgroundItems.add(mergedItem);
-                }
-            }
-        }
-
-        if (newBackgroundItems != null) {
-            // The background items have changed; we need to re-build the
-            // per-user items.
-            if (!diffUsers) {
-                // Easy: there are no other users, we can just use the same array.
-                newUserBackgroundItems = newBackgroundItems;
-            } else {
-                // We now need to re-build the per-user list so that background
-                // items for users are collapsed together.
-                newUserBackgroundItems = new ArrayList<MergedItem>();
-                final int NB = newBackgroundItems.size();
-                for (int i = 0; i < NB; i++) {
-                    MergedItem mergedItem = newBackgroundItems.get(i);
-                    if (mergedItem.mUserId != mMyUserId) {
-                        addOtherUserItem(context, newUserBackgroundItems,
-                                mOtherUserBackgroundItems, mergedItem);
-                    } else {
-                        newUserBackgroundItems.add(mergedItem);
-                    }
-                }
-                // And user aggregated merged items need to be
-                // updated now that they have all of their children.
-                final int NU = mOtherUserBackgroundItems.size();
-                for (int i = 0; i < NU; i++) {
-                    MergedItem user = mOtherUserBackgroundItems.valueAt(i);
-                    if (user.mCurSeq == mSequence) {
-                        user.update(context, true);
-                        user.updateSize(context);
-                    }
-                }
-            }
-        }
-
-        for (int i = 0; i < mMergedItems.size(); i++) {
-            mMergedItems.get(i).updateSize(context);
-        }
-
-        synchronized (mLock) {
-            mNumBackgroundProcesses = numBackgroundProcesses;
-            mNumForegroundProcesses = numForegroundProcesses;
-            mNumServiceProcesses = numServiceProcesses;
-            mBackgroundProcessMemory = backgroundProcessMemory;
-            mForegroundProcessMemory = foregroundProcessMemory;
-            mServiceProcessMemory = serviceProcessMemory;
-            if (newBackgroundItems != null) {
-                mBackgroundItems = newBackgroundItems;
-                mUserBackgroundItems = newUserBackgroundItems;
-                if (mWatchingBackgroundItems) {
-                    changed = true;
-                }
-            }
-            if (!mHaveData) {
-                mHaveData = true;
-                mLock.notifyAll();
-            }
-        }
-
         return changed;
     }
 
@@ -34,7 +34,9 @@ import com.android.settings.R;
 import com.android.settings.SettingsPreferenceFragment;
 import com.android.settings.Utils;
 import com.android.settings.datausage.AppDataUsage;
+import com.android.settings.datausage.CachedNetworkStatsLoader;
 import com.android.settings.datausage.DataUsageUtils;
+import com.android.settings.datausage.NetworkStatsResultCache;
 import com.android.settings.network.SubscriptionUtil;
 import com.android.settingslib.AppItem;
 import com.android.settingslib.applications.AppUtils;
@@ -44,6 +46,7 @@ import com.android.settingslib.core.lifecycle.events.OnResume;
 import com.android.settingslib.net.NetworkCycleDataForUid;
 import com.android.settingslib.net.NetworkCycleDataForUidLoader;
 
+import java.util.ArrayList;
 import java.util.List;
 
 public class AppDataUsagePreferenceController extends AppInfoPreferenceControllerBase
@@ -100,12 +103,19 @@ public class AppDataUsagePreferenceController extends AppInfoPreferenceControlle
         builder.setRetrieveDetail(false)
                .setNetworkTemplate(template);
 
-        builder.addUid(uid);
+        final List<Integer> uids = new ArrayList<>(2);
+        uids.add(uid);
         if (Process.isApplicationUid(uid)) {
             // Also add in network usage for the app's SDK sandbox
-            builder.addUid(Process.toSdkSandboxUid(uid));
+            uids.add(Process.toSdkSandboxUid(uid));
         }
-        return builder.build();
+        for (int queryUid : uids) {
+            builder.addUid(queryUid);
+        }
+        return new CachedNetworkStatsLoader<>(mContext,
+                NetworkStatsResultCache.Key.forUids(template, uids, null /* cycles */,
+                        false /* retrieveDetail */),
+                builder.build());
     }
 
     @Override
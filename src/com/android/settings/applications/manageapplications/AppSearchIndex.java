@@ -0,0 +1,132 @@
+/*
+ * Copyright (C) 2022 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.settings.applications.manageapplications;
+
+import android.text.TextUtils;
+
+import androidx.annotation.WorkerThread;
+
+import com.android.settingslib.applications.ApplicationsState.AppEntry;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+/**
+ * Search index over the labels and package names of the apps listed by {@link ManageApplications}.
+ *
+ * Labels and package names are normalized once per entry, lower cased for the current locale and
+ * with diacritics removed, so that typing "cafe" matches "Café". When the list is rebuilt, entries
+ * whose label did not change keep their normalized strings. While the user keeps typing, a query
+ * containing the previous query only needs to be checked against the previous matches.
+ */
+class AppSearchIndex {
+
+    private static final Pattern COMBINING_MARKS = Pattern.compile("\\p{Mn}+");
+
+    private List<AppEntry> mSourceEntries;
+    private List<IndexedEntry> mIndexedEntries = Collections.emptyList();
+    private Map<AppEntry, IndexedEntry> mIndex = new IdentityHashMap<>();
+    private Locale mLocale;
+
+    private String mLastQuery;
+    private List<IndexedEntry> mLastMatches;
+
+    /**
+     * @return the entries of {@param entries} whose label or package name contains
+     * {@param query}, in list order.
+     */
+    @WorkerThread
+    synchronized ArrayList<AppEntry> search(List<AppEntry> entries, CharSequence query) {
+        updateIndex(entries);
+
+        final String normalizedQuery = normalize(query, mLocale);
+        final List<IndexedEntry> candidates =
+                mLastQuery != null && normalizedQuery.contains(mLastQuery)
+                        ? mLastMatches
+                        : mIndexedEntries;
+        final List<IndexedEntry> matches = new ArrayList<>();
+        for (IndexedEntry entry : candidates) {
+            if (entry.mNormalizedLabel.contains(normalizedQuery)
+                    || entry.mNormalizedPackageName.contains(normalizedQuery)) {
+                matches.add(entry);
+            }
+        }
+        mLastQuery = normalizedQuery;
+        mLastMatches = matches;
+
+        final ArrayList<AppEntry> result = new ArrayList<>(matches.size());
+        for (IndexedEntry entry : matches) {
+            result.add(entry.mEntry);
+        }
+        return result;
+    }
+
+    private void updateIndex(List<AppEntry> entries) {
+        final Locale locale = Locale.getDefault();
+        final boolean localeChanged = !locale.equals(mLocale);
+        if (entries == mSourceEntries && !localeChanged) {
+            return;
+        }
+        mLocale = locale;
+
+        final Map<AppEntry, IndexedEntry> index = new IdentityHashMap<>(entries.size());
+        final List<IndexedEntry> indexedEntries = new ArrayList<>(entries.size());
+        for (AppEntry entry : entries) {
+            IndexedEntry indexed = localeChanged ? null : mIndex.get(entry);
+            if (indexed == null || !TextUtils.equals(indexed.mLabel, entry.label)) {
+                indexed = new IndexedEntry(entry, locale);
+            }
+            index.put(entry, indexed);
+            indexedEntries.add(indexed);
+        }
+        mSourceEntries = entries;
+        mIndex = index;
+        mIndexedEntries = indexedEntries;
+        mLastQuery = null;
+        mLastMatches = null;
+    }
+
+    private static String normalize(CharSequence text, Locale locale) {
+        if (TextUtils.isEmpty(text)) {
+            return "";
+        }
+        final String decomposed = Normalizer.normalize(text, Normalizer.Form.NFD);
+        return COMBINING_MARKS.matcher(decomposed).replaceAll("").toLowerCase(locale);
+    }
+
+    private static class IndexedEntry {
+        private final AppEntry mEntry;
+        private final String mLabel;
+        private final String mNormalizedLabel;
+        private final String mNormalizedPackageName;
+
+        IndexedEntry(AppEntry entry, Locale locale) {
+            mEntry = entry;
+            mLabel = entry.label;
+            mNormalizedLabel = normalize(entry.label, locale);
+            mNormalizedPackageName = entry.info != null
+                    ? normalize(entry.info.packageName, locale)
+                    : "";
+        }
+    }
+}
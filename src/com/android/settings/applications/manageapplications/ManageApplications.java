@@ -78,7 +78,9 @@ import androidx.annotation.VisibleForTesting;
 import androidx.annotation.WorkerThread;
 import androidx.coordinatorlayout.widget.CoordinatorLayout;
 import androidx.core.view.ViewCompat;
+import androidx.recyclerview.widget.DiffUtil;
 import androidx.recyclerview.widget.LinearLayoutManager;
+import androidx.recyclerview.widget.ListUpdateCallback;
 import androidx.recyclerview.widget.RecyclerView;
 
 import com.android.internal.compat.IPlatformCompat;
@@ -150,6 +152,7 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.Comparator;
+import java.util.List;
 import java.util.Set;
 
 /**
@@ -1100,6 +1103,7 @@ public class ManageApplications extends InstrumentedFragment
         private boolean mHasReceivedLoadEntries;
         private boolean mHasReceivedBridgeCallback;
         private SearchFilter mSearchFilter;
+        private final AppSearchIndex mSearchIndex = new AppSearchIndex();
         private PowerAllowlistBackend mBackend;
 
         // This is to remember and restore the last scroll position when this
@@ -1752,7 +1756,8 @@ public class ManageApplications extends InstrumentedFragment
 
         /**
          * An array filter that constrains the content of the array adapter with a substring.
-         * Item that does not contains the specified substring will be removed from the list.</p>
+         * Item whose label or package name does not contain the specified substring will be
+         * removed from the list, see {@link AppSearchIndex}.</p>
          */
         private class SearchFilter extends Filter {
             @WorkerThread
@@ -1762,23 +1767,104 @@ public class ManageApplications extends InstrumentedFragment
                 if (TextUtils.isEmpty(query)) {
                     matchedEntries = mOriginalEntries;
                 } else {
-                    matchedEntries = new ArrayList<>();
-                    for (ApplicationsState.AppEntry entry : mOriginalEntries) {
-                        if (entry.label.toLowerCase().contains(query.toString().toLowerCase())) {
-                            matchedEntries.add(entry);
-                        }
-                    }
+                    matchedEntries = mSearchIndex.search(mOriginalEntries, query);
                 }
+                final SearchResult searchResult = new SearchResult(mEntries, matchedEntries);
                 final FilterResults results = new FilterResults();
-                results.values = matchedEntries;
+                results.values = searchResult;
                 results.count = matchedEntries.size();
                 return results;
             }
 
             @Override
             protected void publishResults(CharSequence constraint, FilterResults results) {
-                mEntries = (ArrayList<ApplicationsState.AppEntry>) results.values;
-                notifyDataSetChanged();
+                final SearchResult searchResult = (SearchResult) results.values;
+                final ArrayList<ApplicationsState.AppEntry> previousEntries = mEntries;
+                mEntries = searchResult.mEntries;
+                if (searchResult.mDiff == null || searchResult.mPreviousEntries != previousEntries
+                        || (getHeaderCount() > 0 && (previousEntries.isEmpty()
+                        || mEntries.isEmpty()))) {
+                    // The list changed while filtering, or the header appears or disappears.
+                    notifyDataSetChanged();
+                    return;
+                }
+                final int offset = getHeaderCount();
+                searchResult.mDiff.dispatchUpdatesTo(new ListUpdateCallback() {
+                    @Override
+                    public void onInserted(int position, int count) {
+                        notifyItemRangeInserted(position + offset, count);
+                    }
+
+                    @Override
+                    public void onRemoved(int position, int count) {
+                        notifyItemRangeRemoved(position + offset, count);
+                    }
+
+                    @Override
+                    public void onMoved(int fromPosition, int toPosition) {
+                        notifyItemMoved(fromPosition + offset, toPosition + offset);
+                    }
+
+                    @Override
+                    public void onChanged(int position, int count, Object payload) {
+                        notifyItemRangeChanged(position + offset, count, payload);
+                    }
+                });
+            }
+
+            private int getHeaderCount() {
+                return mManageApplications.mListType == LIST_TYPE_APPS_LOCALE ? 1 : 0;
+            }
+        }
+
+        /**
+         * Entries matching a search, with the changes from the entries shown when the search
+         * started.
+         */
+        private static class SearchResult {
+            final ArrayList<ApplicationsState.AppEntry> mPreviousEntries;
+            final ArrayList<ApplicationsState.AppEntry> mEntries;
+            final DiffUtil.DiffResult mDiff;
+
+            SearchResult(ArrayList<ApplicationsState.AppEntry> previousEntries,
+                    ArrayList<ApplicationsState.AppEntry> entries) {
+                mPreviousEntries = previousEntries;
+                mEntries = entries;
+                mDiff = previousEntries == null ? null : DiffUtil.calculateDiff(
+                        new AppEntryDiffCallback(previousEntries, entries),
+                        false /* detectMoves */);
+            }
+        }
+
+        private static class AppEntryDiffCallback extends DiffUtil.Callback {
+            private final List<ApplicationsState.AppEntry> mOldEntries;
+            private final List<ApplicationsState.AppEntry> mNewEntries;
+
+            AppEntryDiffCallback(List<ApplicationsState.AppEntry> oldEntries,
+                    List<ApplicationsState.AppEntry> newEntries) {
+                mOldEntries = oldEntries;
+                mNewEntries = newEntries;
+            }
+
+            @Override
+            public int getOldListSize() {
+                return mOldEntries.size();
+            }
+
+            @Override
+            public int getNewListSize() {
+                return mNewEntries.size();
+            }
+
+            @Override
+            public boolean areItemsTheSame(int oldItemPosition, int newItemPosition) {
+                return mOldEntries.get(oldItemPosition) == mNewEntries.get(newItemPosition);
+            }
+
+            @Override
+            public boolean areContentsTheSame(int oldItemPosition, int newItemPosition) {
+                // Filtering only adds or removes entries, their content is refreshed separately.
+                return true;
             }
         }
     }
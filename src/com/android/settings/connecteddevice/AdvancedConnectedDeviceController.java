@@ -22,6 +22,7 @@ import android.content.Intent;
 import android.provider.Settings;
 
 import androidx.annotation.VisibleForTesting;
+import androidx.preference.Preference;
 
 import com.android.settings.R;
 import com.android.settings.core.BasePreferenceController;
@@ -30,16 +31,36 @@ import com.android.settings.nfc.NfcPreferenceController;
 /**
  * Controller that used to show which component is available
  */
-public class AdvancedConnectedDeviceController extends BasePreferenceController {
+public class AdvancedConnectedDeviceController extends BasePreferenceController
+        implements BasePreferenceController.BackgroundStateLoader {
 
     private static final String DRIVING_MODE_SETTINGS_ENABLED =
             "gearhead:driving_mode_settings_enabled";
     private static final String GEARHEAD_PACKAGE = "com.google.android.projection.gearhead";
 
+    // Summary loaded in the background for the next updateState(), 0 if none is pending.
+    private int mLoadedSummaryResId;
+
     public AdvancedConnectedDeviceController(Context context, String preferenceKey) {
         super(context, preferenceKey);
     }
 
+    @Override
+    public void loadStateInBackground() {
+        mLoadedSummaryResId = getConnectedDevicesSummaryResourceId(mContext);
+    }
+
+    @Override
+    public void updateState(Preference preference) {
+        final int summaryResId = mLoadedSummaryResId;
+        mLoadedSummaryResId = 0;
+        if (summaryResId == 0) {
+            super.updateState(preference);
+            return;
+        }
+        preference.setSummary(mContext.getText(summaryResId));
+    }
+
     @Override
     public int getAvailabilityStatus() {
         return AVAILABLE;
@@ -37,12 +37,15 @@ import com.android.settingslib.core.lifecycle.events.OnStop;
  * Controller that used to show NFC and payment features
  */
 public class NfcAndPaymentFragmentController extends BasePreferenceController
-        implements LifecycleObserver, OnResume, OnStop {
+        implements LifecycleObserver, OnResume, OnStop,
+        BasePreferenceController.BackgroundStateLoader {
     private final NfcAdapter mNfcAdapter;
     private final PackageManager mPackageManager;
     private final UserManager mUserManager;
     private final IntentFilter mIntentFilter;
     private Preference mPreference;
+    // Summary loaded in the background for the next updateState(), null if none is pending.
+    private CharSequence mLoadedSummary;
 
     private final BroadcastReceiver mReceiver = new BroadcastReceiver() {
         @Override
@@ -85,6 +88,22 @@ public class NfcAndPaymentFragmentController extends BasePreferenceController
         return AVAILABLE;
     }
 
+    @Override
+    public void loadStateInBackground() {
+        mLoadedSummary = getSummary();
+    }
+
+    @Override
+    public void updateState(Preference preference) {
+        final CharSequence summary = mLoadedSummary;
+        mLoadedSummary = null;
+        if (summary == null) {
+            super.updateState(preference);
+            return;
+        }
+        preference.setSummary(summary);
+    }
+
     @Override
     public CharSequence getSummary() {
         if (mNfcAdapter != null) {
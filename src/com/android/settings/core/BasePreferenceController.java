@@ -415,6 +415,24 @@ public abstract class BasePreferenceController extends AbstractPreferenceControl
     public interface UiBlocker {
     }
 
+    /**
+     * Used for {@link BasePreferenceController} whose availability and state can be computed off
+     * the main thread. When a page refreshes, {@link #getAvailabilityStatus()} and
+     * {@link #loadStateInBackground()} of all such controllers are called concurrently on
+     * background threads, and {@link #updateState(Preference)} is then called for all of them in
+     * one batch on the main thread. {@link #updateState(Preference)} should only apply what was
+     * loaded in the background.
+     *
+     * This must be used in {@link BasePreferenceController}
+     */
+    public interface BackgroundStateLoader {
+        /**
+         * Loads the data used by the next {@link #updateState(Preference)}. Called on a
+         * background thread, and only when the controller is available.
+         */
+        void loadStateInBackground();
+    }
+
     /**
      * Set the metrics category of the parent fragment.
      *
@@ -0,0 +1,183 @@
+/*
+ * Copyright (C) 2022 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.settings.core;
+
+import android.os.SystemClock;
+import android.util.ArrayMap;
+import android.util.Log;
+
+import androidx.annotation.IntDef;
+import androidx.annotation.VisibleForTesting;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Map;
+
+/**
+ * Latency of the calls made to preference controllers, per controller class and operation.
+ *
+ * The last {@link #RING_SIZE} latencies of each operation are kept in a ring buffer allocated the
+ * first time a controller class is seen, so recording a call does not allocate. Percentiles are
+ * only computed when the data is dumped or reported. The data is exported through
+ * {@link com.android.settings.SettingsDumpService}, slow controllers are also logged to logcat.
+ */
+public class ControllerLatencyTracker {
+
+    @Retention(RetentionPolicy.SOURCE)
+    @IntDef({OP_AVAILABILITY, OP_DISPLAY, OP_UPDATE_STATE, OP_NON_INDEXABLE_KEYS})
+    public @interface Operation {
+    }
+
+    /** {@link BasePreferenceController#isAvailable()} and the availability status it reads. */
+    public static final int OP_AVAILABILITY = 0;
+    /** {@code displayPreference(PreferenceScreen)}. */
+    public static final int OP_DISPLAY = 1;
+    /** {@code updateState(Preference)}, which includes refreshing the summary. */
+    public static final int OP_UPDATE_STATE = 2;
+    /** {@code updateNonIndexableKeys(List)}, called while indexing for search. */
+    public static final int OP_NON_INDEXABLE_KEYS = 3;
+
+    private static final String[] OP_NAMES =
+            {"availability", "display", "update_state", "non_indexable_keys"};
+
+    @VisibleForTesting
+    static final String TAG = "ControllerLatency";
+    @VisibleForTesting
+    static final int RING_SIZE = 64;
+    /** Operations whose p95 is above this are reported as slow, one frame at 60Hz. */
+    @VisibleForTesting
+    static final long SLOW_THRESHOLD_US = 16_000;
+
+    private static ControllerLatencyTracker sInstance;
+
+    private final Map<Class<?>, ControllerStats> mStats = new ArrayMap<>();
+
+    public static synchronized ControllerLatencyTracker getInstance() {
+        if (sInstance == null) {
+            sInstance = new ControllerLatencyTracker();
+        }
+        return sInstance;
+    }
+
+    @VisibleForTesting
+    ControllerLatencyTracker() {
+    }
+
+    /**
+     * Records a call to {@param controller} started at {@param startNanos}, as returned by
+     * {@link SystemClock#elapsedRealtimeNanos()}, and ending now.
+     */
+    public void record(Object controller, @Operation int op, long startNanos) {
+        recordLatency(controller.getClass(), op,
+                (SystemClock.elapsedRealtimeNanos() - startNanos) / 1000);
+    }
+
+    @VisibleForTesting
+    synchronized void recordLatency(Class<?> controllerClass, @Operation int op,
+            long latencyUs) {
+        ControllerStats stats = mStats.get(controllerClass);
+        if (stats == null) {
+            stats = new ControllerStats();
+            mStats.put(controllerClass, stats);
+        }
+        stats.mLatenciesUs[op][(int) (stats.mCounts[op] % RING_SIZE)] = latencyUs;
+        stats.mCounts[op]++;
+    }
+
+    /**
+     * @return the p50, p95 and p99 latencies in microseconds of the recent calls, or
+     * {@code null} if no call was recorded.
+     */
+    public synchronized long[] getPercentiles(Class<?> controllerClass, @Operation int op) {
+        final ControllerStats stats = mStats.get(controllerClass);
+        if (stats == null || stats.mCounts[op] == 0) {
+            return null;
+        }
+        final int size = (int) Math.min(stats.mCounts[op], RING_SIZE);
+        final long[] sorted = Arrays.copyOf(stats.mLatenciesUs[op], size);
+        Arrays.sort(sorted);
+        return new long[]{
+                percentile(sorted, 50), percentile(sorted, 95), percentile(sorted, 99)};
+    }
+
+    /**
+     * Logs the operations of {@param controllers} on page {@param pageId} whose p95 latency is
+     * above {@link #SLOW_THRESHOLD_US}, if they were called since they were last reported.
+     */
+    public void reportSlowControllers(int pageId, Collection<?> controllers) {
+        for (Object controller : controllers) {
+            final Class<?> controllerClass = controller.getClass();
+            for (int op = 0; op < OP_NAMES.length; op++) {
+                final long[] percentiles = getSlowPercentilesToReport(controllerClass, op);
+                if (percentiles == null) {
+                    continue;
+                }
+                Log.w(TAG, "Slow " + OP_NAMES[op] + " of " + controllerClass.getSimpleName()
+                        + " on page " + pageId + ": p95 " + percentiles[1] + "us");
+            }
+        }
+    }
+
+    /** Returns the percentiles of all controllers, keyed by controller class name. */
+    public synchronized JSONObject toJson() throws JSONException {
+        final JSONObject obj = new JSONObject();
+        for (Map.Entry<Class<?>, ControllerStats> entry : mStats.entrySet()) {
+            final JSONObject ops = new JSONObject();
+            for (int op = 0; op < OP_NAMES.length; op++) {
+                final long[] percentiles = getPercentiles(entry.getKey(), op);
+                if (percentiles == null) {
+                    continue;
+                }
+                final JSONObject opObj = new JSONObject();
+                opObj.put("count", entry.getValue().mCounts[op]);
+                opObj.put("p50_us", percentiles[0]);
+                opObj.put("p95_us", percentiles[1]);
+                opObj.put("p99_us", percentiles[2]);
+                opObj.put("slow", percentiles[1] >= SLOW_THRESHOLD_US);
+                ops.put(OP_NAMES[op], opObj);
+            }
+            obj.put(entry.getKey().getName(), ops);
+        }
+        return obj;
+    }
+
+    private synchronized long[] getSlowPercentilesToReport(Class<?> controllerClass, int op) {
+        final ControllerStats stats = mStats.get(controllerClass);
+        if (stats == null || stats.mCounts[op] == stats.mReportedCounts[op]) {
+            return null;
+        }
+        stats.mReportedCounts[op] = stats.mCounts[op];
+        final long[] percentiles = getPercentiles(controllerClass, op);
+        return percentiles[1] >= SLOW_THRESHOLD_US ? percentiles : null;
+    }
+
+    private static long percentile(long[] sorted, int percent) {
+        final int index = (int) Math.ceil(percent / 100.0 * sorted.length) - 1;
+        return sorted[Math.max(index, 0)];
+    }
+
+    private static class ControllerStats {
+        private final long[][] mLatenciesUs = new long[OP_NAMES.length][RING_SIZE];
+        private final long[] mCounts = new long[OP_NAMES.length];
+        private final long[] mReportedCounts = new long[OP_NAMES.length];
+    }
+}
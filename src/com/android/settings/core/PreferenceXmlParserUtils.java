@@ -20,12 +20,15 @@ import android.annotation.NonNull;
 import android.annotation.Nullable;
 import android.annotation.XmlRes;
 import android.content.Context;
+import android.content.res.Configuration;
+import android.content.res.Resources;
 import android.content.res.TypedArray;
 import android.content.res.XmlResourceParser;
 import android.os.Bundle;
 import android.text.TextUtils;
 import android.util.AttributeSet;
 import android.util.Log;
+import android.util.LongSparseArray;
 import android.util.TypedValue;
 import android.util.Xml;
 
@@ -43,6 +46,8 @@ import java.lang.annotation.RetentionPolicy;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
 
 /**
  * Utility class to parse elements of XML preferences
@@ -108,6 +113,8 @@ public class PreferenceXmlParserUtils {
 
     private static final String ENTRIES_SEPARATOR = "|";
 
+    private static final Map<Resources, MetadataCache> sMetadataCaches = new WeakHashMap<>();
+
     /**
      * Call {@link #extractMetadata(Context, int, int)} with {@link #METADATA_KEY} instead.
      */
@@ -173,17 +180,67 @@ public class PreferenceXmlParserUtils {
     /**
      * Extracts metadata from preference xml and put them into a {@link Bundle}.
      *
+     * The result is cached per {@link Resources} and {@link Configuration}, so parsing the same
+     * xml with the same flags again only copies the cached bundles.
+     *
      * @param xmlResId xml res id of a preference screen
      * @param flags    Should be one or more of {@link MetadataFlag}.
      */
     @NonNull
     public static List<Bundle> extractMetadata(Context context, @XmlRes int xmlResId, int flags)
             throws IOException, XmlPullParserException {
-        final List<Bundle> metadata = new ArrayList<>();
         if (xmlResId <= 0) {
             Log.d(TAG, xmlResId + " is invalid.");
-            return metadata;
+            return new ArrayList<>();
+        }
+        final MetadataCache cache = getMetadataCache(context.getResources());
+        final long cacheKey = ((long) xmlResId << Integer.SIZE) | (flags & 0xffffffffL);
+        Bundle[] metadata = cache != null ? cache.get(cacheKey) : null;
+        if (metadata == null) {
+            metadata = parseMetadata(context, xmlResId, flags);
+            if (cache != null) {
+                cache.put(cacheKey, metadata);
+            }
+        }
+        final List<Bundle> result = new ArrayList<>(metadata.length);
+        for (Bundle bundle : metadata) {
+            result.add(new Bundle(bundle));
+        }
+        return result;
+    }
+
+    /**
+     * Drops all the cached metadata.
+     */
+    @VisibleForTesting
+    static void clearMetadataCache() {
+        synchronized (sMetadataCaches) {
+            sMetadataCaches.clear();
         }
+    }
+
+    @Nullable
+    private static MetadataCache getMetadataCache(Resources res) {
+        if (res == null) {
+            return null;
+        }
+        final Configuration configuration = res.getConfiguration();
+        if (configuration == null) {
+            return null;
+        }
+        synchronized (sMetadataCaches) {
+            MetadataCache cache = sMetadataCaches.get(res);
+            if (cache == null || !cache.mConfiguration.equals(configuration)) {
+                cache = new MetadataCache(configuration);
+                sMetadataCaches.put(res, cache);
+            }
+            return cache;
+        }
+    }
+
+    private static Bundle[] parseMetadata(Context context, @XmlRes int xmlResId, int flags)
+            throws IOException, XmlPullParserException {
+        final List<Bundle> metadata = new ArrayList<>();
         final XmlResourceParser parser = context.getResources().getXml(xmlResId);
 
         int type;
@@ -263,7 +320,7 @@ public class PreferenceXmlParserUtils {
         } while ((type = parser.next()) != XmlPullParser.END_DOCUMENT
                 && (type != XmlPullParser.END_TAG || parser.getDepth() > outerDepth));
         parser.close();
-        return metadata;
+        return metadata.toArray(new Bundle[0]);
     }
 
     /**
@@ -351,4 +408,25 @@ public class PreferenceXmlParserUtils {
         return styledAttributes.getBoolean(
                 R.styleable.Preference_forWork, false);
     }
+
+    /**
+     * Parsed metadata of the xml files loaded through one {@link Resources}, keyed by xml res id
+     * and flags. Only valid for the {@link Configuration} it was built with.
+     */
+    private static class MetadataCache {
+        private final Configuration mConfiguration;
+        private final LongSparseArray<Bundle[]> mMetadata = new LongSparseArray<>();
+
+        MetadataCache(Configuration configuration) {
+            mConfiguration = new Configuration(configuration);
+        }
+
+        synchronized Bundle[] get(long key) {
+            return mMetadata.get(key);
+        }
+
+        synchronized void put(long key, Bundle[] metadata) {
+            mMetadata.put(key, metadata);
+        }
+    }
 }
\ No newline at end of file
@@ -20,9 +20,11 @@ import android.app.settings.SettingsEnums;
 import android.content.ContentResolver;
 import android.content.Context;
 import android.os.Bundle;
+import android.os.SystemClock;
 import android.text.TextUtils;
 import android.util.ArrayMap;
 import android.util.Log;
+import android.util.Pair;
 
 import androidx.annotation.CallSuper;
 import androidx.annotation.VisibleForTesting;
@@ -38,6 +40,7 @@ import com.android.settings.SettingsPreferenceFragment;
 import com.android.settings.core.BasePreferenceController;
 import com.android.settings.core.CategoryMixin.CategoryHandler;
 import com.android.settings.core.CategoryMixin.CategoryListener;
+import com.android.settings.core.ControllerLatencyTracker;
 import com.android.settings.core.PreferenceControllerListHelper;
 import com.android.settings.overlay.FeatureFactory;
 import com.android.settingslib.PrimarySwitchPreference;
@@ -47,6 +50,7 @@ import com.android.settingslib.drawer.DashboardCategory;
 import com.android.settingslib.drawer.ProviderTile;
 import com.android.settingslib.drawer.Tile;
 import com.android.settingslib.search.Indexable;
+import com.android.settingslib.utils.ThreadUtils;
 
 import java.util.ArrayList;
 import java.util.Arrays;
@@ -56,8 +60,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
-import java.util.concurrent.CountDownLatch;
-import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * Base fragment for dashboard style UI containing a list of static and dynamic setting items.
@@ -67,7 +70,6 @@ public abstract class DashboardFragment extends SettingsPreferenceFragment
         BasePreferenceController.UiBlockListener {
     public static final String CATEGORY = "category";
     private static final String TAG = "DashboardFragment";
-    private static final long TIMEOUT_MILLIS = 50L;
 
     @VisibleForTesting
     final ArrayMap<String, List<DynamicDataObserver>> mDashboardTilePrefKeys = new ArrayMap<>();
@@ -81,6 +83,7 @@ public abstract class DashboardFragment extends SettingsPreferenceFragment
     private DashboardTilePlaceholderPreferenceController mPlaceholderPreferenceController;
     private boolean mListeningToCategoryChange;
     private List<String> mSuppressInjectedTileKeys;
+    private int mStateRefreshGeneration;
 
     @Override
     public void onAttach(Context context) {
@@ -247,6 +250,10 @@ public abstract class DashboardFragment extends SettingsPreferenceFragment
     @Override
     public void onStop() {
         super.onStop();
+        // Invalidate any pending background state refresh.
+        mStateRefreshGeneration++;
+        ControllerLatencyTracker.getInstance().reportSlowControllers(getMetricsCategory(),
+                mControllers);
         unregisterDynamicDataObservers(new ArrayList<>(mRegisteredObservers));
         if (mListeningToCategoryChange) {
             final Activity activity = getActivity();
@@ -347,8 +354,14 @@ public abstract class DashboardFragment extends SettingsPreferenceFragment
      * on all {@link AbstractPreferenceController}s.
      */
     protected void displayResourceTilesToScreen(PreferenceScreen screen) {
+        final ControllerLatencyTracker latencyTracker = ControllerLatencyTracker.getInstance();
         mPreferenceControllers.values().stream().flatMap(Collection::stream).forEach(
-                controller -> controller.displayPreference(screen));
+                controller -> {
+                    final long startNanos = SystemClock.elapsedRealtimeNanos();
+                    controller.displayPreference(screen);
+                    latencyTracker.record(controller, ControllerLatencyTracker.OP_DISPLAY,
+                            startNanos);
+                });
     }
 
     /**
@@ -363,11 +376,16 @@ public abstract class DashboardFragment extends SettingsPreferenceFragment
      */
     protected void updatePreferenceStates() {
         final PreferenceScreen screen = getPreferenceScreen();
+        final List<BasePreferenceController> backgroundControllers = new ArrayList<>();
         Collection<List<AbstractPreferenceController>> controllerLists =
                 mPreferenceControllers.values();
         for (List<AbstractPreferenceController> controllerList : controllerLists) {
             for (AbstractPreferenceController controller : controllerList) {
-                if (!controller.isAvailable()) {
+                if (isBackgroundStateLoader(controller)) {
+                    backgroundControllers.add((BasePreferenceController) controller);
+                    continue;
+                }
+                if (!isControllerAvailable(controller)) {
                     continue;
                 }
 
@@ -384,9 +402,10 @@ public abstract class DashboardFragment extends SettingsPreferenceFragment
                             key, controller.getClass().getSimpleName()));
                     continue;
                 }
-                controller.updateState(preference);
+                updateControllerState(controller, preference);
             }
         }
+        loadControllerStatesInBackground(backgroundControllers, false /* updateVisibility */);
     }
 
     /**
@@ -423,20 +442,112 @@ public abstract class DashboardFragment extends SettingsPreferenceFragment
         if (screen == null || mPreferenceControllers == null) {
             return;
         }
+        final List<BasePreferenceController> backgroundControllers = new ArrayList<>();
         for (List<AbstractPreferenceController> controllerList : mPreferenceControllers.values()) {
             for (AbstractPreferenceController controller : controllerList) {
+                if (isBackgroundStateLoader(controller)) {
+                    backgroundControllers.add((BasePreferenceController) controller);
+                    continue;
+                }
                 final String key = controller.getPreferenceKey();
                 final Preference preference = findPreference(key);
                 if (preference == null) {
                     continue;
                 }
-                final boolean available = controller.isAvailable();
+                final boolean available = isControllerAvailable(controller);
                 if (available) {
-                    controller.updateState(preference);
+                    updateControllerState(controller, preference);
                 }
                 preference.setVisible(available);
             }
         }
+        loadControllerStatesInBackground(backgroundControllers, true /* updateVisibility */);
+    }
+
+    private static boolean isControllerAvailable(AbstractPreferenceController controller) {
+        final long startNanos = SystemClock.elapsedRealtimeNanos();
+        final boolean available = controller.isAvailable();
+        ControllerLatencyTracker.getInstance().record(controller,
+                ControllerLatencyTracker.OP_AVAILABILITY, startNanos);
+        return available;
+    }
+
+    private static void updateControllerState(AbstractPreferenceController controller,
+            Preference preference) {
+        final long startNanos = SystemClock.elapsedRealtimeNanos();
+        controller.updateState(preference);
+        ControllerLatencyTracker.getInstance().record(controller,
+                ControllerLatencyTracker.OP_UPDATE_STATE, startNanos);
+    }
+
+    private static boolean isBackgroundStateLoader(AbstractPreferenceController controller) {
+        return controller instanceof BasePreferenceController
+                && controller instanceof BasePreferenceController.BackgroundStateLoader;
+    }
+
+    /**
+     * Computes the availability of the controllers and loads their state concurrently in the
+     * background, then applies all the results in one batch on the main thread.
+     */
+    private void loadControllerStatesInBackground(List<BasePreferenceController> controllers,
+            boolean updateVisibility) {
+        if (controllers.isEmpty()) {
+            return;
+        }
+        final int generation = ++mStateRefreshGeneration;
+        final boolean[] available = new boolean[controllers.size()];
+        final AtomicInteger pendingCount = new AtomicInteger(controllers.size());
+        for (int i = 0; i < controllers.size(); i++) {
+            final int index = i;
+            final BasePreferenceController controller = controllers.get(i);
+            ThreadUtils.postOnBackgroundThread(() -> {
+                try {
+                    available[index] = isControllerAvailable(controller);
+                    if (available[index]) {
+                        ((BasePreferenceController.BackgroundStateLoader) controller)
+                                .loadStateInBackground();
+                    }
+                } catch (RuntimeException e) {
+                    Log.e(TAG, "Failed to load state of " + controller.getClass().getSimpleName(),
+                            e);
+                } finally {
+                    if (pendingCount.decrementAndGet() == 0) {
+                        ThreadUtils.postOnMainThread(() -> {
+                            // Drop the results if another refresh started or the page stopped.
+                            if (generation == mStateRefreshGeneration) {
+                                applyControllerStates(controllers, available, updateVisibility);
+                            }
+                        });
+                    }
+                }
+            });
+        }
+    }
+
+    @VisibleForTesting
+    void applyControllerStates(List<BasePreferenceController> controllers, boolean[] available,
+            boolean updateVisibility) {
+        final PreferenceScreen screen = getPreferenceScreen();
+        if (screen == null) {
+            return;
+        }
+        for (int i = 0; i < controllers.size(); i++) {
+            final BasePreferenceController controller = controllers.get(i);
+            final String key = controller.getPreferenceKey();
+            if (TextUtils.isEmpty(key)) {
+                continue;
+            }
+            final Preference preference = screen.findPreference(key);
+            if (preference == null) {
+                continue;
+            }
+            if (available[i]) {
+                updateControllerState(controller, preference);
+            }
+            if (updateVisibility) {
+                preference.setVisible(available[i]);
+            }
+        }
     }
 
     @VisibleForTesting
@@ -489,7 +600,7 @@ public abstract class DashboardFragment extends SettingsPreferenceFragment
 
         // Install dashboard tiles and collect pending observers.
         final boolean forceRoundedIcons = shouldForceRoundedIcon();
-        final List<DynamicDataObserver> pendingObservers = new ArrayList<>();
+        final List<Pair<String, DynamicDataObserver>> pendingObservers = new ArrayList<>();
         for (Tile tile : tiles) {
             final String key = mDashboardFeatureProvider.getDashboardKeyForTile(tile);
             if (TextUtils.isEmpty(key)) {
@@ -517,7 +628,7 @@ public abstract class DashboardFragment extends SettingsPreferenceFragment
                 mDashboardTilePrefKeys.put(key, observers);
             }
             if (observers != null) {
-                pendingObservers.addAll(observers);
+                observers.forEach(observer -> pendingObservers.add(Pair.create(key, observer)));
             }
             remove.remove(key);
         }
@@ -533,18 +644,13 @@ public abstract class DashboardFragment extends SettingsPreferenceFragment
             unregisterDynamicDataObservers(entry.getValue());
         }
 
-        // Wait for pending observers to update UI.
-        if (!pendingObservers.isEmpty()) {
-            final CountDownLatch mainLatch = new CountDownLatch(1);
-            new Thread(() -> {
-                pendingObservers.forEach(observer ->
-                        awaitObserverLatch(observer.getCountDownLatch()));
-                mainLatch.countDown();
-            }).start();
-            Log.d(tag, "Start waiting observers");
-            awaitObserverLatch(mainLatch);
-            Log.d(tag, "Stop waiting observers");
-            pendingObservers.forEach(DynamicDataObserver::updateUi);
+        // Apply the data already loaded, the rest is posted by the observers as it arrives.
+        for (Pair<String, DynamicDataObserver> pair : pendingObservers) {
+            final String key = pair.first;
+            final DynamicDataObserver observer = pair.second;
+            observer.updateUi();
+            observer.getFirstDataFuture().thenAccept(
+                    latency -> TileLatencyHistogram.getInstance().record(key, latency));
         }
     }
 
@@ -591,12 +697,4 @@ public abstract class DashboardFragment extends SettingsPreferenceFragment
             resolver.unregisterContentObserver(observer);
         });
     }
-
-    private void awaitObserverLatch(CountDownLatch latch) {
-        try {
-            latch.await(TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
-        } catch (InterruptedException e) {
-            // Do nothing
-        }
-    }
 }
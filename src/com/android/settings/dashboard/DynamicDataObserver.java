@@ -19,23 +19,26 @@ import android.database.ContentObserver;
 import android.net.Uri;
 import android.os.Handler;
 import android.os.Looper;
+import android.os.SystemClock;
 
 import com.android.settingslib.utils.ThreadUtils;
 
-import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * Observer for updating injected dynamic data.
  */
 public abstract class DynamicDataObserver extends ContentObserver {
 
+    private final long mCreationTime;
+    private final CompletableFuture<Long> mFirstDataFuture;
     private Runnable mUpdateRunnable;
-    private CountDownLatch mCountDownLatch;
     private boolean mUpdateDelegated;
 
     protected DynamicDataObserver() {
         super(new Handler(Looper.getMainLooper()));
-        mCountDownLatch = new CountDownLatch(1);
+        mCreationTime = SystemClock.elapsedRealtime();
+        mFirstDataFuture = new CompletableFuture<>();
         // Load data for the first time
         onDataChanged();
     }
@@ -46,17 +49,23 @@ public abstract class DynamicDataObserver extends ContentObserver {
     /** Called when data changes. */
     public abstract void onDataChanged();
 
-    /** Calls the runnable to update UI */
+    /**
+     * Calls the runnable to update UI if the first data is already loaded. Any data loaded
+     * afterwards is posted to the main thread as soon as it arrives.
+     */
     public synchronized void updateUi() {
         mUpdateDelegated = true;
         if (mUpdateRunnable != null) {
             mUpdateRunnable.run();
+            mUpdateRunnable = null;
         }
     }
 
-    /** Returns the count-down latch */
-    public CountDownLatch getCountDownLatch() {
-        return mCountDownLatch;
+    /**
+     * Returns a future completed with the time in milliseconds the first data took to load.
+     */
+    public CompletableFuture<Long> getFirstDataFuture() {
+        return mFirstDataFuture;
     }
 
     @Override
@@ -69,7 +78,7 @@ public abstract class DynamicDataObserver extends ContentObserver {
             ThreadUtils.postOnMainThread(runnable);
         } else {
             mUpdateRunnable = runnable;
-            mCountDownLatch.countDown();
         }
+        mFirstDataFuture.complete(SystemClock.elapsedRealtime() - mCreationTime);
     }
 }
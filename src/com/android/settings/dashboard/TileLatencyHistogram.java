@@ -0,0 +1,94 @@
+/*
+ * Copyright (C) 2022 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.settings.dashboard;
+
+import android.util.ArrayMap;
+
+import androidx.annotation.VisibleForTesting;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.util.Map;
+
+/**
+ * Histogram of the time injected dashboard tiles take to load their dynamic data, per tile key.
+ */
+public class TileLatencyHistogram {
+
+    /** Upper bounds in milliseconds of the buckets, the last bucket is unbounded. */
+    @VisibleForTesting
+    static final long[] BUCKET_UPPER_BOUNDS_MS = {16, 50, 100, 250, 500, 1000};
+
+    private static TileLatencyHistogram sInstance;
+
+    private final Map<String, long[]> mCounts = new ArrayMap<>();
+
+    public static synchronized TileLatencyHistogram getInstance() {
+        if (sInstance == null) {
+            sInstance = new TileLatencyHistogram();
+        }
+        return sInstance;
+    }
+
+    @VisibleForTesting
+    TileLatencyHistogram() {
+    }
+
+    /** Records that the tile with the given key took {@code latencyMs} to load its data. */
+    public synchronized void record(String key, long latencyMs) {
+        long[] counts = mCounts.get(key);
+        if (counts == null) {
+            counts = new long[BUCKET_UPPER_BOUNDS_MS.length + 1];
+            mCounts.put(key, counts);
+        }
+        counts[getBucket(latencyMs)]++;
+    }
+
+    /** Returns a copy of the bucket counts of a tile, or {@code null} if nothing was recorded. */
+    public synchronized long[] getCounts(String key) {
+        final long[] counts = mCounts.get(key);
+        return counts == null ? null : counts.clone();
+    }
+
+    /** Returns the histogram of all tiles, keyed by tile key. */
+    public synchronized JSONObject toJson() throws JSONException {
+        final JSONObject obj = new JSONObject();
+        final JSONArray bounds = new JSONArray();
+        for (long bound : BUCKET_UPPER_BOUNDS_MS) {
+            bounds.put(bound);
+        }
+        obj.put("bucket_upper_bounds_ms", bounds);
+        for (Map.Entry<String, long[]> entry : mCounts.entrySet()) {
+            final JSONArray counts = new JSONArray();
+            for (long count : entry.getValue()) {
+                counts.put(count);
+            }
+            obj.put(entry.getKey(), counts);
+        }
+        return obj;
+    }
+
+    private static int getBucket(long latencyMs) {
+        for (int i = 0; i < BUCKET_UPPER_BOUNDS_MS.length; i++) {
+            if (latencyMs < BUCKET_UPPER_BOUNDS_MS[i]) {
+                return i;
+            }
+        }
+        return BUCKET_UPPER_BOUNDS_MS.length;
+    }
+}
@@ -580,13 +580,18 @@ public class AppDataUsage extends DataUsageBaseFragment implements OnPreferenceC
                     = NetworkCycleDataForUidLoader.builder(mContext);
                 builder.setRetrieveDetail(true)
                     .setNetworkTemplate(mTemplate);
+                final List<Integer> uids = new ArrayList<>(mAppItem.uids.size());
                 for (int i = 0; i < mAppItem.uids.size(); i++) {
                     builder.addUid(mAppItem.uids.keyAt(i));
+                    uids.add(mAppItem.uids.keyAt(i));
                 }
                 if (mCycles != null) {
                     builder.setCycles(mCycles);
                 }
-                return builder.build();
+                return new CachedNetworkStatsLoader<>(mContext,
+                        NetworkStatsResultCache.Key.forUids(mTemplate, uids, mCycles,
+                                true /* retrieveDetail */),
+                        builder.build());
             }
 
             @Override
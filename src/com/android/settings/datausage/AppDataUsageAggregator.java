@@ -0,0 +1,180 @@
+/*
+ * Copyright (C) 2022 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.settings.datausage;
+
+import static android.app.usage.NetworkStats.Bucket.UID_REMOVED;
+import static android.app.usage.NetworkStats.Bucket.UID_TETHERING;
+
+import android.os.Process;
+import android.os.UserHandle;
+import android.os.UserManager;
+import android.util.SparseArray;
+import android.util.SparseBooleanArray;
+import android.util.SparseLongArray;
+
+import com.android.settingslib.AppItem;
+import com.android.settingslib.net.UidDetailProvider;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Aggregates the data usage of network stats buckets into the {@link AppItem} shown by
+ * {@link DataUsageList}.
+ *
+ * Buckets are first summed per uid into a primitive map, so that collapsing uids into items,
+ * which needs user lookups, is done once per uid rather than once per bucket.
+ */
+final class AppDataUsageAggregator {
+
+    private final int mCurrentUserId;
+    private final UserManager mUserManager;
+    // Ids of the profiles of the current user.
+    private final SparseBooleanArray mProfileUserIds = new SparseBooleanArray();
+    // Rx and tx bytes of each uid, summed over all its buckets.
+    private final SparseLongArray mUidBytes = new SparseLongArray();
+
+    AppDataUsageAggregator(int currentUserId, List<UserHandle> profiles,
+            UserManager userManager) {
+        mCurrentUserId = currentUserId;
+        mUserManager = userManager;
+        for (UserHandle profile : profiles) {
+            mProfileUserIds.put(profile.getIdentifier(), true);
+        }
+    }
+
+    /** Adds the bytes used by {@param uid} in one bucket. */
+    void add(int uid, long bytes) {
+        mUidBytes.put(uid, mUidBytes.get(uid) + bytes);
+    }
+
+    /**
+     * @return the sorted items of the added usage, with the items of {@param restrictedUids}
+     * marked as restricted.
+     */
+    Result build(int[] restrictedUids) {
+        final ArrayList<AppItem> items = new ArrayList<>();
+        final SparseArray<AppItem> knownItems = new SparseArray<>();
+        // Whether each user outside of the profiles still exists, looked up once per user.
+        final SparseBooleanArray existingUserIds = new SparseBooleanArray();
+
+        for (int i = 0; i < mUidBytes.size(); i++) {
+            // Decide how to collapse items together
+            final int uid = mUidBytes.keyAt(i);
+            final long bytes = mUidBytes.valueAt(i);
+            final int collapseKey;
+            final int category;
+            final int userId = UserHandle.getUserId(uid);
+            if (UserHandle.isApp(uid) || Process.isSdkSandboxUid(uid)) {
+                if (mProfileUserIds.get(userId)) {
+                    if (userId != mCurrentUserId) {
+                        // Add to a managed user item.
+                        final int managedKey = UidDetailProvider.buildKeyForUser(userId);
+                        accumulate(managedKey, knownItems, uid, bytes, AppItem.CATEGORY_USER,
+                                items);
+                    }
+                    // Map SDK sandbox back to its corresponding app
+                    if (Process.isSdkSandboxUid(uid)) {
+                        collapseKey = Process.getAppUidForSdkSandboxUid(uid);
+                    } else {
+                        collapseKey = uid;
+                    }
+                    category = AppItem.CATEGORY_APP;
+                } else {
+                    int index = existingUserIds.indexOfKey(userId);
+                    if (index < 0) {
+                        existingUserIds.put(userId, mUserManager.getUserInfo(userId) != null);
+                        index = existingUserIds.indexOfKey(userId);
+                    }
+                    // If it is a removed user add it to the removed users' key
+                    if (!existingUserIds.valueAt(index)) {
+                        collapseKey = UID_REMOVED;
+                        category = AppItem.CATEGORY_APP;
+                    } else {
+                        // Add to other user item.
+                        collapseKey = UidDetailProvider.buildKeyForUser(userId);
+                        category = AppItem.CATEGORY_USER;
+                    }
+                }
+            } else if (uid == UID_REMOVED || uid == UID_TETHERING
+                    || uid == Process.OTA_UPDATE_UID) {
+                collapseKey = uid;
+                category = AppItem.CATEGORY_APP;
+            } else {
+                collapseKey = Process.SYSTEM_UID;
+                category = AppItem.CATEGORY_APP;
+            }
+            accumulate(collapseKey, knownItems, uid, bytes, category, items);
+        }
+
+        for (int uid : restrictedUids) {
+            // Only splice in restricted state for current user or managed users
+            if (!mProfileUserIds.get(UserHandle.getUserId(uid))) {
+                continue;
+            }
+
+            AppItem item = knownItems.get(uid);
+            if (item == null) {
+                item = new AppItem(uid);
+                item.total = -1;
+                item.addUid(uid);
+                items.add(item);
+                knownItems.put(item.key, item);
+            }
+            item.restricted = true;
+        }
+
+        long largest = 0;
+        for (AppItem item : items) {
+            largest = Math.max(largest, item.total);
+        }
+        Collections.sort(items);
+        return new Result(Collections.unmodifiableList(items), largest);
+    }
+
+    private static void accumulate(int collapseKey, SparseArray<AppItem> knownItems, int uid,
+            long bytes, int itemCategory, List<AppItem> items) {
+        AppItem item = knownItems.get(collapseKey);
+        if (item == null) {
+            item = new AppItem(collapseKey);
+            item.category = itemCategory;
+            items.add(item);
+            knownItems.put(item.key, item);
+        }
+        item.addUid(uid);
+        item.total += bytes;
+    }
+
+    /** Sorted items of an aggregation, which must not be modified. */
+    static final class Result {
+        static final Result EMPTY = new Result(Collections.emptyList(), 0);
+
+        final List<AppItem> mItems;
+        final long mLargest;
+
+        Result(List<AppItem> items, long largest) {
+            mItems = items;
+            mLargest = largest;
+        }
+
+        /** @return the usage of {@param item} in percent of the largest usage. */
+        int getPercentOfLargest(AppItem item) {
+            return mLargest != 0 ? (int) (item.total * 100 / mLargest) : 0;
+        }
+    }
+}
@@ -0,0 +1,111 @@
+/*
+ * Copyright (C) 2022 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.settings.datausage;
+
+import static android.net.NetworkPolicyManager.POLICY_REJECT_METERED_BACKGROUND;
+
+import android.app.ActivityManager;
+import android.app.usage.NetworkStats;
+import android.app.usage.NetworkStatsManager;
+import android.content.Context;
+import android.net.NetworkPolicyManager;
+import android.net.NetworkTemplate;
+import android.os.UserManager;
+import android.util.Log;
+import android.util.SparseLongArray;
+
+import com.android.settingslib.utils.AsyncLoaderCompat;
+
+/**
+ * Loads the data usage of the apps in a time range and aggregates it into the items shown by
+ * {@link DataUsageList}, off the main thread.
+ *
+ * The usage per uid is shared through {@link NetworkStatsResultCache}, while the restrictions of
+ * the apps are read again on every load so that a policy change is shown right away.
+ */
+class AppDataUsageListLoader extends AsyncLoaderCompat<AppDataUsageAggregator.Result> {
+    private static final String TAG = "AppDataUsageListLoader";
+
+    private final NetworkTemplate mTemplate;
+    private final long mStart;
+    private final long mEnd;
+
+    AppDataUsageListLoader(Context context, NetworkTemplate template, long start,
+            long end) {
+        super(context);
+        mTemplate = template;
+        mStart = start;
+        mEnd = end;
+    }
+
+    @Override
+    public AppDataUsageAggregator.Result loadInBackground() {
+        final Context context = getContext();
+        final NetworkStatsResultCache cache = NetworkStatsResultCache.getInstance();
+        final NetworkStatsResultCache.Key key =
+                NetworkStatsResultCache.Key.forAppUsage(mTemplate, mStart, mEnd);
+        SparseLongArray uidBytes = cache.get(key);
+        if (uidBytes == null) {
+            uidBytes = loadUidBytes(context);
+            if (uidBytes == null) {
+                return null;
+            }
+            cache.put(key, uidBytes);
+        }
+
+        final UserManager userManager = UserManager.get(context);
+        final AppDataUsageAggregator aggregator = new AppDataUsageAggregator(
+                ActivityManager.getCurrentUser(), userManager.getUserProfiles(), userManager);
+        for (int i = 0; i < uidBytes.size(); i++) {
+            aggregator.add(uidBytes.keyAt(i), uidBytes.valueAt(i));
+        }
+        final int[] restrictedUids = NetworkPolicyManager.from(context)
+                .getUidsWithPolicy(POLICY_REJECT_METERED_BACKGROUND);
+        return aggregator.build(restrictedUids);
+    }
+
+    /** @return the rx and tx bytes of each uid in the range, or {@code null} on failure. */
+    private SparseLongArray loadUidBytes(Context context) {
+        final NetworkStats stats;
+        try {
+            stats = context.getSystemService(NetworkStatsManager.class)
+                    .querySummary(mTemplate, mStart, mEnd);
+        } catch (RuntimeException e) {
+            Log.e(TAG, "Exception querying network detail.", e);
+            return null;
+        }
+        if (stats == null) {
+            return null;
+        }
+
+        final SparseLongArray uidBytes = new SparseLongArray();
+        final NetworkStats.Bucket bucket = new NetworkStats.Bucket();
+        try {
+            while (stats.hasNextBucket() && stats.getNextBucket(bucket)) {
+                final int uid = bucket.getUid();
+                uidBytes.put(uid, uidBytes.get(uid) + bucket.getRxBytes() + bucket.getTxBytes());
+            }
+        } finally {
+            stats.close();
+        }
+        return uidBytes;
+    }
+
+    @Override
+    protected void onDiscardResult(AppDataUsageAggregator.Result result) {
+    }
+}
@@ -0,0 +1,70 @@
+/*
+ * Copyright (C) 2022 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.settings.datausage;
+
+import android.content.Context;
+
+import androidx.annotation.VisibleForTesting;
+import androidx.loader.content.AsyncTaskLoader;
+
+import com.android.settingslib.utils.AsyncLoaderCompat;
+
+/**
+ * Loader serving network stats results from {@link NetworkStatsResultCache}, which only runs the
+ * query of its delegate loader when the result of its key isn't cached.
+ *
+ * @param <T> the result type, which is shared with the other users of the cache and must not be
+ *            modified
+ */
+public class CachedNetworkStatsLoader<T> extends AsyncLoaderCompat<T> {
+
+    private final NetworkStatsResultCache.Key mKey;
+    private final AsyncTaskLoader<T> mDelegate;
+
+    /**
+     * @param delegate the loader running the query, which is never started itself and may return
+     *                 {@code null} on failure
+     */
+    public CachedNetworkStatsLoader(Context context, NetworkStatsResultCache.Key key,
+            AsyncTaskLoader<T> delegate) {
+        super(context);
+        mKey = key;
+        mDelegate = delegate;
+    }
+
+    @VisibleForTesting
+    AsyncTaskLoader<T> getDelegate() {
+        return mDelegate;
+    }
+
+    @Override
+    public T loadInBackground() {
+        final NetworkStatsResultCache cache = NetworkStatsResultCache.getInstance();
+        T result = cache.get(mKey);
+        if (result == null) {
+            result = mDelegate.loadInBackground();
+            if (result != null) {
+                cache.put(mKey, result);
+            }
+        }
+        return result;
+    }
+
+    @Override
+    protected void onDiscardResult(T result) {
+    }
+}
@@ -0,0 +1,173 @@
+/*
+ * Copyright (C) 2022 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.settings.datausage;
+
+import android.net.NetworkPolicy;
+import android.net.NetworkTemplate;
+import android.os.SystemClock;
+import android.text.format.DateUtils;
+import android.util.LruCache;
+
+import androidx.annotation.Nullable;
+import androidx.annotation.VisibleForTesting;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Process wide cache of the network stats results loaded by the data usage screens, keyed by
+ * network template and time range, so that moving between the data usage list and the app
+ * details doesn't read the same stats again.
+ *
+ * A result covering a time range which ended more than {@link #FINAL_RANGE_MARGIN_MS} ago is kept
+ * until it is evicted, since stats of the past don't change once persisted. Any other result is
+ * only reused for {@link #CURRENT_RANGE_TTL_MS}.
+ *
+ * Only network stats are cached: state which may change independently of the stats, like the
+ * data saver restrictions of apps, is applied by the loaders after the cache lookup.
+ */
+public final class NetworkStatsResultCache {
+
+    @VisibleForTesting
+    static final long CURRENT_RANGE_TTL_MS = 30 * DateUtils.SECOND_IN_MILLIS;
+    // NetworkStatsService polls and persists stats every 30 minutes by default, so usage of a
+    // range may still be reported up to a poll interval after its end. Wait for two of them.
+    @VisibleForTesting
+    static final long FINAL_RANGE_MARGIN_MS = DateUtils.HOUR_IN_MILLIS;
+    private static final int MAX_ENTRIES = 32;
+
+    private static final NetworkStatsResultCache sInstance =
+            new NetworkStatsResultCache(MAX_ENTRIES);
+
+    private final LruCache<Key, Entry> mEntries;
+
+    public static NetworkStatsResultCache getInstance() {
+        return sInstance;
+    }
+
+    @VisibleForTesting
+    NetworkStatsResultCache(int maxEntries) {
+        mEntries = new LruCache<>(maxEntries);
+    }
+
+    /** @return the cached result of {@param key}, or {@code null} if missing or expired. */
+    @Nullable
+    @SuppressWarnings("unchecked")
+    synchronized <T> T get(Key key) {
+        final Entry entry = mEntries.get(key);
+        if (entry == null) {
+            return null;
+        }
+        if (SystemClock.elapsedRealtime() > entry.mExpiration) {
+            mEntries.remove(key);
+            return null;
+        }
+        return (T) entry.mResult;
+    }
+
+    /** Caches {@param result}, which must not be modified afterwards. */
+    synchronized void put(Key key, Object result) {
+        // Stats are persisted with some delay, so a range is only final some time after its end.
+        final boolean isFinal = key.mEnd < System.currentTimeMillis() - FINAL_RANGE_MARGIN_MS;
+        final long expiration = isFinal
+                ? Long.MAX_VALUE : SystemClock.elapsedRealtime() + CURRENT_RANGE_TTL_MS;
+        mEntries.put(key, new Entry(result, expiration));
+    }
+
+    /** Drops all the cached results. */
+    public synchronized void clear() {
+        mEntries.evictAll();
+    }
+
+    /** Identifies a result by network template, time range and loader specific parameters. */
+    public static final class Key {
+        private final NetworkTemplate mTemplate;
+        private final long mStart;
+        private final long mEnd;
+        private final Object mParams;
+
+        /** @return the key of the chart data of all cycles of {@param policy}. */
+        public static Key forCycleChart(NetworkTemplate template, @Nullable NetworkPolicy policy) {
+            return new Key(template, 0, Long.MAX_VALUE, Arrays.asList("chart", policy));
+        }
+
+        /** @return the key of the usage per uid between {@param start} and {@param end}. */
+        public static Key forAppUsage(NetworkTemplate template, long start, long end) {
+            return new Key(template, start, end, "apps");
+        }
+
+        /**
+         * @param cycles the cycle boundaries from the newest cycle end, or {@code null} for all
+         *               cycles
+         * @return the key of the usage of {@param uids} per cycle.
+         */
+        public static Key forUids(NetworkTemplate template, List<Integer> uids,
+                @Nullable List<Long> cycles, boolean retrieveDetail) {
+            final long start = cycles != null && !cycles.isEmpty()
+                    ? cycles.get(cycles.size() - 1) : 0;
+            final long end = cycles != null && !cycles.isEmpty()
+                    ? cycles.get(0) : Long.MAX_VALUE;
+            return new Key(template, start, end,
+                    Arrays.asList("uids", uids, cycles, retrieveDetail));
+        }
+
+        /**
+         * @param start  start of the time range, or {@code 0} if the range starts with the stats
+         * @param end    end of the time range, or {@link Long#MAX_VALUE} if it covers all stats
+         * @param params loader specific parameters, which must implement {@link #equals} and
+         *               {@link #hashCode}
+         */
+        Key(NetworkTemplate template, long start, long end, @Nullable Object params) {
+            mTemplate = template;
+            mStart = start;
+            mEnd = end;
+            mParams = params;
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            if (this == other) {
+                return true;
+            }
+            if (!(other instanceof Key)) {
+                return false;
+            }
+            final Key key = (Key) other;
+            return mStart == key.mStart
+                    && mEnd == key.mEnd
+                    && Objects.equals(mTemplate, key.mTemplate)
+                    && Objects.equals(mParams, key.mParams);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(mTemplate, mStart, mEnd, mParams);
+        }
+    }
+
+    private static final class Entry {
+        private final Object mResult;
+        // Elapsed realtime after which the result is stale.
+        private final long mExpiration;
+
+        Entry(Object result, long expiration) {
+            mResult = result;
+            mExpiration = expiration;
+        }
+    }
+}
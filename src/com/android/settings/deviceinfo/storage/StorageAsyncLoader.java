@@ -35,30 +35,39 @@ import android.os.UserManager;
 import android.provider.MediaStore;
 import android.provider.MediaStore.Files.FileColumns;
 import android.provider.MediaStore.MediaColumns;
+import android.util.ArrayMap;
 import android.util.ArraySet;
 import android.util.Log;
 import android.util.SparseArray;
 
+import androidx.annotation.VisibleForTesting;
+
 import com.android.settingslib.applications.StorageStatsSource;
 import com.android.settingslib.utils.AsyncLoaderCompat;
 
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 /**
  * StorageAsyncLoader is a Loader which loads categorized app information and external stats for all
- * users
+ * users. The app stats and the file sizes of every user are loaded in parallel.
  */
 public class StorageAsyncLoader
         extends AsyncLoaderCompat<SparseArray<StorageAsyncLoader.StorageResult>> {
     private UserManager mUserManager;
     private static final String TAG = "StorageAsyncLoader";
+    private static final int MAX_LOAD_THREADS = 4;
 
     private String mUuid;
     private StorageStatsSource mStatsManager;
     private PackageManager mPackageManager;
-    private ArraySet<String> mSeenPackages;
 
     public StorageAsyncLoader(Context context, UserManager userManager,
             String uuid, StorageStatsSource source, PackageManager pm) {
@@ -75,7 +84,6 @@ public class StorageAsyncLoader
     }
 
     private SparseArray<StorageResult> getStorageResultsForUsers() {
-        mSeenPackages = new ArraySet<>();
         final SparseArray<StorageResult> results = new SparseArray<>();
         final List<UserInfo> infos = mUserManager.getUsers();
 
@@ -83,15 +91,59 @@ public class StorageAsyncLoader
         Collections.sort(infos,
                 (userInfo, otherUser) -> Integer.compare(userInfo.id, otherUser.id));
 
-        for (UserInfo info : infos) {
-            final StorageResult result = getAppsAndGamesSize(info.id);
+        final ExecutorService executor = Executors.newFixedThreadPool(
+                Math.max(1, Math.min(MAX_LOAD_THREADS, infos.size() * 2)));
+        try {
+            final List<Future<AppsResult>> appsFutures = new ArrayList<>(infos.size());
+            final List<Future<FilesResult>> filesFutures = new ArrayList<>(infos.size());
+            for (UserInfo info : infos) {
+                appsFutures.add(executor.submit(() -> getAppsAndGamesSize(info.id)));
+                filesFutures.add(executor.submit(() -> getFilesSizes(info.id)));
+            }
+
+            // Code bytes may share between different profiles, the code of a package is counted
+            // as duplicate for every user but the first one in user id order.
+            final ArraySet<String> seenPackages = new ArraySet<>();
+            for (int i = 0; i < infos.size(); i++) {
+                final AppsResult appsResult = appsFutures.get(i).get();
+                final FilesResult filesResult = filesFutures.get(i).get();
+                final StorageResult result = appsResult.mResult;
+                for (Map.Entry<String, Long> entry : appsResult.mCodeBytes.entrySet()) {
+                    if (!seenPackages.add(entry.getKey())) {
+                        result.duplicateCodeSize += entry.getValue();
+                    }
+                }
+                result.imagesSize = filesResult.mImagesSize;
+                result.videosSize = filesResult.mVideosSize;
+                result.audioSize = filesResult.mAudioSize;
+                result.documentsAndOtherSize = filesResult.mDocumentsAndOtherSize;
+                result.trashSize = filesResult.mTrashSize;
+                results.put(infos.get(i).id, result);
+            }
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new IllegalStateException(e.getCause());
+        } catch (InterruptedException e) {
+            Log.w(TAG, "Interrupted while loading storage results", e);
+            Thread.currentThread().interrupt();
+        } finally {
+            executor.shutdownNow();
+        }
+        return results;
+    }
 
-            result.imagesSize = getFilesSize(info.id, MediaStore.Images.Media.EXTERNAL_CONTENT_URI,
-                    null /* queryArgs */);
-            result.videosSize = getFilesSize(info.id, MediaStore.Video.Media.EXTERNAL_CONTENT_URI,
-                    null /* queryArgs */);
-            result.audioSize = getFilesSize(info.id, MediaStore.Audio.Media.EXTERNAL_CONTENT_URI,
-                    null /* queryArgs */);
+    private FilesResult getFilesSizes(int userId) {
+        final FilesResult result = new FilesResult();
+        final Uri filesUri = MediaStore.Files.getContentUri(MediaStore.VOLUME_EXTERNAL);
+        if (!getFilesSizesByMediaType(userId, filesUri, result)) {
+            result.mImagesSize = getFilesSize(userId,
+                    MediaStore.Images.Media.EXTERNAL_CONTENT_URI, null /* queryArgs */);
+            result.mVideosSize = getFilesSize(userId,
+                    MediaStore.Video.Media.EXTERNAL_CONTENT_URI, null /* queryArgs */);
+            result.mAudioSize = getFilesSize(userId,
+                    MediaStore.Audio.Media.EXTERNAL_CONTENT_URI, null /* queryArgs */);
 
             final Bundle documentsAndOtherQueryArgs = new Bundle();
             documentsAndOtherQueryArgs.putString(ContentResolver.QUERY_ARG_SQL_SELECTION,
@@ -99,29 +151,76 @@ public class StorageAsyncLoader
                     + " AND " + FileColumns.MEDIA_TYPE + "!=" + FileColumns.MEDIA_TYPE_VIDEO
                     + " AND " + FileColumns.MEDIA_TYPE + "!=" + FileColumns.MEDIA_TYPE_AUDIO
                     + " AND " + FileColumns.MIME_TYPE + " IS NOT NULL");
-            result.documentsAndOtherSize = getFilesSize(info.id,
-                    MediaStore.Files.getContentUri(MediaStore.VOLUME_EXTERNAL),
+            result.mDocumentsAndOtherSize = getFilesSize(userId, filesUri,
                     documentsAndOtherQueryArgs);
+        }
+
+        final Bundle trashQueryArgs = new Bundle();
+        trashQueryArgs.putInt(MediaStore.QUERY_ARG_MATCH_TRASHED, MediaStore.MATCH_ONLY);
+        result.mTrashSize = getFilesSize(userId, filesUri, trashQueryArgs);
+        return result;
+    }
 
-            final Bundle trashQueryArgs = new Bundle();
-            trashQueryArgs.putInt(MediaStore.QUERY_ARG_MATCH_TRASHED, MediaStore.MATCH_ONLY);
-            result.trashSize = getFilesSize(info.id,
-                    MediaStore.Files.getContentUri(MediaStore.VOLUME_EXTERNAL), trashQueryArgs);
+    /**
+     * Sums the sizes of the images, videos, audio and other files of the user with one query
+     * grouped by media type.
+     *
+     * @return false if the sizes couldn't be queried this way.
+     */
+    private boolean getFilesSizesByMediaType(int userId, Uri filesUri, FilesResult result) {
+        final Context perUserContext = getPerUserContext(userId);
+        if (perUserContext == null) {
+            return true;
+        }
 
-            results.put(info.id, result);
+        final Bundle queryArgs = new Bundle();
+        queryArgs.putString(ContentResolver.QUERY_ARG_SQL_SELECTION,
+                FileColumns.MIME_TYPE + " IS NOT NULL");
+        queryArgs.putString(ContentResolver.QUERY_ARG_SQL_GROUP_BY, FileColumns.MEDIA_TYPE);
+        try (Cursor cursor = perUserContext.getContentResolver().query(
+                filesUri,
+                new String[] {FileColumns.MEDIA_TYPE, "sum(" + MediaColumns.SIZE + ")"},
+                queryArgs,
+                null /* cancellationSignal */)) {
+            if (cursor == null) {
+                return true;
+            }
+            while (cursor.moveToNext()) {
+                addFilesSize(result, cursor.getInt(0), cursor.getLong(1));
+            }
+            return true;
+        } catch (IllegalArgumentException e) {
+            // The provider may refuse grouped queries, fall back to one query per category.
+            Log.w(TAG, "Not able to query file sizes by media type", e);
+            result.mImagesSize = 0L;
+            result.mVideosSize = 0L;
+            result.mAudioSize = 0L;
+            result.mDocumentsAndOtherSize = 0L;
+            return false;
+        }
+    }
+
+    @VisibleForTesting
+    static void addFilesSize(FilesResult result, int mediaType, long size) {
+        switch (mediaType) {
+            case FileColumns.MEDIA_TYPE_IMAGE:
+                result.mImagesSize += size;
+                break;
+            case FileColumns.MEDIA_TYPE_VIDEO:
+                result.mVideosSize += size;
+                break;
+            case FileColumns.MEDIA_TYPE_AUDIO:
+                result.mAudioSize += size;
+                break;
+            default:
+                result.mDocumentsAndOtherSize += size;
+                break;
         }
-        return results;
     }
 
     private long getFilesSize(int userId, Uri uri, Bundle queryArgs) {
-        final Context perUserContext;
-        try {
-            perUserContext = getContext().createPackageContextAsUser(
-                getContext().getApplicationContext().getPackageName(),
-                0 /* flags= */,
-                UserHandle.of(userId));
-        } catch (NameNotFoundException e) {
-            Log.e(TAG, "Not able to get Context for user ID " + userId);
+        final Context perUserContext = getPerUserContext(userId);
+        if (perUserContext == null) {
             return 0L;
         }
 
@@ -137,11 +236,24 @@ public class StorageAsyncLoader
         }
     }
 
-    private StorageResult getAppsAndGamesSize(int userId) {
+    private Context getPerUserContext(int userId) {
+        try {
+            return getContext().createPackageContextAsUser(
+                getContext().getApplicationContext().getPackageName(),
+                0 /* flags= */,
+                UserHandle.of(userId));
+        } catch (NameNotFoundException e) {
+            Log.e(TAG, "Not able to get Context for user ID " + userId);
+            return null;
+        }
+    }
+
+    private AppsResult getAppsAndGamesSize(int userId) {
         Log.d(TAG, "Loading apps");
         final List<ApplicationInfo> applicationInfos =
                 mPackageManager.getInstalledApplicationsAsUser(0, userId);
-        final StorageResult result = new StorageResult();
+        final AppsResult appsResult = new AppsResult();
+        final StorageResult result = appsResult.mResult;
         final UserHandle myUser = UserHandle.of(userId);
         for (int i = 0, size = applicationInfos.size(); i < size; i++) {
             final ApplicationInfo app = applicationInfos.get(i);
@@ -169,11 +281,7 @@ public class StorageAsyncLoader
 
             // Code bytes may share between different profiles. To know all the duplicate code size
             // and we can get a reasonable system size in StorageItemPreferenceController.
-            if (mSeenPackages.contains(app.packageName)) {
-                result.duplicateCodeSize += stats.getCodeBytes();
-            } else {
-                mSeenPackages.add(app.packageName);
-            }
+            appsResult.mCodeBytes.put(app.packageName, stats.getCodeBytes());
 
             switch (app.category) {
                 case CATEGORY_GAME:
@@ -203,7 +311,7 @@ public class StorageAsyncLoader
             Log.w(TAG, e);
         }
         Log.d(TAG, "Obtaining result completed");
-        return result;
+        return appsResult;
     }
 
     @Override
@@ -228,6 +336,22 @@ public class StorageAsyncLoader
         public StorageStatsSource.ExternalStorageStats externalStats;
     }
 
+    /** App sizes of one user, with the code size of each of its packages. */
+    private static class AppsResult {
+        final StorageResult mResult = new StorageResult();
+        final Map<String, Long> mCodeBytes = new ArrayMap<>();
+    }
+
+    /** File sizes of one user. */
+    @VisibleForTesting
+    static class FilesResult {
+        long mImagesSize;
+        long mVideosSize;
+        long mAudioSize;
+        long mDocumentsAndOtherSize;
+        long mTrashSize;
+    }
+
     /**
      * ResultHandler defines a destination of data which can handle a result from
      * {@link StorageAsyncLoader}.
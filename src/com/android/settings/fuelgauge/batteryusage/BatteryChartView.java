@@ -71,6 +71,17 @@ public class BatteryChartView extends AppCompatImageView implements View.OnClick
     private final Rect[] mPercentageBounds = new Rect[]{new Rect(), new Rect(), new Rect()};
     private final List<Rect> mAxisLabelsBounds = new ArrayList<>();
 
+    // Chart geometry, computed by updateGeometry() after the view model, the text paint or the
+    // layout changes, so that drawing a frame only replays it without allocating.
+    private final Path mDividersPath = new Path();
+    private final float[] mPercentageBaselines = new float[3];
+    private final List<Rect> mAxisLabelDisplayAreas = new ArrayList<>();
+    private Path[] mTrapezoidPaths = new Path[0];
+    private int[] mAxisLabelIndexes = new int[0];
+    private int mAxisLabelCount;
+    private float mAxisLabelBaselineY;
+    private boolean mGeometryDirty = true;
+
     private BatteryChartViewModel mViewModel;
     private int mHoveredIndex = BatteryChartViewModel.SELECTED_INDEX_INVALID;
     private int mDividerWidth;
@@ -110,6 +121,13 @@ public class BatteryChartView extends AppCompatImageView implements View.OnClick
     public void setViewModel(BatteryChartViewModel viewModel) {
         if (viewModel == null) {
             mViewModel = null;
+            mGeometryDirty = true;
+            invalidate();
+            return;
+        }
+        if (viewModel == mViewModel) {
+            // Only the selected index of the same view model can change, which is drawn over the
+            // cached geometry.
             invalidate();
             return;
         }
@@ -120,6 +138,7 @@ public class BatteryChartView extends AppCompatImageView implements View.OnClick
         initializeAxisLabelsBounds();
         initializeTrapezoidSlots(viewModel.size() - 1);
         setClickable(hasAnyValidTrapezoid(viewModel));
+        mGeometryDirty = true;
         requestLayout();
     }
 
@@ -137,6 +156,7 @@ public class BatteryChartView extends AppCompatImageView implements View.OnClick
         } else {
             mTextPaint = null;
         }
+        mGeometryDirty = true;
         requestLayout();
     }
 
@@ -168,18 +188,29 @@ public class BatteryChartView extends AppCompatImageView implements View.OnClick
         } else {
             mIndent.set(0, 0, 0, 0);
         }
+        mGeometryDirty = true;
+    }
+
+    @Override
+    protected void onSizeChanged(int w, int h, int oldw, int oldh) {
+        super.onSizeChanged(w, h, oldw, oldh);
+        mGeometryDirty = true;
     }
 
     @Override
     public void draw(Canvas canvas) {
         super.draw(canvas);
+        if (mGeometryDirty) {
+            updateGeometry();
+        }
         // Before mLevels initialized, the count of trapezoids is unknown. Only draws the
         // horizontal percentages and dividers.
-        drawHorizontalDividers(canvas);
+        canvas.drawPath(mDividersPath, mDividerPaint);
+        drawPercentages(canvas);
         if (mViewModel == null) {
             return;
         }
-        drawVerticalDividers(canvas);
+        drawAxisLabels(canvas);
         drawTrapezoids(canvas);
     }
 
@@ -294,6 +325,9 @@ public class BatteryChartView extends AppCompatImageView implements View.OnClick
         for (int index = 0; index < mTrapezoidSlots.length; index++) {
             mTrapezoidSlots[index] = new TrapezoidSlot();
         }
+        if (mTrapezoidPaths.length != count) {
+            mTrapezoidPaths = new Path[count];
+        }
     }
 
     private void initializeColors(Context context) {
@@ -327,39 +361,54 @@ public class BatteryChartView extends AppCompatImageView implements View.OnClick
         mTextPadding = resources.getDimensionPixelSize(R.dimen.chartview_text_padding);
     }
 
-    private void drawHorizontalDividers(Canvas canvas) {
+    /** Computes the dividers, axis labels and trapezoids for the current size and data. */
+    private void updateGeometry() {
+        mGeometryDirty = false;
+        mDividersPath.reset();
+        mAxisLabelCount = 0;
+        updateHorizontalDividers();
+        if (mViewModel == null) {
+            return;
+        }
+        updateVerticalDividers();
+        updateTrapezoids();
+    }
+
+    private void updateHorizontalDividers() {
         final int width = getWidth() - mIndent.right;
         final int height = getHeight() - mIndent.top - mIndent.bottom;
-        // Draws the top divider line for 100% curve.
+        // Adds the top divider line for 100% curve.
         float offsetY = mIndent.top + mDividerWidth * .5f;
-        canvas.drawLine(0, offsetY, width, offsetY, mDividerPaint);
-        drawPercentage(canvas, /*index=*/ 0, offsetY);
+        addHorizontalDivider(/*index=*/ 0, width, offsetY);
 
-        // Draws the center divider line for 50% curve.
+        // Adds the center divider line for 50% curve.
         final float availableSpace =
                 height - mDividerWidth * 2 - mTrapezoidVOffset - mDividerHeight;
         offsetY = mIndent.top + mDividerWidth + availableSpace * .5f;
-        canvas.drawLine(0, offsetY, width, offsetY, mDividerPaint);
-        drawPercentage(canvas, /*index=*/ 1, offsetY);
+        addHorizontalDivider(/*index=*/ 1, width, offsetY);
 
-        // Draws the bottom divider line for 0% curve.
+        // Adds the bottom divider line for 0% curve.
         offsetY = mIndent.top + (height - mDividerHeight - mDividerWidth * .5f);
-        canvas.drawLine(0, offsetY, width, offsetY, mDividerPaint);
-        drawPercentage(canvas, /*index=*/ 2, offsetY);
+        addHorizontalDivider(/*index=*/ 2, width, offsetY);
     }
 
-    private void drawPercentage(Canvas canvas, int index, float offsetY) {
+    private void addHorizontalDivider(int index, int width, float offsetY) {
+        mDividersPath.moveTo(0, offsetY);
+        mDividersPath.lineTo(width, offsetY);
+        mPercentageBaselines[index] = offsetY + mPercentageBounds[index].height() * .5f;
+    }
+
+    private void drawPercentages(Canvas canvas) {
         if (mTextPaint != null) {
             mTextPaint.setTextAlign(Paint.Align.RIGHT);
-            canvas.drawText(
-                    mPercentages[index],
-                    getWidth(),
-                    offsetY + mPercentageBounds[index].height() * .5f,
-                    mTextPaint);
+            for (int index = 0; index < mPercentages.length; index++) {
+                canvas.drawText(
+                        mPercentages[index], getWidth(), mPercentageBaselines[index], mTextPaint);
+            }
         }
     }
 
-    private void drawVerticalDividers(Canvas canvas) {
+    private void updateVerticalDividers() {
         final int width = getWidth() - mIndent.right;
         final int dividerCount = mTrapezoidSlots.length + 1;
         final float dividerSpace = dividerCount * mDividerWidth;
@@ -367,10 +416,11 @@ public class BatteryChartView extends AppCompatImageView implements View.OnClick
         final float bottomY = getHeight() - mIndent.bottom;
         final float startY = bottomY - mDividerHeight;
         final float trapezoidSlotOffset = mTrapezoidHOffset + mDividerWidth * .5f;
-        // Draws each vertical dividers.
+        // Adds each vertical dividers.
         float startX = mDividerWidth * .5f;
         for (int index = 0; index < dividerCount; index++) {
-            canvas.drawLine(startX, startY, startX, bottomY, mDividerPaint);
+            mDividersPath.moveTo(startX, startY);
+            mDividersPath.lineTo(startX, bottomY);
             final float nextX = startX + mDividerWidth + unitWidth;
             // Updates the trapezoid slots for drawing.
             if (index < mTrapezoidSlots.length) {
@@ -379,38 +429,37 @@ public class BatteryChartView extends AppCompatImageView implements View.OnClick
             }
             startX = nextX;
         }
-        // Draws the axis label slot information.
-        if (mViewModel != null) {
-            final float baselineY = getHeight() - mTextPadding;
-            Rect[] axisLabelDisplayAreas;
-            switch (mViewModel.axisLabelPosition()) {
-                case CENTER_OF_TRAPEZOIDS:
-                    axisLabelDisplayAreas = getAxisLabelDisplayAreas(
-                            /* size= */ mViewModel.size() - 1,
-                            /* baselineX= */ mDividerWidth + unitWidth * .5f,
-                            /* offsetX= */ mDividerWidth + unitWidth,
-                            baselineY,
-                            /* shiftFirstAndLast= */ false);
-                    break;
-                case BETWEEN_TRAPEZOIDS:
-                default:
-                    axisLabelDisplayAreas = getAxisLabelDisplayAreas(
-                            /* size= */ mViewModel.size(),
-                            /* baselineX= */ mDividerWidth * .5f,
-                            /* offsetX= */ mDividerWidth + unitWidth,
-                            baselineY,
-                            /* shiftFirstAndLast= */ true);
-                    break;
-            }
-            drawAxisLabels(canvas, axisLabelDisplayAreas, baselineY);
+        // Lays out the axis label slot information.
+        mAxisLabelBaselineY = getHeight() - mTextPadding;
+        switch (mViewModel.axisLabelPosition()) {
+            case CENTER_OF_TRAPEZOIDS:
+                updateAxisLabelDisplayAreas(
+                        /* size= */ mViewModel.size() - 1,
+                        /* baselineX= */ mDividerWidth + unitWidth * .5f,
+                        /* offsetX= */ mDividerWidth + unitWidth,
+                        mAxisLabelBaselineY,
+                        /* shiftFirstAndLast= */ false);
+                break;
+            case BETWEEN_TRAPEZOIDS:
+            default:
+                updateAxisLabelDisplayAreas(
+                        /* size= */ mViewModel.size(),
+                        /* baselineX= */ mDividerWidth * .5f,
+                        /* offsetX= */ mDividerWidth + unitWidth,
+                        mAxisLabelBaselineY,
+                        /* shiftFirstAndLast= */ true);
+                break;
         }
+        layoutAxisLabels();
     }
 
-    /** Gets all the axis label texts displaying area positions if they are shown. */
-    private Rect[] getAxisLabelDisplayAreas(final int size, final float baselineX,
+    /**
+     * Updates the first {@code size} axis label texts displaying area positions if they are
+     * shown.
+     */
+    private void updateAxisLabelDisplayAreas(final int size, final float baselineX,
             final float offsetX, final float baselineY, final boolean shiftFirstAndLast) {
-        final Rect[] result = new Rect[size];
-        for (int index = 0; index < result.length; index++) {
+        for (int index = 0; index < size; index++) {
             final float width = mAxisLabelsBounds.get(index).width();
             float middle = baselineX + index * offsetX;
             if (shiftFirstAndLast) {
@@ -425,108 +474,104 @@ public class BatteryChartView extends AppCompatImageView implements View.OnClick
             final float right = left + width;
             final float top = baselineY + mAxisLabelsBounds.get(index).top;
             final float bottom = top + mAxisLabelsBounds.get(index).height();
-            result[index] = new Rect(round(left), round(top), round(right), round(bottom));
+            mAxisLabelDisplayAreas.get(index)
+                    .set(round(left), round(top), round(right), round(bottom));
         }
-        return result;
+        mAxisLabelCount = size;
     }
 
-    private void drawAxisLabels(Canvas canvas, final Rect[] displayAreas, final float baselineY) {
-        final int lastIndex = displayAreas.length - 1;
+    /** Chooses the axis labels to draw, which are kept in {@link #mAxisLabelIndexes}. */
+    private void layoutAxisLabels() {
+        final int lastIndex = mAxisLabelCount - 1;
+        mAxisLabelCount = 0;
         // Suppose first and last labels are always able to draw.
-        drawAxisLabelText(canvas, 0, displayAreas[0], baselineY);
-        drawAxisLabelText(canvas, lastIndex, displayAreas[lastIndex], baselineY);
-        drawAxisLabelsBetweenStartIndexAndEndIndex(canvas, displayAreas, 0, lastIndex, baselineY);
+        addAxisLabel(0);
+        addAxisLabel(lastIndex);
+        layoutAxisLabelsBetweenStartIndexAndEndIndex(0, lastIndex);
     }
 
     /**
-     * Recursively draws axis labels between the start index and the end index. If the inner number
-     * can be exactly divided into 2 parts, check and draw the middle index label and then
-     * recursively draw the 2 parts. Otherwise, divide into 3 parts. Check and draw the middle two
-     * labels and then recursively draw the 3 parts. If there are any overlaps, skip drawing and go
-     * back to the uplevel of the recursion.
+     * Recursively lays out axis labels between the start index and the end index. If the inner
+     * number can be exactly divided into 2 parts, check and add the middle index label and then
+     * recursively lay out the 2 parts. Otherwise, divide into 3 parts. Check and add the middle
+     * two labels and then recursively lay out the 3 parts. If there are any overlaps, skip adding
+     * and go back to the uplevel of the recursion.
      */
-    private void drawAxisLabelsBetweenStartIndexAndEndIndex(Canvas canvas,
-            final Rect[] displayAreas, final int startIndex, final int endIndex,
-            final float baselineY) {
+    private void layoutAxisLabelsBetweenStartIndexAndEndIndex(
+            final int startIndex, final int endIndex) {
         if (endIndex - startIndex <= 1) {
             return;
         }
         if ((endIndex - startIndex) % 2 == 0) {
             int middleIndex = (startIndex + endIndex) / 2;
-            if (hasOverlap(displayAreas, startIndex, middleIndex)
-                    || hasOverlap(displayAreas, middleIndex, endIndex)) {
+            if (hasOverlap(startIndex, middleIndex) || hasOverlap(middleIndex, endIndex)) {
                 return;
             }
-            drawAxisLabelText(canvas, middleIndex, displayAreas[middleIndex], baselineY);
-            drawAxisLabelsBetweenStartIndexAndEndIndex(
-                    canvas, displayAreas, startIndex, middleIndex, baselineY);
-            drawAxisLabelsBetweenStartIndexAndEndIndex(
-                    canvas, displayAreas, middleIndex, endIndex, baselineY);
+            addAxisLabel(middleIndex);
+            layoutAxisLabelsBetweenStartIndexAndEndIndex(startIndex, middleIndex);
+            layoutAxisLabelsBetweenStartIndexAndEndIndex(middleIndex, endIndex);
         } else {
             int middleIndex1 = startIndex + round((endIndex - startIndex) / 3f);
             int middleIndex2 = startIndex + round((endIndex - startIndex) * 2 / 3f);
-            if (hasOverlap(displayAreas, startIndex, middleIndex1)
-                    || hasOverlap(displayAreas, middleIndex1, middleIndex2)
-                    || hasOverlap(displayAreas, middleIndex2, endIndex)) {
+            if (hasOverlap(startIndex, middleIndex1)
+                    || hasOverlap(middleIndex1, middleIndex2)
+                    || hasOverlap(middleIndex2, endIndex)) {
                 return;
             }
-            drawAxisLabelText(canvas, middleIndex1, displayAreas[middleIndex1], baselineY);
-            drawAxisLabelText(canvas, middleIndex2, displayAreas[middleIndex2], baselineY);
-            drawAxisLabelsBetweenStartIndexAndEndIndex(
-                    canvas, displayAreas, startIndex, middleIndex1, baselineY);
-            drawAxisLabelsBetweenStartIndexAndEndIndex(
-                    canvas, displayAreas, middleIndex1, middleIndex2, baselineY);
-            drawAxisLabelsBetweenStartIndexAndEndIndex(
-                    canvas, displayAreas, middleIndex2, endIndex, baselineY);
+            addAxisLabel(middleIndex1);
+            addAxisLabel(middleIndex2);
+            layoutAxisLabelsBetweenStartIndexAndEndIndex(startIndex, middleIndex1);
+            layoutAxisLabelsBetweenStartIndexAndEndIndex(middleIndex1, middleIndex2);
+            layoutAxisLabelsBetweenStartIndexAndEndIndex(middleIndex2, endIndex);
         }
     }
 
-    private boolean hasOverlap(
-            final Rect[] displayAreas, final int leftIndex, final int rightIndex) {
-        return displayAreas[leftIndex].right + mTextPadding * 2.3f > displayAreas[rightIndex].left;
+    private boolean hasOverlap(final int leftIndex, final int rightIndex) {
+        return mAxisLabelDisplayAreas.get(leftIndex).right + mTextPadding * 2.3f
+                > mAxisLabelDisplayAreas.get(rightIndex).left;
     }
 
-    private void drawAxisLabelText(
-            Canvas canvas, final int index, final Rect displayArea, final float baselineY) {
-        mTextPaint.setTextAlign(Paint.Align.CENTER);
-        canvas.drawText(
-                mViewModel.getText(index),
-                displayArea.centerX(),
-                baselineY,
-                mTextPaint);
+    private void addAxisLabel(final int index) {
+        mAxisLabelIndexes[mAxisLabelCount++] = index;
     }
 
-    private void drawTrapezoids(Canvas canvas) {
-        // Ignores invalid trapezoid data.
-        if (mViewModel == null) {
+    private void drawAxisLabels(Canvas canvas) {
+        if (mTextPaint == null) {
             return;
         }
+        mTextPaint.setTextAlign(Paint.Align.CENTER);
+        for (int i = 0; i < mAxisLabelCount; i++) {
+            final int index = mAxisLabelIndexes[i];
+            canvas.drawText(
+                    mViewModel.getText(index),
+                    mAxisLabelDisplayAreas.get(index).centerX(),
+                    mAxisLabelBaselineY,
+                    mTextPaint);
+        }
+    }
+
+    private void updateTrapezoids() {
         final float trapezoidBottom =
                 getHeight() - mIndent.bottom - mDividerHeight - mDividerWidth
                         - mTrapezoidVOffset;
         final float availableSpace =
                 trapezoidBottom - mDividerWidth * .5f - mIndent.top - mTrapezoidVOffset;
         final float unitHeight = availableSpace / 100f;
-        // Draws all trapezoid shapes into the canvas.
-        final Path trapezoidPath = new Path();
-        Path trapezoidCurvePath = null;
         for (int index = 0; index < mTrapezoidSlots.length; index++) {
             // Not draws the trapezoid for corner or not initialization cases.
             if (!isValidToDraw(mViewModel, index)) {
+                mTrapezoidPaths[index] = null;
                 continue;
             }
-            // Configures the trapezoid paint color.
-            final int trapezoidColor = (mViewModel.selectedIndex() == index
-                    || mViewModel.selectedIndex() == BatteryChartViewModel.SELECTED_INDEX_ALL)
-                    ? mTrapezoidSolidColor : mTrapezoidColor;
-            final boolean isHoverState = mHoveredIndex == index && isValidToDraw(mViewModel,
-                    mHoveredIndex);
-            mTrapezoidPaint.setColor(isHoverState ? mTrapezoidHoverColor : trapezoidColor);
-
             final float leftTop = round(
                     trapezoidBottom - requireNonNull(mViewModel.getLevel(index)) * unitHeight);
             final float rightTop = round(trapezoidBottom
                     - requireNonNull(mViewModel.getLevel(index + 1)) * unitHeight);
+            Path trapezoidPath = mTrapezoidPaths[index];
+            if (trapezoidPath == null) {
+                trapezoidPath = new Path();
+                mTrapezoidPaths[index] = trapezoidPath;
+            }
             trapezoidPath.reset();
             trapezoidPath.moveTo(mTrapezoidSlots[index].mLeft, trapezoidBottom);
             trapezoidPath.lineTo(mTrapezoidSlots[index].mLeft, leftTop);
@@ -535,8 +580,21 @@ public class BatteryChartView extends AppCompatImageView implements View.OnClick
             // A tricky way to make the trapezoid shape drawing the rounded corner.
             trapezoidPath.lineTo(mTrapezoidSlots[index].mLeft, trapezoidBottom);
             trapezoidPath.lineTo(mTrapezoidSlots[index].mLeft, leftTop);
-            // Draws the trapezoid shape into canvas.
-            canvas.drawPath(trapezoidPath, mTrapezoidPaint);
+        }
+    }
+
+    private void drawTrapezoids(Canvas canvas) {
+        // Draws all trapezoid shapes into the canvas, colored by the selected and hovered index.
+        for (int index = 0; index < mTrapezoidPaths.length; index++) {
+            if (mTrapezoidPaths[index] == null) {
+                continue;
+            }
+            final int trapezoidColor = (mViewModel.selectedIndex() == index
+                    || mViewModel.selectedIndex() == BatteryChartViewModel.SELECTED_INDEX_ALL)
+                    ? mTrapezoidSolidColor : mTrapezoidColor;
+            final boolean isHoverState = mHoveredIndex == index;
+            mTrapezoidPaint.setColor(isHoverState ? mTrapezoidHoverColor : trapezoidColor);
+            canvas.drawPath(mTrapezoidPaths[index], mTrapezoidPaint);
         }
     }
 
@@ -556,9 +614,13 @@ public class BatteryChartView extends AppCompatImageView implements View.OnClick
     }
 
     private void initializeAxisLabelsBounds() {
-        mAxisLabelsBounds.clear();
-        for (int i = 0; i < mViewModel.size(); i++) {
+        final int size = mViewModel.size();
+        while (mAxisLabelsBounds.size() < size) {
             mAxisLabelsBounds.add(new Rect());
+            mAxisLabelDisplayAreas.add(new Rect());
+        }
+        if (mAxisLabelIndexes.length < size) {
+            mAxisLabelIndexes = new int[size];
         }
     }
 
@@ -344,7 +344,27 @@ public class BatteryHistEntry {
                 (int) Math.round(batteryLevel));
     }
 
-    private static double interpolate(double v1, double v2, double ratio) {
+    /** Creates a copy of {@link BatteryHistEntry} at another timestamp with other usage data. */
+    static BatteryHistEntry copyWithUsage(
+            BatteryHistEntry fromEntry,
+            long timestamp,
+            double totalPower,
+            double consumePower,
+            long foregroundUsageTimeInMs,
+            long backgroundUsageTimeInMs,
+            int batteryLevel) {
+        return new BatteryHistEntry(
+                fromEntry,
+                /*bootTimestamp=*/ fromEntry.mBootTimestamp - (fromEntry.mTimestamp - timestamp),
+                timestamp,
+                totalPower,
+                consumePower,
+                foregroundUsageTimeInMs,
+                backgroundUsageTimeInMs,
+                batteryLevel);
+    }
+
+    static double interpolate(double v1, double v2, double ratio) {
         return v1 + ratio * (v2 - v1);
     }
 }
@@ -0,0 +1,226 @@
+/*
+ * Copyright (C) 2022 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.settings.fuelgauge.batteryusage;
+
+import android.util.ArraySet;
+
+import androidx.annotation.Nullable;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Columnar store of the battery history processed into time slots, used by {@link DataProcessor}
+ * instead of a map of maps of {@link BatteryHistEntry}.
+ *
+ * Slot timestamps are kept in a sorted {@code long[]} and entry keys are interned once into
+ * indexes, so the usage values of a (slot, key) cell live in primitive columns. Each cell also
+ * references the {@link BatteryHistEntry} it was read or interpolated from, which describes the
+ * consumer of the usage but is never copied.
+ *
+ * Keys are indexed in {@link ArraySet} order, so walking the key indexes visits the keys of any
+ * slot in the order an {@link ArraySet} of them would.
+ */
+final class BatteryHistoryColumns {
+
+    private final long[] mTimestamps;
+    private final String[] mKeys;
+    private final ArraySet<String> mKeyIndex;
+
+    // Cells of slot s and key k are stored at s * mKeys.length + k.
+    private final BatteryHistEntry[] mEntries;
+    private final double[] mTotalPower;
+    private final double[] mConsumePower;
+    private final long[] mForegroundUsageTimeInMs;
+    private final long[] mBackgroundUsageTimeInMs;
+    private final int[] mBatteryLevels;
+
+    // Number of entries and sum of their battery levels, per slot.
+    private final int[] mEntryCounts;
+    private final long[] mBatteryLevelSums;
+
+    /**
+     * @param timestamps sorted slot timestamps
+     * @param entryMaps  entry maps holding all the keys the slots will be filled with
+     */
+    BatteryHistoryColumns(long[] timestamps,
+            Collection<Map<String, BatteryHistEntry>> entryMaps) {
+        mTimestamps = timestamps;
+        mKeyIndex = new ArraySet<>();
+        for (Map<String, BatteryHistEntry> entryMap : entryMaps) {
+            if (entryMap != null) {
+                mKeyIndex.addAll(entryMap.keySet());
+            }
+        }
+        mKeys = mKeyIndex.toArray(new String[0]);
+
+        final int cellCount = timestamps.length * mKeys.length;
+        mEntries = new BatteryHistEntry[cellCount];
+        mTotalPower = new double[cellCount];
+        mConsumePower = new double[cellCount];
+        mForegroundUsageTimeInMs = new long[cellCount];
+        mBackgroundUsageTimeInMs = new long[cellCount];
+        mBatteryLevels = new int[cellCount];
+        mEntryCounts = new int[timestamps.length];
+        mBatteryLevelSums = new long[timestamps.length];
+    }
+
+    /** Creates the columns of an already processed history map, one slot per timestamp. */
+    static BatteryHistoryColumns fromHistoryMap(
+            Map<Long, Map<String, BatteryHistEntry>> historyMap) {
+        final long[] timestamps = new long[historyMap.size()];
+        int index = 0;
+        for (long timestamp : historyMap.keySet()) {
+            timestamps[index++] = timestamp;
+        }
+        Arrays.sort(timestamps);
+        final BatteryHistoryColumns columns =
+                new BatteryHistoryColumns(timestamps, historyMap.values());
+        for (int slot = 0; slot < timestamps.length; slot++) {
+            columns.copySlot(slot, historyMap.get(timestamps[slot]));
+        }
+        return columns;
+    }
+
+    int getSlotCount() {
+        return mTimestamps.length;
+    }
+
+    long getTimestamp(int slot) {
+        return mTimestamps[slot];
+    }
+
+    /** @return the sorted slot timestamps, which must not be modified. */
+    long[] getTimestamps() {
+        return mTimestamps;
+    }
+
+    /** @return the slot of {@param timestamp}, or a negative value if it has no slot. */
+    int indexOfSlot(long timestamp) {
+        return Arrays.binarySearch(mTimestamps, timestamp);
+    }
+
+    int getKeyCount() {
+        return mKeys.length;
+    }
+
+    String getKey(int key) {
+        return mKeys[key];
+    }
+
+    /** @return whether the slot holds at least one entry. */
+    boolean hasEntries(int slot) {
+        return mEntryCounts[slot] > 0;
+    }
+
+    /**
+     * @return the average battery level of the entries of the slot, or {@code null} if the slot
+     * is empty. Averaging avoids corner conditions of single entries.
+     */
+    @Nullable
+    Integer getBatteryLevel(int slot) {
+        final int count = mEntryCounts[slot];
+        return count == 0 ? null : Math.round((float) mBatteryLevelSums[slot] / count);
+    }
+
+    /** @return the entry the cell was read or interpolated from, or {@code null} if unset. */
+    @Nullable
+    BatteryHistEntry getEntry(int slot, int key) {
+        return mEntries[cell(slot, key)];
+    }
+
+    double getTotalPower(int slot, int key) {
+        return mTotalPower[cell(slot, key)];
+    }
+
+    double getConsumePower(int slot, int key) {
+        return mConsumePower[cell(slot, key)];
+    }
+
+    long getForegroundUsageTimeInMs(int slot, int key) {
+        return mForegroundUsageTimeInMs[cell(slot, key)];
+    }
+
+    long getBackgroundUsageTimeInMs(int slot, int key) {
+        return mBackgroundUsageTimeInMs[cell(slot, key)];
+    }
+
+    /** Fills the slot with the values of the entries of {@param entryMap} as they are. */
+    void copySlot(int slot, @Nullable Map<String, BatteryHistEntry> entryMap) {
+        if (entryMap == null) {
+            return;
+        }
+        for (Map.Entry<String, BatteryHistEntry> entry : entryMap.entrySet()) {
+            set(slot, entry.getKey(), entry.getValue());
+        }
+    }
+
+    /** Sets the cell of {@param key} in the slot to the values of {@param entry} as they are. */
+    void set(int slot, String key, BatteryHistEntry entry) {
+        set(slot, key, entry, entry.mTotalPower, entry.mConsumePower,
+                entry.mForegroundUsageTimeInMs, entry.mBackgroundUsageTimeInMs,
+                entry.mBatteryLevel);
+    }
+
+    /** Sets the cell of {@param key} in the slot, the key must be one of the indexed keys. */
+    void set(int slot, String key, BatteryHistEntry entry, double totalPower,
+            double consumePower, long foregroundUsageTimeInMs, long backgroundUsageTimeInMs,
+            int batteryLevel) {
+        final int cell = cell(slot, mKeyIndex.indexOf(key));
+        if (mEntries[cell] == null) {
+            mEntryCounts[slot]++;
+        } else {
+            mBatteryLevelSums[slot] -= mBatteryLevels[cell];
+        }
+        mEntries[cell] = entry;
+        mTotalPower[cell] = totalPower;
+        mConsumePower[cell] = consumePower;
+        mForegroundUsageTimeInMs[cell] = foregroundUsageTimeInMs;
+        mBackgroundUsageTimeInMs[cell] = backgroundUsageTimeInMs;
+        mBatteryLevels[cell] = batteryLevel;
+        mBatteryLevelSums[slot] += batteryLevel;
+    }
+
+    /**
+     * Materializes the columns as a history map. Cells become copies of their entry stamped with
+     * the slot timestamp and carrying the usage values of the cell.
+     */
+    Map<Long, Map<String, BatteryHistEntry>> toHistoryMap() {
+        final Map<Long, Map<String, BatteryHistEntry>> historyMap = new HashMap<>();
+        for (int slot = 0; slot < mTimestamps.length; slot++) {
+            final Map<String, BatteryHistEntry> entryMap = new HashMap<>();
+            for (int key = 0; key < mKeys.length; key++) {
+                final int cell = cell(slot, key);
+                if (mEntries[cell] != null) {
+                    entryMap.put(mKeys[key], BatteryHistEntry.copyWithUsage(
+                            mEntries[cell], mTimestamps[slot], mTotalPower[cell],
+                            mConsumePower[cell],
+                            mForegroundUsageTimeInMs[cell], mBackgroundUsageTimeInMs[cell],
+                            mBatteryLevels[cell]));
+                }
+            }
+            historyMap.put(mTimestamps[slot], entryMap);
+        }
+        return historyMap;
+    }
+
+    private int cell(int slot, int key) {
+        return slot * mKeys.length + key;
+    }
+}
@@ -0,0 +1,338 @@
+/*
+ * Copyright (C) 2022 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.settings.fuelgauge.batteryusage;
+
+import android.content.ContentValues;
+import android.content.Context;
+import android.util.AtomicFile;
+import android.util.Log;
+import android.util.LongSparseArray;
+
+import androidx.annotation.Nullable;
+import androidx.annotation.VisibleForTesting;
+import androidx.annotation.WorkerThread;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Persistent cache of the hourly {@link BatteryDiffData} computed by {@link DataProcessor}, keyed
+ * by the start timestamp of their time slot.
+ *
+ * The usage of a complete time slot never changes, so it is computed once and kept in a compact
+ * binary file across visits of the battery usage page. Usage is cached before it is purged, since
+ * the purge rules may change between visits, and the whole cache is dropped when the current user
+ * or work profile changes, since the usage of other users is merged differently then.
+ */
+@WorkerThread
+final class BatteryUsageRollupCache {
+
+    private static final String TAG = "BatteryUsageRollupCache";
+    private static final int VERSION = 1;
+
+    @VisibleForTesting
+    static final String FILE_NAME = "battery_usage_rollups.bin";
+
+    private static BatteryUsageRollupCache sInstance;
+
+    private final AtomicFile mFile;
+    private final LongSparseArray<SlotRollup> mSlots = new LongSparseArray<>();
+    private boolean mLoaded;
+    private boolean mDirty;
+    private int mUserId;
+    private int mWorkProfileUserId;
+
+    static synchronized BatteryUsageRollupCache getInstance(Context context) {
+        final File file = new File(context.getApplicationContext().getCacheDir(), FILE_NAME);
+        if (sInstance == null || !sInstance.mFile.getBaseFile().equals(file)) {
+            sInstance = new BatteryUsageRollupCache(file);
+        }
+        return sInstance;
+    }
+
+    @VisibleForTesting
+    BatteryUsageRollupCache(File file) {
+        mFile = new AtomicFile(file);
+    }
+
+    /** Drops the cached slots if they were computed for other users. */
+    synchronized void setUsers(int userId, int workProfileUserId) {
+        ensureLoaded();
+        if (mUserId != userId || mWorkProfileUserId != workProfileUserId) {
+            mSlots.clear();
+            mUserId = userId;
+            mWorkProfileUserId = workProfileUserId;
+            mDirty = true;
+        }
+    }
+
+    /** @return whether the slot starting at {@param slotTimestamp} is cached. */
+    synchronized boolean contains(long slotTimestamp) {
+        ensureLoaded();
+        return mSlots.indexOfKey(slotTimestamp) >= 0;
+    }
+
+    /**
+     * @return new {@link BatteryDiffData} holding the cached usage of the slot starting at
+     * {@param slotTimestamp}, or {@code null} if the slot had no usage or is not cached.
+     */
+    @Nullable
+    synchronized BatteryDiffData get(Context context, long slotTimestamp) {
+        ensureLoaded();
+        final SlotRollup slot = mSlots.get(slotTimestamp);
+        if (slot == null || slot.mAppEntries == null) {
+            return null;
+        }
+        return new BatteryDiffData(
+                slot.createDiffEntries(context, slot.mAppEntries),
+                slot.createDiffEntries(context, slot.mSystemEntries),
+                slot.mTotalConsumePower);
+    }
+
+    /** Caches the usage of the complete slot starting at {@param slotTimestamp}. */
+    synchronized void put(long slotTimestamp, @Nullable BatteryDiffData diffData) {
+        ensureLoaded();
+        mSlots.put(slotTimestamp, new SlotRollup(diffData));
+        mDirty = true;
+    }
+
+    /**
+     * Drops the slots starting before {@param oldestSlotTimestamp}, which can't be shown anymore,
+     * and writes the cache to its file if it changed.
+     */
+    synchronized void save(long oldestSlotTimestamp) {
+        ensureLoaded();
+        for (int index = mSlots.size() - 1; index >= 0; index--) {
+            if (mSlots.keyAt(index) < oldestSlotTimestamp) {
+                mSlots.removeAt(index);
+                mDirty = true;
+            }
+        }
+        if (!mDirty) {
+            return;
+        }
+        FileOutputStream fileOutputStream = null;
+        try {
+            fileOutputStream = mFile.startWrite();
+            final DataOutputStream out =
+                    new DataOutputStream(new BufferedOutputStream(fileOutputStream));
+            out.writeInt(VERSION);
+            out.writeInt(mUserId);
+            out.writeInt(mWorkProfileUserId);
+            out.writeInt(mSlots.size());
+            for (int index = 0; index < mSlots.size(); index++) {
+                out.writeLong(mSlots.keyAt(index));
+                mSlots.valueAt(index).writeTo(out);
+            }
+            out.flush();
+            mFile.finishWrite(fileOutputStream);
+            mDirty = false;
+        } catch (IOException e) {
+            Log.w(TAG, "failed to write " + mFile.getBaseFile(), e);
+            mFile.failWrite(fileOutputStream);
+        }
+    }
+
+    @VisibleForTesting
+    synchronized int size() {
+        ensureLoaded();
+        return mSlots.size();
+    }
+
+    private void ensureLoaded() {
+        if (mLoaded) {
+            return;
+        }
+        mLoaded = true;
+        try (DataInputStream in =
+                new DataInputStream(new BufferedInputStream(mFile.openRead()))) {
+            if (in.readInt() != VERSION) {
+                mFile.delete();
+                return;
+            }
+            mUserId = in.readInt();
+            mWorkProfileUserId = in.readInt();
+            final int slotCount = in.readInt();
+            for (int index = 0; index < slotCount; index++) {
+                final long slotTimestamp = in.readLong();
+                mSlots.put(slotTimestamp, SlotRollup.readFrom(in));
+            }
+        } catch (FileNotFoundException e) {
+            // Nothing was cached yet.
+        } catch (IOException e) {
+            Log.w(TAG, "failed to read " + mFile.getBaseFile(), e);
+            mSlots.clear();
+            mFile.delete();
+        }
+    }
+
+    /** Usage of one time slot, as plain values independent of any {@link Context}. */
+    private static final class SlotRollup {
+        private final double mTotalConsumePower;
+        // Null if the slot had no usage.
+        private final List<EntryRollup> mAppEntries;
+        private final List<EntryRollup> mSystemEntries;
+
+        SlotRollup(@Nullable BatteryDiffData diffData) {
+            if (diffData == null) {
+                mTotalConsumePower = 0;
+                mAppEntries = null;
+                mSystemEntries = null;
+                return;
+            }
+            mAppEntries = toRollups(diffData.getAppDiffEntryList());
+            mSystemEntries = toRollups(diffData.getSystemDiffEntryList());
+            double totalConsumePower = 0;
+            for (EntryRollup entry : mAppEntries) {
+                totalConsumePower += entry.mConsumePower;
+            }
+            for (EntryRollup entry : mSystemEntries) {
+                totalConsumePower += entry.mConsumePower;
+            }
+            mTotalConsumePower = totalConsumePower;
+        }
+
+        private SlotRollup(double totalConsumePower, List<EntryRollup> appEntries,
+                List<EntryRollup> systemEntries) {
+            mTotalConsumePower = totalConsumePower;
+            mAppEntries = appEntries;
+            mSystemEntries = systemEntries;
+        }
+
+        List<BatteryDiffEntry> createDiffEntries(Context context, List<EntryRollup> entries) {
+            final List<BatteryDiffEntry> diffEntries = new ArrayList<>(entries.size());
+            for (EntryRollup entry : entries) {
+                diffEntries.add(new BatteryDiffEntry(context, entry.mForegroundUsageTimeInMs,
+                        entry.mBackgroundUsageTimeInMs, entry.mConsumePower, entry.mHistEntry));
+            }
+            return diffEntries;
+        }
+
+        void writeTo(DataOutputStream out) throws IOException {
+            out.writeBoolean(mAppEntries != null);
+            if (mAppEntries == null) {
+                return;
+            }
+            out.writeDouble(mTotalConsumePower);
+            writeEntries(out, mAppEntries);
+            writeEntries(out, mSystemEntries);
+        }
+
+        static SlotRollup readFrom(DataInputStream in) throws IOException {
+            if (!in.readBoolean()) {
+                return new SlotRollup(/*diffData=*/ null);
+            }
+            final double totalConsumePower = in.readDouble();
+            final List<EntryRollup> appEntries = readEntries(in);
+            final List<EntryRollup> systemEntries = readEntries(in);
+            return new SlotRollup(totalConsumePower, appEntries, systemEntries);
+        }
+
+        private static List<EntryRollup> toRollups(List<BatteryDiffEntry> diffEntries) {
+            final List<EntryRollup> entries = new ArrayList<>(diffEntries.size());
+            for (BatteryDiffEntry diffEntry : diffEntries) {
+                entries.add(new EntryRollup(diffEntry.mBatteryHistEntry,
+                        diffEntry.mForegroundUsageTimeInMs, diffEntry.mBackgroundUsageTimeInMs,
+                        diffEntry.mConsumePower));
+            }
+            return entries;
+        }
+
+        private static void writeEntries(DataOutputStream out, List<EntryRollup> entries)
+                throws IOException {
+            out.writeInt(entries.size());
+            for (EntryRollup entry : entries) {
+                entry.writeTo(out);
+            }
+        }
+
+        private static List<EntryRollup> readEntries(DataInputStream in) throws IOException {
+            final int size = in.readInt();
+            final List<EntryRollup> entries = new ArrayList<>(size);
+            for (int index = 0; index < size; index++) {
+                entries.add(EntryRollup.readFrom(in));
+            }
+            return entries;
+        }
+    }
+
+    /** Usage of one consumer in a time slot, with the fields describing the consumer. */
+    private static final class EntryRollup {
+        private final BatteryHistEntry mHistEntry;
+        private final long mForegroundUsageTimeInMs;
+        private final long mBackgroundUsageTimeInMs;
+        private final double mConsumePower;
+
+        EntryRollup(BatteryHistEntry histEntry, long foregroundUsageTimeInMs,
+                long backgroundUsageTimeInMs, double consumePower) {
+            mHistEntry = histEntry;
+            mForegroundUsageTimeInMs = foregroundUsageTimeInMs;
+            mBackgroundUsageTimeInMs = backgroundUsageTimeInMs;
+            mConsumePower = consumePower;
+        }
+
+        void writeTo(DataOutputStream out) throws IOException {
+            out.writeLong(mHistEntry.mUid);
+            out.writeLong(mHistEntry.mUserId);
+            writeString(out, mHistEntry.mAppLabel);
+            writeString(out, mHistEntry.mPackageName);
+            out.writeBoolean(mHistEntry.mIsHidden);
+            out.writeInt(mHistEntry.mDrainType);
+            out.writeInt(mHistEntry.mConsumerType);
+            out.writeLong(mForegroundUsageTimeInMs);
+            out.writeLong(mBackgroundUsageTimeInMs);
+            out.writeDouble(mConsumePower);
+        }
+
+        static EntryRollup readFrom(DataInputStream in) throws IOException {
+            // Only the fields describing the consumer are read back from the history entry.
+            final ContentValues values = new ContentValues();
+            values.put(BatteryHistEntry.KEY_UID, in.readLong());
+            values.put(BatteryHistEntry.KEY_USER_ID, in.readLong());
+            values.put(BatteryHistEntry.KEY_APP_LABEL, readString(in));
+            values.put(BatteryHistEntry.KEY_PACKAGE_NAME, readString(in));
+            values.put(BatteryHistEntry.KEY_IS_HIDDEN, in.readBoolean());
+            values.put(BatteryHistEntry.KEY_DRAIN_TYPE, in.readInt());
+            values.put(BatteryHistEntry.KEY_CONSUMER_TYPE, in.readInt());
+            return new EntryRollup(new BatteryHistEntry(values),
+                    /*foregroundUsageTimeInMs=*/ in.readLong(),
+                    /*backgroundUsageTimeInMs=*/ in.readLong(),
+                    /*consumePower=*/ in.readDouble());
+        }
+
+        private static void writeString(DataOutputStream out, @Nullable String value)
+                throws IOException {
+            out.writeBoolean(value != null);
+            if (value != null) {
+                out.writeUTF(value);
+            }
+        }
+
+        @Nullable
+        private static String readString(DataInputStream in) throws IOException {
+            return in.readBoolean() ? in.readUTF() : null;
+        }
+    }
+}
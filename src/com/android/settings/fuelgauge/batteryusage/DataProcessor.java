@@ -31,7 +31,6 @@ import android.os.UserHandle;
 import android.os.UserManager;
 import android.text.TextUtils;
 import android.text.format.DateUtils;
-import android.util.ArraySet;
 import android.util.Log;
 
 import androidx.annotation.Nullable;
@@ -45,6 +44,7 @@ import com.android.settingslib.fuelgauge.BatteryStatus;
 
 import java.time.Duration;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Calendar;
 import java.util.Collection;
 import java.util.Collections;
@@ -68,9 +68,6 @@ public final class DataProcessor {
     // Maximum total time value for each hourly slot cumulative data at most 2 hours.
     private static final float TOTAL_HOURLY_TIME_THRESHOLD = DateUtils.HOUR_IN_MILLIS * 2;
     private static final long MIN_TIME_SLOT = DateUtils.HOUR_IN_MILLIS * 2;
-    private static final Map<String, BatteryHistEntry> EMPTY_BATTERY_MAP = new HashMap<>();
-    private static final BatteryHistEntry EMPTY_BATTERY_HIST_ENTRY =
-            new BatteryHistEntry(new ContentValues());
 
     @VisibleForTesting
     static final double PERCENTAGE_OF_TOTAL_THRESHOLD = 1f;
@@ -109,11 +106,11 @@ public final class DataProcessor {
         }
         handler = handler != null ? handler : new Handler(Looper.getMainLooper());
         // Process raw history map data into hourly timestamps.
-        final Map<Long, Map<String, BatteryHistEntry>> processedBatteryHistoryMap =
-                getHistoryMapWithExpectedTimestamps(context, batteryHistoryMap);
-        // Wrap and processed history map into easy-to-use format for UI rendering.
+        final BatteryHistoryColumns processedBatteryHistory =
+                getHistoryColumnsWithExpectedTimestamps(context, batteryHistoryMap);
+        // Wrap and processed history into easy-to-use format for UI rendering.
         final BatteryLevelData batteryLevelData =
-                getLevelDataThroughProcessedHistoryMap(context, processedBatteryHistoryMap);
+                getLevelDataThroughProcessedHistory(context, processedBatteryHistory);
         if (batteryLevelData == null) {
             loadBatteryUsageDataFromBatteryStatsService(
                     context, handler, asyncResponseDelegate);
@@ -127,7 +124,7 @@ public final class DataProcessor {
                 handler,
                 asyncResponseDelegate,
                 batteryLevelData.getHourlyBatteryLevelsPerDay(),
-                processedBatteryHistoryMap).execute();
+                processedBatteryHistory).execute();
 
         return batteryLevelData;
     }
@@ -145,17 +142,17 @@ public final class DataProcessor {
             return null;
         }
         // Process raw history map data into hourly timestamps.
-        final Map<Long, Map<String, BatteryHistEntry>> processedBatteryHistoryMap =
-                getHistoryMapWithExpectedTimestamps(context, batteryHistoryMap);
-        // Wrap and processed history map into easy-to-use format for UI rendering.
+        final BatteryHistoryColumns processedBatteryHistory =
+                getHistoryColumnsWithExpectedTimestamps(context, batteryHistoryMap);
+        // Wrap and processed history into easy-to-use format for UI rendering.
         final BatteryLevelData batteryLevelData =
-                getLevelDataThroughProcessedHistoryMap(context, processedBatteryHistoryMap);
+                getLevelDataThroughProcessedHistory(context, processedBatteryHistory);
         return batteryLevelData == null
                 ? null
                 : getBatteryUsageMap(
                         context,
                         batteryLevelData.getHourlyBatteryLevelsPerDay(),
-                        processedBatteryHistoryMap);
+                        processedBatteryHistory);
     }
 
     /**
@@ -182,26 +179,35 @@ public final class DataProcessor {
     static Map<Long, Map<String, BatteryHistEntry>> getHistoryMapWithExpectedTimestamps(
             Context context,
             final Map<Long, Map<String, BatteryHistEntry>> batteryHistoryMap) {
+        return getHistoryColumnsWithExpectedTimestamps(context, batteryHistoryMap)
+                .toHistoryMap();
+    }
+
+    /**
+     * @return Returns the processed history which has interpolated to every hour data, as
+     * described in {@link #getHistoryMapWithExpectedTimestamps}.
+     */
+    @VisibleForTesting
+    static BatteryHistoryColumns getHistoryColumnsWithExpectedTimestamps(
+            Context context,
+            final Map<Long, Map<String, BatteryHistEntry>> batteryHistoryMap) {
         final long startTime = System.currentTimeMillis();
-        final List<Long> rawTimestampList = new ArrayList<>(batteryHistoryMap.keySet());
         // Timestamp should not after current system time,
         // avoid case users changed time to future then changed back
-        rawTimestampList.removeIf(timestamp -> timestamp > startTime);
-        final Map<Long, Map<String, BatteryHistEntry>> resultMap = new HashMap();
-        if (rawTimestampList.isEmpty()) {
-            Log.d(TAG, "empty batteryHistoryMap in getHistoryMapWithExpectedTimestamps()");
-            return resultMap;
-        }
-        Collections.sort(rawTimestampList);
-        final List<Long> expectedTimestampList = getTimestampSlots(rawTimestampList);
+        final long[] rawTimestamps = getSortedTimestamps(batteryHistoryMap.keySet(), startTime);
+        if (rawTimestamps.length == 0) {
+            Log.d(TAG, "empty batteryHistoryMap in getHistoryColumnsWithExpectedTimestamps()");
+            return new BatteryHistoryColumns(new long[0], Collections.emptyList());
+        }
+        final BatteryHistoryColumns result = new BatteryHistoryColumns(
+                getTimestampSlots(rawTimestamps), batteryHistoryMap.values());
         final boolean isFromFullCharge =
-                isFromFullCharge(batteryHistoryMap.get(rawTimestampList.get(0)));
-        interpolateHistory(
-                context, rawTimestampList, expectedTimestampList, isFromFullCharge,
-                batteryHistoryMap, resultMap);
-        Log.d(TAG, String.format("getHistoryMapWithExpectedTimestamps() size=%d in %d/ms",
-                resultMap.size(), (System.currentTimeMillis() - startTime)));
-        return resultMap;
+                isFromFullCharge(batteryHistoryMap.get(rawTimestamps[0]));
+        interpolateHistory(context, rawTimestamps, isFromFullCharge, batteryHistoryMap,
+                getRolledUpSlots(context, result), result);
+        Log.d(TAG, String.format("getHistoryColumnsWithExpectedTimestamps() size=%d in %d/ms",
+                result.getSlotCount(), (System.currentTimeMillis() - startTime)));
+        return result;
     }
 
     @VisibleForTesting
@@ -209,21 +215,29 @@ public final class DataProcessor {
     static BatteryLevelData getLevelDataThroughProcessedHistoryMap(
             Context context,
             final Map<Long, Map<String, BatteryHistEntry>> processedBatteryHistoryMap) {
-        final List<Long> timestampList = new ArrayList<>(processedBatteryHistoryMap.keySet());
-        Collections.sort(timestampList);
-        final List<Long> dailyTimestamps = getDailyTimestamps(timestampList);
+        return getLevelDataThroughProcessedHistory(
+                context, BatteryHistoryColumns.fromHistoryMap(processedBatteryHistoryMap));
+    }
+
+    @VisibleForTesting
+    @Nullable
+    static BatteryLevelData getLevelDataThroughProcessedHistory(
+            Context context, final BatteryHistoryColumns processedBatteryHistory) {
+        final long[] dailyTimestamps = getDailyTimestamps(processedBatteryHistory.getTimestamps());
         // There should be at least the start and end timestamps. Otherwise, return null to not show
         // data in usage chart.
-        if (dailyTimestamps.size() < MIN_DAILY_DATA_SIZE) {
+        if (dailyTimestamps.length < MIN_DAILY_DATA_SIZE) {
             return null;
         }
 
-        final List<List<Long>> hourlyTimestamps = getHourlyTimestamps(dailyTimestamps);
         final BatteryLevelData.PeriodBatteryLevelData dailyLevelData =
-                getPeriodBatteryLevelData(context, processedBatteryHistoryMap, dailyTimestamps);
+                getPeriodBatteryLevelData(context, processedBatteryHistory, dailyTimestamps);
         final List<BatteryLevelData.PeriodBatteryLevelData> hourlyLevelData =
-                getHourlyPeriodBatteryLevelData(
-                        context, processedBatteryHistoryMap, hourlyTimestamps);
+                new ArrayList<>(dailyTimestamps.length - 1);
+        for (int index = 0; index < dailyTimestamps.length - 1; index++) {
+            hourlyLevelData.add(getPeriodBatteryLevelData(context, processedBatteryHistory,
+                    getHourlyTimestamps(dailyTimestamps[index], dailyTimestamps[index + 1])));
+        }
         return new BatteryLevelData(dailyLevelData, hourlyLevelData);
     }
 
@@ -233,25 +247,28 @@ public final class DataProcessor {
      */
     @VisibleForTesting
     static List<Long> getTimestampSlots(final List<Long> rawTimestampList) {
-        final List<Long> timestampSlots = new ArrayList<>();
-        final int rawTimestampListSize = rawTimestampList.size();
+        return toList(getTimestampSlots(toArray(rawTimestampList)));
+    }
+
+    private static long[] getTimestampSlots(final long[] rawTimestamps) {
         // If timestamp number is smaller than 2, the following computation is not necessary.
-        if (rawTimestampListSize < MIN_TIMESTAMP_DATA_SIZE) {
-            return timestampSlots;
+        if (rawTimestamps.length < MIN_TIMESTAMP_DATA_SIZE) {
+            return new long[0];
         }
-        final long rawStartTimestamp = rawTimestampList.get(0);
-        final long rawEndTimestamp = rawTimestampList.get(rawTimestampListSize - 1);
+        final long rawStartTimestamp = rawTimestamps[0];
+        final long rawEndTimestamp = rawTimestamps[rawTimestamps.length - 1];
         // No matter the start is from last full charge or 6 days ago, use the nearest even hour.
         final long startTimestamp = getNearestEvenHourTimestamp(rawStartTimestamp);
         // Use the even hour before the raw end timestamp as the end.
         final long endTimestamp = getLastEvenHourBeforeTimestamp(rawEndTimestamp);
         // If the start timestamp is later or equal the end one, return the empty list.
         if (startTimestamp >= endTimestamp) {
-            return timestampSlots;
+            return new long[0];
         }
-        for (long timestamp = startTimestamp; timestamp <= endTimestamp;
-                timestamp += DateUtils.HOUR_IN_MILLIS) {
-            timestampSlots.add(timestamp);
+        final long[] timestampSlots =
+                new long[(int) ((endTimestamp - startTimestamp) / DateUtils.HOUR_IN_MILLIS) + 1];
+        for (int index = 0; index < timestampSlots.length; index++) {
+            timestampSlots[index] = startTimestamp + index * DateUtils.HOUR_IN_MILLIS;
         }
         return timestampSlots;
     }
@@ -267,39 +284,47 @@ public final class DataProcessor {
      */
     @VisibleForTesting
     static List<Long> getDailyTimestamps(final List<Long> timestampList) {
-        final List<Long> dailyTimestampList = new ArrayList<>();
+        return toList(getDailyTimestamps(toArray(timestampList)));
+    }
+
+    private static long[] getDailyTimestamps(final long[] timestamps) {
         // If timestamp number is smaller than 2, the following computation is not necessary.
-        if (timestampList.size() < MIN_TIMESTAMP_DATA_SIZE) {
-            return dailyTimestampList;
+        if (timestamps.length < MIN_TIMESTAMP_DATA_SIZE) {
+            return new long[0];
         }
-        final long startTime = timestampList.get(0);
-        final long endTime = timestampList.get(timestampList.size() - 1);
+        final long startTime = timestamps[0];
+        final long endTime = timestamps[timestamps.length - 1];
         // If the timestamp diff is smaller than MIN_TIME_SLOT, returns the empty list directly.
         if (endTime - startTime < MIN_TIME_SLOT) {
-            return dailyTimestampList;
+            return new long[0];
         }
+        // The start, the end and one 00:00 per day in between, plus one day of margin since the
+        // days of the local timezone are not always DAY_IN_MILLIS long.
+        final long[] dailyTimestamps =
+                new long[(int) ((endTime - startTime) / DateUtils.DAY_IN_MILLIS) + 4];
+        int size = 0;
         long nextDay = getTimestampOfNextDay(startTime);
         // Only if the timestamp diff in the first day is bigger than MIN_TIME_SLOT, start from the
         // first day. Otherwise, start from the second day.
         if (nextDay - startTime >= MIN_TIME_SLOT) {
-            dailyTimestampList.add(startTime);
+            dailyTimestamps[size++] = startTime;
         }
         while (nextDay < endTime) {
-            dailyTimestampList.add(nextDay);
+            dailyTimestamps[size++] = nextDay;
             nextDay += DateUtils.DAY_IN_MILLIS;
         }
-        final long lastDailyTimestamp = dailyTimestampList.get(dailyTimestampList.size() - 1);
+        final long lastDailyTimestamp = dailyTimestamps[size - 1];
         // Only if the timestamp diff in the last day is bigger than MIN_TIME_SLOT, add the
         // last day.
         if (endTime - lastDailyTimestamp >= MIN_TIME_SLOT) {
-            dailyTimestampList.add(endTime);
+            dailyTimestamps[size++] = endTime;
         }
-        // The dailyTimestampList must have the start and end timestamp, otherwise, return an empty
+        // The dailyTimestamps must have the start and end timestamp, otherwise, return an empty
         // list.
-        if (dailyTimestampList.size() < MIN_TIMESTAMP_DATA_SIZE) {
-            return new ArrayList<>();
+        if (size < MIN_TIMESTAMP_DATA_SIZE) {
+            return new long[0];
         }
-        return dailyTimestampList;
+        return Arrays.copyOf(dailyTimestamps, size);
     }
 
     @VisibleForTesting
@@ -321,20 +346,22 @@ public final class DataProcessor {
 
     @VisibleForTesting
     static long[] findNearestTimestamp(final List<Long> timestamps, final long target) {
-        final long[] results = new long[] {Long.MIN_VALUE, Long.MAX_VALUE};
+        final long[] sortedTimestamps = toArray(timestamps);
+        Arrays.sort(sortedTimestamps);
+        return findNearestTimestamp(sortedTimestamps, target);
+    }
+
+    private static long[] findNearestTimestamp(final long[] sortedTimestamps, final long target) {
         // Searches the nearest lower and upper timestamp value.
-        timestamps.forEach(timestamp -> {
-            if (timestamp <= target && timestamp > results[0]) {
-                results[0] = timestamp;
-            }
-            if (timestamp >= target && timestamp < results[1]) {
-                results[1] = timestamp;
-            }
-        });
+        final int index = Arrays.binarySearch(sortedTimestamps, target);
+        if (index >= 0) {
+            return new long[] {target, target};
+        }
+        final int upperIndex = -index - 1;
         // Uses zero value to represent invalid searching result.
-        results[0] = results[0] == Long.MIN_VALUE ? 0 : results[0];
-        results[1] = results[1] == Long.MAX_VALUE ? 0 : results[1];
-        return results;
+        return new long[] {
+                upperIndex > 0 ? sortedTimestamps[upperIndex - 1] : 0,
+                upperIndex < sortedTimestamps.length ? sortedTimestamps[upperIndex] : 0};
     }
 
     /**
@@ -380,10 +407,23 @@ public final class DataProcessor {
         if (batteryHistoryMap.isEmpty()) {
             return null;
         }
+        return getBatteryUsageMap(context, hourlyBatteryLevelsPerDay,
+                BatteryHistoryColumns.fromHistoryMap(batteryHistoryMap));
+    }
+
+    @VisibleForTesting
+    @Nullable
+    static Map<Integer, Map<Integer, BatteryDiffData>> getBatteryUsageMap(
+            final Context context,
+            final List<BatteryLevelData.PeriodBatteryLevelData> hourlyBatteryLevelsPerDay,
+            final BatteryHistoryColumns batteryHistory) {
+        if (batteryHistory.getSlotCount() == 0) {
+            return null;
+        }
         final Map<Integer, Map<Integer, BatteryDiffData>> resultMap = new HashMap<>();
         // Insert diff data from [0][0] to [maxDailyIndex][maxHourlyIndex].
         insertHourlyUsageDiffData(
-                context, hourlyBatteryLevelsPerDay, batteryHistoryMap, resultMap);
+                context, hourlyBatteryLevelsPerDay, batteryHistory, resultMap);
         // Insert diff data from [0][SELECTED_INDEX_ALL] to [maxDailyIndex][SELECTED_INDEX_ALL].
         insertDailyUsageDiffData(hourlyBatteryLevelsPerDay, resultMap);
         // Insert diff data [SELECTED_INDEX_ALL][SELECTED_INDEX_ALL].
@@ -557,21 +597,22 @@ public final class DataProcessor {
     }
 
     /**
-     * Interpolates history map based on expected timestamp slots and processes the corner case when
+     * Interpolates history based on expected timestamp slots and processes the corner case when
      * the expected start timestamp is earlier than what we have.
      */
     private static void interpolateHistory(
             Context context,
-            final List<Long> rawTimestampList,
-            final List<Long> expectedTimestampSlots,
+            final long[] rawTimestamps,
             final boolean isFromFullCharge,
             final Map<Long, Map<String, BatteryHistEntry>> batteryHistoryMap,
-            final Map<Long, Map<String, BatteryHistEntry>> resultMap) {
-        if (rawTimestampList.isEmpty() || expectedTimestampSlots.isEmpty()) {
+            final boolean[] rolledUpSlots,
+            final BatteryHistoryColumns result) {
+        final int expectedTimestampSlotsSize = result.getSlotCount();
+        if (rawTimestamps.length == 0 || expectedTimestampSlotsSize == 0) {
             return;
         }
-        final long expectedStartTimestamp = expectedTimestampSlots.get(0);
-        final long rawStartTimestamp = rawTimestampList.get(0);
+        final long expectedStartTimestamp = result.getTimestamp(0);
+        final long rawStartTimestamp = rawTimestamps[0];
         int startIndex = 0;
         // If the expected start timestamp is full charge or earlier than what we have, use the
         // first data of what we have directly. This should be OK because the expected start
@@ -579,67 +620,121 @@ public final class DataProcessor {
         // more than 1 hour.
         if (isFromFullCharge || expectedStartTimestamp < rawStartTimestamp) {
             startIndex = 1;
-            resultMap.put(expectedStartTimestamp, batteryHistoryMap.get(rawStartTimestamp));
+            result.copySlot(/*slot=*/ 0, batteryHistoryMap.get(rawStartTimestamp));
         }
-        final int expectedTimestampSlotsSize = expectedTimestampSlots.size();
         for (int index = startIndex; index < expectedTimestampSlotsSize; index++) {
-            final long currentSlot = expectedTimestampSlots.get(index);
+            if (rolledUpSlots[index]) {
+                continue;
+            }
             final boolean isStartOrEnd = index == 0 || index == expectedTimestampSlotsSize - 1;
             interpolateHistoryForSlot(
-                    context, currentSlot, rawTimestampList, batteryHistoryMap, resultMap,
-                    isStartOrEnd);
+                    context, index, rawTimestamps, batteryHistoryMap, result, isStartOrEnd);
+        }
+    }
+
+    /**
+     * @return Returns whether each slot is only read by the usage of complete time slots already
+     * persisted in {@link BatteryUsageRollupCache}, so it doesn't need to be interpolated. The
+     * slots holding the battery levels of the chart are always interpolated.
+     */
+    private static boolean[] getRolledUpSlots(
+            Context context, final BatteryHistoryColumns batteryHistory) {
+        final boolean[] rolledUpSlots = new boolean[batteryHistory.getSlotCount()];
+        final long[] dailyTimestamps = getDailyTimestamps(batteryHistory.getTimestamps());
+        if (dailyTimestamps.length < MIN_DAILY_DATA_SIZE) {
+            return rolledUpSlots;
+        }
+        final int currentUserId = context.getUserId();
+        final UserHandle userHandle =
+                Utils.getManagedProfile(context.getSystemService(UserManager.class));
+        final int workProfileUserId =
+                userHandle != null ? userHandle.getIdentifier() : Integer.MIN_VALUE;
+        final BatteryUsageRollupCache rollupCache = BatteryUsageRollupCache.getInstance(context);
+        rollupCache.setUsers(currentUserId, workProfileUserId);
+        final boolean[] neededSlots = new boolean[rolledUpSlots.length];
+        markSlot(neededSlots, batteryHistory, dailyTimestamps);
+        for (int dailyIndex = 0; dailyIndex < dailyTimestamps.length - 1; dailyIndex++) {
+            final long[] hourlyTimestamps = getHourlyTimestamps(
+                    dailyTimestamps[dailyIndex], dailyTimestamps[dailyIndex + 1]);
+            markSlot(neededSlots, batteryHistory, hourlyTimestamps);
+            // Each time slot usage reads the data of its start and of the next two hours, as
+            // computed by insertHourlyUsageDiffData().
+            for (int hourlyIndex = 0; hourlyIndex < hourlyTimestamps.length - 1; hourlyIndex++) {
+                final long slotTimestamp = hourlyTimestamps[hourlyIndex];
+                final boolean isRolledUp = isCompleteSlot(batteryHistory, slotTimestamp)
+                        && rollupCache.contains(slotTimestamp);
+                markSlot(isRolledUp ? rolledUpSlots : neededSlots, batteryHistory,
+                        slotTimestamp,
+                        slotTimestamp + DateUtils.HOUR_IN_MILLIS,
+                        slotTimestamp + DateUtils.HOUR_IN_MILLIS * 2);
+            }
+        }
+        for (int slot = 0; slot < rolledUpSlots.length; slot++) {
+            rolledUpSlots[slot] &= !neededSlots[slot];
+        }
+        return rolledUpSlots;
+    }
+
+    private static void markSlot(
+            final boolean[] slots,
+            final BatteryHistoryColumns batteryHistory,
+            final long... timestamps) {
+        for (long timestamp : timestamps) {
+            final int slot = batteryHistory.indexOfSlot(timestamp);
+            if (slot >= 0) {
+                slots[slot] = true;
+            }
         }
     }
 
     private static void interpolateHistoryForSlot(
             Context context,
-            final long currentSlot,
-            final List<Long> rawTimestampList,
+            final int slot,
+            final long[] rawTimestamps,
             final Map<Long, Map<String, BatteryHistEntry>> batteryHistoryMap,
-            final Map<Long, Map<String, BatteryHistEntry>> resultMap,
+            final BatteryHistoryColumns result,
             final boolean isStartOrEnd) {
-        final long[] nearestTimestamps = findNearestTimestamp(rawTimestampList, currentSlot);
+        final long currentSlot = result.getTimestamp(slot);
+        final long[] nearestTimestamps = findNearestTimestamp(rawTimestamps, currentSlot);
         final long lowerTimestamp = nearestTimestamps[0];
         final long upperTimestamp = nearestTimestamps[1];
         // Case 1: upper timestamp is zero since scheduler is delayed!
         if (upperTimestamp == 0) {
             log(context, "job scheduler is delayed", currentSlot, null);
-            resultMap.put(currentSlot, new HashMap<>());
             return;
         }
         // Case 2: upper timestamp is closed to the current timestamp.
         if ((upperTimestamp - currentSlot)
                 < MAX_DIFF_SECONDS_OF_UPPER_TIMESTAMP * DateUtils.SECOND_IN_MILLIS) {
             log(context, "force align into the nearest slot", currentSlot, null);
-            resultMap.put(currentSlot, batteryHistoryMap.get(upperTimestamp));
+            result.copySlot(slot, batteryHistoryMap.get(upperTimestamp));
             return;
         }
         // Case 3: lower timestamp is zero before starting to collect data.
         if (lowerTimestamp == 0) {
             log(context, "no lower timestamp slot data", currentSlot, null);
-            resultMap.put(currentSlot, new HashMap<>());
             return;
         }
         interpolateHistoryForSlot(context,
-                currentSlot, lowerTimestamp, upperTimestamp, batteryHistoryMap, resultMap,
-                isStartOrEnd);
+                slot, lowerTimestamp, upperTimestamp, batteryHistoryMap, result, isStartOrEnd);
     }
 
     private static void interpolateHistoryForSlot(
             Context context,
-            final long currentSlot,
+            final int slot,
             final long lowerTimestamp,
             final long upperTimestamp,
             final Map<Long, Map<String, BatteryHistEntry>> batteryHistoryMap,
-            final Map<Long, Map<String, BatteryHistEntry>> resultMap,
+            final BatteryHistoryColumns result,
             final boolean isStartOrEnd) {
+        final long currentSlot = result.getTimestamp(slot);
         final Map<String, BatteryHistEntry> lowerEntryDataMap =
                 batteryHistoryMap.get(lowerTimestamp);
         final Map<String, BatteryHistEntry> upperEntryDataMap =
                 batteryHistoryMap.get(upperTimestamp);
         // Verifies whether the lower data is valid to use or not by checking boot time.
         final BatteryHistEntry upperEntryDataFirstEntry =
-                upperEntryDataMap.values().stream().findFirst().get();
+                upperEntryDataMap.values().iterator().next();
         final long upperEntryDataBootTimestamp =
                 upperEntryDataFirstEntry.mTimestamp - upperEntryDataFirstEntry.mBootTimestamp;
         // Lower data is captured before upper data corresponding device is booting.
@@ -650,21 +745,21 @@ public final class DataProcessor {
             // Provides an opportunity to force align the slot directly.
             if ((upperTimestamp - currentSlot) < 10 * DateUtils.MINUTE_IN_MILLIS) {
                 log(context, "force align into the nearest slot", currentSlot, null);
-                resultMap.put(currentSlot, upperEntryDataMap);
+                result.copySlot(slot, upperEntryDataMap);
             } else {
                 log(context, "in the different booting section", currentSlot, null);
-                resultMap.put(currentSlot, new HashMap<>());
             }
             return;
         }
         log(context, "apply interpolation arithmetic", currentSlot, null);
-        final Map<String, BatteryHistEntry> newHistEntryMap = new HashMap<>();
         final double timestampLength = upperTimestamp - lowerTimestamp;
         final double timestampDiff = currentSlot - lowerTimestamp;
-        // Applies interpolation arithmetic for each BatteryHistEntry.
-        for (String entryKey : upperEntryDataMap.keySet()) {
+        final double ratio = timestampDiff / timestampLength;
+        // Applies interpolation arithmetic for each BatteryHistEntry, straight into the columns.
+        for (Map.Entry<String, BatteryHistEntry> upperEntryData : upperEntryDataMap.entrySet()) {
+            final String entryKey = upperEntryData.getKey();
             final BatteryHistEntry lowerEntry = lowerEntryDataMap.get(entryKey);
-            final BatteryHistEntry upperEntry = upperEntryDataMap.get(entryKey);
+            final BatteryHistEntry upperEntry = upperEntryData.getValue();
             // Checks whether there is any abnormal battery reset conditions.
             if (lowerEntry != null) {
                 final boolean invalidForegroundUsageTime =
@@ -672,25 +767,36 @@ public final class DataProcessor {
                 final boolean invalidBackgroundUsageTime =
                         lowerEntry.mBackgroundUsageTimeInMs > upperEntry.mBackgroundUsageTimeInMs;
                 if (invalidForegroundUsageTime || invalidBackgroundUsageTime) {
-                    newHistEntryMap.put(entryKey, upperEntry);
+                    result.set(slot, entryKey, upperEntry);
                     log(context, "abnormal reset condition is found", currentSlot, upperEntry);
                     continue;
                 }
             }
-            final BatteryHistEntry newEntry =
+            result.set(slot, entryKey, upperEntry,
+                    BatteryHistEntry.interpolate(
+                            lowerEntry == null ? 0 : lowerEntry.mTotalPower,
+                            upperEntry.mTotalPower,
+                            ratio),
                     BatteryHistEntry.interpolate(
-                            currentSlot,
-                            upperTimestamp,
-                            /*ratio=*/ timestampDiff / timestampLength,
-                            lowerEntry,
-                            upperEntry);
-            newHistEntryMap.put(entryKey, newEntry);
+                            lowerEntry == null ? 0 : lowerEntry.mConsumePower,
+                            upperEntry.mConsumePower,
+                            ratio),
+                    Math.round(BatteryHistEntry.interpolate(
+                            lowerEntry == null ? 0 : lowerEntry.mForegroundUsageTimeInMs,
+                            upperEntry.mForegroundUsageTimeInMs,
+                            ratio)),
+                    Math.round(BatteryHistEntry.interpolate(
+                            lowerEntry == null ? 0 : lowerEntry.mBackgroundUsageTimeInMs,
+                            upperEntry.mBackgroundUsageTimeInMs,
+                            ratio)),
+                    lowerEntry == null
+                            ? upperEntry.mBatteryLevel
+                            : (int) Math.round(BatteryHistEntry.interpolate(
+                                    lowerEntry.mBatteryLevel, upperEntry.mBatteryLevel, ratio)));
             if (lowerEntry == null) {
                 log(context, "cannot find lower entry data", currentSlot, upperEntry);
-                continue;
             }
         }
-        resultMap.put(currentSlot, newHistEntryMap);
     }
 
     /**
@@ -730,76 +836,55 @@ public final class DataProcessor {
         return evenHourCalendar.getTimeInMillis();
     }
 
-    private static List<List<Long>> getHourlyTimestamps(final List<Long> dailyTimestamps) {
-        final List<List<Long>> hourlyTimestamps = new ArrayList<>();
-        if (dailyTimestamps.size() < MIN_DAILY_DATA_SIZE) {
-            return hourlyTimestamps;
-        }
-
-        for (int dailyStartIndex = 0; dailyStartIndex < dailyTimestamps.size() - 1;
-                dailyStartIndex++) {
-            long currentTimestamp = dailyTimestamps.get(dailyStartIndex);
-            final long dailyEndTimestamp = dailyTimestamps.get(dailyStartIndex + 1);
-            final List<Long> hourlyTimestampsPerDay = new ArrayList<>();
-            while (currentTimestamp <= dailyEndTimestamp) {
-                hourlyTimestampsPerDay.add(currentTimestamp);
-                currentTimestamp += MIN_TIME_SLOT;
-            }
-            hourlyTimestamps.add(hourlyTimestampsPerDay);
+    private static long[] getHourlyTimestamps(
+            final long dailyStartTimestamp, final long dailyEndTimestamp) {
+        final long[] hourlyTimestamps =
+                new long[(int) ((dailyEndTimestamp - dailyStartTimestamp) / MIN_TIME_SLOT) + 1];
+        for (int index = 0; index < hourlyTimestamps.length; index++) {
+            hourlyTimestamps[index] = dailyStartTimestamp + index * MIN_TIME_SLOT;
         }
         return hourlyTimestamps;
     }
 
-    private static List<BatteryLevelData.PeriodBatteryLevelData> getHourlyPeriodBatteryLevelData(
-            Context context,
-            final Map<Long, Map<String, BatteryHistEntry>> processedBatteryHistoryMap,
-            final List<List<Long>> timestamps) {
-        final List<BatteryLevelData.PeriodBatteryLevelData> levelData = new ArrayList<>();
-        timestamps.forEach(
-                timestampList -> levelData.add(
-                        getPeriodBatteryLevelData(
-                                context, processedBatteryHistoryMap, timestampList)));
-        return levelData;
-    }
-
     private static BatteryLevelData.PeriodBatteryLevelData getPeriodBatteryLevelData(
             Context context,
-            final Map<Long, Map<String, BatteryHistEntry>> processedBatteryHistoryMap,
-            final List<Long> timestamps) {
-        final List<Integer> levels = new ArrayList<>();
-        timestamps.forEach(
-                timestamp -> levels.add(getLevel(context, processedBatteryHistoryMap, timestamp)));
-        return new BatteryLevelData.PeriodBatteryLevelData(timestamps, levels);
+            final BatteryHistoryColumns processedBatteryHistory,
+            final long[] timestamps) {
+        final List<Long> timestampList = new ArrayList<>(timestamps.length);
+        final List<Integer> levels = new ArrayList<>(timestamps.length);
+        for (long timestamp : timestamps) {
+            timestampList.add(timestamp);
+            levels.add(getLevel(context, processedBatteryHistory, timestamp));
+        }
+        return new BatteryLevelData.PeriodBatteryLevelData(timestampList, levels);
     }
 
     private static Integer getLevel(
             Context context,
-            final Map<Long, Map<String, BatteryHistEntry>> processedBatteryHistoryMap,
+            final BatteryHistoryColumns processedBatteryHistory,
             final long timestamp) {
-        final Map<String, BatteryHistEntry> entryMap = processedBatteryHistoryMap.get(timestamp);
-        if (entryMap == null || entryMap.isEmpty()) {
+        final int slot = processedBatteryHistory.indexOfSlot(timestamp);
+        if (slot < 0 || !processedBatteryHistory.hasEntries(slot)) {
             Log.e(TAG, "abnormal entry list in the timestamp:"
                     + utcToLocalTime(context, timestamp));
             return null;
         }
         // Averages the battery level in each time slot to avoid corner conditions.
-        float batteryLevelCounter = 0;
-        for (BatteryHistEntry entry : entryMap.values()) {
-            batteryLevelCounter += entry.mBatteryLevel;
-        }
-        return Math.round(batteryLevelCounter / entryMap.size());
+        return processedBatteryHistory.getBatteryLevel(slot);
     }
 
     private static void insertHourlyUsageDiffData(
             Context context,
             final List<BatteryLevelData.PeriodBatteryLevelData> hourlyBatteryLevelsPerDay,
-            final Map<Long, Map<String, BatteryHistEntry>> batteryHistoryMap,
+            final BatteryHistoryColumns batteryHistory,
             final Map<Integer, Map<Integer, BatteryDiffData>> resultMap) {
         final int currentUserId = context.getUserId();
         final UserHandle userHandle =
                 Utils.getManagedProfile(context.getSystemService(UserManager.class));
         final int workProfileUserId =
                 userHandle != null ? userHandle.getIdentifier() : Integer.MIN_VALUE;
+        final BatteryUsageRollupCache rollupCache = BatteryUsageRollupCache.getInstance(context);
+        rollupCache.setUsers(currentUserId, workProfileUserId);
         // Each time slot usage diff data =
         //     Math.abs(timestamp[i+2] data - timestamp[i+1] data) +
         //     Math.abs(timestamp[i+1] data - timestamp[i] data);
@@ -812,6 +897,12 @@ public final class DataProcessor {
             }
             final List<Long> timestamps = hourlyBatteryLevelsPerDay.get(dailyIndex).getTimestamps();
             for (int hourlyIndex = 0; hourlyIndex < timestamps.size() - 1; hourlyIndex++) {
+                final long slotTimestamp = timestamps.get(hourlyIndex);
+                final boolean isCompleteSlot = isCompleteSlot(batteryHistory, slotTimestamp);
+                if (isCompleteSlot && rollupCache.contains(slotTimestamp)) {
+                    dailyDiffMap.put(hourlyIndex, rollupCache.get(context, slotTimestamp));
+                    continue;
+                }
                 final BatteryDiffData hourlyBatteryDiffData =
                         insertHourlyUsageDiffDataPerSlot(
                                 context,
@@ -819,10 +910,35 @@ public final class DataProcessor {
                                 workProfileUserId,
                                 hourlyIndex,
                                 timestamps,
-                                batteryHistoryMap);
+                                batteryHistory);
+                // The middle slot is not interpolated when only cached usage reads it, so don't
+                // cache the usage computed without it if the slot was dropped from the cache.
+                if (isCompleteSlot && (hourlyBatteryDiffData != null
+                        || hasEntries(batteryHistory, slotTimestamp + DateUtils.HOUR_IN_MILLIS))) {
+                    rollupCache.put(slotTimestamp, hourlyBatteryDiffData);
+                }
                 dailyDiffMap.put(hourlyIndex, hourlyBatteryDiffData);
             }
         }
+        rollupCache.save(/*oldestSlotTimestamp=*/ batteryHistory.getTimestamp(0));
+    }
+
+    /**
+     * @return Returns whether the usage of the time slot starting at {@code slotTimestamp} can't
+     * change anymore. The data at both ends of the history is processed differently and the end
+     * moves as data is added, so only the time slots between them are complete.
+     */
+    private static boolean isCompleteSlot(
+            final BatteryHistoryColumns batteryHistory, final long slotTimestamp) {
+        final int lastSlot = batteryHistory.getSlotCount() - 1;
+        return slotTimestamp > batteryHistory.getTimestamp(0)
+                && slotTimestamp + MIN_TIME_SLOT < batteryHistory.getTimestamp(lastSlot);
+    }
+
+    private static boolean hasEntries(
+            final BatteryHistoryColumns batteryHistory, final long timestamp) {
+        final int slot = batteryHistory.indexOfSlot(timestamp);
+        return slot >= 0 && batteryHistory.hasEntries(slot);
     }
 
     private static void insertDailyUsageDiffData(
@@ -857,72 +973,62 @@ public final class DataProcessor {
             final int workProfileUserId,
             final int currentIndex,
             final List<Long> timestamps,
-            final Map<Long, Map<String, BatteryHistEntry>> batteryHistoryMap) {
+            final BatteryHistoryColumns batteryHistory) {
         final List<BatteryDiffEntry> appEntries = new ArrayList<>();
         final List<BatteryDiffEntry> systemEntries = new ArrayList<>();
 
-        final Long currentTimestamp = timestamps.get(currentIndex);
-        final Long nextTimestamp = currentTimestamp + DateUtils.HOUR_IN_MILLIS;
-        final Long nextTwoTimestamp = nextTimestamp + DateUtils.HOUR_IN_MILLIS;
-        // Fetches BatteryHistEntry data from corresponding time slot.
-        final Map<String, BatteryHistEntry> currentBatteryHistMap =
-                batteryHistoryMap.getOrDefault(currentTimestamp, EMPTY_BATTERY_MAP);
-        final Map<String, BatteryHistEntry> nextBatteryHistMap =
-                batteryHistoryMap.getOrDefault(nextTimestamp, EMPTY_BATTERY_MAP);
-        final Map<String, BatteryHistEntry> nextTwoBatteryHistMap =
-                batteryHistoryMap.getOrDefault(nextTwoTimestamp, EMPTY_BATTERY_MAP);
-        // We should not get the empty list since we have at least one fake data to record
-        // the battery level and status in each time slot, the empty list is used to
+        final long currentTimestamp = timestamps.get(currentIndex);
+        final long nextTimestamp = currentTimestamp + DateUtils.HOUR_IN_MILLIS;
+        final long nextTwoTimestamp = nextTimestamp + DateUtils.HOUR_IN_MILLIS;
+        // Fetches the slots of the corresponding timestamps.
+        final int currentSlot = batteryHistory.indexOfSlot(currentTimestamp);
+        final int nextSlot = batteryHistory.indexOfSlot(nextTimestamp);
+        final int nextTwoSlot = batteryHistory.indexOfSlot(nextTwoTimestamp);
+        // We should not get the empty slot since we have at least one fake data to record
+        // the battery level and status in each time slot, the empty slot is used to
         // represent there is no enough data to apply interpolation arithmetic.
-        if (currentBatteryHistMap.isEmpty()
-                || nextBatteryHistMap.isEmpty()
-                || nextTwoBatteryHistMap.isEmpty()) {
+        if (currentSlot < 0 || !batteryHistory.hasEntries(currentSlot)
+                || nextSlot < 0 || !batteryHistory.hasEntries(nextSlot)
+                || nextTwoSlot < 0 || !batteryHistory.hasEntries(nextTwoSlot)) {
             return null;
         }
 
-        // Collects all keys in these three time slot records as all populations.
-        final Set<String> allBatteryHistEntryKeys = new ArraySet<>();
-        allBatteryHistEntryKeys.addAll(currentBatteryHistMap.keySet());
-        allBatteryHistEntryKeys.addAll(nextBatteryHistMap.keySet());
-        allBatteryHistEntryKeys.addAll(nextTwoBatteryHistMap.keySet());
-
         double totalConsumePower = 0.0;
         double consumePowerFromOtherUsers = 0f;
-        // Calculates all packages diff usage data in a specific time slot.
-        for (String key : allBatteryHistEntryKeys) {
-            final BatteryHistEntry currentEntry =
-                    currentBatteryHistMap.getOrDefault(key, EMPTY_BATTERY_HIST_ENTRY);
-            final BatteryHistEntry nextEntry =
-                    nextBatteryHistMap.getOrDefault(key, EMPTY_BATTERY_HIST_ENTRY);
-            final BatteryHistEntry nextTwoEntry =
-                    nextTwoBatteryHistMap.getOrDefault(key, EMPTY_BATTERY_HIST_ENTRY);
+        // Calculates all packages diff usage data in a specific time slot. Keys missing from a
+        // slot have zero values in the columns.
+        for (int key = 0; key < batteryHistory.getKeyCount(); key++) {
+            final BatteryHistEntry currentEntry = batteryHistory.getEntry(currentSlot, key);
+            final BatteryHistEntry nextEntry = batteryHistory.getEntry(nextSlot, key);
+            final BatteryHistEntry nextTwoEntry = batteryHistory.getEntry(nextTwoSlot, key);
+            final BatteryHistEntry selectedBatteryEntry =
+                    selectBatteryHistEntry(currentEntry, nextEntry, nextTwoEntry);
+            // Skips the keys not recorded in any of these three time slots.
+            if (selectedBatteryEntry == null) {
+                continue;
+            }
             // Cumulative values is a specific time slot for a specific app.
             long foregroundUsageTimeInMs =
                     getDiffValue(
-                            currentEntry.mForegroundUsageTimeInMs,
-                            nextEntry.mForegroundUsageTimeInMs,
-                            nextTwoEntry.mForegroundUsageTimeInMs);
+                            batteryHistory.getForegroundUsageTimeInMs(currentSlot, key),
+                            batteryHistory.getForegroundUsageTimeInMs(nextSlot, key),
+                            batteryHistory.getForegroundUsageTimeInMs(nextTwoSlot, key));
             long backgroundUsageTimeInMs =
                     getDiffValue(
-                            currentEntry.mBackgroundUsageTimeInMs,
-                            nextEntry.mBackgroundUsageTimeInMs,
-                            nextTwoEntry.mBackgroundUsageTimeInMs);
+                            batteryHistory.getBackgroundUsageTimeInMs(currentSlot, key),
+                            batteryHistory.getBackgroundUsageTimeInMs(nextSlot, key),
+                            batteryHistory.getBackgroundUsageTimeInMs(nextTwoSlot, key));
             double consumePower =
                     getDiffValue(
-                            currentEntry.mConsumePower,
-                            nextEntry.mConsumePower,
-                            nextTwoEntry.mConsumePower);
+                            batteryHistory.getConsumePower(currentSlot, key),
+                            batteryHistory.getConsumePower(nextSlot, key),
+                            batteryHistory.getConsumePower(nextTwoSlot, key));
             // Excludes entry since we don't have enough data to calculate.
             if (foregroundUsageTimeInMs == 0
                     && backgroundUsageTimeInMs == 0
                     && consumePower == 0) {
                 continue;
             }
-            final BatteryHistEntry selectedBatteryEntry =
-                    selectBatteryHistEntry(currentEntry, nextEntry, nextTwoEntry);
-            if (selectedBatteryEntry == null) {
-                continue;
-            }
             // Forces refine the cumulative value since it may introduce deviation error since we
             // will apply the interpolation arithmetic.
             final float totalUsageTimeInMs =
@@ -933,7 +1039,7 @@ public final class DataProcessor {
                     Log.w(TAG, String.format("abnormal usage time %d|%d for:\n%s",
                             Duration.ofMillis(foregroundUsageTimeInMs).getSeconds(),
                             Duration.ofMillis(backgroundUsageTimeInMs).getSeconds(),
-                            currentEntry));
+                            selectedBatteryEntry));
                 }
                 foregroundUsageTimeInMs =
                         Math.round(foregroundUsageTimeInMs * ratio);
@@ -1174,13 +1280,44 @@ public final class DataProcessor {
 
     @Nullable
     private static BatteryHistEntry selectBatteryHistEntry(
-            final BatteryHistEntry... batteryHistEntries) {
-        for (BatteryHistEntry entry : batteryHistEntries) {
-            if (entry != null && entry != EMPTY_BATTERY_HIST_ENTRY) {
-                return entry;
+            @Nullable final BatteryHistEntry currentEntry,
+            @Nullable final BatteryHistEntry nextEntry,
+            @Nullable final BatteryHistEntry nextTwoEntry) {
+        if (currentEntry != null) {
+            return currentEntry;
+        }
+        return nextEntry != null ? nextEntry : nextTwoEntry;
+    }
+
+    private static long[] getSortedTimestamps(
+            final Collection<Long> timestamps, final long maxTimestamp) {
+        final long[] sortedTimestamps = new long[timestamps.size()];
+        int size = 0;
+        for (long timestamp : timestamps) {
+            if (timestamp <= maxTimestamp) {
+                sortedTimestamps[size++] = timestamp;
             }
         }
-        return null;
+        Arrays.sort(sortedTimestamps, 0, size);
+        return size == sortedTimestamps.length
+                ? sortedTimestamps
+                : Arrays.copyOf(sortedTimestamps, size);
+    }
+
+    private static long[] toArray(final List<Long> list) {
+        final long[] array = new long[list.size()];
+        for (int index = 0; index < array.length; index++) {
+            array[index] = list.get(index);
+        }
+        return array;
+    }
+
+    private static List<Long> toList(final long[] array) {
+        final List<Long> list = new ArrayList<>(array.length);
+        for (long value : array) {
+            list.add(value);
+        }
+        return list;
     }
 
     private static BatteryDiffEntry createOtherUsersEntry(
@@ -1231,19 +1368,19 @@ public final class DataProcessor {
         final Handler mHandler;
         final UsageMapAsyncResponse mAsyncResponseDelegate;
         private List<BatteryLevelData.PeriodBatteryLevelData> mHourlyBatteryLevelsPerDay;
-        private Map<Long, Map<String, BatteryHistEntry>> mBatteryHistoryMap;
+        private BatteryHistoryColumns mBatteryHistory;
 
         private ComputeUsageMapAndLoadItemsTask(
                 Context context,
                 Handler handler,
                 final UsageMapAsyncResponse asyncResponseDelegate,
                 final List<BatteryLevelData.PeriodBatteryLevelData> hourlyBatteryLevelsPerDay,
-                final Map<Long, Map<String, BatteryHistEntry>> batteryHistoryMap) {
+                final BatteryHistoryColumns batteryHistory) {
             mApplicationContext = context.getApplicationContext();
             mHandler = handler;
             mAsyncResponseDelegate = asyncResponseDelegate;
             mHourlyBatteryLevelsPerDay = hourlyBatteryLevelsPerDay;
-            mBatteryHistoryMap = batteryHistoryMap;
+            mBatteryHistory = batteryHistory;
         }
 
         @Override
@@ -1251,7 +1388,7 @@ public final class DataProcessor {
             if (mApplicationContext == null
                     || mHandler == null
                     || mAsyncResponseDelegate == null
-                    || mBatteryHistoryMap == null
+                    || mBatteryHistory == null
                     || mHourlyBatteryLevelsPerDay == null) {
                 Log.e(TAG, "invalid input for ComputeUsageMapAndLoadItemsTask()");
                 return null;
@@ -1259,7 +1396,7 @@ public final class DataProcessor {
             final long startTime = System.currentTimeMillis();
             final Map<Integer, Map<Integer, BatteryDiffData>> batteryUsageMap =
                     getBatteryUsageMap(
-                            mApplicationContext, mHourlyBatteryLevelsPerDay, mBatteryHistoryMap);
+                            mApplicationContext, mHourlyBatteryLevelsPerDay, mBatteryHistory);
             loadLabelAndIcon(batteryUsageMap);
             Log.d(TAG, String.format("execute ComputeUsageMapAndLoadItemsTask in %d/ms",
                     (System.currentTimeMillis() - startTime)));
@@ -1271,7 +1408,7 @@ public final class DataProcessor {
                 final Map<Integer, Map<Integer, BatteryDiffData>> batteryUsageMap) {
             mApplicationContext = null;
             mHourlyBatteryLevelsPerDay = null;
-            mBatteryHistoryMap = null;
+            mBatteryHistory = null;
             // Post results back to main thread to refresh UI.
             if (mHandler != null && mAsyncResponseDelegate != null) {
                 mHandler.post(() -> {
@@ -1291,7 +1428,7 @@ public final class DataProcessor {
                 Handler handler,
                 final UsageMapAsyncResponse asyncResponseDelegate) {
             super(context, handler, asyncResponseDelegate, /*hourlyBatteryLevelsPerDay=*/ null,
-                    /*batteryHistoryMap=*/ null);
+                    /*batteryHistory=*/ null);
         }
 
         @Override
@@ -0,0 +1,124 @@
+/*
+ * Copyright (C) 2022 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.settings.homepage.contextualcards;
+
+import android.content.ContentResolver;
+import android.content.Context;
+import android.database.ContentObserver;
+import android.net.Uri;
+import android.os.SystemClock;
+import android.text.format.DateUtils;
+import android.util.ArrayMap;
+
+import androidx.annotation.VisibleForTesting;
+import androidx.slice.Slice;
+
+/**
+ * Short lived cache of the slices bound by {@link EligibleCardChecker}, keyed by slice
+ * {@link Uri}.
+ *
+ * Going back and forth to the homepage reloads every card, so a slice bound by the previous load
+ * is reused for {@link #TTL_MS} instead of being pinned and bound again. An entry is dropped as
+ * soon as its slice notifies a change, or by {@link #evictExpired()} once it expires, so no
+ * observer outlives its entry.
+ */
+class CardSliceCache {
+
+    @VisibleForTesting
+    static final long TTL_MS = 10 * DateUtils.SECOND_IN_MILLIS;
+
+    private final ContentResolver mContentResolver;
+    private final ArrayMap<Uri, Entry> mEntries = new ArrayMap<>();
+
+    CardSliceCache(Context context) {
+        mContentResolver = context.getContentResolver();
+    }
+
+    /**
+     * @return the slice bound for {@param uri} less than {@link #TTL_MS} ago and unchanged since,
+     * or {@code null}.
+     */
+    synchronized Slice get(Uri uri) {
+        final Entry entry = mEntries.get(uri);
+        if (entry == null) {
+            return null;
+        }
+        if (SystemClock.elapsedRealtime() - entry.mBindTime > TTL_MS) {
+            remove(uri);
+            return null;
+        }
+        return entry.mSlice;
+    }
+
+    /**
+     * Drops every entry bound more than {@link #TTL_MS} ago and unregisters its observer.
+     */
+    synchronized void evictExpired() {
+        final long now = SystemClock.elapsedRealtime();
+        for (int i = mEntries.size() - 1; i >= 0; i--) {
+            final Entry entry = mEntries.valueAt(i);
+            if (now - entry.mBindTime > TTL_MS) {
+                mEntries.removeAt(i);
+                mContentResolver.unregisterContentObserver(entry.mObserver);
+            }
+        }
+    }
+
+    synchronized void put(Uri uri, Slice slice) {
+        remove(uri);
+        final Entry entry = new Entry(uri, slice);
+        mEntries.put(uri, entry);
+        mContentResolver.registerContentObserver(uri, false /* notifyForDescendants */,
+                entry.mObserver);
+    }
+
+    synchronized void remove(Uri uri) {
+        final Entry entry = mEntries.remove(uri);
+        if (entry != null) {
+            mContentResolver.unregisterContentObserver(entry.mObserver);
+        }
+    }
+
+    synchronized void clear() {
+        for (Entry entry : mEntries.values()) {
+            mContentResolver.unregisterContentObserver(entry.mObserver);
+        }
+        mEntries.clear();
+    }
+
+    private class Entry {
+        private final Slice mSlice;
+        private final long mBindTime;
+        private final ContentObserver mObserver;
+
+        Entry(Uri uri, Slice slice) {
+            mSlice = slice;
+            mBindTime = SystemClock.elapsedRealtime();
+            // No handler, the entry is dropped right on the binder thread delivering the change.
+            mObserver = new ContentObserver(null /* handler */) {
+                @Override
+                public void onChange(boolean selfChange) {
+                    synchronized (CardSliceCache.this) {
+                        if (mEntries.get(uri) == Entry.this) {
+                            remove(uri);
+                        }
+                    }
+                }
+            };
+        }
+    }
+}
@@ -39,13 +39,18 @@ import com.android.settings.overlay.FeatureFactory;
 import com.android.settingslib.core.instrumentation.MetricsFeatureProvider;
 import com.android.settingslib.utils.AsyncLoaderCompat;
 
+import com.android.settingslib.utils.ThreadUtils;
+
 import java.util.ArrayList;
 import java.util.List;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
 import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
-import java.util.stream.Collectors;
+import java.util.concurrent.atomic.AtomicInteger;
 
 public class ContextualCardLoader extends AsyncLoaderCompat<List<ContextualCard>> {
 
@@ -57,6 +62,13 @@ public class ContextualCardLoader extends AsyncLoaderCompat<List<ContextualCard>
 
     private static final String TAG = "ContextualCardLoader";
     private static final long ELIGIBILITY_CHECKER_TIMEOUT_MS = 400;
+    private static final int MAX_CHECKER_THREADS = 8;
+    private static final long CHECKER_THREAD_KEEP_ALIVE_S = 30;
+
+    // Shared by all loaders, so a homepage load reuses the threads and the slices of the
+    // previous one.
+    private static ThreadPoolExecutor sCheckerExecutor;
+    private static CardSliceCache sSliceCache;
 
     private final ContentObserver mObserver = new ContentObserver(
             new Handler(Looper.getMainLooper())) {
@@ -73,12 +85,22 @@ public class ContextualCardLoader extends AsyncLoaderCompat<List<ContextualCard>
     Uri mNotifyUri;
 
     private final Context mContext;
+    private final AtomicInteger mLoadGeneration = new AtomicInteger();
+    private CardContentLoaderListener mListener;
 
     ContextualCardLoader(Context context) {
         super(context);
         mContext = context.getApplicationContext();
     }
 
+    /**
+     * Sets the listener notified on the main thread of the cards found eligible so far, while
+     * the remaining cards are still being checked.
+     */
+    void setCardContentLoaderListener(CardContentLoaderListener listener) {
+        mListener = listener;
+    }
+
     @Override
     protected void onStartLoading() {
         super.onStartLoading();
@@ -127,9 +149,24 @@ public class ContextualCardLoader extends AsyncLoaderCompat<List<ContextualCard>
     @VisibleForTesting
     List<ContextualCard> getDisplayableCards(List<ContextualCard> candidates) {
         final List<ContextualCard> eligibleCards = filterEligibleCards(candidates);
+        final List<ContextualCard> hiddenCards = new ArrayList<>();
+        final List<ContextualCard> visibleCards = selectVisibleCards(eligibleCards, hiddenCards);
+
+        if (!CardContentProvider.DELETE_CARD_URI.equals(mNotifyUri)) {
+            final MetricsFeatureProvider metricsFeatureProvider =
+                    FeatureFactory.getFactory(mContext).getMetricsFeatureProvider();
+
+            metricsFeatureProvider.action(mContext,
+                    SettingsEnums.ACTION_CONTEXTUAL_CARD_NOT_SHOW,
+                    ContextualCardLogUtils.buildCardListLog(hiddenCards));
+        }
+        return visibleCards;
+    }
+
+    private List<ContextualCard> selectVisibleCards(List<ContextualCard> eligibleCards,
+            List<ContextualCard> hiddenCards) {
         final List<ContextualCard> stickyCards = new ArrayList<>();
         final List<ContextualCard> visibleCards = new ArrayList<>();
-        final List<ContextualCard> hiddenCards = new ArrayList<>();
 
         final int maxCardCount = getCardCount();
         eligibleCards.forEach(card -> {
@@ -155,15 +192,6 @@ public class ContextualCardLoader extends AsyncLoaderCompat<List<ContextualCard>
             }
         });
         visibleCards.addAll(stickyCards);
-
-        if (!CardContentProvider.DELETE_CARD_URI.equals(mNotifyUri)) {
-            final MetricsFeatureProvider metricsFeatureProvider =
-                    FeatureFactory.getFactory(mContext).getMetricsFeatureProvider();
-
-            metricsFeatureProvider.action(mContext,
-                    SettingsEnums.ACTION_CONTEXTUAL_CARD_NOT_SHOW,
-                    ContextualCardLogUtils.buildCardListLog(hiddenCards));
-        }
         return visibleCards;
     }
 
@@ -188,40 +216,115 @@ public class ContextualCardLoader extends AsyncLoaderCompat<List<ContextualCard>
             return candidates;
         }
 
-        final ExecutorService executor = Executors.newFixedThreadPool(candidates.size());
-        final List<ContextualCard> cards = new ArrayList<>();
-        List<Future<ContextualCard>> eligibleCards = new ArrayList<>();
+        final int generation = mLoadGeneration.incrementAndGet();
+        final CardSliceCache sliceCache = getSliceCache(mContext);
+        sliceCache.evictExpired();
+        final CompletionService<ContextualCard> completionService =
+                new ExecutorCompletionService<>(getCheckerExecutor());
+        final List<Future<ContextualCard>> futures = new ArrayList<>(candidates.size());
+        for (ContextualCard candidate : candidates) {
+            futures.add(completionService.submit(
+                    new EligibleCardChecker(mContext, candidate, sliceCache)));
+        }
 
-        final List<EligibleCardChecker> checkers = candidates.stream()
-                .map(card -> new EligibleCardChecker(mContext, card))
-                .collect(Collectors.toList());
+        // Eligible cards in candidate order, null until checked or if not eligible.
+        final ContextualCard[] eligibleCards = new ContextualCard[candidates.size()];
+        final boolean[] checked = new boolean[candidates.size()];
+        int checkedPrefix = 0;
+        final long deadline = System.currentTimeMillis() + ELIGIBILITY_CHECKER_TIMEOUT_MS;
         try {
-            eligibleCards = executor.invokeAll(checkers, ELIGIBILITY_CHECKER_TIMEOUT_MS,
-                    TimeUnit.MILLISECONDS);
+            for (int i = 0; i < candidates.size(); i++) {
+                final long remaining = deadline - System.currentTimeMillis();
+                final Future<ContextualCard> future =
+                        completionService.poll(Math.max(remaining, 0), TimeUnit.MILLISECONDS);
+                if (future == null) {
+                    break;
+                }
+                final int index = futures.indexOf(future);
+                checked[index] = true;
+                eligibleCards[index] = getCard(future);
+
+                // Publish the cards once all the cards ranked above them are checked, so the
+                // cards shown early never move when the slower ones come in.
+                final int previousPrefix = checkedPrefix;
+                while (checkedPrefix < checked.length && checked[checkedPrefix]) {
+                    checkedPrefix++;
+                }
+                if (checkedPrefix > previousPrefix && checkedPrefix < checked.length) {
+                    publishPartialCards(generation, collect(eligibleCards, checkedPrefix));
+                }
+            }
         } catch (InterruptedException e) {
             Log.w(TAG, "Failed to get eligible states for all cards", e);
         }
-        executor.shutdown();
 
-        // Collect future and eligible cards
-        for (int i = 0; i < eligibleCards.size(); i++) {
-            final Future<ContextualCard> cardFuture = eligibleCards.get(i);
-            if (cardFuture.isCancelled()) {
+        for (int i = 0; i < futures.size(); i++) {
+            if (!checked[i]) {
+                futures.get(i).cancel(true /* mayInterruptIfRunning */);
                 Log.w(TAG, "Timeout getting eligible state for card: "
                         + candidates.get(i).getSliceUri());
-                continue;
             }
+        }
+        return collect(eligibleCards, eligibleCards.length);
+    }
 
-            try {
-                final ContextualCard card = cardFuture.get();
-                if (card != null) {
-                    cards.add(card);
-                }
-            } catch (Exception e) {
-                Log.w(TAG, "Failed to get eligible state for card", e);
+    private void publishPartialCards(int generation, List<ContextualCard> eligibleCards) {
+        final CardContentLoaderListener listener = mListener;
+        if (listener == null || eligibleCards.isEmpty()) {
+            return;
+        }
+        final List<ContextualCard> visibleCards =
+                selectVisibleCards(eligibleCards, new ArrayList<>());
+        ThreadUtils.postOnMainThread(() -> {
+            // Drop the cards of a load superseded by a newer one or by a stopped loader.
+            if (generation == mLoadGeneration.get() && isStarted()) {
+                listener.onCardLoadingProgress(visibleCards);
+            }
+        });
+    }
+
+    private static ContextualCard getCard(Future<ContextualCard> future) {
+        try {
+            return future.get();
+        } catch (ExecutionException | InterruptedException e) {
+            Log.w(TAG, "Failed to get eligible state for card", e);
+            return null;
+        }
+    }
+
+    private static List<ContextualCard> collect(ContextualCard[] cards, int count) {
+        final List<ContextualCard> result = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            if (cards[i] != null) {
+                result.add(cards[i]);
             }
         }
-        return cards;
+        return result;
+    }
+
+    private static synchronized ThreadPoolExecutor getCheckerExecutor() {
+        if (sCheckerExecutor == null) {
+            sCheckerExecutor = new ThreadPoolExecutor(MAX_CHECKER_THREADS, MAX_CHECKER_THREADS,
+                    CHECKER_THREAD_KEEP_ALIVE_S, TimeUnit.SECONDS, new LinkedBlockingQueue<>());
+            sCheckerExecutor.allowCoreThreadTimeOut(true);
+        }
+        return sCheckerExecutor;
+    }
+
+    /**
+     * Drops the slices kept for the next homepage load, e.g. once the homepage is destroyed.
+     */
+    static synchronized void clearSliceCache() {
+        if (sSliceCache != null) {
+            sSliceCache.clear();
+        }
+    }
+
+    private static synchronized CardSliceCache getSliceCache(Context context) {
+        if (sSliceCache == null) {
+            sSliceCache = new CardSliceCache(context.getApplicationContext());
+        }
+        return sSliceCache;
     }
 
     private boolean isLargeCard(ContextualCard card) {
@@ -231,5 +334,11 @@ public class ContextualCardLoader extends AsyncLoaderCompat<List<ContextualCard>
 
     public interface CardContentLoaderListener {
         void onFinishCardLoading(List<ContextualCard> contextualCards);
+
+        /**
+         * Called with the cards found eligible so far, before {@link #onFinishCardLoading}.
+         */
+        default void onCardLoadingProgress(List<ContextualCard> contextualCards) {
+        }
     }
 }
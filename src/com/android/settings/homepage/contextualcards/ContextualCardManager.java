@@ -97,6 +97,9 @@ public class ContextualCardManager implements ContextualCardLoader.CardContentLo
     boolean mIsFirstLaunch;
     @VisibleForTesting
     List<String> mSavedCards;
+    // Whether cards streamed in by onCardLoadingProgress() are on screen for the current load.
+    @VisibleForTesting
+    boolean mHasPartialCards;
 
     public ContextualCardManager(Context context, Lifecycle lifecycle, Bundle savedInstanceState) {
         mContext = context;
@@ -123,6 +126,7 @@ public class ContextualCardManager implements ContextualCardLoader.CardContentLo
             return;
         }
         mStartTime = System.currentTimeMillis();
+        mHasPartialCards = false;
         final CardContentLoaderCallbacks cardContentLoaderCallbacks =
                 new CardContentLoaderCallbacks(mContext);
         cardContentLoaderCallbacks.setListener(this);
@@ -137,6 +141,13 @@ public class ContextualCardManager implements ContextualCardLoader.CardContentLo
             loaderManager.restartLoader(CARD_CONTENT_LOADER_ID, null /* bundle */,
                     cardContentLoaderCallbacks);
         }
+        // The loader may outlive this manager, e.g. upon screen rotation, so always point it at
+        // the current one.
+        final Loader<List<ContextualCard>> loader =
+                loaderManager.getLoader(CARD_CONTENT_LOADER_ID);
+        if (loader instanceof ContextualCardLoader) {
+            ((ContextualCardLoader) loader).setCardContentLoaderListener(this);
+        }
     }
 
     private void loadCardControllers() {
@@ -229,6 +240,18 @@ public class ContextualCardManager implements ContextualCardLoader.CardContentLo
         }
     }
 
+    @Override
+    public void onCardLoadingProgress(List<ContextualCard> cards) {
+        // Only a fresh launch shows cards while they load, otherwise the cards already on screen
+        // are kept until the loading finishes.
+        if (!mIsFirstLaunch || System.currentTimeMillis() - mStartTime > getCardLoaderTimeout()) {
+            return;
+        }
+        onContextualCardUpdated(cards.stream()
+                .collect(groupingBy(ContextualCard::getCardType)));
+        mHasPartialCards = true;
+    }
+
     @Override
     public void onFinishCardLoading(List<ContextualCard> cards) {
         final long loadTime = System.currentTimeMillis() - mStartTime;
@@ -250,13 +273,16 @@ public class ContextualCardManager implements ContextualCardLoader.CardContentLo
         }
 
         final long timeoutLimit = getCardLoaderTimeout();
-        if (loadTime <= timeoutLimit) {
+        // Cards streamed in before the timeout are only a part of the result, so they are always
+        // reconciled with the final list rather than left on screen.
+        if (loadTime <= timeoutLimit || mHasPartialCards) {
             onContextualCardUpdated(cards.stream()
                     .collect(groupingBy(ContextualCard::getCardType)));
             metricsFeatureProvider.action(mContext,
                     SettingsEnums.ACTION_CONTEXTUAL_CARD_SHOW,
                     ContextualCardLogUtils.buildCardListLog(cards));
-        } else {
+        }
+        if (loadTime > timeoutLimit) {
             // log timeout occurrence
             metricsFeatureProvider.action(SettingsEnums.PAGE_UNKNOWN,
                     SettingsEnums.ACTION_CONTEXTUAL_CARD_LOAD_TIMEOUT,
@@ -269,6 +295,7 @@ public class ContextualCardManager implements ContextualCardLoader.CardContentLo
                 SettingsEnums.ACTION_CONTEXTUAL_HOME_SHOW, (int) totalTime);
 
         mIsFirstLaunch = false;
+        mHasPartialCards = false;
     }
 
     @Override
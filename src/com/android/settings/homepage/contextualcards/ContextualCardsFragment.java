@@ -93,6 +93,9 @@ public class ContextualCardsFragment extends InstrumentedFragment implements
     @Override
     public void onDestroy() {
         unregisterScreenOffReceiver();
+        if (getActivity() == null || !getActivity().isChangingConfigurations()) {
+            ContextualCardLoader.clearSliceCache();
+        }
         super.onDestroy();
     }
 
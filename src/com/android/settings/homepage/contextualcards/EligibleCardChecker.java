@@ -43,13 +43,19 @@ public class EligibleCardChecker implements Callable<ContextualCard> {
     private static final String TAG = "EligibleCardChecker";
 
     private final Context mContext;
+    private final CardSliceCache mSliceCache;
 
     @VisibleForTesting
     ContextualCard mCard;
 
     EligibleCardChecker(Context context, ContextualCard card) {
+        this(context, card, null /* sliceCache */);
+    }
+
+    EligibleCardChecker(Context context, ContextualCard card, CardSliceCache sliceCache) {
         mContext = context;
         mCard = card;
+        mSliceCache = sliceCache;
     }
 
     @Override
@@ -93,11 +99,16 @@ public class EligibleCardChecker implements Callable<ContextualCard> {
             return false;
         }
 
-        final Slice slice = bindSlice(uri);
-
-        if (slice == null || slice.hasHint(HINT_ERROR)) {
-            Log.w(TAG, "Failed to bind slice, not eligible for display " + uri);
-            return false;
+        Slice slice = mSliceCache != null ? mSliceCache.get(uri) : null;
+        if (slice == null) {
+            slice = bindSlice(uri);
+            if (slice == null || slice.hasHint(HINT_ERROR)) {
+                Log.w(TAG, "Failed to bind slice, not eligible for display " + uri);
+                return false;
+            }
+            if (mSliceCache != null) {
+                mSliceCache.put(uri, slice);
+            }
         }
 
         mCard = card.mutate().setSlice(slice).build();
@@ -39,6 +39,7 @@ import android.os.UserManager;
 import android.provider.Settings;
 import android.telephony.TelephonyManager;
 import android.text.TextUtils;
+import android.util.ArrayMap;
 import android.util.EventLog;
 import android.util.FeatureFlagUtils;
 import android.util.Log;
@@ -100,7 +101,10 @@ import com.google.android.setupcompat.template.FooterButtonStyleUtils;
 import com.google.android.setupcompat.util.WizardManagerHelper;
 import com.google.android.setupdesign.GlifPreferenceLayout;
 
+import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 
 /**
@@ -999,7 +1003,10 @@ public class NetworkProviderSettings extends RestrictedSettingsFragment
         if (connectedEntry != null) {
             final LongPressWifiEntryPreference connectedPref =
                     connectedWifiPreferenceCategory.findPreference(connectedEntry.getKey());
-            if (connectedPref == null || connectedPref.getWifiEntry() != connectedEntry) {
+            if (connectedPref != null) {
+                // Same network, only rebind the preference to the new WifiEntry instance.
+                connectedPref.setWifiEntry(connectedEntry);
+            } else {
                 connectedWifiPreferenceCategory.removeAll();
                 final ConnectedWifiEntryPreference pref =
                         createConnectedWifiEntryPreference(connectedEntry);
@@ -1007,8 +1014,9 @@ public class NetworkProviderSettings extends RestrictedSettingsFragment
                 pref.refresh();
                 connectedWifiPreferenceCategory.addPreference(pref);
                 pref.setOnPreferenceClickListener(preference -> {
-                    if (connectedEntry.canSignIn()) {
-                        connectedEntry.signIn(null /* callback */);
+                    final WifiEntry wifiEntry = pref.getWifiEntry();
+                    if (wifiEntry.canSignIn()) {
+                        wifiEntry.signIn(null /* callback */);
                     } else {
                         launchNetworkDetailsFragment(pref);
                     }
@@ -1029,47 +1037,69 @@ public class NetworkProviderSettings extends RestrictedSettingsFragment
             connectedWifiPreferenceCategory.removeAll();
         }
 
-        int index = 0;
-        cacheRemoveAllPrefs(mWifiEntryPreferenceCategory);
-        List<WifiEntry> wifiEntries = mWifiPickerTracker.getWifiEntries();
-        for (WifiEntry wifiEntry : wifiEntries) {
-            hasAvailableWifiEntries = true;
-
-            String key = wifiEntry.getKey();
-            LongPressWifiEntryPreference pref =
-                    (LongPressWifiEntryPreference) getCachedPreference(key);
-            if (pref != null) {
-                if (pref.getWifiEntry() == wifiEntry) {
-                    pref.setOrder(index++);
-                    continue;
-                } else {
-                    // Create a new preference if the underlying WifiEntry object has changed
-                    removePreference(key);
-                }
-            }
-
-            pref = createLongPressWifiEntryPreference(wifiEntry);
+        // Apply only what changed since the last scan, so that preferences of networks still in
+        // range are kept and rebound instead of being removed and created again.
+        final List<WifiEntry> wifiEntries = mWifiPickerTracker.getWifiEntries();
+        final Map<String, LongPressWifiEntryPreference> wifiEntryPrefs = new ArrayMap<>();
+        final WifiEntryListDiff diff = WifiEntryListDiff.compute(
+                getShownWifiEntries(wifiEntryPrefs), wifiEntries);
+        for (String key : diff.mRemovedKeys) {
+            mWifiEntryPreferenceCategory.removePreference(wifiEntryPrefs.remove(key));
+        }
+        for (WifiEntry wifiEntry : diff.mRebound) {
+            wifiEntryPrefs.get(wifiEntry.getKey()).setWifiEntry(wifiEntry);
+        }
+        for (WifiEntry wifiEntry : diff.mInserted) {
+            final LongPressWifiEntryPreference pref =
+                    createLongPressWifiEntryPreference(wifiEntry);
             pref.setKey(wifiEntry.getKey());
-            pref.setOrder(index++);
             pref.refresh();
-
-            if (wifiEntry.getHelpUriString() != null) {
-                pref.setOnButtonClickListener(preference -> {
-                    openSubscriptionHelpPage(wifiEntry);
-                });
+            pref.setOnButtonClickListener(preference -> {
+                openSubscriptionHelpPage(preference.getWifiEntry());
+            });
+            wifiEntryPrefs.put(wifiEntry.getKey(), pref);
+        }
+        // The entries which kept their position also kept their order, so only the moved and
+        // inserted entries, both listed in the order of wifiEntries, are given their new order.
+        int moved = 0;
+        int inserted = 0;
+        for (int i = 0; i < wifiEntries.size(); i++) {
+            final WifiEntry wifiEntry = wifiEntries.get(i);
+            if (moved < diff.mMoved.size() && diff.mMoved.get(moved) == wifiEntry) {
+                moved++;
+            } else if (inserted < diff.mInserted.size()
+                    && diff.mInserted.get(inserted) == wifiEntry) {
+                inserted++;
+            } else {
+                continue;
             }
-            mWifiEntryPreferenceCategory.addPreference(pref);
+            wifiEntryPrefs.get(wifiEntry.getKey()).setOrder(i);
+        }
+        if (!wifiEntries.isEmpty()) {
+            hasAvailableWifiEntries = true;
+        }
+        int index = wifiEntries.size();
+        for (WifiEntry wifiEntry : diff.mInserted) {
+            mWifiEntryPreferenceCategory.addPreference(wifiEntryPrefs.get(wifiEntry.getKey()));
+        }
+
+        final Preference emptyPref =
+                mWifiEntryPreferenceCategory.findPreference(PREF_KEY_EMPTY_WIFI_LIST);
+        if (emptyPref != null && hasAvailableWifiEntries) {
+            mWifiEntryPreferenceCategory.removePreference(emptyPref);
         }
-        removeCachedPrefs(mWifiEntryPreferenceCategory);
 
         if (!hasAvailableWifiEntries) {
             setProgressBarVisible(true);
-            Preference pref = new Preference(getPrefContext());
-            pref.setSelectable(false);
-            pref.setSummary(R.string.wifi_empty_list_wifi_on);
-            pref.setOrder(index++);
-            pref.setKey(PREF_KEY_EMPTY_WIFI_LIST);
-            mWifiEntryPreferenceCategory.addPreference(pref);
+            if (emptyPref == null) {
+                Preference pref = new Preference(getPrefContext());
+                pref.setSelectable(false);
+                pref.setSummary(R.string.wifi_empty_list_wifi_on);
+                pref.setOrder(index);
+                pref.setKey(PREF_KEY_EMPTY_WIFI_LIST);
+                mWifiEntryPreferenceCategory.addPreference(pref);
+            }
+            index++;
         } else {
             // Continuing showing progress bar for an additional delay to overlap with animation
             getView().postDelayed(mHideProgressBarRunnable, 1700 /* delay millis */);
@@ -1080,6 +1110,28 @@ public class NetworkProviderSettings extends RestrictedSettingsFragment
         setAdditionalSettingsSummaries();
     }
 
+    /**
+     * @return the entries of the Wi-Fi entry preferences currently shown, in display order, and
+     * fills {@param prefs} with these preferences keyed by entry key.
+     */
+    private List<WifiEntry> getShownWifiEntries(Map<String, LongPressWifiEntryPreference> prefs) {
+        final List<LongPressWifiEntryPreference> shownPrefs = new ArrayList<>();
+        for (int i = 0; i < mWifiEntryPreferenceCategory.getPreferenceCount(); i++) {
+            final Preference pref = mWifiEntryPreferenceCategory.getPreference(i);
+            if (pref instanceof LongPressWifiEntryPreference) {
+                shownPrefs.add((LongPressWifiEntryPreference) pref);
+            }
+        }
+        shownPrefs.sort(Comparator.comparingInt(Preference::getOrder));
+
+        final List<WifiEntry> shownEntries = new ArrayList<>(shownPrefs.size());
+        for (LongPressWifiEntryPreference pref : shownPrefs) {
+            prefs.put(pref.getKey(), pref);
+            shownEntries.add(pref.getWifiEntry());
+        }
+        return shownEntries;
+    }
+
     @VisibleForTesting
     PreferenceCategory getConnectedWifiPreferenceCategory() {
         if (mInternetUpdater.getInternetType() == InternetUpdater.INTERNET_WIFI) {
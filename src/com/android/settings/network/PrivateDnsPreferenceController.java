@@ -56,7 +56,8 @@ import java.net.InetAddress;
 import java.util.List;
 
 public class PrivateDnsPreferenceController extends BasePreferenceController
-        implements PreferenceControllerMixin, LifecycleObserver, OnStart, OnStop {
+        implements PreferenceControllerMixin, LifecycleObserver, OnStart, OnStop,
+        BasePreferenceController.BackgroundStateLoader {
     private static final String KEY_PRIVATE_DNS_SETTINGS = "private_dns_settings";
 
     private static final Uri[] SETTINGS_URIS = new Uri[]{
@@ -75,8 +76,11 @@ public class PrivateDnsPreferenceController extends BasePreferenceController
     private final Handler mHandler;
     private final ContentObserver mSettingsObserver;
     private final ConnectivityManager mConnectivityManager;
-    private LinkProperties mLatestLinkProperties;
+    private volatile LinkProperties mLatestLinkProperties;
     private Preference mPreference;
+    // State loaded in the background for the next updateState(), null summary if none is pending.
+    private CharSequence mLoadedSummary;
+    private boolean mLoadedManagedByAdmin;
 
     public PrivateDnsPreferenceController(Context context) {
         super(context, KEY_PRIVATE_DNS_SETTINGS);
@@ -176,10 +180,23 @@ public class PrivateDnsPreferenceController extends BasePreferenceController
         return "";
     }
 
+    @Override
+    public void loadStateInBackground() {
+        mLoadedManagedByAdmin = isManagedByAdmin();
+        mLoadedSummary = getSummary();
+    }
+
     @Override
     public void updateState(Preference preference) {
-        super.updateState(preference);
-        preference.setEnabled(!isManagedByAdmin());
+        final CharSequence summary = mLoadedSummary;
+        mLoadedSummary = null;
+        if (summary == null) {
+            super.updateState(preference);
+            preference.setEnabled(!isManagedByAdmin());
+            return;
+        }
+        preference.setSummary(summary);
+        preference.setEnabled(!mLoadedManagedByAdmin);
     }
 
     private boolean isManagedByAdmin() {
@@ -0,0 +1,122 @@
+/*
+ * Copyright (C) 2022 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.settings.network;
+
+import android.content.Context;
+import android.telephony.SubscriptionManager;
+import android.telephony.SubscriptionManager.OnSubscriptionsChangedListener;
+
+import androidx.annotation.VisibleForTesting;
+
+import java.util.Collections;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+/**
+ * Process wide snapshot of the unique subscription display names computed by
+ * {@link SubscriptionUtil#getUniqueSubscriptionDisplayNames(Context)}.
+ *
+ * The names are computed from a single query of the available subscriptions and then served to
+ * every caller without locking, until the subscriptions change or the default {@link Locale}
+ * changes. A listener registered once on the application context bumps a generation counter on
+ * every subscription change, which makes the current snapshot stale.
+ */
+class SubscriptionDisplayNameCache {
+
+    private static final AtomicInteger sGeneration = new AtomicInteger();
+    private static final Object sLock = new Object();
+
+    private static volatile Snapshot sSnapshot;
+    private static OnSubscriptionsChangedListener sListener;
+
+    private SubscriptionDisplayNameCache() {
+    }
+
+    /**
+     * @return the cached unique display names, computed with {@param loader} if the cached ones
+     * are missing or stale.
+     */
+    static Map<Integer, CharSequence> get(Context context,
+            Function<Context, Map<Integer, CharSequence>> loader) {
+        registerListenerIfNeeded(context);
+
+        final Locale locale = Locale.getDefault();
+        final Snapshot snapshot = sSnapshot;
+        if (snapshot != null && snapshot.mGeneration == sGeneration.get()
+                && snapshot.mLocale.equals(locale)) {
+            return snapshot.mDisplayNames;
+        }
+
+        // Read the generation before querying, so a change arriving during the query leaves the
+        // new snapshot stale instead of hiding the change.
+        final int generation = sGeneration.get();
+        final Map<Integer, CharSequence> displayNames =
+                Collections.unmodifiableMap(loader.apply(context));
+        sSnapshot = new Snapshot(generation, locale, displayNames);
+        return displayNames;
+    }
+
+    /**
+     * Drops the cached display names, so they are computed again on next access.
+     */
+    static void invalidate() {
+        sGeneration.incrementAndGet();
+    }
+
+    @VisibleForTesting
+    static OnSubscriptionsChangedListener getListener() {
+        synchronized (sLock) {
+            return sListener;
+        }
+    }
+
+    private static void registerListenerIfNeeded(Context context) {
+        synchronized (sLock) {
+            if (sListener != null) {
+                return;
+            }
+            final Context appContext = context.getApplicationContext() != null
+                    ? context.getApplicationContext() : context;
+            final SubscriptionManager subscriptionManager =
+                    appContext.getSystemService(SubscriptionManager.class);
+            if (subscriptionManager == null) {
+                return;
+            }
+            sListener = new OnSubscriptionsChangedListener() {
+                @Override
+                public void onSubscriptionsChanged() {
+                    invalidate();
+                }
+            };
+            subscriptionManager.addOnSubscriptionsChangedListener(Runnable::run, sListener);
+        }
+    }
+
+    private static class Snapshot {
+        private final int mGeneration;
+        private final Locale mLocale;
+        private final Map<Integer, CharSequence> mDisplayNames;
+
+        Snapshot(int generation, Locale locale, Map<Integer, CharSequence> displayNames) {
+            mGeneration = generation;
+            mLocale = locale;
+            mDisplayNames = displayNames;
+        }
+    }
+}
@@ -52,9 +52,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.function.Function;
-import java.util.function.Supplier;
 import java.util.stream.Collectors;
-import java.util.stream.Stream;
 
 public class SubscriptionUtil {
     private static final String TAG = "SubscriptionUtil";
@@ -250,46 +248,65 @@ public class SubscriptionUtil {
      *    subscription, the subscription id will be appended to the original display name.
      * More details can be found at go/unique-sub-display-names.
      *
-     * @return map of active subscription ids to display names.
+     * The names are computed once and shared until the subscriptions or the locale change.
+     *
+     * @return unmodifiable map of active subscription ids to display names.
      */
     @VisibleForTesting
     public static Map<Integer, CharSequence> getUniqueSubscriptionDisplayNames(Context context) {
+        if (sAvailableResultsForTesting != null) {
+            return computeUniqueSubscriptionDisplayNames(context);
+        }
+        return SubscriptionDisplayNameCache.get(context,
+                SubscriptionUtil::computeUniqueSubscriptionDisplayNames);
+    }
+
+    /**
+     * Drop the cached unique display names, so they are computed again on next access.
+     */
+    @VisibleForTesting
+    public static void invalidateUniqueSubscriptionDisplayNames() {
+        SubscriptionDisplayNameCache.invalidate();
+    }
+
+    private static Map<Integer, CharSequence> computeUniqueSubscriptionDisplayNames(
+            Context context) {
         class DisplayInfo {
             public SubscriptionInfo subscriptionInfo;
             public CharSequence originalName;
             public CharSequence uniqueName;
         }
 
-        // Map of SubscriptionId to DisplayName
-        final Supplier<Stream<DisplayInfo>> originalInfos =
-                () -> getAvailableSubscriptions(context)
-                .stream()
-                .filter(i -> {
-                    // Filter out null values.
-                    return (i != null && i.getDisplayName() != null);
-                })
-                .map(i -> {
-                    DisplayInfo info = new DisplayInfo();
-                    info.subscriptionInfo = i;
-                    String displayName = i.getDisplayName().toString();
-                    info.originalName = TextUtils.equals(displayName, PROFILE_GENERIC_DISPLAY_NAME)
-                            ? context.getResources().getString(R.string.sim_card)
-                            : displayName.trim();
-                    return info;
-                });
+        // Query the subscriptions once, all the passes below work on this list.
+        final List<DisplayInfo> infos = new ArrayList<>();
+        for (SubscriptionInfo i : getAvailableSubscriptions(context)) {
+            // Filter out null values.
+            if (i == null || i.getDisplayName() == null) {
+                continue;
+            }
+            final DisplayInfo info = new DisplayInfo();
+            info.subscriptionInfo = i;
+            final String displayName = i.getDisplayName().toString();
+            info.originalName = TextUtils.equals(displayName, PROFILE_GENERIC_DISPLAY_NAME)
+                    ? context.getResources().getString(R.string.sim_card)
+                    : displayName.trim();
+            infos.add(info);
+        }
 
         // TODO(goldmanj) consider using a map of DisplayName to SubscriptionInfos.
         // A Unique set of display names
-        Set<CharSequence> uniqueNames = new HashSet<>();
+        final Set<CharSequence> uniqueNames = new HashSet<>();
         // Return the set of duplicate names
-        final Set<CharSequence> duplicateOriginalNames = originalInfos.get()
-                .filter(info -> !uniqueNames.add(info.originalName))
-                .map(info -> info.originalName)
-                .collect(Collectors.toSet());
+        final Set<CharSequence> duplicateOriginalNames = new HashSet<>();
+        for (DisplayInfo info : infos) {
+            if (!uniqueNames.add(info.originalName)) {
+                duplicateOriginalNames.add(info.originalName);
+            }
+        }
 
         // If a display name is duplicate, append the final 4 digits of the phone number.
         // Creates a mapping of Subscription id to original display name + phone number display name
-        final Supplier<Stream<DisplayInfo>> uniqueInfos = () -> originalInfos.get().map(info -> {
+        for (DisplayInfo info : infos) {
             if (duplicateOriginalNames.contains(info.originalName)) {
                 // This may return null, if the user cannot view the phone number itself.
                 final String phoneNumber = DeviceInfoUtils.getBidiFormattedPhoneNumber(context,
@@ -309,27 +326,28 @@ public class SubscriptionUtil {
             } else {
                 info.uniqueName = info.originalName;
             }
-            return info;
-        });
+        }
 
         // Check uniqueness a second time.
         // We might not have had permission to view the phone numbers.
         // There might also be multiple phone numbers whose last 4 digits the same.
         uniqueNames.clear();
-        final Set<CharSequence> duplicatePhoneNames = uniqueInfos.get()
-                .filter(info -> !uniqueNames.add(info.uniqueName))
-                .map(info -> info.uniqueName)
-                .collect(Collectors.toSet());
+        final Set<CharSequence> duplicatePhoneNames = new HashSet<>();
+        for (DisplayInfo info : infos) {
+            if (!uniqueNames.add(info.uniqueName)) {
+                duplicatePhoneNames.add(info.uniqueName);
+            }
+        }
 
-        return uniqueInfos.get().map(info -> {
+        final Map<Integer, CharSequence> displayNames = new HashMap<>(infos.size());
+        for (DisplayInfo info : infos) {
             if (duplicatePhoneNames.contains(info.uniqueName)) {
                 info.uniqueName = info.originalName + " "
                         + info.subscriptionInfo.getSubscriptionId();
             }
-            return info;
-        }).collect(Collectors.toMap(
-                info -> info.subscriptionInfo.getSubscriptionId(),
-                info -> info.uniqueName));
+            displayNames.put(info.subscriptionInfo.getSubscriptionId(), info.uniqueName);
+        }
+        return displayNames;
     }
 
     /**
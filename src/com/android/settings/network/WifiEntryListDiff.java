@@ -0,0 +1,84 @@
+/*
+ * Copyright (C) 2022 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.settings.network;
+
+import android.util.ArrayMap;
+
+import com.android.wifitrackerlib.WifiEntry;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Difference between two lists of {@link WifiEntry}, matched by {@link WifiEntry#getKey()}.
+ *
+ * A scan usually returns the same networks with new {@link WifiEntry} instances, so entries with
+ * a known key are reported as rebound rather than as removed and inserted again.
+ */
+class WifiEntryListDiff {
+
+    /** Entries whose key is not in the previous list, in the order of the new list. */
+    final List<WifiEntry> mInserted = new ArrayList<>();
+    /** Keys of the previous list that are not in the new list. */
+    final List<String> mRemovedKeys = new ArrayList<>();
+    /** Entries whose key is in the previous list with another {@link WifiEntry} instance. */
+    final List<WifiEntry> mRebound = new ArrayList<>();
+    /**
+     * Entries whose key is in the previous list at another position, in the order of the new
+     * list.
+     */
+    final List<WifiEntry> mMoved = new ArrayList<>();
+
+    private WifiEntryListDiff() {
+    }
+
+    /**
+     * @return the changes turning {@param previous} into {@param current}.
+     */
+    static WifiEntryListDiff compute(List<WifiEntry> previous, List<WifiEntry> current) {
+        final WifiEntryListDiff diff = new WifiEntryListDiff();
+        final Map<String, Integer> previousPositions = new ArrayMap<>(previous.size());
+        for (int i = 0; i < previous.size(); i++) {
+            previousPositions.put(previous.get(i).getKey(), i);
+        }
+
+        final Map<String, WifiEntry> currentEntries = new ArrayMap<>(current.size());
+        for (int i = 0; i < current.size(); i++) {
+            final WifiEntry entry = current.get(i);
+            currentEntries.put(entry.getKey(), entry);
+            final Integer previousPosition = previousPositions.get(entry.getKey());
+            if (previousPosition == null) {
+                diff.mInserted.add(entry);
+                continue;
+            }
+            if (previous.get(previousPosition) != entry) {
+                diff.mRebound.add(entry);
+            }
+            if (previousPosition != i) {
+                diff.mMoved.add(entry);
+            }
+        }
+
+        for (WifiEntry entry : previous) {
+            if (!currentEntries.containsKey(entry.getKey())) {
+                diff.mRemovedKeys.add(entry.getKey());
+            }
+        }
+        return diff;
+    }
+}
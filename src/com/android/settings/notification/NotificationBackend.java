@@ -167,16 +167,50 @@ public class NotificationBackend {
         try {
             PackageInfo info = context.getPackageManager().getPackageInfo(
                     app.packageName, PackageManager.GET_PERMISSIONS);
-            final AppRow row = new AppRow();
-            recordCanBeBlocked(info, row);
-            boolean systemBlockable = !row.systemApp || (row.systemApp && row.banned);
-            return systemBlockable && !row.lockedImportance;
+            return isBlockable(info);
         } catch (PackageManager.NameNotFoundException e) {
             e.printStackTrace();
         }
         return false;
     }
 
+    /**
+     * Loads the {@link BlockState} of all the given apps of a user.
+     *
+     * The package info needed to decide whether the notifications of an app can be blocked is
+     * read with a single package manager call for the user, instead of one call per app as
+     * {@link #enableSwitch(Context, ApplicationInfo)} does.
+     *
+     * @return a map from package name to its state, containing every app of {@param apps}.
+     */
+    public Map<String, BlockState> getBlockStates(Context context, int userId,
+            List<ApplicationInfo> apps) {
+        final Map<String, PackageInfo> packages = new HashMap<>();
+        for (PackageInfo info : context.getPackageManager().getInstalledPackagesAsUser(
+                PackageManager.GET_PERMISSIONS | PackageManager.MATCH_DISABLED_COMPONENTS
+                        | PackageManager.MATCH_DISABLED_UNTIL_USED_COMPONENTS, userId)) {
+            packages.put(info.packageName, info);
+        }
+
+        final Map<String, BlockState> states = new HashMap<>(apps.size());
+        for (ApplicationInfo app : apps) {
+            final PackageInfo info = packages.get(app.packageName);
+            final boolean blockable = info != null
+                    ? isBlockable(info)
+                    : enableSwitch(context, app);
+            states.put(app.packageName,
+                    new BlockState(getNotificationsBanned(app.packageName, app.uid), blockable));
+        }
+        return states;
+    }
+
+    private boolean isBlockable(PackageInfo info) {
+        final AppRow row = new AppRow();
+        recordCanBeBlocked(info, row);
+        boolean systemBlockable = !row.systemApp || (row.systemApp && row.banned);
+        return systemBlockable && !row.lockedImportance;
+    }
+
     public boolean getNotificationsBanned(String pkg, int uid) {
         try {
             final boolean enabled = sINM.areNotificationsEnabledForPackage(pkg, uid);
@@ -694,6 +728,19 @@ public class NotificationBackend {
         public String section;
     }
 
+    /**
+     * Whether the notifications of a package are blocked, and whether the user can change it.
+     */
+    public static class BlockState {
+        public final boolean blocked;
+        public final boolean blockable;
+
+        public BlockState(boolean blocked, boolean blockable) {
+            this.blocked = blocked;
+            this.blockable = blockable;
+        }
+    }
+
     public static class AppRow extends Row {
         public String pkg;
         public int uid;
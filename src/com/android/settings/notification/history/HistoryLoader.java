@@ -21,79 +21,224 @@ import android.app.NotificationHistory.HistoricalNotification;
 import android.content.Context;
 import android.content.pm.ApplicationInfo;
 import android.content.pm.PackageManager;
+import android.graphics.drawable.Drawable;
 import android.os.UserHandle;
+import android.text.TextUtils;
+import android.util.ArrayMap;
+import android.util.LruCache;
 import android.util.Slog;
+import android.util.SparseArray;
+
+import androidx.annotation.VisibleForTesting;
 
 import com.android.settings.notification.NotificationBackend;
 import com.android.settingslib.utils.ThreadUtils;
 
 import java.util.ArrayList;
 import java.util.Collections;
-import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
 
+/**
+ * Loads the notification history grouped by package, most recent package first.
+ *
+ * Packages are delivered in pages, so the first screen is shown as soon as its labels and icons
+ * are resolved rather than after every package of the history has been resolved. Labels and
+ * icons are kept in an {@link AppCache} owned by the screen, since the history is reloaded each
+ * time the screen resumes.
+ */
 public class HistoryLoader {
     private static final String TAG = "HistoryLoader";
+
+    // Roughly the number of package rows that fit on one screen.
+    @VisibleForTesting
+    static final int PAGE_SIZE = 8;
+    private static final int MAX_CACHED_APPS_PER_USER = 64;
+
     private final Context mContext;
     private final NotificationBackend mBackend;
     private final PackageManager mPm;
+    private final AppCache mAppCache;
+    private volatile boolean mCanceled;
 
     public HistoryLoader(Context context, NotificationBackend backend, PackageManager pm) {
+        this(context, backend, pm, new AppCache());
+    }
+
+    /**
+     * @param appCache the labels and icons resolved by the previous loaders of the same screen
+     */
+    public HistoryLoader(Context context, NotificationBackend backend, PackageManager pm,
+            AppCache appCache) {
         mContext = context;
         mBackend = backend;
         mPm = pm;
+        mAppCache = appCache;
     }
 
+    /**
+     * Loads the history, calling {@code listener} on the main thread once per page of packages.
+     * An empty history is delivered as a single empty page.
+     */
     public void load(OnHistoryLoaderListener listener) {
         ThreadUtils.postOnBackgroundThread(() -> {
             try {
-                Map<String, NotificationHistoryPackage> historicalNotifications = new HashMap<>();
                 NotificationHistory history =
                         mBackend.getNotificationHistory(mContext.getPackageName(),
                                 mContext.getAttributionTag());
-                while (history.hasNextNotification()) {
-                    HistoricalNotification hn = history.getNextNotification();
-
-                    String key = hn.getPackage() + "|" + hn.getUid();
-                    NotificationHistoryPackage hnsForPackage = historicalNotifications.getOrDefault(
-                            key,
-                            new NotificationHistoryPackage(hn.getPackage(), hn.getUid()));
-                    hnsForPackage.notifications.add(hn);
-                    historicalNotifications.put(key, hnsForPackage);
-                }
-                List<NotificationHistoryPackage> packages =
-                        new ArrayList<>(historicalNotifications.values());
+                List<NotificationHistoryPackage> packages = groupByPackage(history);
                 Collections.sort(packages,
                         (o1, o2) -> -1 * Long.compare(o1.getMostRecent(), o2.getMostRecent()));
-                for (NotificationHistoryPackage nhp : packages) {
-                    ApplicationInfo info;
-                    try {
-                        info = mPm.getApplicationInfoAsUser(
-                                nhp.pkgName,
-                                PackageManager.MATCH_UNINSTALLED_PACKAGES
-                                        | PackageManager.MATCH_DISABLED_COMPONENTS
-                                        | PackageManager.MATCH_DIRECT_BOOT_UNAWARE
-                                        | PackageManager.MATCH_DIRECT_BOOT_AWARE,
-                                UserHandle.getUserId(nhp.uid));
-                        if (info != null) {
-                            nhp.label = String.valueOf(mPm.getApplicationLabel(info));
-                            nhp.icon = mPm.getUserBadgedIcon(mPm.getApplicationIcon(info),
-                                    UserHandle.of(UserHandle.getUserId(nhp.uid)));
-                        }
-                    } catch (PackageManager.NameNotFoundException e) {
-                        // app is gone, just show package name and generic icon
-                        nhp.icon = mPm.getDefaultActivityIcon();
+                if (packages.isEmpty()) {
+                    postPage(listener, packages);
+                    return;
+                }
+                for (int start = 0; start < packages.size() && !mCanceled; start += PAGE_SIZE) {
+                    List<NotificationHistoryPackage> page = packages.subList(start,
+                            Math.min(start + PAGE_SIZE, packages.size()));
+                    for (NotificationHistoryPackage nhp : page) {
+                        loadLabelAndIcon(nhp);
                     }
+                    postPage(listener, new ArrayList<>(page));
                 }
-                ThreadUtils.postOnMainThread(() -> listener.onHistoryLoaded(packages));
             } catch (Exception e) {
                 Slog.e(TAG, "Error loading history", e);
             }
         });
     }
 
+    /**
+     * Stops delivering pages, including those already posted to the main thread.
+     */
+    public void cancel() {
+        mCanceled = true;
+    }
+
+    /**
+     * Drains {@code history} into one {@link NotificationHistoryPackage} per (uid, package),
+     * without allocating a key per notification.
+     */
+    private static List<NotificationHistoryPackage> groupByPackage(NotificationHistory history) {
+        final List<NotificationHistoryPackage> packages = new ArrayList<>();
+        final SparseArray<ArrayMap<String, NotificationHistoryPackage>> packagesByUid =
+                new SparseArray<>();
+        while (history.hasNextNotification()) {
+            HistoricalNotification hn = history.getNextNotification();
+
+            ArrayMap<String, NotificationHistoryPackage> packagesForUid =
+                    packagesByUid.get(hn.getUid());
+            if (packagesForUid == null) {
+                packagesForUid = new ArrayMap<>();
+                packagesByUid.put(hn.getUid(), packagesForUid);
+            }
+            NotificationHistoryPackage hnsForPackage = packagesForUid.get(hn.getPackage());
+            if (hnsForPackage == null) {
+                hnsForPackage = new NotificationHistoryPackage(hn.getPackage(), hn.getUid());
+                packagesForUid.put(hn.getPackage(), hnsForPackage);
+                packages.add(hnsForPackage);
+            }
+            hnsForPackage.notifications.add(hn);
+        }
+        return packages;
+    }
+
+    private void postPage(OnHistoryLoaderListener listener,
+            List<NotificationHistoryPackage> page) {
+        ThreadUtils.postOnMainThread(() -> {
+            if (!mCanceled) {
+                listener.onHistoryLoaded(page);
+            }
+        });
+    }
+
+    private void loadLabelAndIcon(NotificationHistoryPackage nhp) {
+        final int userId = UserHandle.getUserId(nhp.uid);
+        ApplicationInfo info;
+        try {
+            info = mPm.getApplicationInfoAsUser(
+                    nhp.pkgName,
+                    PackageManager.MATCH_UNINSTALLED_PACKAGES
+                            | PackageManager.MATCH_DISABLED_COMPONENTS
+                            | PackageManager.MATCH_DIRECT_BOOT_UNAWARE
+                            | PackageManager.MATCH_DIRECT_BOOT_AWARE,
+                    userId);
+        } catch (PackageManager.NameNotFoundException e) {
+            // app is gone, just show package name and generic icon
+            nhp.icon = mPm.getDefaultActivityIcon();
+            return;
+        }
+        if (info == null) {
+            return;
+        }
+        AppLabelAndIcon cached = mAppCache.get(userId, info);
+        if (cached == null) {
+            final Drawable icon = mPm.getUserBadgedIcon(mPm.getApplicationIcon(info),
+                    UserHandle.of(userId));
+            final CharSequence label = String.valueOf(mPm.getApplicationLabel(info));
+            final Drawable.ConstantState iconState = icon.getConstantState();
+            if (iconState == null) {
+                // The icon can't be shared, so it isn't cached.
+                nhp.label = label;
+                nhp.icon = icon;
+                return;
+            }
+            cached = new AppLabelAndIcon(info.sourceDir, label, iconState);
+            mAppCache.put(userId, info.packageName, cached);
+        }
+        nhp.label = cached.mLabel;
+        // Each row gets its own drawable, as a drawable can only be attached to one view.
+        nhp.icon = cached.mIconState.newDrawable(mContext.getResources());
+    }
+
+    /**
+     * Bounded cache of the labels and icons of the recently shown packages of each user.
+     *
+     * It should be owned by a single screen, so that labels and icons are resolved again for a
+     * new configuration. An entry is only used while the package keeps the same code path, which
+     * changes whenever the package is updated or reinstalled.
+     */
+    public static class AppCache {
+        // User id to the label and icon of the recently shown packages of the user.
+        private final SparseArray<LruCache<String, AppLabelAndIcon>> mApps = new SparseArray<>();
+
+        private synchronized AppLabelAndIcon get(int userId, ApplicationInfo info) {
+            final LruCache<String, AppLabelAndIcon> apps = mApps.get(userId);
+            final AppLabelAndIcon app = apps != null ? apps.get(info.packageName) : null;
+            if (app == null) {
+                return null;
+            }
+            if (!TextUtils.equals(app.mSourceDir, info.sourceDir)) {
+                apps.remove(info.packageName);
+                return null;
+            }
+            return app;
+        }
+
+        private synchronized void put(int userId, String pkgName, AppLabelAndIcon app) {
+            LruCache<String, AppLabelAndIcon> apps = mApps.get(userId);
+            if (apps == null) {
+                apps = new LruCache<>(MAX_CACHED_APPS_PER_USER);
+                mApps.put(userId, apps);
+            }
+            apps.put(pkgName, app);
+        }
+    }
+
+    private static class AppLabelAndIcon {
+        private final String mSourceDir;
+        private final CharSequence mLabel;
+        private final Drawable.ConstantState mIconState;
+
+        AppLabelAndIcon(String sourceDir, CharSequence label, Drawable.ConstantState iconState) {
+            mSourceDir = sourceDir;
+            mLabel = label;
+            mIconState = iconState;
+        }
+    }
+
     interface OnHistoryLoaderListener {
+        /**
+         * Called with each page of packages, in order, most recent package first.
+         */
         void onHistoryLoaded(List<NotificationHistoryPackage> notificationsByPackage);
     }
 }
@@ -87,6 +87,7 @@ public class NotificationHistoryActivity extends CollapsingToolbarBaseActivity {
     private MainSwitchBar mSwitchBar;
 
     private HistoryLoader mHistoryLoader;
+    private final HistoryLoader.AppCache mAppCache = new HistoryLoader.AppCache();
     private INotificationManager mNm;
     private UserManager mUm;
     private PackageManager mPm;
@@ -154,14 +155,20 @@ public class NotificationHistoryActivity extends CollapsingToolbarBaseActivity {
     }
 
     private HistoryLoader.OnHistoryLoaderListener mOnHistoryLoaderListener = notifications -> {
+        // Pages after the first one are appended to the packages already shown.
         findViewById(R.id.today_list).setVisibility(
-                notifications.isEmpty() ? View.GONE : View.VISIBLE);
-        mCountdownLatch.countDown();
+                notifications.isEmpty() && mTodayView.getChildCount() == 0
+                        ? View.GONE : View.VISIBLE);
+        // Whether the history is empty is known from the first page.
+        if (mTodayView.getChildCount() == 0) {
+            mCountdownLatch.countDown();
+        }
         View recyclerView = mTodayView.findViewById(R.id.apps);
         recyclerView.setClipToOutline(true);
         mTodayView.setOutlineProvider(mOutlineProvider);
         mSnoozeView.setOutlineProvider(mOutlineProvider);
         // for each package, new header and recycler view
+        final int firstPosition = mTodayView.getChildCount();
         for (int i = 0, notificationsSize = notifications.size(); i < notificationsSize; i++) {
             NotificationHistoryPackage nhp = notifications.get(i);
             View viewForPackage = LayoutInflater.from(this)
@@ -180,7 +187,7 @@ public class NotificationHistoryActivity extends CollapsingToolbarBaseActivity {
             header.setStateDescription(container.getVisibility() == View.VISIBLE
                     ? getString(R.string.condition_expand_hide)
                     : getString(R.string.condition_expand_show));
-            int finalI = i;
+            int finalI = firstPosition + i;
             header.setOnClickListener(v -> {
                 container.setVisibility(container.getVisibility() == View.VISIBLE
                         ? View.GONE : View.VISIBLE);
@@ -262,7 +269,10 @@ public class NotificationHistoryActivity extends CollapsingToolbarBaseActivity {
         mCountdownLatch = new CountDownLatch(2);
 
         mTodayView.removeAllViews();
-        mHistoryLoader = new HistoryLoader(this, new NotificationBackend(), mPm);
+        if (mHistoryLoader != null) {
+            mHistoryLoader.cancel();
+        }
+        mHistoryLoader = new HistoryLoader(this, new NotificationBackend(), mPm, mAppCache);
         mHistoryLoader.load(mOnHistoryLoaderListener);
 
         mNm = INotificationManager.Stub.asInterface(
@@ -298,6 +308,9 @@ public class NotificationHistoryActivity extends CollapsingToolbarBaseActivity {
 
     @Override
     public void onPause() {
+        if (mHistoryLoader != null) {
+            mHistoryLoader.cancel();
+        }
         try {
             mListener.unregisterAsSystemService();
         } catch (RemoteException e) {
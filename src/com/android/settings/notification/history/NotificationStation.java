@@ -36,6 +36,8 @@ import android.graphics.PorterDuff;
 import android.graphics.Typeface;
 import android.graphics.drawable.Drawable;
 import android.os.Bundle;
+import android.os.Handler;
+import android.os.Looper;
 import android.os.Parcel;
 import android.os.RemoteException;
 import android.os.ServiceManager;
@@ -49,6 +51,7 @@ import android.text.SpannableString;
 import android.text.SpannableStringBuilder;
 import android.text.TextUtils;
 import android.text.style.StyleSpan;
+import android.util.ArrayMap;
 import android.util.Log;
 import android.view.View;
 import android.view.ViewGroup;
@@ -56,7 +59,9 @@ import android.widget.DateTimeView;
 import android.widget.ImageView;
 import android.widget.TextView;
 
+import androidx.annotation.VisibleForTesting;
 import androidx.preference.Preference;
+import androidx.preference.PreferenceScreen;
 import androidx.preference.PreferenceViewHolder;
 import androidx.recyclerview.widget.RecyclerView;
 
@@ -68,6 +73,7 @@ import java.util.ArrayList;
 import java.util.Comparator;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
 
 public class NotificationStation extends SettingsPreferenceFragment {
     private static final String TAG = NotificationStation.class.getSimpleName();
@@ -76,7 +82,8 @@ public class NotificationStation extends SettingsPreferenceFragment {
     private static final boolean DUMP_EXTRAS = true;
     private static final boolean DUMP_PARCEL = true;
 
-    private static class HistoricalNotificationInfo {
+    @VisibleForTesting
+    static class HistoricalNotificationInfo {
         public String key;
         public NotificationChannel channel;
         // Historical notifications don't have Ranking information. for most fields that's ok
@@ -111,14 +118,45 @@ public class NotificationStation extends SettingsPreferenceFragment {
             this.notificationExtra = updatedInfo.notificationExtra;
             this.rankingExtra = updatedInfo.rankingExtra;
         }
+
+        /**
+         * Identifies the row showing this notification across reloads of the list, since the
+         * same key shows up once per alerting update.
+         */
+        public String getRowId() {
+            return key + "|" + timestamp;
+        }
+
+        /**
+         * Returns whether the row of {@code other} would look the same as the row of this one.
+         */
+        public boolean hasSameContent(HistoricalNotificationInfo other) {
+            return timestamp == other.timestamp
+                    && active == other.active
+                    && alerted == other.alerted
+                    && badged == other.badged
+                    && TextUtils.equals(pkgname, other.pkgname)
+                    && TextUtils.equals(title, other.title)
+                    && TextUtils.equals(text, other.text)
+                    && TextUtils.equals(notificationExtra, other.notificationExtra)
+                    && TextUtils.equals(rankingExtra, other.rankingExtra);
+        }
     }
 
     private PackageManager mPm;
     private INotificationManager mNoMan;
     private RankingMap mRanking;
     private LinkedList<HistoricalNotificationInfo> mNotificationInfos;
+    // Newest row of each notification key, the one that posts and removals update.
+    @VisibleForTesting
+    final Map<String, HistoricalNotificationPreference> mLatestPreferences =
+            new ArrayMap<>();
 
-    private final NotificationListenerService mListener = new NotificationListenerService() {
+    private final Handler mHandler = new Handler(Looper.getMainLooper());
+    private final Runnable mUpdateFromRankingRunnable = this::updateNotificationsFromRanking;
+
+    @VisibleForTesting
+    final NotificationListenerService mListener = new NotificationListenerService() {
         @Override
         public void onNotificationPosted(StatusBarNotification sbn, RankingMap ranking) {
             logd("onNotificationPosted: %s, with update for %d", sbn.getNotification(),
@@ -127,7 +165,7 @@ public class NotificationStation extends SettingsPreferenceFragment {
             if (sbn.getNotification().isGroupSummary()) {
                 return;
             }
-            addOrUpdateNotification(sbn);
+            addOrUpdateNotification(createFromSbn(sbn, true));
         }
 
         @Override
@@ -146,7 +184,9 @@ public class NotificationStation extends SettingsPreferenceFragment {
             logd("onNotificationRankingUpdate with update for %d",
                     ranking == null ? 0 : ranking.getOrderedKeys().length);
             mRanking = ranking;
-            updateNotificationsFromRanking();
+            // Ranking updates come in bursts, only apply the latest one.
+            mHandler.removeCallbacks(mUpdateFromRankingRunnable);
+            mHandler.post(mUpdateFromRankingRunnable);
         }
 
         @Override
@@ -182,6 +222,7 @@ public class NotificationStation extends SettingsPreferenceFragment {
 
     @Override
     public void onPause() {
+        mHandler.removeCallbacks(mUpdateFromRankingRunnable);
         try {
             mListener.unregisterAsSystemService();
         } catch (RemoteException e) {
@@ -224,15 +265,49 @@ public class NotificationStation extends SettingsPreferenceFragment {
      */
     private void populateNotifications() {
         loadNotifications();
+        showNotifications();
+    }
+
+    /**
+     * Shows the loaded notifications, reusing the rows that are already shown.
+     */
+    @VisibleForTesting
+    void showNotifications() {
         final int N = mNotificationInfos.size();
         logd("adding %d infos", N);
         if (getPreferenceScreen() == null) {
             setPreferenceScreen(getPreferenceManager().createPreferenceScreen(getContext()));
         }
-        getPreferenceScreen().removeAll();
-        for (int i = 0; i < N; i++) {
-            getPreferenceScreen().addPreference(new HistoricalNotificationPreference(
-                    getPrefContext(), mNotificationInfos.get(i), i));
+        final PreferenceScreen screen = getPreferenceScreen();
+
+        // Reuse the rows that are already shown, so reconnecting only rebinds the rows whose
+        // content changed instead of rebuilding the whole list.
+        final Map<String, HistoricalNotificationPreference> shownPreferences = new ArrayMap<>();
+        for (int i = 0; i < screen.getPreferenceCount(); i++) {
+            final HistoricalNotificationPreference p =
+                    (HistoricalNotificationPreference) screen.getPreference(i);
+            shownPreferences.put(p.mInfo.getRowId(), p);
+        }
+
+        mLatestPreferences.clear();
+        int order = 0;
+        for (HistoricalNotificationInfo info : mNotificationInfos) {
+            HistoricalNotificationPreference p = shownPreferences.remove(info.getRowId());
+            if (p == null) {
+                p = new HistoricalNotificationPreference(getPrefContext(), info, order);
+                screen.addPreference(p);
+            } else {
+                p.setOrder(order);
+                p.setInfo(info);
+            }
+            // Infos are sorted newest first.
+            if (!mLatestPreferences.containsKey(info.key)) {
+                mLatestPreferences.put(info.key, p);
+            }
+            order++;
+        }
+        for (HistoricalNotificationPreference p : shownPreferences.values()) {
+            screen.removePreference(p);
         }
     }
 
@@ -240,15 +315,10 @@ public class NotificationStation extends SettingsPreferenceFragment {
      * Finds and dims the given notification in the preferences list.
      */
     private void markNotificationAsDismissed(StatusBarNotification sbn) {
-        final int N = mNotificationInfos.size();
-        for (int i = 0; i < N; i++) {
-            final HistoricalNotificationInfo info = mNotificationInfos.get(i);
-            if (TextUtils.equals(info.key, sbn.getKey())) {
-                info.active = false;
-                ((HistoricalNotificationPreference) getPreferenceScreen().findPreference(
-                        sbn.getKey())).updatePreference(info);
-               break;
-            }
+        final HistoricalNotificationPreference p = mLatestPreferences.get(sbn.getKey());
+        if (p != null) {
+            p.mInfo.active = false;
+            p.updatePreference(p.mInfo);
         }
     }
 
@@ -256,44 +326,42 @@ public class NotificationStation extends SettingsPreferenceFragment {
      * Either updates a notification with its latest information or (if it's something the user
      * would consider a new notification) adds a new entry at the start of the list.
      */
-    private void addOrUpdateNotification(StatusBarNotification sbn) {
-        HistoricalNotificationInfo newInfo = createFromSbn(sbn, true);
-        boolean needsAdd = true;
-        final int N = mNotificationInfos.size();
-        for (int i = 0; i < N; i++) {
-            final HistoricalNotificationInfo info = mNotificationInfos.get(i);
-            if (TextUtils.equals(info.key, sbn.getKey()) && info.active
-                    && !newInfo.alerted && !newInfo.visuallyInterruptive) {
-                info.updateFrom(newInfo);
-
-                ((HistoricalNotificationPreference) getPreferenceScreen().findPreference(
-                        sbn.getKey())).updatePreference(info);
-                needsAdd = false;
-                break;
-            }
-        }
-        if (needsAdd) {
-            mNotificationInfos.addFirst(newInfo);
-            getPreferenceScreen().addPreference(new HistoricalNotificationPreference(
-                    getPrefContext(), mNotificationInfos.peekFirst(),
-                    -1 * mNotificationInfos.size()));
+    @VisibleForTesting
+    void addOrUpdateNotification(HistoricalNotificationInfo newInfo) {
+        final HistoricalNotificationPreference latest = mLatestPreferences.get(newInfo.key);
+        if (latest != null && latest.mInfo.active
+                && !newInfo.alerted && !newInfo.visuallyInterruptive) {
+            latest.mInfo.updateFrom(newInfo);
+            latest.updatePreference(latest.mInfo);
+            return;
         }
+        mNotificationInfos.addFirst(newInfo);
+        final HistoricalNotificationPreference p = new HistoricalNotificationPreference(
+                getPrefContext(), newInfo, -1 * mNotificationInfos.size());
+        mLatestPreferences.put(newInfo.key, p);
+        getPreferenceScreen().addPreference(p);
     }
 
     /**
-     * Updates all notifications in the list based on new information in the ranking.
+     * Updates all notifications in the list based on new information in the ranking, rebinding
+     * only the rows whose ranking details changed.
      */
     private void updateNotificationsFromRanking() {
-        Ranking rank = new Ranking();
-        for (int i = 0; i < getPreferenceScreen().getPreferenceCount(); i++) {
+        final PreferenceScreen screen = getPreferenceScreen();
+        if (screen == null) {
+            return;
+        }
+        for (int i = 0; i < screen.getPreferenceCount(); i++) {
             final HistoricalNotificationPreference p =
-                    (HistoricalNotificationPreference) getPreferenceScreen().getPreference(i);
-            final HistoricalNotificationInfo info = mNotificationInfos.get(i);
-            mRanking.getRanking(p.getKey(), rank);
+                    (HistoricalNotificationPreference) screen.getPreference(i);
+            final HistoricalNotificationInfo info = p.mInfo;
+            final boolean alerted = info.alerted;
+            final CharSequence rankingExtra = info.rankingExtra;
 
             updateFromRanking(info);
-            ((HistoricalNotificationPreference) getPreferenceScreen().findPreference(
-                    info.key)).updatePreference(info);
+            if (info.alerted != alerted || !TextUtils.equals(info.rankingExtra, rankingExtra)) {
+                p.updatePreference(info);
+            }
         }
     }
 
@@ -671,8 +739,9 @@ public class NotificationStation extends SettingsPreferenceFragment {
         return pkg;
     }
 
-    private static class HistoricalNotificationPreference extends Preference {
-        private final HistoricalNotificationInfo mInfo;
+    @VisibleForTesting
+    static class HistoricalNotificationPreference extends Preference {
+        private HistoricalNotificationInfo mInfo;
         private static long sLastExpandedTimestamp; // quick hack to keep things from collapsing
         public ViewGroup mItemView; // hack to update prefs fast;
         private Context mContext;
@@ -687,6 +756,17 @@ public class NotificationStation extends SettingsPreferenceFragment {
             mContext = context;
         }
 
+        /**
+         * Shows {@code info} in this row, rebinding it only if its content changed.
+         */
+        public void setInfo(HistoricalNotificationInfo info) {
+            final boolean changed = !mInfo.hasSameContent(info);
+            mInfo = info;
+            if (changed) {
+                updatePreference(info);
+            }
+        }
+
         @Override
         public void onBindViewHolder(PreferenceViewHolder row) {
             super.onBindViewHolder(row);
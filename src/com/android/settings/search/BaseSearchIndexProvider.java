@@ -25,6 +25,7 @@ import static com.android.settings.core.PreferenceXmlParserUtils.MetadataFlag.FL
 import android.annotation.XmlRes;
 import android.content.Context;
 import android.os.Bundle;
+import android.os.SystemClock;
 import android.provider.SearchIndexableResource;
 import android.util.Log;
 
@@ -32,6 +33,7 @@ import androidx.annotation.CallSuper;
 import androidx.annotation.VisibleForTesting;
 
 import com.android.settings.core.BasePreferenceController;
+import com.android.settings.core.ControllerLatencyTracker;
 import com.android.settings.core.PreferenceControllerListHelper;
 import com.android.settings.core.PreferenceControllerMixin;
 import com.android.settings.core.PreferenceXmlParserUtils;
@@ -113,13 +115,19 @@ public class BaseSearchIndexProvider implements Indexable.SearchIndexProvider {
         nonIndexableKeys.addAll(getNonIndexableKeysFromXml(context, false /* suppressAllPage */));
         final List<AbstractPreferenceController> controllers = getPreferenceControllers(context);
         if (controllers != null && !controllers.isEmpty()) {
+            final ControllerLatencyTracker latencyTracker = ControllerLatencyTracker.getInstance();
             for (AbstractPreferenceController controller : controllers) {
+                final long startNanos = SystemClock.elapsedRealtimeNanos();
                 if (controller instanceof PreferenceControllerMixin) {
                     ((PreferenceControllerMixin) controller)
                             .updateNonIndexableKeys(nonIndexableKeys);
+                    latencyTracker.record(controller,
+                            ControllerLatencyTracker.OP_NON_INDEXABLE_KEYS, startNanos);
                 } else if (controller instanceof BasePreferenceController) {
                     ((BasePreferenceController) controller).updateNonIndexableKeys(
                             nonIndexableKeys);
+                    latencyTracker.record(controller,
+                            ControllerLatencyTracker.OP_NON_INDEXABLE_KEYS, startNanos);
                 } else {
                     Log.e(TAG, controller.getClass().getName()
                             + " must implement " + PreferenceControllerMixin.class.getName()
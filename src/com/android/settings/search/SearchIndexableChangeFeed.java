@@ -0,0 +1,244 @@
+/*
+ * Copyright (C) 2022 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.settings.search;
+
+import android.database.Cursor;
+import android.database.MatrixCursor;
+import android.os.Bundle;
+import android.util.ArrayMap;
+import android.util.SparseLongArray;
+
+import androidx.annotation.VisibleForTesting;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Keeps the last exported rows of one kind of search indexable data, and turns a fresh snapshot
+ * of those rows into a change feed.
+ *
+ * Every row carries the generation in which it was last added, updated or removed, so a caller
+ * which already consumed generation N only needs the rows with a greater generation. Removed
+ * rows are kept as tombstones so they can be reported to callers that have not seen them yet,
+ * and purged once every caller has acknowledged a generation past their removal.
+ */
+class SearchIndexableChangeFeed {
+
+    /** Query parameter holding the last generation the caller has consumed. */
+    static final String QUERY_PARAMETER_SINCE = "since";
+
+    /** Column appended to the contract columns, holding the generation of the row. */
+    static final String COLUMN_GENERATION = "generation";
+
+    /** Column appended to the contract columns, holding one of the {@code CHANGE_} values. */
+    static final String COLUMN_CHANGE_TYPE = "change_type";
+
+    /** Cursor extra holding the generation of the snapshot the cursor was built from. */
+    static final String EXTRA_GENERATION = "generation";
+
+    /**
+     * Cursor extra set when the requested generation is unknown to this process, in which case
+     * the cursor contains every row and the caller should drop its previous data.
+     */
+    static final String EXTRA_FULL_SNAPSHOT = "full_snapshot";
+
+    static final int CHANGE_ADDED = 0;
+    static final int CHANGE_UPDATED = 1;
+    static final int CHANGE_REMOVED = 2;
+
+    // Separates a duplicated row key from the ordinal making it unique.
+    private static final String DUPLICATE_KEY_SEPARATOR = "#";
+    // Generations of this process start from a random epoch, so a generation handed out by a
+    // previous process is almost certainly outside of the range of this one. The epoch leaves
+    // room for the generations to keep increasing without overflowing.
+    private static final long PROCESS_EPOCH = new Random().nextLong() >>> 2;
+
+    /**
+     * Extracts the key identifying the same row across snapshots. Rows of one snapshot sharing a
+     * key are told apart by the order in which they appear.
+     */
+    interface RowKeyFunction {
+        String getKey(Object[] row);
+    }
+
+    private final String[] mColumns;
+    private final String[] mFeedColumns;
+    private final RowKeyFunction mRowKeyFunction;
+    private final Map<String, Row> mRows = new ArrayMap<>();
+    // Last generation acknowledged by each calling uid.
+    private final SparseLongArray mAcknowledgedGenerations = new SparseLongArray();
+    // Oldest generation a caller can resume from, a generation outside of
+    // [mOldestResumableGeneration, mGeneration] is unknown to this process. It starts at the
+    // first generation of the feed and moves forward as tombstones are purged.
+    private long mOldestResumableGeneration;
+    private long mGeneration;
+
+    SearchIndexableChangeFeed(String[] columns, RowKeyFunction rowKeyFunction) {
+        this(columns, rowKeyFunction, PROCESS_EPOCH);
+    }
+
+    @VisibleForTesting
+    SearchIndexableChangeFeed(String[] columns, RowKeyFunction rowKeyFunction,
+            long baseGeneration) {
+        mColumns = columns;
+        mFeedColumns = Arrays.copyOf(columns, columns.length + 2);
+        mFeedColumns[columns.length] = COLUMN_GENERATION;
+        mFeedColumns[columns.length + 1] = COLUMN_CHANGE_TYPE;
+        mRowKeyFunction = rowKeyFunction;
+        mOldestResumableGeneration = baseGeneration;
+        mGeneration = baseGeneration;
+    }
+
+    /**
+     * Diffs a fresh snapshot against the previous one, and returns a cursor of the rows that
+     * changed after generation {@code since}.
+     *
+     * @param rows      all the rows currently exported, in contract column order
+     * @param since     the last generation consumed by the caller, or a negative value for all
+     *                  rows
+     * @param callerUid the uid of the caller, which acknowledges generation {@code since}
+     */
+    synchronized Cursor update(List<Object[]> rows, long since, int callerUid) {
+        applySnapshot(rows);
+
+        final boolean fullSnapshot = since < mOldestResumableGeneration || since > mGeneration;
+        // A caller given a full snapshot resumes from the current generation, and needs none of
+        // the current tombstones.
+        mAcknowledgedGenerations.put(callerUid, fullSnapshot ? mGeneration : since);
+        purgeTombstones();
+
+        final MatrixCursor cursor = new MatrixCursor(mFeedColumns);
+        for (Row row : mRows.values()) {
+            if (fullSnapshot) {
+                if (row.mChangeType != CHANGE_REMOVED) {
+                    addRow(cursor, row, CHANGE_ADDED);
+                }
+            } else if (row.mGeneration > since) {
+                addRow(cursor, row, row.mChangeType);
+            }
+        }
+
+        final Bundle extras = new Bundle();
+        extras.putLong(EXTRA_GENERATION, mGeneration);
+        extras.putBoolean(EXTRA_FULL_SNAPSHOT, fullSnapshot);
+        cursor.setExtras(extras);
+        return cursor;
+    }
+
+    @VisibleForTesting
+    synchronized long getGeneration() {
+        return mGeneration;
+    }
+
+    private void applySnapshot(List<Object[]> rows) {
+        final long nextGeneration = mGeneration + 1;
+        boolean changed = false;
+
+        final Map<String, Object[]> snapshot = new ArrayMap<>(rows.size());
+        for (Object[] values : rows) {
+            String key = mRowKeyFunction.getKey(values);
+            if (snapshot.containsKey(key)) {
+                // Keep every duplicate instead of letting the last one replace the others.
+                final String baseKey = key;
+                int ordinal = 1;
+                do {
+                    key = baseKey + DUPLICATE_KEY_SEPARATOR + ordinal++;
+                } while (snapshot.containsKey(key));
+            }
+            snapshot.put(key, values);
+        }
+
+        for (Map.Entry<String, Object[]> entry : snapshot.entrySet()) {
+            final Object[] values = entry.getValue();
+            final int hash = Arrays.deepHashCode(values);
+            final Row row = mRows.get(entry.getKey());
+            if (row == null) {
+                mRows.put(entry.getKey(), new Row(values, hash, nextGeneration, CHANGE_ADDED));
+                changed = true;
+            } else if (row.mChangeType == CHANGE_REMOVED) {
+                row.set(values, hash, nextGeneration, CHANGE_ADDED);
+                changed = true;
+            } else if (row.mHash != hash || !Arrays.deepEquals(row.mValues, values)) {
+                row.set(values, hash, nextGeneration, CHANGE_UPDATED);
+                changed = true;
+            }
+        }
+
+        for (Map.Entry<String, Row> entry : mRows.entrySet()) {
+            final Row row = entry.getValue();
+            if (row.mChangeType != CHANGE_REMOVED && !snapshot.containsKey(entry.getKey())) {
+                row.set(row.mValues, row.mHash, nextGeneration, CHANGE_REMOVED);
+                changed = true;
+            }
+        }
+
+        if (changed) {
+            mGeneration = nextGeneration;
+        }
+    }
+
+    /**
+     * Drops the tombstones every caller has already been told about, or didn't need to be told
+     * about. A caller resuming from before them gets a full snapshot instead.
+     */
+    private void purgeTombstones() {
+        long oldestAcknowledged = mGeneration;
+        for (int i = 0; i < mAcknowledgedGenerations.size(); i++) {
+            oldestAcknowledged = Math.min(oldestAcknowledged,
+                    mAcknowledgedGenerations.valueAt(i));
+        }
+        if (oldestAcknowledged <= mOldestResumableGeneration) {
+            return;
+        }
+        final Iterator<Row> rows = mRows.values().iterator();
+        while (rows.hasNext()) {
+            final Row row = rows.next();
+            if (row.mChangeType == CHANGE_REMOVED && row.mGeneration <= oldestAcknowledged) {
+                rows.remove();
+            }
+        }
+        mOldestResumableGeneration = oldestAcknowledged;
+    }
+
+    private void addRow(MatrixCursor cursor, Row row, int changeType) {
+        final Object[] values = Arrays.copyOf(row.mValues, mFeedColumns.length);
+        values[mColumns.length] = row.mGeneration;
+        values[mColumns.length + 1] = changeType;
+        cursor.addRow(values);
+    }
+
+    private static class Row {
+        private Object[] mValues;
+        private int mHash;
+        private long mGeneration;
+        private int mChangeType;
+
+        Row(Object[] values, int hash, long generation, int changeType) {
+            set(values, hash, generation, changeType);
+        }
+
+        void set(Object[] values, int hash, long generation, int changeType) {
+            mValues = values;
+            mHash = hash;
+            mGeneration = generation;
+            mChangeType = changeType;
+        }
+    }
+}
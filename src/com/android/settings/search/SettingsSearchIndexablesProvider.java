@@ -50,6 +50,8 @@ import android.content.Context;
 import android.database.Cursor;
 import android.database.MatrixCursor;
 import android.net.Uri;
+import android.os.Binder;
+import android.os.SystemClock;
 import android.provider.SearchIndexableResource;
 import android.provider.SearchIndexablesContract;
 import android.provider.SearchIndexablesProvider;
@@ -58,6 +60,7 @@ import android.text.TextUtils;
 import android.util.ArrayMap;
 import android.util.ArraySet;
 import android.util.Log;
+import android.util.Pair;
 
 import androidx.annotation.Nullable;
 import androidx.annotation.VisibleForTesting;
@@ -77,10 +80,23 @@ import com.android.settingslib.search.Indexable;
 import com.android.settingslib.search.SearchIndexableData;
 import com.android.settingslib.search.SearchIndexableRaw;
 
+import java.io.FileDescriptor;
+import java.io.PrintWriter;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 public class SettingsSearchIndexablesProvider extends SearchIndexablesProvider {
 
@@ -97,9 +113,39 @@ public class SettingsSearchIndexablesProvider extends SearchIndexablesProvider {
 
     private static final Collection<String> INVALID_KEYS;
 
+    private static final int NON_INDEXABLE_KEYS_THREADS = 4;
+
+    /**
+     * Time budget of a single provider to compute its non-indexable keys, from when it starts.
+     * Only providers with previously computed keys to fall back on are held to it.
+     */
+    @VisibleForTesting
+    static final long PROVIDER_TIMEOUT_MS = 500;
+
+    /**
+     * Time a non-indexable keys query waits for providers with previously computed keys to
+     * start, after which their previous keys are used.
+     */
+    private static final long NON_INDEXABLE_KEYS_TIMEOUT_MS = 3000;
+
+    private static ExecutorService sNonIndexableKeysExecutor;
+
+    // Last computed non-indexable keys (key: provider class name), used when a provider is late
+    private static final Map<String, List<String>> sLastNonIndexableKeys =
+            new ConcurrentHashMap<>();
+
+    // Time taken by the last non-indexable keys computation (key: provider class name)
+    private static final Map<String, Long> sProviderTimings = new ConcurrentHashMap<>();
+
+    // Suffix appended to a contract path to query its change feed instead of the full data
+    private static final String CHANGES_PATH_SUFFIX = "_changes";
+
     // Search enabled states for injection (key: category key, value: search enabled)
     private Map<String, Boolean> mSearchEnabledByCategoryKeyMap;
 
+    // Change feeds of the exported data (key: contract path)
+    private final Map<String, SearchIndexableChangeFeed> mChangeFeeds = new ArrayMap<>();
+
     static {
         INVALID_KEYS = new ArraySet<>();
         INVALID_KEYS.add(null);
@@ -115,18 +161,8 @@ public class SettingsSearchIndexablesProvider extends SearchIndexablesProvider {
     @Override
     public Cursor queryXmlResources(String[] projection) {
         final MatrixCursor cursor = new MatrixCursor(INDEXABLES_XML_RES_COLUMNS);
-        final List<SearchIndexableResource> resources =
-                getSearchIndexableResourcesFromProvider(getContext());
-        for (SearchIndexableResource val : resources) {
-            final Object[] ref = new Object[INDEXABLES_XML_RES_COLUMNS.length];
-            ref[COLUMN_INDEX_XML_RES_RANK] = val.rank;
-            ref[COLUMN_INDEX_XML_RES_RESID] = val.xmlResId;
-            ref[COLUMN_INDEX_XML_RES_CLASS_NAME] = val.className;
-            ref[COLUMN_INDEX_XML_RES_ICON_RESID] = val.iconResId;
-            ref[COLUMN_INDEX_XML_RES_INTENT_ACTION] = val.intentAction;
-            ref[COLUMN_INDEX_XML_RES_INTENT_TARGET_PACKAGE] = val.intentTargetPackage;
-            ref[COLUMN_INDEX_XML_RES_INTENT_TARGET_CLASS] = null; // intent target class
-            cursor.addRow(ref);
+        for (Object[] row : getXmlResourceRows()) {
+            cursor.addRow(row);
         }
 
         return cursor;
@@ -138,9 +174,8 @@ public class SettingsSearchIndexablesProvider extends SearchIndexablesProvider {
     @Override
     public Cursor queryRawData(String[] projection) {
         final MatrixCursor cursor = new MatrixCursor(INDEXABLES_RAW_COLUMNS);
-        final List<SearchIndexableRaw> raws = getSearchIndexableRawFromProvider(getContext());
-        for (SearchIndexableRaw val : raws) {
-            cursor.addRow(createIndexableRawColumnObjects(val));
+        for (Object[] row : getRawRows()) {
+            cursor.addRow(row);
         }
 
         return cursor;
@@ -171,6 +206,108 @@ public class SettingsSearchIndexablesProvider extends SearchIndexablesProvider {
     @Nullable
     @Override
     public Cursor queryDynamicRawData(String[] projection) {
+        final MatrixCursor cursor = new MatrixCursor(INDEXABLES_RAW_COLUMNS);
+        for (Object[] row : getDynamicRawRows()) {
+            cursor.addRow(row);
+        }
+
+        return cursor;
+    }
+
+    /**
+     * Serves the change feeds of the xml resources, raw data and dynamic raw data on top of the
+     * paths of {@link SearchIndexablesContract}. A change feed query returns only the rows added,
+     * updated or removed after the generation given in the
+     * {@link SearchIndexableChangeFeed#QUERY_PARAMETER_SINCE} parameter.
+     */
+    @Override
+    public Cursor query(Uri uri, String[] projection, String selection, String[] selectionArgs,
+            String sortOrder) {
+        final String path = uri.getPath();
+        if (path != null && path.endsWith(CHANGES_PATH_SUFFIX)) {
+            final Cursor changes = queryChanges(
+                    path.substring(1, path.length() - CHANGES_PATH_SUFFIX.length()),
+                    getSinceGeneration(uri));
+            if (changes != null) {
+                return changes;
+            }
+        }
+        return super.query(uri, projection, selection, selectionArgs, sortOrder);
+    }
+
+    @Nullable
+    private Cursor queryChanges(String basePath, long since) {
+        final int callerUid = Binder.getCallingUid();
+        switch (basePath) {
+            case SearchIndexablesContract.INDEXABLES_XML_RES_PATH:
+                return getChangeFeed(basePath).update(getXmlResourceRows(), since, callerUid);
+            case SearchIndexablesContract.INDEXABLES_RAW_PATH:
+                return getChangeFeed(basePath).update(getRawRows(), since, callerUid);
+            case SearchIndexablesContract.DYNAMIC_INDEXABLES_RAW_PATH:
+                return getChangeFeed(basePath).update(getDynamicRawRows(), since, callerUid);
+            default:
+                return null;
+        }
+    }
+
+    private synchronized SearchIndexableChangeFeed getChangeFeed(String basePath) {
+        SearchIndexableChangeFeed feed = mChangeFeeds.get(basePath);
+        if (feed == null) {
+            if (SearchIndexablesContract.INDEXABLES_XML_RES_PATH.equals(basePath)) {
+                feed = new SearchIndexableChangeFeed(INDEXABLES_XML_RES_COLUMNS,
+                        row -> row[COLUMN_INDEX_XML_RES_CLASS_NAME] + "|"
+                                + row[COLUMN_INDEX_XML_RES_RESID]);
+            } else {
+                feed = new SearchIndexableChangeFeed(INDEXABLES_RAW_COLUMNS,
+                        row -> row[COLUMN_INDEX_RAW_CLASS_NAME] + "|"
+                                + row[COLUMN_INDEX_RAW_KEY]);
+            }
+            mChangeFeeds.put(basePath, feed);
+        }
+        return feed;
+    }
+
+    private static long getSinceGeneration(Uri uri) {
+        final String since = uri.getQueryParameter(SearchIndexableChangeFeed.QUERY_PARAMETER_SINCE);
+        if (TextUtils.isEmpty(since)) {
+            return -1;
+        }
+        try {
+            return Long.parseLong(since);
+        } catch (NumberFormatException e) {
+            Log.w(TAG, "Invalid generation: " + since);
+            return -1;
+        }
+    }
+
+    private List<Object[]> getXmlResourceRows() {
+        final List<SearchIndexableResource> resources =
+                getSearchIndexableResourcesFromProvider(getContext());
+        final List<Object[]> rows = new ArrayList<>(resources.size());
+        for (SearchIndexableResource val : resources) {
+            final Object[] ref = new Object[INDEXABLES_XML_RES_COLUMNS.length];
+            ref[COLUMN_INDEX_XML_RES_RANK] = val.rank;
+            ref[COLUMN_INDEX_XML_RES_RESID] = val.xmlResId;
+            ref[COLUMN_INDEX_XML_RES_CLASS_NAME] = val.className;
+            ref[COLUMN_INDEX_XML_RES_ICON_RESID] = val.iconResId;
+            ref[COLUMN_INDEX_XML_RES_INTENT_ACTION] = val.intentAction;
+            ref[COLUMN_INDEX_XML_RES_INTENT_TARGET_PACKAGE] = val.intentTargetPackage;
+            ref[COLUMN_INDEX_XML_RES_INTENT_TARGET_CLASS] = null; // intent target class
+            rows.add(ref);
+        }
+        return rows;
+    }
+
+    private List<Object[]> getRawRows() {
+        final List<SearchIndexableRaw> raws = getSearchIndexableRawFromProvider(getContext());
+        final List<Object[]> rows = new ArrayList<>(raws.size());
+        for (SearchIndexableRaw val : raws) {
+            rows.add(createIndexableRawColumnObjects(val));
+        }
+        return rows;
+    }
+
+    private List<Object[]> getDynamicRawRows() {
         final Context context = getContext();
         final List<SearchIndexableRaw> rawList = new ArrayList<>();
         final Collection<SearchIndexableData> bundles = FeatureFactory.getFactory(context)
@@ -187,12 +324,11 @@ public class SettingsSearchIndexablesProvider extends SearchIndexablesProvider {
         }
         rawList.addAll(getInjectionIndexableRawData(context));
 
-        final MatrixCursor cursor = new MatrixCursor(INDEXABLES_RAW_COLUMNS);
+        final List<Object[]> rows = new ArrayList<>(rawList.size());
         for (SearchIndexableRaw raw : rawList) {
-            cursor.addRow(createIndexableRawColumnObjects(raw));
+            rows.add(createIndexableRawColumnObjects(raw));
         }
-
-        return cursor;
+        return rows;
     }
 
     @Override
@@ -274,15 +410,43 @@ public class SettingsSearchIndexablesProvider extends SearchIndexablesProvider {
         final Collection<SearchIndexableData> bundles = FeatureFactory.getFactory(context)
                 .getSearchFeatureProvider().getSearchIndexableResources().getProviderValues();
 
-        final List<String> nonIndexableKeys = new ArrayList<>();
-
+        // Fan the providers out, then collect the results in provider order so the output is
+        // deterministic regardless of which provider finishes first.
+        final List<Pair<NonIndexableKeysTask, Future<List<String>>>> futures = new ArrayList<>();
         for (SearchIndexableData bundle : bundles) {
-            final long startTime = System.currentTimeMillis();
-            Indexable.SearchIndexProvider provider = bundle.getSearchIndexProvider();
+            final NonIndexableKeysTask task = new NonIndexableKeysTask(context,
+                    bundle.getTargetClass().getName(), bundle.getSearchIndexProvider());
+            futures.add(Pair.create(task, getNonIndexableKeysExecutor().submit(task)));
+        }
+
+        final List<String> nonIndexableKeys = new ArrayList<>();
+        final long deadline = SystemClock.elapsedRealtime() + NON_INDEXABLE_KEYS_TIMEOUT_MS;
+        for (int i = 0; i < futures.size(); i++) {
+            final Pair<NonIndexableKeysTask, Future<List<String>>> pair = futures.get(i);
+            final NonIndexableKeysTask task = pair.first;
+            final String className = task.mClassName;
+            final List<String> cachedKeys = sLastNonIndexableKeys.get(className);
             List<String> providerNonIndexableKeys;
             try {
-                providerNonIndexableKeys = provider.getNonIndexableKeys(context);
-            } catch (Exception e) {
+                if (cachedKeys == null) {
+                    // Nothing to fall back on, so wait: leaving the keys out would surface
+                    // unavailable settings in search.
+                    providerNonIndexableKeys = pair.second.get();
+                } else {
+                    final long timeout = task.awaitStart(deadline)
+                            ? task.mStartTime + PROVIDER_TIMEOUT_MS - SystemClock.elapsedRealtime()
+                            : 0;
+                    providerNonIndexableKeys =
+                            pair.second.get(Math.max(0, timeout), TimeUnit.MILLISECONDS);
+                }
+            } catch (TimeoutException e) {
+                // Stop the provider rather than let late providers pile up in the shared pool
+                // and delay the next queries.
+                pair.second.cancel(true /* mayInterruptIfRunning */);
+                providerNonIndexableKeys = cachedKeys;
+                Log.w(TAG, "Timed out getting non-indexable keys from: " + className
+                        + ", using cached keys");
+            } catch (ExecutionException e) {
                 // Catch a generic crash. In the absence of the catch, the background thread will
                 // silently fail anyway, so we aren't losing information by catching the exception.
                 // We crash when the system property exists so that we can test if crashes need to
@@ -290,35 +454,97 @@ public class SettingsSearchIndexablesProvider extends SearchIndexablesProvider {
                 // The gain is that if there is a crash in a specific controller, we don't lose all
                 // non-indexable keys, but we can still find specific crashes in development.
                 if (System.getProperty(SYSPROP_CRASH_ON_ERROR) != null) {
-                    throw new RuntimeException(e);
+                    throw new RuntimeException(e.getCause());
                 }
-                Log.e(TAG, "Error trying to get non-indexable keys from: "
-                        + bundle.getTargetClass().getName(), e);
+                Log.e(TAG, "Error trying to get non-indexable keys from: " + className,
+                        e.getCause());
                 continue;
+            } catch (InterruptedException e) {
+                Log.w(TAG, "Interrupted getting non-indexable keys", e);
+                Thread.currentThread().interrupt();
+                for (int j = i; j < futures.size(); j++) {
+                    futures.get(j).second.cancel(true /* mayInterruptIfRunning */);
+                }
+                break;
             }
 
-            if (providerNonIndexableKeys == null || providerNonIndexableKeys.isEmpty()) {
-                if (DEBUG) {
-                    final long totalTime = System.currentTimeMillis() - startTime;
-                    Log.d(TAG, "No indexable, total time " + totalTime);
-                }
-                continue;
+            if (providerNonIndexableKeys != null) {
+                nonIndexableKeys.addAll(providerNonIndexableKeys);
             }
+        }
+
+        return nonIndexableKeys;
+    }
 
-            if (providerNonIndexableKeys.removeAll(INVALID_KEYS)) {
+    private static List<String> computeNonIndexableKeys(Context context, String className,
+            Indexable.SearchIndexProvider provider) {
+        final long startTime = SystemClock.elapsedRealtime();
+        final List<String> providerNonIndexableKeys = provider.getNonIndexableKeys(context);
+        final long totalTime = SystemClock.elapsedRealtime() - startTime;
+        sProviderTimings.put(className, totalTime);
+
+        final List<String> result = new ArrayList<>();
+        if (providerNonIndexableKeys != null) {
+            result.addAll(providerNonIndexableKeys);
+            if (result.removeAll(INVALID_KEYS)) {
                 Log.v(TAG, provider + " tried to add an empty non-indexable key");
             }
+        }
+        if (DEBUG) {
+            Log.d(TAG, "Non-indexables " + result.size() + ", total time " + totalTime);
+        }
+        sLastNonIndexableKeys.put(className, Collections.unmodifiableList(result));
+        return result;
+    }
 
-            if (DEBUG) {
-                final long totalTime = System.currentTimeMillis() - startTime;
-                Log.d(TAG, "Non-indexables " + providerNonIndexableKeys.size() + ", total time "
-                        + totalTime);
-            }
+    /** Computes the non-indexable keys of one provider, recording when it started. */
+    private static class NonIndexableKeysTask implements Callable<List<String>> {
+        private final Context mContext;
+        private final String mClassName;
+        private final Indexable.SearchIndexProvider mProvider;
+        private final CountDownLatch mStarted = new CountDownLatch(1);
+        private volatile long mStartTime;
+
+        NonIndexableKeysTask(Context context, String className,
+                Indexable.SearchIndexProvider provider) {
+            mContext = context;
+            mClassName = className;
+            mProvider = provider;
+        }
 
-            nonIndexableKeys.addAll(providerNonIndexableKeys);
+        @Override
+        public List<String> call() {
+            mStartTime = SystemClock.elapsedRealtime();
+            mStarted.countDown();
+            return computeNonIndexableKeys(mContext, mClassName, mProvider);
         }
 
-        return nonIndexableKeys;
+        /** @return whether the task started before {@code deadline} (elapsed realtime). */
+        boolean awaitStart(long deadline) throws InterruptedException {
+            return mStarted.await(Math.max(0, deadline - SystemClock.elapsedRealtime()),
+                    TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private static synchronized ExecutorService getNonIndexableKeysExecutor() {
+        if (sNonIndexableKeysExecutor == null) {
+            final ThreadPoolExecutor executor = new ThreadPoolExecutor(
+                    NON_INDEXABLE_KEYS_THREADS, NON_INDEXABLE_KEYS_THREADS,
+                    30 /* keepAliveTime */, TimeUnit.SECONDS, new LinkedBlockingQueue<>());
+            executor.allowCoreThreadTimeOut(true);
+            sNonIndexableKeysExecutor = executor;
+        }
+        return sNonIndexableKeysExecutor;
+    }
+
+    @Override
+    public void dump(FileDescriptor fd, PrintWriter writer, String[] args) {
+        writer.println("Non-indexable keys time per provider (ms):");
+        final List<Map.Entry<String, Long>> timings = new ArrayList<>(sProviderTimings.entrySet());
+        timings.sort((a, b) -> Long.compare(b.getValue(), a.getValue()));
+        for (Map.Entry<String, Long> entry : timings) {
+            writer.println("  " + entry.getKey() + ": " + entry.getValue());
+        }
     }
 
     private List<SearchIndexableResource> getSearchIndexableResourcesFromProvider(Context context) {
@@ -53,6 +53,8 @@ import com.android.settings.overlay.FeatureFactory;
 import com.android.settingslib.SliceBroadcastRelay;
 import com.android.settingslib.utils.ThreadUtils;
 
+import java.io.FileDescriptor;
+import java.io.PrintWriter;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
@@ -60,7 +62,6 @@ import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
-import java.util.WeakHashMap;
 import java.util.stream.Collectors;
 
 /**
@@ -75,9 +76,11 @@ import java.util.stream.Collectors;
  * return an stub {@link Slice} with the correct {@link Uri} immediately. In the background, the
  * data corresponding to the key in the {@link Uri} is read by {@link SlicesDatabaseAccessor}, and
  * the entire row is converted into a {@link SliceData}. Once complete, it is stored in
- * {@link #mSliceWeakDataCache}, and then an update sent via the Slice framework to the Slice.
+ * {@link #mSliceDataCache}, and then an update sent via the Slice framework to the Slice.
  * The {@link Slice} displayed by the Slice-presenter will re-query this Slice-provider and find
- * the {@link SliceData} cached to build the full {@link Slice}.
+ * the {@link SliceData} cached to build the full {@link Slice}. The cache is warmed with every
+ * indexed slice in one query when descendants are requested, so binding many slices in a row
+ * does not read the database for each of them.
  *
  * <p>When an action is taken on that {@link Slice}, we receive the action in
  * {@link SliceBroadcastReceiver}, and use the
@@ -133,7 +136,7 @@ public class SettingsSliceProvider extends SliceProvider {
     SlicesDatabaseAccessor mSlicesDatabaseAccessor;
 
     @VisibleForTesting
-    Map<Uri, SliceData> mSliceWeakDataCache;
+    SliceDataCache mSliceDataCache;
 
     @VisibleForTesting
     final Map<Uri, SliceBackgroundWorker> mPinnedWorkers = new ArrayMap<>();
@@ -141,6 +144,7 @@ public class SettingsSliceProvider extends SliceProvider {
     private Boolean mNightMode;
     private boolean mFirstSlicePinned;
     private boolean mFirstSliceBound;
+    private boolean mSliceDataCacheWarming;
 
     public SettingsSliceProvider() {
         super(READ_SEARCH_INDEXABLES);
@@ -151,7 +155,7 @@ public class SettingsSliceProvider extends SliceProvider {
     public boolean onCreateSliceProvider() {
         Log.d(TAG, "onCreateSliceProvider");
         mSlicesDatabaseAccessor = new SlicesDatabaseAccessor(getContext());
-        mSliceWeakDataCache = new WeakHashMap<>();
+        mSliceDataCache = SlicesDatabaseHelper.getInstance(getContext()).getSliceDataCache();
         return true;
     }
 
@@ -183,6 +187,7 @@ public class SettingsSliceProvider extends SliceProvider {
 
         // Start warming the slice, we expect someone will want it soon.
         loadSliceInBackground(sliceUri);
+        warmSliceDataCacheInBackground();
     }
 
     @Override
@@ -253,16 +258,12 @@ public class SettingsSliceProvider extends SliceProvider {
                         .createWifiCallingPreferenceSlice(sliceUri);
             }
 
-            final SliceData cachedSliceData = mSliceWeakDataCache.get(sliceUri);
+            final SliceData cachedSliceData = mSliceDataCache.get(sliceUri);
             if (cachedSliceData == null) {
                 loadSliceInBackground(sliceUri);
                 return getSliceStub(sliceUri);
             }
 
-            // Remove the SliceData from the cache after it has been used to prevent a memory-leak.
-            if (!getPinnedSlices().contains(sliceUri)) {
-                mSliceWeakDataCache.remove(sliceUri);
-            }
             return SliceBuilderUtils.buildSlice(getContext(), cachedSliceData);
         } finally {
             StrictMode.setThreadPolicy(oldPolicy);
@@ -342,6 +343,8 @@ public class SettingsSliceProvider extends SliceProvider {
             descendants.addAll(customSlices);
         }
         grantAllowlistedPackagePermissions(getContext(), descendants);
+        // The caller is likely to bind the descendants next.
+        warmSliceDataCacheInBackground();
         return descendants;
     }
 
@@ -386,16 +389,26 @@ public class SettingsSliceProvider extends SliceProvider {
         });
     }
 
+    @Override
+    public void dump(FileDescriptor fd, PrintWriter writer, String[] args) {
+        writer.println("Slice data cache: size=" + mSliceDataCache.size()
+                + ", hits=" + mSliceDataCache.getHitCount()
+                + ", misses=" + mSliceDataCache.getMissCount());
+    }
+
     @VisibleForTesting
     void loadSlice(Uri uri) {
         long startBuildTime = System.currentTimeMillis();
 
-        final SliceData sliceData;
-        try {
-            sliceData = mSlicesDatabaseAccessor.getSliceDataFromUri(uri);
-        } catch (IllegalStateException e) {
-            Log.d(TAG, "Could not create slicedata for uri: " + uri, e);
-            return;
+        // The bind that requested the load already counted the lookup.
+        SliceData sliceData = mSliceDataCache.peek(uri);
+        if (sliceData == null) {
+            try {
+                sliceData = mSlicesDatabaseAccessor.getSliceDataFromUri(uri);
+            } catch (IllegalStateException e) {
+                Log.d(TAG, "Could not create slicedata for uri: " + uri, e);
+                return;
+            }
         }
 
         final BasePreferenceController controller = SliceBuilderUtils.getPreferenceController(
@@ -414,7 +427,7 @@ public class SettingsSliceProvider extends SliceProvider {
 
         ThreadUtils.postOnMainThread(() -> startBackgroundWorker(controller, uri));
 
-        mSliceWeakDataCache.put(uri, sliceData);
+        mSliceDataCache.put(uri, sliceData);
         getContext().getContentResolver().notifyChange(uri, null /* content observer */);
 
         Log.d(TAG, "Built slice (" + uri + ") in: " +
@@ -426,6 +439,34 @@ public class SettingsSliceProvider extends SliceProvider {
         ThreadUtils.postOnBackgroundThread(() -> loadSlice(uri));
     }
 
+    /**
+     * Reads all indexed slices with a single query and adds them to the slice data cache.
+     */
+    @VisibleForTesting
+    void warmSliceDataCache() {
+        final long startTime = System.currentTimeMillis();
+        final List<SliceData> sliceData = mSlicesDatabaseAccessor.getAllSliceData();
+        mSliceDataCache.putAll(sliceData);
+        Log.d(TAG, "Warmed " + sliceData.size() + " slices in: "
+                + (System.currentTimeMillis() - startTime));
+    }
+
+    private synchronized void warmSliceDataCacheInBackground() {
+        if (mSliceDataCacheWarming || mSliceDataCache.isWarm()) {
+            return;
+        }
+        mSliceDataCacheWarming = true;
+        ThreadUtils.postOnBackgroundThread(() -> {
+            try {
+                warmSliceDataCache();
+            } finally {
+                synchronized (this) {
+                    mSliceDataCacheWarming = false;
+                }
+            }
+        });
+    }
+
     @VisibleForTesting
     /**
      * Registers an IntentFilter in SysUI to notify changes to {@param sliceUri} when broadcasts to
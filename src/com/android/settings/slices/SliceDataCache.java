@@ -0,0 +1,124 @@
+/*
+ * Copyright (C) 2022 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License
+ */
+
+package com.android.settings.slices;
+
+import android.net.Uri;
+import android.util.LruCache;
+
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Size bounded cache of the {@link SliceData} read from the slices database, keyed by slice
+ * {@link Uri}.
+ *
+ * The indexed titles and summaries are localized, so the cache is dropped when the default
+ * {@link Locale} changes.
+ */
+class SliceDataCache {
+
+    private final LruCache<Uri, SliceData> mCache;
+    private Locale mLocale;
+    private boolean mWarm;
+    private long mHitCount;
+    private long mMissCount;
+
+    SliceDataCache(int maxSize) {
+        mCache = new LruCache<>(maxSize);
+        mLocale = Locale.getDefault();
+    }
+
+    /**
+     * @return the cached {@link SliceData} for {@param uri}, or {@code null} if it must be read
+     * from the database.
+     */
+    synchronized SliceData get(Uri uri) {
+        checkLocale();
+        final SliceData data = mCache.get(uri);
+        if (data == null) {
+            mMissCount++;
+        } else {
+            mHitCount++;
+        }
+        return data;
+    }
+
+    /**
+     * Same as {@link #get(Uri)}, without counting a hit or a miss. Used when the lookup repeats
+     * one that was already counted.
+     */
+    synchronized SliceData peek(Uri uri) {
+        checkLocale();
+        return mCache.get(uri);
+    }
+
+    synchronized void put(Uri uri, SliceData data) {
+        checkLocale();
+        mCache.put(uri, data);
+    }
+
+    /**
+     * Adds all of {@param sliceData}, keyed by their own {@link SliceData#getUri()}, and marks the
+     * cache as warm.
+     */
+    synchronized void putAll(List<SliceData> sliceData) {
+        checkLocale();
+        for (SliceData data : sliceData) {
+            if (data.getUri() != null) {
+                mCache.put(data.getUri(), data);
+            }
+        }
+        mWarm = true;
+    }
+
+    /**
+     * @return {@code true} if all indexed slices were added since the cache was last dropped.
+     */
+    synchronized boolean isWarm() {
+        checkLocale();
+        return mWarm;
+    }
+
+    synchronized void remove(Uri uri) {
+        mCache.remove(uri);
+    }
+
+    synchronized void clear() {
+        mCache.evictAll();
+        mWarm = false;
+    }
+
+    synchronized int size() {
+        return mCache.size();
+    }
+
+    synchronized long getHitCount() {
+        return mHitCount;
+    }
+
+    synchronized long getMissCount() {
+        return mMissCount;
+    }
+
+    private void checkLocale() {
+        final Locale locale = Locale.getDefault();
+        if (!locale.equals(mLocale)) {
+            mLocale = locale;
+            clear();
+        }
+    }
+}
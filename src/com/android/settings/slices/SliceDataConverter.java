@@ -35,9 +35,11 @@ import android.content.res.Resources;
 import android.content.res.XmlResourceParser;
 import android.net.Uri;
 import android.os.Bundle;
+import android.os.SystemClock;
 import android.provider.SearchIndexableResource;
 import android.provider.SettingsSlicesContract;
 import android.text.TextUtils;
+import android.util.ArrayMap;
 import android.util.AttributeSet;
 import android.util.Log;
 import android.util.Xml;
@@ -66,8 +68,15 @@ import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 /**
  * Converts all Slice sources into {@link SliceData}.
@@ -81,7 +90,15 @@ class SliceDataConverter {
 
     private static final String NODE_NAME_PREFERENCE_SCREEN = "PreferenceScreen";
 
+    private static final int MAX_PARSE_THREADS = 4;
+
+    /**
+     * Source name of the slices built from the installed accessibility services.
+     */
+    static final String SOURCE_ACCESSIBILITY_SERVICES = "accessibility_services";
+
     private final MetricsFeatureProvider mMetricsFeatureProvider;
+    private final Map<String, Long> mSourceTimings = new ConcurrentHashMap<>();
     private Context mContext;
 
     public SliceDataConverter(Context context) {
@@ -100,30 +117,96 @@ class SliceDataConverter {
      * {@link com.android.settings.core.BasePreferenceController}.
      */
     public List<SliceData> getSliceData() {
-        List<SliceData> sliceData = new ArrayList<>();
+        final List<SliceData> sliceData = new ArrayList<>();
+        for (List<SliceData> sourceSliceData : getSliceDataBySource().values()) {
+            if (sourceSliceData != null) {
+                sliceData.addAll(sourceSliceData);
+            }
+        }
+        return sliceData;
+    }
 
+    /**
+     * @return the same data as {@link #getSliceData()}, grouped by the source which produced it.
+     *
+     * Sources are the fragment class names of the search index providers, plus
+     * {@link #SOURCE_ACCESSIBILITY_SERVICES}. Providers are parsed in parallel, and the returned
+     * map keeps the provider order so the result is deterministic.
+     *
+     * A source whose data could not be collected, because its provider threw or the collection
+     * was interrupted, maps to {@code null} so callers can tell it apart from a source that no
+     * longer provides anything.
+     */
+    public Map<String, List<SliceData>> getSliceDataBySource() {
         final Collection<SearchIndexableData> bundles = FeatureFactory.getFactory(mContext)
                 .getSearchFeatureProvider().getSearchIndexableResources().getProviderValues();
+        final Map<String, Future<List<SliceData>>> futures = new LinkedHashMap<>();
+        final ExecutorService executor = Executors.newFixedThreadPool(
+                Math.min(MAX_PARSE_THREADS, Runtime.getRuntime().availableProcessors()));
+        mSourceTimings.clear();
 
-        for (SearchIndexableData bundle : bundles) {
-            final String fragmentName = bundle.getTargetClass().getName();
+        try {
+            for (SearchIndexableData bundle : bundles) {
+                final String fragmentName = bundle.getTargetClass().getName();
 
-            final SearchIndexProvider provider = bundle.getSearchIndexProvider();
+                final SearchIndexProvider provider = bundle.getSearchIndexProvider();
 
-            // CodeInspection test guards against the null check. Keep check in case of bad actors.
-            if (provider == null) {
-                Log.e(TAG, fragmentName + " dose not implement Search Index Provider");
-                continue;
+                // CodeInspection test guards against the null check. Keep check in case of bad
+                // actors.
+                if (provider == null) {
+                    Log.e(TAG, fragmentName + " dose not implement Search Index Provider");
+                    continue;
+                }
+
+                futures.put(fragmentName, executor.submit(() -> {
+                    final long startTime = SystemClock.elapsedRealtime();
+                    final List<SliceData> providerSliceData = getSliceDataFromProvider(provider,
+                            fragmentName);
+                    mSourceTimings.put(fragmentName, SystemClock.elapsedRealtime() - startTime);
+                    return providerSliceData;
+                }));
             }
 
-            final List<SliceData> providerSliceData = getSliceDataFromProvider(provider,
-                    fragmentName);
-            sliceData.addAll(providerSliceData);
+            final Map<String, List<SliceData>> sliceData = new LinkedHashMap<>();
+            boolean interrupted = false;
+            for (Map.Entry<String, Future<List<SliceData>>> entry : futures.entrySet()) {
+                if (interrupted) {
+                    sliceData.put(entry.getKey(), null);
+                    continue;
+                }
+                try {
+                    sliceData.put(entry.getKey(), entry.getValue().get());
+                } catch (ExecutionException e) {
+                    Log.w(TAG, "Get slice data from provider failed " + entry.getKey(), e);
+                    sliceData.put(entry.getKey(), null);
+                } catch (InterruptedException e) {
+                    Log.w(TAG, "Interrupted while getting slice data", e);
+                    Thread.currentThread().interrupt();
+                    interrupted = true;
+                    sliceData.put(entry.getKey(), null);
+                }
+            }
+            if (interrupted) {
+                sliceData.put(SOURCE_ACCESSIBILITY_SERVICES, null);
+                return sliceData;
+            }
+
+            final long startTime = SystemClock.elapsedRealtime();
+            sliceData.put(SOURCE_ACCESSIBILITY_SERVICES, getAccessibilitySliceData());
+            mSourceTimings.put(SOURCE_ACCESSIBILITY_SERVICES,
+                    SystemClock.elapsedRealtime() - startTime);
+            return sliceData;
+        } finally {
+            executor.shutdownNow();
         }
+    }
 
-        final List<SliceData> a11ySliceData = getAccessibilitySliceData();
-        sliceData.addAll(a11ySliceData);
-        return sliceData;
+    /**
+     * @return the time in milliseconds each source took during the last
+     * {@link #getSliceDataBySource()}.
+     */
+    public Map<String, Long> getSourceTimings() {
+        return new ArrayMap<>(mSourceTimings);
     }
 
     private List<SliceData> getSliceDataFromProvider(SearchIndexProvider provider,
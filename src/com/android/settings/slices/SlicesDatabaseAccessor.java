@@ -17,6 +17,7 @@
 package com.android.settings.slices;
 
 import static com.android.settings.slices.SlicesDatabaseHelper.Tables.TABLE_SLICES_INDEX;
+import static com.android.settings.slices.SlicesDatabaseHelper.Tables.TABLE_SLICES_URIS;
 
 import android.content.Context;
 import android.database.Cursor;
@@ -30,8 +31,10 @@ import androidx.slice.Slice;
 
 import com.android.settings.overlay.FeatureFactory;
 import com.android.settings.slices.SlicesDatabaseHelper.IndexColumns;
+import com.android.settings.slices.SlicesDatabaseHelper.UriColumns;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 
 /**
@@ -51,8 +54,23 @@ public class SlicesDatabaseAccessor {
             IndexColumns.SLICE_TYPE,
             IndexColumns.UNAVAILABLE_SLICE_SUBTITLE,
             IndexColumns.HIGHLIGHT_MENU_RESOURCE,
+            IndexColumns.SLICE_URI,
     };
 
+    // Positions of the columns in SELECT_COLUMNS_ALL, so rows are read without name lookups.
+    private static final int COLUMN_KEY = 0;
+    private static final int COLUMN_TITLE = 1;
+    private static final int COLUMN_SUMMARY = 2;
+    private static final int COLUMN_SCREENTITLE = 3;
+    private static final int COLUMN_KEYWORDS = 4;
+    private static final int COLUMN_ICON_RESOURCE = 5;
+    private static final int COLUMN_FRAGMENT = 6;
+    private static final int COLUMN_CONTROLLER = 7;
+    private static final int COLUMN_SLICE_TYPE = 8;
+    private static final int COLUMN_UNAVAILABLE_SLICE_SUBTITLE = 9;
+    private static final int COLUMN_HIGHLIGHT_MENU_RESOURCE = 10;
+    private static final int COLUMN_SLICE_URI = 11;
+
     private final Context mContext;
     private final SlicesDatabaseHelper mHelper;
 
@@ -89,31 +107,71 @@ public class SlicesDatabaseAccessor {
     }
 
     /**
-     * @return a list of Slice {@link Uri}s based on their visibility {@param isPublicSlice } and
-     * {@param authority}.
+     * @return an immutable list of Slice {@link Uri}s based on their visibility
+     * {@param isPublicSlice } and {@param authority}. The list is cached until the next re-index.
      */
     public List<Uri> getSliceUris(String authority, boolean isPublicSlice) {
         verifyIndexing();
+        final String cacheKey = (isPublicSlice ? "public/" : "private/")
+                + (TextUtils.isEmpty(authority) ? "" : authority);
+        final List<Uri> cachedUris = mHelper.getCachedSliceUris(cacheKey);
+        if (cachedUris != null) {
+            return cachedUris;
+        }
+
+        final long generation = mHelper.getSliceUriGeneration();
         final List<Uri> uris = new ArrayList<>();
-        final String whereClause = IndexColumns.PUBLIC_SLICE + (isPublicSlice ? "=1" : "=0");
+        final StringBuilder whereClause = new StringBuilder(UriColumns.PUBLIC_SLICE)
+                .append(isPublicSlice ? "=1" : "=0");
+        String[] selection = null;
+        if (!TextUtils.isEmpty(authority)) {
+            whereClause.append(" AND ").append(UriColumns.AUTHORITY).append(" = ?");
+            selection = new String[]{authority};
+        }
         final SQLiteDatabase database = mHelper.getReadableDatabase();
-        final String[] columns = new String[]{IndexColumns.SLICE_URI};
-        try (Cursor resultCursor = database.query(TABLE_SLICES_INDEX, columns,
-                whereClause /* where */, null /* selection */, null /* groupBy */,
+        final String[] columns = new String[]{UriColumns.SLICE_URI};
+        try (Cursor resultCursor = database.query(TABLE_SLICES_URIS, columns,
+                whereClause.toString() /* where */, selection, null /* groupBy */,
                 null /* having */, null /* orderBy */)) {
-            if (!resultCursor.moveToFirst()) {
-                return uris;
+            while (resultCursor.moveToNext()) {
+                uris.add(Uri.parse(resultCursor.getString(0 /* SLICE_URI */)));
             }
+        }
+
+        final List<Uri> result = Collections.unmodifiableList(uris);
+        mHelper.putCachedSliceUris(cacheKey, result, generation);
+        return result;
+    }
 
-            do {
-                final Uri uri = Uri.parse(resultCursor.getString(0 /* SLICE_URI */));
-                if (TextUtils.isEmpty(authority)
-                        || TextUtils.equals(authority, uri.getAuthority())) {
-                    uris.add(uri);
+    /**
+     * @return the {@link SliceData} of every indexed slice, each bound to its indexed
+     * {@link Uri}, read with a single query. Used to warm the slice data cache.
+     */
+    public List<SliceData> getAllSliceData() {
+        verifyIndexing();
+        final List<SliceData> sliceData = new ArrayList<>();
+        final SQLiteDatabase database = mHelper.getReadableDatabase();
+        try (Cursor cursor = database.query(TABLE_SLICES_INDEX, SELECT_COLUMNS_ALL,
+                null /* where */, null /* selection */, null /* groupBy */, null /* having */,
+                null /* orderBy */)) {
+            while (cursor.moveToNext()) {
+                final String sliceUri = cursor.getString(COLUMN_SLICE_URI);
+                if (TextUtils.isEmpty(sliceUri)) {
+                    continue;
                 }
-            } while (resultCursor.moveToNext());
+                final Uri uri = Uri.parse(sliceUri);
+                final Pair<Boolean, String> pathData = SliceBuilderUtils.getPathData(uri);
+                if (pathData == null) {
+                    continue;
+                }
+                try {
+                    sliceData.add(buildSliceData(cursor, uri, pathData.first /* isIntentOnly */));
+                } catch (SliceData.InvalidSliceDataException e) {
+                    // Skip the row, it will fail the same way when bound individually.
+                }
+            }
         }
-        return uris;
+        return sliceData;
     }
 
     private Cursor getIndexedSliceData(String path) {
@@ -149,23 +207,18 @@ public class SlicesDatabaseAccessor {
     }
 
     private static SliceData buildSliceData(Cursor cursor, Uri uri, boolean isIntentOnly) {
-        final String key = cursor.getString(cursor.getColumnIndex(IndexColumns.KEY));
-        final String title = cursor.getString(cursor.getColumnIndex(IndexColumns.TITLE));
-        final String summary = cursor.getString(cursor.getColumnIndex(IndexColumns.SUMMARY));
-        final String screenTitle = cursor.getString(
-                cursor.getColumnIndex(IndexColumns.SCREENTITLE));
-        final String keywords = cursor.getString(cursor.getColumnIndex(IndexColumns.KEYWORDS));
-        final int iconResource = cursor.getInt(cursor.getColumnIndex(IndexColumns.ICON_RESOURCE));
-        final String fragmentClassName = cursor.getString(
-                cursor.getColumnIndex(IndexColumns.FRAGMENT));
-        final String controllerClassName = cursor.getString(
-                cursor.getColumnIndex(IndexColumns.CONTROLLER));
-        int sliceType = cursor.getInt(
-                cursor.getColumnIndex(IndexColumns.SLICE_TYPE));
+        final String key = cursor.getString(COLUMN_KEY);
+        final String title = cursor.getString(COLUMN_TITLE);
+        final String summary = cursor.getString(COLUMN_SUMMARY);
+        final String screenTitle = cursor.getString(COLUMN_SCREENTITLE);
+        final String keywords = cursor.getString(COLUMN_KEYWORDS);
+        final int iconResource = cursor.getInt(COLUMN_ICON_RESOURCE);
+        final String fragmentClassName = cursor.getString(COLUMN_FRAGMENT);
+        final String controllerClassName = cursor.getString(COLUMN_CONTROLLER);
+        int sliceType = cursor.getInt(COLUMN_SLICE_TYPE);
         final String unavailableSliceSubtitle = cursor.getString(
-                cursor.getColumnIndex(IndexColumns.UNAVAILABLE_SLICE_SUBTITLE));
-        final int highlightMenuRes = cursor.getInt(
-                cursor.getColumnIndex(IndexColumns.HIGHLIGHT_MENU_RESOURCE));
+                COLUMN_UNAVAILABLE_SLICE_SUBTITLE);
+        final int highlightMenuRes = cursor.getInt(COLUMN_HIGHLIGHT_MENU_RESOURCE);
 
         if (isIntentOnly) {
             sliceType = SliceData.SliceType.INTENT;
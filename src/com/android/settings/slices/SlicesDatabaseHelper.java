@@ -16,15 +16,21 @@
 
 package com.android.settings.slices;
 
+import android.content.ContentValues;
 import android.content.Context;
+import android.database.Cursor;
 import android.database.sqlite.SQLiteDatabase;
 import android.database.sqlite.SQLiteOpenHelper;
+import android.net.Uri;
 import android.os.Build;
+import android.util.ArrayMap;
 import android.util.Log;
 
 import androidx.annotation.VisibleForTesting;
 
+import java.util.List;
 import java.util.Locale;
+import java.util.Map;
 
 /**
  * Defines the schema for the Slices database.
@@ -36,10 +42,14 @@ public class SlicesDatabaseHelper extends SQLiteOpenHelper {
     private static final String DATABASE_NAME = "slices_index.db";
     private static final String SHARED_PREFS_TAG = "slices_shared_prefs";
 
-    private static final int DATABASE_VERSION = 9;
+    private static final int DATABASE_VERSION = 12;
+
+    private static final int SLICE_DATA_CACHE_SIZE = 512;
 
     public interface Tables {
         String TABLE_SLICES_INDEX = "slices_index";
+        String TABLE_SLICES_SOURCES = "slices_sources";
+        String TABLE_SLICES_URIS = "slices_uris";
     }
 
     public interface IndexColumns {
@@ -108,6 +118,62 @@ public class SlicesDatabaseHelper extends SQLiteOpenHelper {
          * Resource ID for the menu entry of the setting.
          */
         String HIGHLIGHT_MENU_RESOURCE = "highlight_menu";
+
+        /**
+         * Name of the source (search index provider or accessibility services) which produced
+         * the slice. Used to rewrite the rows of a single source on re-index.
+         */
+        String SOURCE = "source";
+    }
+
+    public interface SourceColumns {
+        /**
+         * Primary key of the table. Name of the source, matching {@link IndexColumns#SOURCE}.
+         */
+        String SOURCE = "source";
+
+        /**
+         * Hash of all the {@link SliceData} indexed for the source.
+         */
+        String CONTENT_HASH = "content_hash";
+    }
+
+    public interface UriColumns {
+        /**
+         * Preference key of the slice, matching {@link IndexColumns#KEY}.
+         */
+        String KEY = "key";
+
+        /**
+         * Name of the source which produced the slice, matching {@link IndexColumns#SOURCE}.
+         */
+        String SOURCE = "source";
+
+        /**
+         * The uri of slice, matching {@link IndexColumns#SLICE_URI}.
+         */
+        String SLICE_URI = "slice_uri";
+
+        /**
+         * Authority of {@link #SLICE_URI}.
+         */
+        String AUTHORITY = "authority";
+
+        /**
+         * Path of {@link #SLICE_URI}.
+         */
+        String PATH = "path";
+
+        /**
+         * Whether the slice should be exposed publicly, matching {@link IndexColumns#PUBLIC_SLICE}.
+         */
+        String PUBLIC_SLICE = "public_slice";
+
+        /**
+         * Rowid of the matching row in {@link Tables#TABLE_SLICES_INDEX}, so that the rows of a
+         * source can be removed from the FTS table without scanning it.
+         */
+        String INDEX_ROWID = "index_rowid";
     }
 
     private static final String CREATE_SLICES_TABLE =
@@ -138,11 +204,72 @@ public class SlicesDatabaseHelper extends SQLiteOpenHelper {
                     + IndexColumns.PUBLIC_SLICE
                     + ", "
                     + IndexColumns.HIGHLIGHT_MENU_RESOURCE
-                    + " INTEGER DEFAULT 0 "
+                    + " INTEGER DEFAULT 0, "
+                    + IndexColumns.SOURCE
+                    + ");";
+
+    private static final String CREATE_SOURCES_TABLE =
+            "CREATE TABLE " + Tables.TABLE_SLICES_SOURCES
+                    + "("
+                    + SourceColumns.SOURCE
+                    + " TEXT PRIMARY KEY, "
+                    + SourceColumns.CONTENT_HASH
+                    + " INTEGER"
+                    + ");";
+
+    // The FTS table cannot be indexed, so the uris are also stored in a plain table which can be
+    // filtered by visibility and authority with an index.
+    private static final String CREATE_URIS_TABLE =
+            "CREATE TABLE " + Tables.TABLE_SLICES_URIS
+                    + "("
+                    + UriColumns.KEY
+                    + " TEXT, "
+                    + UriColumns.SOURCE
+                    + " TEXT, "
+                    + UriColumns.SLICE_URI
+                    + " TEXT, "
+                    + UriColumns.AUTHORITY
+                    + " TEXT, "
+                    + UriColumns.PATH
+                    + " TEXT, "
+                    + UriColumns.PUBLIC_SLICE
+                    + " INTEGER, "
+                    + UriColumns.INDEX_ROWID
+                    + " INTEGER"
+                    + ");";
+
+    private static final String CREATE_URIS_INDEX =
+            "CREATE INDEX slices_uris_lookup ON " + Tables.TABLE_SLICES_URIS
+                    + "("
+                    + UriColumns.PUBLIC_SLICE
+                    + ", "
+                    + UriColumns.AUTHORITY
+                    + ", "
+                    + UriColumns.PATH
+                    + ");";
+
+    private static final String CREATE_URIS_SOURCE_INDEX =
+            "CREATE INDEX slices_uris_source ON " + Tables.TABLE_SLICES_URIS
+                    + "("
+                    + UriColumns.SOURCE
                     + ");";
 
+    // Matching on a column of an FTS table is a full scan, so the rows of a source are removed by
+    // rowid, using the rowids recorded in the uris table.
+    private static final String DELETE_SOURCE_INDEX_SQL =
+            "DELETE FROM " + Tables.TABLE_SLICES_INDEX
+                    + " WHERE rowid IN (SELECT " + UriColumns.INDEX_ROWID
+                    + " FROM " + Tables.TABLE_SLICES_URIS
+                    + " WHERE " + UriColumns.SOURCE + " = ?)";
+
     private final Context mContext;
 
+    // Slice uri lists handed out by SlicesDatabaseAccessor, keyed by visibility and authority.
+    private final Map<String, List<Uri>> mSliceUriCache = new ArrayMap<>();
+    private long mSliceUriGeneration;
+    // Slice data handed out by SettingsSliceProvider, dropped whenever the index is rewritten.
+    private final SliceDataCache mSliceDataCache = new SliceDataCache(SLICE_DATA_CACHE_SIZE);
+
     private static SlicesDatabaseHelper sSingleton;
 
     public static synchronized SlicesDatabaseHelper getInstance(Context context) {
@@ -176,12 +303,95 @@ public class SlicesDatabaseHelper extends SQLiteOpenHelper {
      * {@link#isNewIndexingState(Context)} will return {@code true}.
      */
     void reconstruct(SQLiteDatabase db) {
+        clearIndexedState();
+        invalidateSliceUris();
+        mSliceDataCache.clear();
+        dropTables(db);
+        createDatabases(db);
+    }
+
+    /**
+     * Un-marks the state of the data without dropping any indexed rows, so that the next index
+     * only needs to rewrite the sources whose content changed.
+     */
+    void clearIndexedState() {
         mContext.getSharedPreferences(SHARED_PREFS_TAG, Context.MODE_PRIVATE)
                 .edit()
                 .clear()
                 .apply();
-        dropTables(db);
-        createDatabases(db);
+    }
+
+    /**
+     * @return a map from source name to the content hash stored by the last index.
+     */
+    Map<String, Integer> getIndexedSourceHashes(SQLiteDatabase db) {
+        final Map<String, Integer> hashes = new ArrayMap<>();
+        try (Cursor cursor = db.query(Tables.TABLE_SLICES_SOURCES,
+                new String[]{SourceColumns.SOURCE, SourceColumns.CONTENT_HASH},
+                null /* selection */, null /* selectionArgs */, null /* groupBy */,
+                null /* having */, null /* orderBy */)) {
+            while (cursor.moveToNext()) {
+                hashes.put(cursor.getString(0), cursor.getInt(1));
+            }
+        }
+        return hashes;
+    }
+
+    /**
+     * Stores the content hash of a source after its rows have been rewritten.
+     */
+    void setIndexedSourceHash(SQLiteDatabase db, String source, int hash) {
+        final ContentValues values = new ContentValues();
+        values.put(SourceColumns.SOURCE, source);
+        values.put(SourceColumns.CONTENT_HASH, hash);
+        db.replaceOrThrow(Tables.TABLE_SLICES_SOURCES, null /* nullColumnHack */, values);
+    }
+
+    /**
+     * Removes every indexed row and the stored hash of a source.
+     */
+    void deleteSource(SQLiteDatabase db, String source) {
+        final String[] whereArgs = new String[]{source};
+        db.execSQL(DELETE_SOURCE_INDEX_SQL, whereArgs);
+        db.delete(Tables.TABLE_SLICES_URIS, UriColumns.SOURCE + " = ?", whereArgs);
+        db.delete(Tables.TABLE_SLICES_SOURCES, SourceColumns.SOURCE + " = ?", whereArgs);
+    }
+
+    /**
+     * @return the cached slice uris for {@param cacheKey}, or {@code null} if they must be read
+     * from the database.
+     */
+    synchronized List<Uri> getCachedSliceUris(String cacheKey) {
+        return mSliceUriCache.get(cacheKey);
+    }
+
+    /**
+     * Caches slice uris read from the database, unless the index was rewritten since
+     * {@param generation} was obtained from {@link #getSliceUriGeneration()}.
+     */
+    synchronized void putCachedSliceUris(String cacheKey, List<Uri> uris, long generation) {
+        if (generation == mSliceUriGeneration) {
+            mSliceUriCache.put(cacheKey, uris);
+        }
+    }
+
+    synchronized long getSliceUriGeneration() {
+        return mSliceUriGeneration;
+    }
+
+    /**
+     * Drops the cached slice uris. Should be called whenever indexed rows are rewritten.
+     */
+    synchronized void invalidateSliceUris() {
+        mSliceUriGeneration++;
+        mSliceUriCache.clear();
+    }
+
+    /**
+     * @return the cache of the {@link SliceData} read from this database.
+     */
+    SliceDataCache getSliceDataCache() {
+        return mSliceDataCache;
     }
 
     /**
@@ -204,11 +414,17 @@ public class SlicesDatabaseHelper extends SQLiteOpenHelper {
 
     private void createDatabases(SQLiteDatabase db) {
         db.execSQL(CREATE_SLICES_TABLE);
+        db.execSQL(CREATE_SOURCES_TABLE);
+        db.execSQL(CREATE_URIS_TABLE);
+        db.execSQL(CREATE_URIS_INDEX);
+        db.execSQL(CREATE_URIS_SOURCE_INDEX);
         Log.d(TAG, "Created databases");
     }
 
     private void dropTables(SQLiteDatabase db) {
         db.execSQL("DROP TABLE IF EXISTS " + Tables.TABLE_SLICES_INDEX);
+        db.execSQL("DROP TABLE IF EXISTS " + Tables.TABLE_SLICES_SOURCES);
+        db.execSQL("DROP TABLE IF EXISTS " + Tables.TABLE_SLICES_URIS);
     }
 
     private void setBuildIndexed() {
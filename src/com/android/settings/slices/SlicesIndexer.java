@@ -16,9 +16,11 @@
 
 package com.android.settings.slices;
 
-import android.content.ContentValues;
 import android.content.Context;
 import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteStatement;
+import android.net.Uri;
+import android.os.SystemClock;
 import android.util.Log;
 
 import androidx.annotation.VisibleForTesting;
@@ -28,8 +30,11 @@ import com.android.settings.dashboard.DashboardFragment;
 import com.android.settings.overlay.FeatureFactory;
 import com.android.settings.slices.SlicesDatabaseHelper.IndexColumns;
 import com.android.settings.slices.SlicesDatabaseHelper.Tables;
+import com.android.settings.slices.SlicesDatabaseHelper.UriColumns;
 
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 
 /**
  * Manages the conversion of {@link DashboardFragment} and {@link BasePreferenceController} to
@@ -39,6 +44,35 @@ class SlicesIndexer implements Runnable {
 
     private static final String TAG = "SlicesIndexer";
 
+    private static final String INSERT_SLICE_SQL =
+            "INSERT INTO " + Tables.TABLE_SLICES_INDEX + " ("
+                    + IndexColumns.KEY + ", "
+                    + IndexColumns.SLICE_URI + ", "
+                    + IndexColumns.TITLE + ", "
+                    + IndexColumns.SUMMARY + ", "
+                    + IndexColumns.SCREENTITLE + ", "
+                    + IndexColumns.KEYWORDS + ", "
+                    + IndexColumns.ICON_RESOURCE + ", "
+                    + IndexColumns.FRAGMENT + ", "
+                    + IndexColumns.CONTROLLER + ", "
+                    + IndexColumns.SLICE_TYPE + ", "
+                    + IndexColumns.UNAVAILABLE_SLICE_SUBTITLE + ", "
+                    + IndexColumns.PUBLIC_SLICE + ", "
+                    + IndexColumns.HIGHLIGHT_MENU_RESOURCE + ", "
+                    + IndexColumns.SOURCE
+                    + ") VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+
+    private static final String INSERT_URI_SQL =
+            "INSERT INTO " + Tables.TABLE_SLICES_URIS + " ("
+                    + UriColumns.KEY + ", "
+                    + UriColumns.SOURCE + ", "
+                    + UriColumns.SLICE_URI + ", "
+                    + UriColumns.AUTHORITY + ", "
+                    + UriColumns.PATH + ", "
+                    + UriColumns.PUBLIC_SLICE + ", "
+                    + UriColumns.INDEX_ROWID
+                    + ") VALUES (?, ?, ?, ?, ?, ?, ?)";
+
     private Context mContext;
 
     private SlicesDatabaseHelper mHelper;
@@ -58,68 +92,163 @@ class SlicesIndexer implements Runnable {
 
     /**
      * Synchronously takes data obtained from {@link SliceDataConverter} and indexes it into a
-     * SQLite database
+     * SQLite database. Only the sources whose content changed since the last index are rewritten.
      */
     protected void indexSliceData() {
         if (mHelper.isSliceDataIndexed()) {
             Log.d(TAG, "Slices already indexed - returning.");
             return;
         }
+        mHelper.clearIndexedState();
 
-        final SQLiteDatabase database = mHelper.getWritableDatabase();
+        final long startTime = SystemClock.elapsedRealtime();
+        final Map<String, List<SliceData>> indexData = getSliceDataBySource();
+        final long parseTime = SystemClock.elapsedRealtime() - startTime;
 
-        long startTime = System.currentTimeMillis();
+        final SQLiteDatabase database = mHelper.getWritableDatabase();
+        int updatedSources = 0;
+        int failedSources = 0;
         database.beginTransaction();
         try {
-            mHelper.reconstruct(database);
-            List<SliceData> indexData = getSliceData();
-            insertSliceData(database, indexData);
-
-            mHelper.setIndexedState();
+            final Map<String, Integer> indexedHashes = mHelper.getIndexedSourceHashes(database);
+            for (Map.Entry<String, List<SliceData>> entry : indexData.entrySet()) {
+                final String source = entry.getKey();
+                final Integer indexedHash = indexedHashes.remove(source);
+                if (entry.getValue() == null) {
+                    // Keep the rows and the hash of a source that failed, so that it is neither
+                    // treated as removed nor as up to date.
+                    Log.w(TAG, "Slice data unavailable for " + source);
+                    failedSources++;
+                    continue;
+                }
+                final int hash = computeContentHash(entry.getValue());
+                if (indexedHash != null && indexedHash == hash) {
+                    continue;
+                }
+                mHelper.deleteSource(database, source);
+                insertSliceData(database, source, entry.getValue());
+                mHelper.setIndexedSourceHash(database, source, hash);
+                updatedSources++;
+            }
+            // Anything left was indexed before but is no longer provided.
+            for (String staleSource : indexedHashes.keySet()) {
+                mHelper.deleteSource(database, staleSource);
+                updatedSources++;
+            }
 
-            // TODO (b/71503044) Log indexing time.
-            Log.d(TAG,
-                    "Indexing slices database took: " + (System.currentTimeMillis() - startTime));
+            // Leave the index marked as incomplete while a source failed, so that the next index
+            // retries it. The sources indexed here will match their hashes and not be rewritten.
+            if (failedSources == 0) {
+                mHelper.setIndexedState();
+            }
             database.setTransactionSuccessful();
         } finally {
             database.endTransaction();
+            if (updatedSources > 0) {
+                mHelper.invalidateSliceUris();
+                mHelper.getSliceDataCache().clear();
+            }
         }
+
+        Log.d(TAG, "Indexing slices database took: " + (SystemClock.elapsedRealtime() - startTime)
+                + " (parsing: " + parseTime + "), updated " + updatedSources + "/"
+                + indexData.size() + " sources, " + failedSources + " failed");
+        logSourceTimings();
     }
 
     @VisibleForTesting
-    List<SliceData> getSliceData() {
-        return FeatureFactory.getFactory(mContext)
-                .getSlicesFeatureProvider()
-                .getSliceDataConverter(mContext)
-                .getSliceData();
+    Map<String, List<SliceData>> getSliceDataBySource() {
+        return getSliceDataConverter().getSliceDataBySource();
     }
 
     @VisibleForTesting
-    void insertSliceData(SQLiteDatabase database, List<SliceData> indexData) {
-        ContentValues values;
-
-        for (SliceData dataRow : indexData) {
-            values = new ContentValues();
-            values.put(IndexColumns.KEY, dataRow.getKey());
-            values.put(IndexColumns.SLICE_URI, dataRow.getUri().toString());
-            values.put(IndexColumns.TITLE, dataRow.getTitle());
-            values.put(IndexColumns.SUMMARY, dataRow.getSummary());
-            final CharSequence screenTitle = dataRow.getScreenTitle();
-            if (screenTitle != null) {
-                values.put(IndexColumns.SCREENTITLE, screenTitle.toString());
+    void insertSliceData(SQLiteDatabase database, String source, List<SliceData> indexData) {
+        final SQLiteStatement statement = database.compileStatement(INSERT_SLICE_SQL);
+        final SQLiteStatement uriStatement = database.compileStatement(INSERT_URI_SQL);
+        try {
+            for (SliceData dataRow : indexData) {
+                bindSliceData(statement, source, dataRow);
+                final long rowId = statement.executeInsert();
+                statement.clearBindings();
+
+                bindSliceUri(uriStatement, source, dataRow, rowId);
+                uriStatement.executeInsert();
+                uriStatement.clearBindings();
             }
-            values.put(IndexColumns.KEYWORDS, dataRow.getKeywords());
-            values.put(IndexColumns.ICON_RESOURCE, dataRow.getIconResource());
-            values.put(IndexColumns.FRAGMENT, dataRow.getFragmentClassName());
-            values.put(IndexColumns.CONTROLLER, dataRow.getPreferenceController());
-            values.put(IndexColumns.SLICE_TYPE, dataRow.getSliceType());
-            values.put(IndexColumns.UNAVAILABLE_SLICE_SUBTITLE,
-                    dataRow.getUnavailableSliceSubtitle());
-            values.put(IndexColumns.PUBLIC_SLICE, dataRow.isPublicSlice());
-            values.put(IndexColumns.HIGHLIGHT_MENU_RESOURCE, dataRow.getHighlightMenuRes());
-
-            database.replaceOrThrow(Tables.TABLE_SLICES_INDEX, null /* nullColumnHack */,
-                    values);
+        } finally {
+            statement.close();
+            uriStatement.close();
+        }
+    }
+
+    @VisibleForTesting
+    static int computeContentHash(List<SliceData> sliceData) {
+        int hash = 1;
+        for (SliceData dataRow : sliceData) {
+            final CharSequence screenTitle = dataRow.getScreenTitle();
+            hash = 31 * hash + Objects.hash(dataRow.getKey(), dataRow.getUri(),
+                    dataRow.getTitle(), dataRow.getSummary(),
+                    screenTitle != null ? screenTitle.toString() : null,
+                    dataRow.getKeywords(), dataRow.getIconResource(),
+                    dataRow.getFragmentClassName(), dataRow.getPreferenceController(),
+                    dataRow.getSliceType(), dataRow.getUnavailableSliceSubtitle(),
+                    dataRow.isPublicSlice(), dataRow.getHighlightMenuRes());
+        }
+        return hash;
+    }
+
+    private SliceDataConverter getSliceDataConverter() {
+        return FeatureFactory.getFactory(mContext)
+                .getSlicesFeatureProvider()
+                .getSliceDataConverter(mContext);
+    }
+
+    private void logSourceTimings() {
+        if (!Log.isLoggable(TAG, Log.DEBUG)) {
+            return;
+        }
+        final Map<String, Long> timings = getSliceDataConverter().getSourceTimings();
+        for (Map.Entry<String, Long> entry : timings.entrySet()) {
+            Log.d(TAG, "Slice source " + entry.getKey() + " took: " + entry.getValue());
+        }
+    }
+
+    private static void bindSliceData(SQLiteStatement statement, String source,
+            SliceData dataRow) {
+        final CharSequence screenTitle = dataRow.getScreenTitle();
+        bindStringOrNull(statement, 1, dataRow.getKey());
+        bindStringOrNull(statement, 2, dataRow.getUri().toString());
+        bindStringOrNull(statement, 3, dataRow.getTitle());
+        bindStringOrNull(statement, 4, dataRow.getSummary());
+        bindStringOrNull(statement, 5, screenTitle != null ? screenTitle.toString() : null);
+        bindStringOrNull(statement, 6, dataRow.getKeywords());
+        statement.bindLong(7, dataRow.getIconResource());
+        bindStringOrNull(statement, 8, dataRow.getFragmentClassName());
+        bindStringOrNull(statement, 9, dataRow.getPreferenceController());
+        statement.bindLong(10, dataRow.getSliceType());
+        bindStringOrNull(statement, 11, dataRow.getUnavailableSliceSubtitle());
+        statement.bindLong(12, dataRow.isPublicSlice() ? 1 : 0);
+        statement.bindLong(13, dataRow.getHighlightMenuRes());
+        bindStringOrNull(statement, 14, source);
+    }
+
+    private static void bindSliceUri(SQLiteStatement statement, String source,
+            SliceData dataRow, long indexRowId) {
+        final Uri uri = dataRow.getUri();
+        bindStringOrNull(statement, 1, dataRow.getKey());
+        bindStringOrNull(statement, 2, source);
+        bindStringOrNull(statement, 3, uri.toString());
+        bindStringOrNull(statement, 4, uri.getAuthority());
+        bindStringOrNull(statement, 5, uri.getPath());
+        statement.bindLong(6, dataRow.isPublicSlice() ? 1 : 0);
+        statement.bindLong(7, indexRowId);
+    }
+
+    private static void bindStringOrNull(SQLiteStatement statement, int index, String value) {
+        if (value == null) {
+            statement.bindNull(index);
+        } else {
+            statement.bindString(index, value);
         }
     }
 }
@@ -93,6 +93,21 @@ public class WifiEntryPreference extends Preference implements WifiEntry.WifiEnt
         return mWifiEntry;
     }
 
+    /**
+     * Binds this preference to another {@link WifiEntry}, typically a new instance of the same
+     * network after a scan, and refreshes it.
+     */
+    public void setWifiEntry(@NonNull WifiEntry wifiEntry) {
+        if (mWifiEntry == wifiEntry) {
+            return;
+        }
+        mWifiEntry.setListener(null);
+        mWifiEntry = wifiEntry;
+        mWifiEntry.setListener(this);
+        refresh();
+        notifyChanged();
+    }
+
     @Override
     public void onBindViewHolder(final PreferenceViewHolder view) {
         super.onBindViewHolder(view);
@@ -0,0 +1,110 @@
+/*
+ * Copyright (C) 2022 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.settings.applications.manageapplications;
+
+import static org.mockito.Mockito.mock;
+
+import android.content.Context;
+import android.content.pm.ApplicationInfo;
+import android.os.UserHandle;
+
+import com.android.settings.benchmark.BenchmarkRule;
+import com.android.settingslib.applications.ApplicationsState;
+import com.android.settingslib.applications.ApplicationsState.AppEntry;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+@RunWith(RobolectricTestRunner.class)
+public class ManageApplicationsBenchmark {
+
+    private static final int APP_COUNT = 500;
+    private static final String QUERY = "cam";
+
+    @Rule
+    public final BenchmarkRule mBenchmarkRule = new BenchmarkRule();
+
+    private Context mContext;
+    private List<AppEntry> mEntries;
+
+    @Before
+    public void setUp() {
+        mContext = RuntimeEnvironment.application;
+        mEntries = new ArrayList<>(APP_COUNT);
+        for (int i = 0; i < APP_COUNT; i++) {
+            final ApplicationInfo info = new ApplicationInfo();
+            info.packageName = "com.example.app" + i;
+            // Some apps are disabled, some belong to a work profile.
+            info.enabled = i % 5 != 0;
+            info.uid = UserHandle.getUid(i % 4 == 0 ? 10 : 0, 10000 + i);
+            final AppEntry entry = mock(AppEntry.class);
+            entry.info = info;
+            entry.label = (i % 7 == 0 ? "Camera " : "Café ") + (APP_COUNT - i);
+            mEntries.add(entry);
+        }
+    }
+
+    @Test
+    public void search_newIndex() throws Exception {
+        mBenchmarkRule.measure(() -> new AppSearchIndex().search(mEntries, QUERY));
+    }
+
+    @Test
+    public void search_incrementalQuery() throws Exception {
+        final AppSearchIndex index = new AppSearchIndex();
+        index.search(mEntries, QUERY.substring(0, 1));
+
+        // Typing one more character only filters the previous matches.
+        mBenchmarkRule.measure(
+                () -> index.search(mEntries, QUERY.substring(0, 1)),
+                () -> index.search(mEntries, QUERY.substring(0, 2)));
+    }
+
+    @Test
+    public void filterEnabledPersonalApps() throws Exception {
+        final AppFilterRegistry registry = AppFilterRegistry.getInstance();
+        final ApplicationsState.AppFilter filter = new ApplicationsState.CompoundFilter(
+                registry.get(AppFilterRegistry.FILTER_APPS_ENABLED).getFilter(),
+                registry.get(AppFilterRegistry.FILTER_APPS_PERSONAL).getFilter());
+
+        mBenchmarkRule.measure(() -> {
+            filter.init(mContext);
+            final List<AppEntry> entries = new ArrayList<>();
+            for (AppEntry entry : mEntries) {
+                if (filter.filterApp(entry)) {
+                    entries.add(entry);
+                }
+            }
+        });
+    }
+
+    @Test
+    public void sortAlphabetically() throws Exception {
+        mBenchmarkRule.measure(() -> {
+            final List<AppEntry> entries = new ArrayList<>(mEntries);
+            Collections.sort(entries, ApplicationsState.ALPHA_COMPARATOR);
+        });
+    }
+}
@@ -0,0 +1,173 @@
+/*
+ * Copyright (C) 2022 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.settings.benchmark;
+
+import static org.junit.Assert.fail;
+
+import android.util.Log;
+
+import org.junit.rules.TestRule;
+import org.junit.runner.Description;
+import org.junit.runners.model.Statement;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the time and the allocations per call of an operation on the host, and fails the test
+ * if they regressed against {@link #BASELINE_RESOURCE}.
+ *
+ * The operation is warmed up first, so that the results reflect JIT compiled code, then run until
+ * both {@link #MIN_ITERATIONS} and {@link #MEASURE_NS} are reached.
+ *
+ * Results are logged under {@link #TAG}. When {@link #CI_MODE_PROPERTY} is {@code true} in
+ * {@link #CONFIG_RESOURCE}, which the module ships with, or as a system property overriding it,
+ * a benchmark without a baseline fails too, so that a benchmark can't be added without being
+ * guarded.
+ */
+public class BenchmarkRule implements TestRule {
+
+    static final String TAG = "SettingsBenchmark";
+    static final String BASELINE_RESOURCE = "/benchmark_baseline.properties";
+    static final String CONFIG_RESOURCE = "/benchmark.properties";
+    static final String CI_MODE_PROPERTY = "settings.benchmark.ci";
+
+    private static final long WARMUP_NS = TimeUnit.MILLISECONDS.toNanos(500);
+    private static final long MEASURE_NS = TimeUnit.SECONDS.toNanos(2);
+    private static final int MIN_ITERATIONS = 10;
+
+    // Timings are noisy across runs on a shared host, allocations much less so.
+    private static final double TIME_TOLERANCE = 1.5;
+    private static final double ALLOCATION_TOLERANCE = 1.1;
+
+    private static Properties sBaseline;
+    private static Properties sConfig;
+
+    private String mName;
+
+    /** An operation to benchmark. */
+    public interface Operation {
+        void run() throws Exception;
+    }
+
+    @Override
+    public Statement apply(Statement base, Description description) {
+        mName = description.getTestClass().getSimpleName() + "." + description.getMethodName();
+        return base;
+    }
+
+    /**
+     * Benchmarks {@param operation}.
+     */
+    public void measure(Operation operation) throws Exception {
+        measure(() -> { }, operation);
+    }
+
+    /**
+     * Benchmarks {@param operation}, running {@param beforeEach} untimed before each call.
+     */
+    public void measure(Operation beforeEach, Operation operation) throws Exception {
+        final long warmupEnd = System.nanoTime() + WARMUP_NS;
+        while (System.nanoTime() < warmupEnd) {
+            beforeEach.run();
+            operation.run();
+        }
+
+        final ThreadMXBean threadBean = ManagementFactory.getThreadMXBean();
+        final boolean countAllocations = threadBean instanceof com.sun.management.ThreadMXBean;
+        final long threadId = Thread.currentThread().getId();
+        long totalNs = 0;
+        long totalBytes = 0;
+        int iterations = 0;
+        while (iterations < MIN_ITERATIONS || totalNs < MEASURE_NS) {
+            beforeEach.run();
+            final long startBytes = countAllocations
+                    ? ((com.sun.management.ThreadMXBean) threadBean)
+                            .getThreadAllocatedBytes(threadId)
+                    : 0;
+            final long startNs = System.nanoTime();
+            operation.run();
+            totalNs += System.nanoTime() - startNs;
+            if (countAllocations) {
+                totalBytes += ((com.sun.management.ThreadMXBean) threadBean)
+                        .getThreadAllocatedBytes(threadId) - startBytes;
+            }
+            iterations++;
+        }
+
+        final long nsPerOp = totalNs / iterations;
+        final long bytesPerOp = countAllocations ? totalBytes / iterations : -1;
+        Log.i(TAG, mName + ".ns_per_op=" + nsPerOp);
+        if (countAllocations) {
+            Log.i(TAG, mName + ".bytes_per_op=" + bytesPerOp);
+        }
+        checkBaseline("ns_per_op", nsPerOp, TIME_TOLERANCE);
+        if (countAllocations) {
+            checkBaseline("bytes_per_op", bytesPerOp, ALLOCATION_TOLERANCE);
+        }
+    }
+
+    private void checkBaseline(String metric, long value, double tolerance) throws IOException {
+        final String baseline = getBaseline().getProperty(mName + "." + metric);
+        if (baseline == null) {
+            if (isCiMode()) {
+                fail(mName + " has no " + metric + " baseline, add " + mName + "." + metric
+                        + "=" + value + " to " + BASELINE_RESOURCE);
+            }
+            return;
+        }
+        final long limit = (long) (Long.parseLong(baseline.trim()) * tolerance);
+        if (value > limit) {
+            fail(mName + " regressed: " + metric + " is " + value + ", baseline is " + baseline
+                    + " and the limit " + limit);
+        }
+    }
+
+    private static boolean isCiMode() throws IOException {
+        final String value = System.getProperty(CI_MODE_PROPERTY,
+                getConfig().getProperty(CI_MODE_PROPERTY));
+        return Boolean.parseBoolean(value);
+    }
+
+    private static synchronized Properties getBaseline() throws IOException {
+        if (sBaseline == null) {
+            sBaseline = loadProperties(BASELINE_RESOURCE);
+        }
+        return sBaseline;
+    }
+
+    private static synchronized Properties getConfig() throws IOException {
+        if (sConfig == null) {
+            sConfig = loadProperties(CONFIG_RESOURCE);
+        }
+        return sConfig;
+    }
+
+    private static Properties loadProperties(String resource) throws IOException {
+        final Properties properties = new Properties();
+        try (InputStream in = BenchmarkRule.class.getResourceAsStream(resource)) {
+            if (in != null) {
+                properties.load(in);
+            }
+        }
+        return properties;
+    }
+}
@@ -0,0 +1,59 @@
+/*
+ * Copyright (C) 2022 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.settings.core;
+
+import static com.android.settings.core.PreferenceXmlParserUtils.MetadataFlag.FLAG_INCLUDE_PREF_SCREEN;
+import static com.android.settings.core.PreferenceXmlParserUtils.MetadataFlag.FLAG_NEED_KEY;
+import static com.android.settings.core.PreferenceXmlParserUtils.MetadataFlag.FLAG_NEED_PREF_CONTROLLER;
+import static com.android.settings.core.PreferenceXmlParserUtils.MetadataFlag.FLAG_NEED_PREF_SUMMARY;
+import static com.android.settings.core.PreferenceXmlParserUtils.MetadataFlag.FLAG_NEED_PREF_TITLE;
+
+import android.content.Context;
+
+import com.android.settings.R;
+import com.android.settings.benchmark.BenchmarkRule;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+
+@RunWith(RobolectricTestRunner.class)
+public class PreferenceXmlParserUtilsBenchmark {
+
+    private static final int FLAGS = FLAG_INCLUDE_PREF_SCREEN | FLAG_NEED_KEY
+            | FLAG_NEED_PREF_CONTROLLER | FLAG_NEED_PREF_TITLE | FLAG_NEED_PREF_SUMMARY;
+
+    @Rule
+    public final BenchmarkRule mBenchmarkRule = new BenchmarkRule();
+
+    private final Context mContext = RuntimeEnvironment.application;
+
+    @Test
+    public void extractMetadata_uncached() throws Exception {
+        mBenchmarkRule.measure(PreferenceXmlParserUtils::clearMetadataCache,
+                () -> PreferenceXmlParserUtils.extractMetadata(mContext,
+                        R.xml.display_settings, FLAGS));
+    }
+
+    @Test
+    public void extractMetadata_cached() throws Exception {
+        mBenchmarkRule.measure(() -> PreferenceXmlParserUtils.extractMetadata(mContext,
+                R.xml.display_settings, FLAGS));
+    }
+}
@@ -0,0 +1,136 @@
+/*
+ * Copyright (C) 2022 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.settings.fuelgauge.batteryusage;
+
+import android.content.ContentValues;
+import android.content.Context;
+import android.text.format.DateUtils;
+
+import com.android.settings.benchmark.BenchmarkRule;
+import com.android.settings.testutils.FakeFeatureFactory;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+@RunWith(RobolectricTestRunner.class)
+public class DataProcessorBenchmark {
+
+    private static final int HOUR_COUNT = 6 * 24;
+    private static final int UID_COUNT = 40;
+    // Two hours per time slot, as aggregated by the battery usage chart.
+    private static final int TIME_SLOT_COUNT = 12;
+
+    @Rule
+    public final BenchmarkRule mBenchmarkRule = new BenchmarkRule();
+
+    private Context mContext;
+    private Map<Long, Map<String, BatteryHistEntry>> mHistoryMap;
+    private BatteryHistoryColumns mProcessedHistory;
+    private BatteryLevelData mBatteryLevelData;
+
+    @Before
+    public void setUp() {
+        mContext = RuntimeEnvironment.application;
+        FakeFeatureFactory.setupForTest();
+        mHistoryMap = createHistoryMap(System.currentTimeMillis());
+        mProcessedHistory =
+                DataProcessor.getHistoryColumnsWithExpectedTimestamps(mContext, mHistoryMap);
+        mBatteryLevelData =
+                DataProcessor.getLevelDataThroughProcessedHistory(mContext, mProcessedHistory);
+    }
+
+    @Test
+    public void getLevelData() throws Exception {
+        mBenchmarkRule.measure(() -> {
+            final BatteryHistoryColumns processedHistory =
+                    DataProcessor.getHistoryColumnsWithExpectedTimestamps(mContext, mHistoryMap);
+            DataProcessor.getLevelDataThroughProcessedHistory(mContext, processedHistory);
+        });
+    }
+
+    @Test
+    public void getBatteryUsageMap() throws Exception {
+        mBenchmarkRule.measure(() -> DataProcessor.getBatteryUsageMap(
+                mContext, mBatteryLevelData.getHourlyBatteryLevelsPerDay(),
+                mProcessedHistory));
+    }
+
+    @Test
+    public void getBatteryUsageData() throws Exception {
+        mBenchmarkRule.measure(() -> DataProcessor.getBatteryUsageData(mContext, mHistoryMap));
+    }
+
+    @Test
+    public void getIndexedUsageMap() throws Exception {
+        final List<Long> timestamps = new ArrayList<>(mHistoryMap.keySet());
+        timestamps.sort(null);
+        final long[] batteryHistoryKeys = new long[TIME_SLOT_COUNT * 2 + 1];
+        final int offset = timestamps.size() - batteryHistoryKeys.length;
+        for (int i = 0; i < batteryHistoryKeys.length; i++) {
+            batteryHistoryKeys[i] = timestamps.get(offset + i);
+        }
+
+        mBenchmarkRule.measure(() -> ConvertUtils.getIndexedUsageMap(
+                mContext, TIME_SLOT_COUNT, batteryHistoryKeys, mHistoryMap,
+                /*purgeLowPercentageAndFakeData=*/ true));
+    }
+
+    private static Map<Long, Map<String, BatteryHistEntry>> createHistoryMap(long now) {
+        final long lastHour = now - now % DateUtils.HOUR_IN_MILLIS;
+        final Map<Long, Map<String, BatteryHistEntry>> historyMap = new HashMap<>();
+        for (int hour = HOUR_COUNT; hour >= 0; hour--) {
+            final long timestamp = lastHour - hour * DateUtils.HOUR_IN_MILLIS;
+            final int batteryLevel = 100 - (HOUR_COUNT - hour) % 90;
+            final Map<String, BatteryHistEntry> entries = new HashMap<>();
+            for (int uid = 0; uid < UID_COUNT; uid++) {
+                final BatteryHistEntry entry = createEntry(
+                        timestamp, batteryLevel, uid, HOUR_COUNT - hour);
+                entries.put(entry.getKey(), entry);
+            }
+            historyMap.put(timestamp, entries);
+        }
+        return historyMap;
+    }
+
+    private static BatteryHistEntry createEntry(
+            long timestamp, int batteryLevel, int uid, int elapsedHours) {
+        final ContentValues values = new ContentValues();
+        values.put(BatteryHistEntry.KEY_UID, 10000L + uid);
+        values.put(BatteryHistEntry.KEY_USER_ID, 0L);
+        values.put(BatteryHistEntry.KEY_PACKAGE_NAME, "com.example.app" + uid);
+        values.put(BatteryHistEntry.KEY_APP_LABEL, "App " + uid);
+        values.put(BatteryHistEntry.KEY_CONSUMER_TYPE, ConvertUtils.CONSUMER_TYPE_UID_BATTERY);
+        // Usage accumulates over time, like the snapshots written by the battery usage job.
+        values.put(BatteryHistEntry.KEY_CONSUME_POWER, (double) elapsedHours * (uid + 1));
+        values.put(BatteryHistEntry.KEY_TOTAL_POWER,
+                (double) elapsedHours * UID_COUNT * UID_COUNT);
+        values.put(BatteryHistEntry.KEY_FOREGROUND_USAGE_TIME, elapsedHours * 60000L * (uid % 5));
+        values.put(BatteryHistEntry.KEY_BACKGROUND_USAGE_TIME, elapsedHours * 30000L * (uid % 3));
+        values.put(BatteryHistEntry.KEY_BATTERY_LEVEL, batteryLevel);
+        values.put(BatteryHistEntry.KEY_TIMESTAMP, timestamp);
+        return new BatteryHistEntry(values);
+    }
+}
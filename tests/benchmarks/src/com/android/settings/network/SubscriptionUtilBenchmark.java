@@ -0,0 +1,99 @@
+/*
+ * Copyright (C) 2022 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.settings.network;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.when;
+
+import android.content.Context;
+import android.telephony.SubscriptionInfo;
+import android.telephony.SubscriptionManager;
+import android.telephony.TelephonyManager;
+
+import com.android.settings.benchmark.BenchmarkRule;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@RunWith(RobolectricTestRunner.class)
+public class SubscriptionUtilBenchmark {
+
+    private static final int SUBSCRIPTION_COUNT = 8;
+
+    @Rule
+    public final BenchmarkRule mBenchmarkRule = new BenchmarkRule();
+
+    @Mock
+    private SubscriptionManager mSubscriptionManager;
+    @Mock
+    private TelephonyManager mTelephonyManager;
+
+    private Context mContext;
+    private List<SubscriptionInfo> mSubscriptions;
+
+    @Before
+    public void setUp() {
+        MockitoAnnotations.initMocks(this);
+        mContext = spy(RuntimeEnvironment.application);
+        when(mContext.getSystemService(SubscriptionManager.class))
+                .thenReturn(mSubscriptionManager);
+        when(mContext.getSystemService(TelephonyManager.class)).thenReturn(mTelephonyManager);
+
+        mSubscriptions = new ArrayList<>(SUBSCRIPTION_COUNT);
+        for (int i = 0; i < SUBSCRIPTION_COUNT; i++) {
+            final int subId = i + 1;
+            final SubscriptionInfo info = mock(SubscriptionInfo.class);
+            when(info.getSubscriptionId()).thenReturn(subId);
+            // Pairs of subscriptions share a carrier name, so the phone numbers are looked up.
+            when(info.getDisplayName()).thenReturn("Carrier " + (i / 2));
+            when(mSubscriptionManager.getPhoneNumber(subId)).thenReturn("555000" + subId);
+            mSubscriptions.add(info);
+        }
+        when(mSubscriptionManager.getAvailableSubscriptionInfoList()).thenReturn(mSubscriptions);
+        SubscriptionUtil.invalidateUniqueSubscriptionDisplayNames();
+    }
+
+    @After
+    public void tearDown() {
+        SubscriptionUtil.setAvailableSubscriptionsForTesting(null);
+        SubscriptionUtil.invalidateUniqueSubscriptionDisplayNames();
+    }
+
+    @Test
+    public void getUniqueSubscriptionDisplayNames_uncached() throws Exception {
+        // Subscriptions set for testing bypass the shared snapshot.
+        SubscriptionUtil.setAvailableSubscriptionsForTesting(mSubscriptions);
+
+        mBenchmarkRule.measure(() -> SubscriptionUtil.getUniqueSubscriptionDisplayNames(mContext));
+    }
+
+    @Test
+    public void getUniqueSubscriptionDisplayNames_cached() throws Exception {
+        mBenchmarkRule.measure(() -> SubscriptionUtil.getUniqueSubscriptionDisplayNames(mContext));
+    }
+}
@@ -0,0 +1,102 @@
+/*
+ * Copyright (C) 2022 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.settings.slices;
+
+import android.content.Context;
+import android.database.sqlite.SQLiteDatabase;
+import android.net.Uri;
+
+import com.android.settings.benchmark.BenchmarkRule;
+import com.android.settings.slices.SlicesDatabaseHelper.Tables;
+import com.android.settings.testutils.DatabaseTestUtils;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@RunWith(RobolectricTestRunner.class)
+public class SlicesIndexerBenchmark {
+
+    private static final int SLICE_COUNT = 500;
+    private static final String SOURCE = "source";
+
+    @Rule
+    public final BenchmarkRule mBenchmarkRule = new BenchmarkRule();
+
+    private Context mContext;
+    private SlicesIndexer mIndexer;
+    private SQLiteDatabase mDatabase;
+    private List<SliceData> mSliceData;
+
+    @Before
+    public void setUp() {
+        mContext = RuntimeEnvironment.application;
+        mIndexer = new SlicesIndexer(mContext);
+        mDatabase = SlicesDatabaseHelper.getInstance(mContext).getWritableDatabase();
+        mSliceData = createSliceData();
+    }
+
+    @After
+    public void tearDown() {
+        DatabaseTestUtils.clearDb(mContext);
+    }
+
+    @Test
+    public void insertSliceData() throws Exception {
+        mBenchmarkRule.measure(this::clearTables, () -> {
+            mDatabase.beginTransaction();
+            try {
+                mIndexer.insertSliceData(mDatabase, SOURCE, mSliceData);
+                mDatabase.setTransactionSuccessful();
+            } finally {
+                mDatabase.endTransaction();
+            }
+        });
+    }
+
+    private void clearTables() {
+        mDatabase.delete(Tables.TABLE_SLICES_INDEX, null /* whereClause */, null /* whereArgs */);
+        mDatabase.delete(Tables.TABLE_SLICES_URIS, null /* whereClause */, null /* whereArgs */);
+    }
+
+    private static List<SliceData> createSliceData() {
+        final List<SliceData> sliceData = new ArrayList<>(SLICE_COUNT);
+        for (int i = 0; i < SLICE_COUNT; i++) {
+            sliceData.add(new SliceData.Builder()
+                    .setKey("key" + i)
+                    .setTitle("title " + i)
+                    .setSummary("summary " + i)
+                    .setScreenTitle("screen title " + (i % 20))
+                    .setKeywords("keyword" + i + ", other")
+                    .setFragmentName("com.android.settings.Fragment" + (i % 20))
+                    .setIcon(i)
+                    .setUri(Uri.parse("content://com.android.settings.slices/intent/key" + i))
+                    .setPreferenceControllerClassName("com.android.settings.Controller" + i)
+                    .setSliceType(SliceData.SliceType.SWITCH)
+                    .setIsPublicSlice(i % 2 == 0)
+                    .build());
+        }
+        return sliceData;
+    }
+}
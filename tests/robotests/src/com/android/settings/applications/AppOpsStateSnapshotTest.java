@@ -0,0 +1,137 @@
+/*
+ * Copyright (C) 2022 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.settings.applications;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import android.Manifest;
+import android.app.AppOpsManager;
+import android.content.pm.IPackageManager;
+import android.content.pm.PackageInfo;
+import android.content.pm.ParceledListSlice;
+import android.os.RemoteException;
+
+import com.android.settingslib.applications.ApplicationsState;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.robolectric.RobolectricTestRunner;
+
+import java.util.Collections;
+
+@RunWith(RobolectricTestRunner.class)
+public class AppOpsStateSnapshotTest {
+
+    private static final String PERMISSION = Manifest.permission.SYSTEM_ALERT_WINDOW;
+    private static final String PKG = "pkg";
+
+    @Mock
+    private IPackageManager mPackageManager;
+    @Mock
+    private AppOpsManager mAppOpsManager;
+
+    private AppOpsStateSnapshot mSnapshot;
+
+    @Before
+    public void setUp() throws RemoteException {
+        MockitoAnnotations.initMocks(this);
+        final PackageInfo packageInfo = new PackageInfo();
+        packageInfo.packageName = PKG;
+        when(mPackageManager.getAppOpPermissionPackages(PERMISSION))
+                .thenReturn(new String[]{PKG});
+        when(mPackageManager.getInstalledPackages(anyLong(), anyInt()))
+                .thenReturn(new ParceledListSlice<>(Collections.singletonList(packageInfo)));
+        when(mPackageManager.getPackagesHoldingPermissions(any(), anyLong(), anyInt()))
+                .thenReturn(new ParceledListSlice<>(Collections.singletonList(packageInfo)));
+        mSnapshot = new AppOpsStateSnapshot();
+    }
+
+    @Test
+    public void get_sameApplicationsState_returnsSharedSnapshot() {
+        final ApplicationsState appState = mock(ApplicationsState.class);
+
+        assertThat(AppOpsStateSnapshot.get(appState))
+                .isSameInstanceAs(AppOpsStateSnapshot.get(appState));
+        assertThat(AppOpsStateSnapshot.get(null))
+                .isNotSameInstanceAs(AppOpsStateSnapshot.get(null));
+    }
+
+    @Test
+    public void queries_calledTwice_queryPackageManagerOnce() throws RemoteException {
+        for (int i = 0; i < 2; i++) {
+            assertThat(mSnapshot.getAppOpPermissionPackages(mPackageManager, PERMISSION))
+                    .containsExactly(PKG);
+            assertThat(mSnapshot.isPackageInstalled(mPackageManager, PKG, 0 /* profileId */))
+                    .isTrue();
+            assertThat(mSnapshot.getPermissionHolder(mPackageManager, PERMISSION, PKG,
+                    0 /* profileId */)).isNotNull();
+        }
+
+        verify(mPackageManager).getAppOpPermissionPackages(PERMISSION);
+        verify(mPackageManager).getInstalledPackages(anyLong(), eq(0));
+        verify(mPackageManager).getPackagesHoldingPermissions(any(), anyLong(), eq(0));
+    }
+
+    @Test
+    public void updatePackage_permissionRevoked_removesHolder() throws RemoteException {
+        mSnapshot.getPermissionHolder(mPackageManager, PERMISSION, PKG, 0 /* profileId */);
+
+        mSnapshot.updatePackage(PKG, 0 /* profileId */, null /* packageInfo */,
+                new String[]{PERMISSION}, new int[]{AppOpsManager.OP_SYSTEM_ALERT_WINDOW},
+                null /* ops */);
+
+        assertThat(mSnapshot.getPermissionHolder(mPackageManager, PERMISSION, PKG,
+                0 /* profileId */)).isNull();
+    }
+
+    @Test
+    public void getOpMode_queriesOnlyOpsNotLoadedYet() {
+        final int[] overlayOps = new int[]{AppOpsManager.OP_SYSTEM_ALERT_WINDOW};
+        final int[] settingsOps = new int[]{AppOpsManager.OP_SYSTEM_ALERT_WINDOW,
+                AppOpsManager.OP_WRITE_SETTINGS};
+
+        mSnapshot.getOpMode(mAppOpsManager, overlayOps, PKG, 0 /* profileId */);
+        mSnapshot.getOpMode(mAppOpsManager, settingsOps, PKG, 0 /* profileId */);
+        mSnapshot.getOpMode(mAppOpsManager, settingsOps, PKG, 0 /* profileId */);
+
+        verify(mAppOpsManager).getPackagesForOps(overlayOps);
+        verify(mAppOpsManager).getPackagesForOps(new int[]{AppOpsManager.OP_WRITE_SETTINGS});
+        verify(mAppOpsManager, times(2)).getPackagesForOps(any(int[].class));
+    }
+
+    @Test
+    public void invalidate_queriesPackageManagerAgain() throws RemoteException {
+        mSnapshot.isPackageInstalled(mPackageManager, PKG, 0 /* profileId */);
+
+        mSnapshot.invalidate();
+        mSnapshot.isPackageInstalled(mPackageManager, PKG, 0 /* profileId */);
+
+        verify(mPackageManager, times(2)).getInstalledPackages(anyLong(), eq(0));
+    }
+}
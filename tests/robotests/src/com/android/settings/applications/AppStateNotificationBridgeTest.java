@@ -39,6 +39,8 @@ import static org.mockito.ArgumentMatchers.anyLong;
 import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
@@ -59,6 +61,7 @@ import android.widget.Switch;
 import com.android.settings.R;
 import com.android.settings.applications.AppStateNotificationBridge.NotificationsSentState;
 import com.android.settings.notification.NotificationBackend;
+import com.android.settings.notification.NotificationBackend.BlockState;
 import com.android.settingslib.applications.ApplicationsState;
 import com.android.settingslib.applications.ApplicationsState.AppEntry;
 
@@ -71,6 +74,7 @@ import org.robolectric.RobolectricTestRunner;
 import org.robolectric.RuntimeEnvironment;
 
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
@@ -100,6 +104,14 @@ public class AppStateNotificationBridgeTest {
         when(mState.getBackgroundLooper()).thenReturn(mock(Looper.class));
         when(mBackend.getNotificationsBanned(anyString(), anyInt())).thenReturn(true);
         when(mBackend.enableSwitch(any(), any())).thenReturn(true);
+        when(mBackend.getBlockStates(any(), anyInt(), any())).thenAnswer(invocation -> {
+            final Map<String, BlockState> states = new HashMap<>();
+            for (ApplicationInfo info : (List<ApplicationInfo>) invocation.getArgument(2)) {
+                states.put(info.packageName,
+                        new BlockState(true /* blocked */, true /* blockable */));
+            }
+            return states;
+        });
         // most tests assume no work profile
         when(mUserManager.getProfileIdsWithDisabled(anyInt())).thenReturn(new int[]{});
         mContext = RuntimeEnvironment.application.getApplicationContext();
@@ -214,7 +226,7 @@ public class AppStateNotificationBridgeTest {
         mBridge.loadAllExtraInfo();
         // extra info should exist and blocked status should be populated
         assertThat(apps.get(0).extraInfo).isNotNull();
-        verify(mBackend).getNotificationsBanned(PKG1, 0);
+        verify(mBackend).getBlockStates(any(), eq(0), any());
         // but the recent/frequent counts should be 0 so they don't appear on those screens
         assertThat(((NotificationsSentState) apps.get(0).extraInfo).avgSentDaily).isEqualTo(0);
         assertThat(((NotificationsSentState) apps.get(0).extraInfo).lastSent).isEqualTo(0);
@@ -341,6 +353,64 @@ public class AppStateNotificationBridgeTest {
         assertThat(((NotificationsSentState) apps.get(1).extraInfo).avgSentDaily).isEqualTo(1);
     }
 
+    @Test
+    public void testLoadAllExtraInfo_calledTwice_loadsBlockStatesOnce() throws RemoteException {
+        when(mUsageStats.queryEventsForUser(anyLong(), anyLong(), anyInt(), anyString()))
+                .thenReturn(mock(UsageEvents.class));
+        ArrayList<AppEntry> apps = new ArrayList<>();
+        apps.add(getMockAppEntry(PKG1));
+        apps.add(getMockAppEntry(PKG2));
+        when(mSession.getAllApps()).thenReturn(apps);
+
+        mBridge.loadAllExtraInfo();
+        mBridge.loadAllExtraInfo();
+
+        verify(mBackend).getBlockStates(any(), eq(0), any());
+        verify(mBackend, never()).getNotificationsBanned(anyString(), anyInt());
+        assertThat(((NotificationsSentState) apps.get(1).extraInfo).blocked).isTrue();
+    }
+
+    @Test
+    public void testLoadAllExtraInfo_afterPackageListChanged_reloadsBlockStates()
+            throws RemoteException {
+        when(mUsageStats.queryEventsForUser(anyLong(), anyLong(), anyInt(), anyString()))
+                .thenReturn(mock(UsageEvents.class));
+        ArrayList<AppEntry> apps = new ArrayList<>();
+        apps.add(getMockAppEntry(PKG1));
+        when(mSession.getAllApps()).thenReturn(apps);
+
+        mBridge.loadAllExtraInfo();
+        mBridge.onPackageListChanged();
+        mBridge.loadAllExtraInfo();
+
+        verify(mBackend, times(2)).getBlockStates(any(), eq(0), any());
+    }
+
+    @Test
+    public void testUpdateExtraInfo_afterLoadAll_reusesAggregatedUsageEvents()
+            throws RemoteException {
+        List<Event> events = new ArrayList<>();
+        Event good = new Event();
+        good.mEventType = Event.NOTIFICATION_INTERRUPTION;
+        good.mPackage = PKG1;
+        good.mTimeStamp = 3;
+        events.add(good);
+        when(mUsageStats.queryEventsForUser(anyLong(), anyLong(), anyInt(), anyString()))
+                .thenReturn(getUsageEvents(events));
+        ArrayList<AppEntry> apps = new ArrayList<>();
+        apps.add(getMockAppEntry(PKG1));
+        when(mSession.getAllApps()).thenReturn(apps);
+        mBridge.loadAllExtraInfo();
+
+        AppEntry entry = getMockAppEntry(PKG1);
+        mBridge.updateExtraInfo(entry, PKG1, 0);
+
+        verify(mUsageStats, never()).queryEventsForPackageForUser(
+                anyLong(), anyLong(), anyInt(), anyString(), anyString());
+        assertThat(((NotificationsSentState) entry.extraInfo).sentCount).isEqualTo(1);
+        assertThat(entry.extraInfo).isNotSameInstanceAs(apps.get(0).extraInfo);
+    }
+
     @Test
     public void testUpdateExtraInfo_noEvents() throws RemoteException {
         when(mUsageStats.queryEventsForPackageForUser(
@@ -0,0 +1,110 @@
+/*
+ * Copyright (C) 2026 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.settings.applications;
+
+import static com.android.settings.applications.RunningState.CONTENTS_UPDATE_DELAY;
+import static com.android.settings.applications.RunningState.MAX_CONTENTS_UPDATE_DELAY;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import android.app.ActivityManager;
+
+import com.android.settings.applications.RunningState.OnRefreshUiListener;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@RunWith(RobolectricTestRunner.class)
+public class RunningStateTest {
+
+    private RunningState mRunningState;
+
+    @Before
+    public void setUp() {
+        mRunningState = RunningState.getInstance(RuntimeEnvironment.application);
+        mRunningState.mHaveFingerprint = false;
+    }
+
+    @Test
+    public void getNextContentsUpdateDelay_nothingChanged_doublesUpToMax() {
+        long delay = CONTENTS_UPDATE_DELAY;
+
+        delay = RunningState.getNextContentsUpdateDelay(delay, OnRefreshUiListener.REFRESH_TIME);
+        assertThat(delay).isEqualTo(CONTENTS_UPDATE_DELAY * 2);
+
+        for (int i = 0; i < 10; i++) {
+            delay = RunningState.getNextContentsUpdateDelay(delay,
+                    OnRefreshUiListener.REFRESH_TIME);
+        }
+        assertThat(delay).isEqualTo(MAX_CONTENTS_UPDATE_DELAY);
+    }
+
+    @Test
+    public void getNextContentsUpdateDelay_changed_resetsDelay() {
+        assertThat(RunningState.getNextContentsUpdateDelay(MAX_CONTENTS_UPDATE_DELAY,
+                OnRefreshUiListener.REFRESH_DATA)).isEqualTo(CONTENTS_UPDATE_DELAY);
+        assertThat(RunningState.getNextContentsUpdateDelay(MAX_CONTENTS_UPDATE_DELAY,
+                OnRefreshUiListener.REFRESH_STRUCTURE)).isEqualTo(CONTENTS_UPDATE_DELAY);
+    }
+
+    @Test
+    public void checkFingerprintChanged_unchangedFingerprint_skipsRebuild() {
+        final long fingerprint = fingerprint(createProcess(100 /* importance */, 1 /* lru */));
+
+        assertThat(mRunningState.checkFingerprintChanged(fingerprint)).isTrue();
+        assertThat(mRunningState.checkFingerprintChanged(fingerprint)).isFalse();
+    }
+
+    @Test
+    public void checkFingerprintChanged_changedFingerprint_rebuilds() {
+        mRunningState.checkFingerprintChanged(
+                fingerprint(createProcess(100 /* importance */, 1 /* lru */)));
+
+        assertThat(mRunningState.checkFingerprintChanged(
+                fingerprint(createProcess(400 /* importance */, 1 /* lru */)))).isTrue();
+    }
+
+    @Test
+    public void fingerprint_onlyLruChanged_sameFingerprint() {
+        assertThat(fingerprint(createProcess(100 /* importance */, 1 /* lru */)))
+                .isEqualTo(fingerprint(createProcess(100 /* importance */, 5 /* lru */)));
+    }
+
+    private static long fingerprint(ActivityManager.RunningAppProcessInfo process) {
+        final List<ActivityManager.RunningAppProcessInfo> processes = new ArrayList<>();
+        processes.add(process);
+        return RunningState.fingerprint(new ArrayList<>(), 0 /* NS */, processes,
+                processes.size());
+    }
+
+    private static ActivityManager.RunningAppProcessInfo createProcess(int importance, int lru) {
+        final ActivityManager.RunningAppProcessInfo process =
+                new ActivityManager.RunningAppProcessInfo();
+        process.processName = "com.android.test";
+        process.pid = 1234;
+        process.uid = 10001;
+        process.importance = importance;
+        process.lru = lru;
+        return process;
+    }
+}
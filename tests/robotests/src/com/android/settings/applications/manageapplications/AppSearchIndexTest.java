@@ -0,0 +1,97 @@
+/*
+ * Copyright (C) 2022 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.settings.applications.manageapplications;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import static org.mockito.Mockito.mock;
+
+import android.content.pm.ApplicationInfo;
+
+import com.android.settingslib.applications.ApplicationsState.AppEntry;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@RunWith(RobolectricTestRunner.class)
+public class AppSearchIndexTest {
+
+    private AppSearchIndex mIndex;
+    private AppEntry mCafe;
+    private AppEntry mMaps;
+    private AppEntry mCalendar;
+    private List<AppEntry> mEntries;
+
+    @Before
+    public void setUp() {
+        mIndex = new AppSearchIndex();
+        mCafe = createEntry("Café", "com.example.coffee");
+        mMaps = createEntry("Maps", "com.google.android.apps.maps");
+        mCalendar = createEntry("Calendar", "com.example.events");
+        mEntries = new ArrayList<>();
+        mEntries.add(mCafe);
+        mEntries.add(mMaps);
+        mEntries.add(mCalendar);
+    }
+
+    @Test
+    public void search_ignoresCaseAndDiacritics() {
+        assertThat(mIndex.search(mEntries, "CAFE")).containsExactly(mCafe);
+    }
+
+    @Test
+    public void search_matchesPackageName() {
+        assertThat(mIndex.search(mEntries, "google")).containsExactly(mMaps);
+    }
+
+    @Test
+    public void search_keepsListOrder() {
+        assertThat(mIndex.search(mEntries, "ca")).containsExactly(mCafe, mCalendar).inOrder();
+    }
+
+    @Test
+    public void search_longerQuery_narrowsPreviousMatches() {
+        mIndex.search(mEntries, "ca");
+
+        assertThat(mIndex.search(mEntries, "cal")).containsExactly(mCalendar);
+        assertThat(mIndex.search(mEntries, "a")).containsExactly(mCafe, mMaps, mCalendar);
+    }
+
+    @Test
+    public void search_rebuiltList_usesNewEntries() {
+        mIndex.search(mEntries, "ca");
+        final List<AppEntry> rebuilt = new ArrayList<>(mEntries);
+        rebuilt.remove(mCafe);
+        mCalendar.label = "Agenda";
+
+        assertThat(mIndex.search(rebuilt, "ca")).isEmpty();
+        assertThat(mIndex.search(rebuilt, "agenda")).containsExactly(mCalendar);
+    }
+
+    private static AppEntry createEntry(String label, String packageName) {
+        final AppEntry entry = mock(AppEntry.class);
+        entry.label = label;
+        entry.info = new ApplicationInfo();
+        entry.info.packageName = packageName;
+        return entry;
+    }
+}
@@ -30,9 +30,11 @@ import android.content.pm.ResolveInfo;
 import android.nfc.NfcAdapter;
 import android.provider.Settings;
 
+import androidx.preference.Preference;
 import androidx.test.core.content.pm.ApplicationInfoBuilder;
 
 import com.android.settings.R;
+import com.android.settings.core.BasePreferenceController;
 import com.android.settings.nfc.NfcPreferenceController;
 import com.android.settings.testutils.shadow.ShadowNfcAdapter;
 
@@ -83,6 +85,38 @@ public class AdvancedConnectedDeviceControllerTest {
         assertThat(controller.getAvailabilityStatus()).isEqualTo(AVAILABLE);
     }
 
+    @Test
+    public void controller_loadsStateInBackground() {
+        assertThat(new AdvancedConnectedDeviceController(mContext, KEY))
+                .isInstanceOf(BasePreferenceController.BackgroundStateLoader.class);
+    }
+
+    @Test
+    public void updateState_afterLoadStateInBackground_setsLoadedSummary() {
+        final AdvancedConnectedDeviceController controller =
+                new AdvancedConnectedDeviceController(mContext, KEY);
+        final Preference preference = new Preference(mContext);
+        final CharSequence expected = mContext.getText(
+                AdvancedConnectedDeviceController.getConnectedDevicesSummaryResourceId(mContext));
+
+        controller.loadStateInBackground();
+        controller.updateState(preference);
+
+        assertThat(preference.getSummary()).isEqualTo(expected);
+    }
+
+    @Test
+    public void updateState_withoutLoadStateInBackground_computesSummary() {
+        final AdvancedConnectedDeviceController controller =
+                new AdvancedConnectedDeviceController(mContext, KEY);
+        final Preference preference = new Preference(mContext);
+
+        controller.updateState(preference);
+
+        assertThat(preference.getSummary()).isEqualTo(mContext.getText(
+                AdvancedConnectedDeviceController.getConnectedDevicesSummaryResourceId(mContext)));
+    }
+
     @Test
     public void isDrivingModeAvailable_returnTrue() {
         Settings.System.putInt(mContentResolver, DRIVING_MODE_SETTINGS_ENABLED, 1);
@@ -127,4 +127,18 @@ public class ConnectedDeviceDashboardFragmentTest {
                 .count())
                 .isEqualTo(1);
     }
+
+    @Test
+    public void getPreferenceControllers_advancedControllerLoadsStateInBackground() {
+        final List<BasePreferenceController> controllers =
+                PreferenceControllerListHelper.getPreferenceControllersFromXml(mContext,
+                        R.xml.connected_devices);
+
+        assertThat(controllers
+                .stream()
+                .filter(controller -> controller instanceof AdvancedConnectedDeviceController)
+                .allMatch(controller ->
+                        controller instanceof BasePreferenceController.BackgroundStateLoader))
+                .isTrue();
+    }
 }
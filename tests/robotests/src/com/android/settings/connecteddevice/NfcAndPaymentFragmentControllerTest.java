@@ -28,7 +28,10 @@ import android.nfc.NfcAdapter;
 import android.nfc.NfcManager;
 import android.os.UserManager;
 
+import androidx.preference.Preference;
+
 import com.android.settings.R;
+import com.android.settings.core.BasePreferenceController;
 import com.android.settings.testutils.shadow.ShadowNfcAdapter;
 
 import org.junit.Before;
@@ -101,4 +104,37 @@ public class NfcAndPaymentFragmentControllerTest {
         assertThat(mController.getSummary().toString()).contains(
                 mContext.getString(R.string.switch_off_text));
     }
+
+    @Test
+    public void controller_loadsStateInBackground() {
+        assertThat(mController)
+                .isInstanceOf(BasePreferenceController.BackgroundStateLoader.class);
+    }
+
+    @Test
+    public void updateState_afterLoadStateInBackground_setsLoadedSummary() {
+        final Preference preference = new Preference(mContext);
+        mShadowNfcAdapter.setEnabled(true);
+
+        mController.loadStateInBackground();
+        mShadowNfcAdapter.setEnabled(false);
+        mController.updateState(preference);
+
+        assertThat(preference.getSummary().toString()).contains(
+                mContext.getString(R.string.switch_on_text));
+    }
+
+    @Test
+    public void updateState_loadedSummaryConsumed_computesFreshSummary() {
+        final Preference preference = new Preference(mContext);
+        mShadowNfcAdapter.setEnabled(true);
+        mController.loadStateInBackground();
+        mController.updateState(preference);
+
+        mShadowNfcAdapter.setEnabled(false);
+        mController.updateState(preference);
+
+        assertThat(preference.getSummary().toString()).contains(
+                mContext.getString(R.string.switch_off_text));
+    }
 }
@@ -0,0 +1,102 @@
+/*
+ * Copyright (C) 2022 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.settings.core;
+
+import static com.android.settings.core.ControllerLatencyTracker.OP_AVAILABILITY;
+import static com.android.settings.core.ControllerLatencyTracker.OP_UPDATE_STATE;
+import static com.android.settings.core.ControllerLatencyTracker.RING_SIZE;
+import static com.android.settings.core.ControllerLatencyTracker.SLOW_THRESHOLD_US;
+import static com.android.settings.core.ControllerLatencyTracker.TAG;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import org.json.JSONObject;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.shadows.ShadowLog;
+
+import java.util.Collections;
+import java.util.List;
+
+@RunWith(RobolectricTestRunner.class)
+public class ControllerLatencyTrackerTest {
+
+    private static final int PAGE_ID = 1;
+
+    private ControllerLatencyTracker mTracker;
+
+    @Before
+    public void setUp() {
+        ShadowLog.clear();
+        mTracker = new ControllerLatencyTracker();
+    }
+
+    @Test
+    public void getPercentiles_nothingRecorded_returnsNull() {
+        assertThat(mTracker.getPercentiles(String.class, OP_AVAILABILITY)).isNull();
+    }
+
+    @Test
+    public void getPercentiles_hundredSamples_returnsPercentilesOfLastRing() {
+        for (int i = 1; i <= 100; i++) {
+            mTracker.recordLatency(String.class, OP_UPDATE_STATE, i);
+        }
+
+        // Only the last RING_SIZE samples are kept.
+        final long oldest = 100 - RING_SIZE + 1;
+        final long[] percentiles = mTracker.getPercentiles(String.class, OP_UPDATE_STATE);
+
+        assertThat(percentiles[0]).isEqualTo(oldest + RING_SIZE / 2 - 1);
+        assertThat(percentiles[2]).isEqualTo(100);
+    }
+
+    @Test
+    public void reportSlowControllers_slowController_reportsOnce() {
+        mTracker.recordLatency(String.class, OP_UPDATE_STATE, SLOW_THRESHOLD_US * 2);
+
+        mTracker.reportSlowControllers(PAGE_ID, Collections.singletonList("controller"));
+        mTracker.reportSlowControllers(PAGE_ID, Collections.singletonList("controller"));
+
+        final List<ShadowLog.LogItem> logs = ShadowLog.getLogsForTag(TAG);
+        assertThat(logs).hasSize(1);
+        assertThat(logs.get(0).msg).contains("update_state of String");
+    }
+
+    @Test
+    public void reportSlowControllers_fastController_reportsNothing() {
+        mTracker.recordLatency(String.class, OP_UPDATE_STATE, 1);
+
+        mTracker.reportSlowControllers(PAGE_ID, Collections.singletonList("controller"));
+
+        assertThat(ShadowLog.getLogsForTag(TAG)).isEmpty();
+    }
+
+    @Test
+    public void toJson_shouldContainPercentilesPerOperation() throws Exception {
+        mTracker.recordLatency(String.class, OP_AVAILABILITY, 10);
+
+        final JSONObject availability = mTracker.toJson()
+                .getJSONObject(String.class.getName())
+                .getJSONObject("availability");
+
+        assertThat(availability.getLong("count")).isEqualTo(1);
+        assertThat(availability.getLong("p95_us")).isEqualTo(10);
+        assertThat(availability.getBoolean("slow")).isFalse();
+    }
+}
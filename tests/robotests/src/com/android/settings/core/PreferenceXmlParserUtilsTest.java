@@ -378,6 +378,23 @@ public class PreferenceXmlParserUtilsTest {
         assertThat(bundleWithKey2Found).isTrue();
     }
 
+    @Test
+    @Config(qualifiers = "mcc999")
+    public void extractMetadata_calledTwice_returnsIndependentCopies()
+            throws IOException, XmlPullParserException {
+        PreferenceXmlParserUtils.clearMetadataCache();
+        final List<Bundle> first = PreferenceXmlParserUtils.extractMetadata(mContext,
+                R.xml.location_settings, MetadataFlag.FLAG_NEED_KEY);
+        first.get(0).putString(METADATA_KEY, "modified");
+        first.clear();
+
+        final List<Bundle> second = PreferenceXmlParserUtils.extractMetadata(mContext,
+                R.xml.location_settings, MetadataFlag.FLAG_NEED_KEY);
+
+        assertThat(second).isNotEmpty();
+        assertThat(second.get(0).getString(METADATA_KEY)).isNotEqualTo("modified");
+    }
+
     /**
      * @param resId the ID for the XML preference
      * @return an XML resource parser that points to the start tag
@@ -45,6 +45,7 @@ import androidx.preference.PreferenceScreen;
 import androidx.preference.SwitchPreference;
 
 import com.android.internal.logging.nano.MetricsProto.MetricsEvent;
+import com.android.settings.core.BasePreferenceController;
 import com.android.settings.core.PreferenceControllerMixin;
 import com.android.settings.slices.BlockingSlicePrefController;
 import com.android.settings.testutils.FakeFeatureFactory;
@@ -274,6 +275,29 @@ public class DashboardFragmentTest {
         verify(mockController2).getPreferenceKey();
     }
 
+    @Test
+    public void applyControllerStates_updatesAvailableAndHidesUnavailable() {
+        final BasePreferenceController availableController =
+                mock(BasePreferenceController.class);
+        final BasePreferenceController unavailableController =
+                mock(BasePreferenceController.class);
+        final Preference availablePreference = new Preference(mContext);
+        final Preference unavailablePreference = new Preference(mContext);
+        when(availableController.getPreferenceKey()).thenReturn("key1");
+        when(unavailableController.getPreferenceKey()).thenReturn("key2");
+        when(mTestFragment.mScreen.findPreference("key1")).thenReturn(availablePreference);
+        when(mTestFragment.mScreen.findPreference("key2")).thenReturn(unavailablePreference);
+
+        mTestFragment.applyControllerStates(
+                Arrays.asList(availableController, unavailableController),
+                new boolean[]{true, false}, true /* updateVisibility */);
+
+        verify(availableController).updateState(availablePreference);
+        verify(unavailableController, never()).updateState(any(Preference.class));
+        assertThat(availablePreference.isVisible()).isTrue();
+        assertThat(unavailablePreference.isVisible()).isFalse();
+    }
+
     @Test
     public void onExpandButtonClick_shouldLogAdvancedButtonExpand() {
         final MetricsFeatureProvider metricsFeatureProvider
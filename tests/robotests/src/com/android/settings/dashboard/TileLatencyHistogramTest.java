@@ -0,0 +1,62 @@
+/*
+ * Copyright (C) 2022 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.settings.dashboard;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import org.json.JSONException;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+@RunWith(RobolectricTestRunner.class)
+public class TileLatencyHistogramTest {
+
+    private static final String KEY = "tile_key";
+
+    private TileLatencyHistogram mHistogram;
+
+    @Before
+    public void setUp() {
+        mHistogram = new TileLatencyHistogram();
+    }
+
+    @Test
+    public void getCounts_nothingRecorded_returnsNull() {
+        assertThat(mHistogram.getCounts(KEY)).isNull();
+    }
+
+    @Test
+    public void record_putsLatencyInMatchingBucket() {
+        mHistogram.record(KEY, 0);
+        mHistogram.record(KEY, 60);
+        mHistogram.record(KEY, 5000);
+
+        final long[] counts = mHistogram.getCounts(KEY);
+        assertThat(counts).hasLength(TileLatencyHistogram.BUCKET_UPPER_BOUNDS_MS.length + 1);
+        assertThat(counts[0]).isEqualTo(1);
+        assertThat(counts[2]).isEqualTo(1);
+        assertThat(counts[counts.length - 1]).isEqualTo(1);
+    }
+
+    @Test
+    public void toJson_containsRecordedKey() throws JSONException {
+        mHistogram.record(KEY, 10);
+
+        assertThat(mHistogram.toJson().has(KEY)).isTrue();
+    }
+}
@@ -0,0 +1,125 @@
+/*
+ * Copyright (C) 2022 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.settings.datausage;
+
+import static android.app.usage.NetworkStats.Bucket.UID_REMOVED;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+import android.os.Process;
+import android.os.UserHandle;
+import android.os.UserManager;
+
+import com.android.settingslib.AppItem;
+import com.android.settingslib.net.UidDetailProvider;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.robolectric.RobolectricTestRunner;
+
+import java.util.List;
+
+@RunWith(RobolectricTestRunner.class)
+public class AppDataUsageAggregatorTest {
+    private static final int CURRENT_USER_ID = 0;
+    private static final int MANAGED_USER_ID = 10;
+    private static final int REMOVED_USER_ID = 11;
+    private static final int APP_ID = 10123;
+
+    @Mock
+    private UserManager mUserManager;
+
+    private AppDataUsageAggregator mAggregator;
+
+    @Before
+    public void setUp() {
+        MockitoAnnotations.initMocks(this);
+        mAggregator = new AppDataUsageAggregator(CURRENT_USER_ID,
+                List.of(UserHandle.of(CURRENT_USER_ID), UserHandle.of(MANAGED_USER_ID)),
+                mUserManager);
+    }
+
+    @Test
+    public void build_bucketsOfSameUid_sumsUsage() {
+        mAggregator.add(APP_ID, 100);
+        mAggregator.add(APP_ID, 50);
+
+        final AppDataUsageAggregator.Result result = mAggregator.build(new int[0]);
+
+        assertThat(result.mItems).hasSize(1);
+        assertThat(result.mItems.get(0).key).isEqualTo(APP_ID);
+        assertThat(result.mItems.get(0).total).isEqualTo(150);
+        assertThat(result.getPercentOfLargest(result.mItems.get(0))).isEqualTo(100);
+    }
+
+    @Test
+    public void build_sdkSandboxUid_collapsesIntoApp() {
+        mAggregator.add(APP_ID, 100);
+        mAggregator.add(Process.toSdkSandboxUid(APP_ID), 50);
+
+        final AppDataUsageAggregator.Result result = mAggregator.build(new int[0]);
+
+        assertThat(result.mItems).hasSize(1);
+        assertThat(result.mItems.get(0).total).isEqualTo(150);
+    }
+
+    @Test
+    public void build_managedProfileApp_addsUserItem() {
+        final int managedUid = UserHandle.getUid(MANAGED_USER_ID, APP_ID);
+        mAggregator.add(managedUid, 100);
+
+        final AppDataUsageAggregator.Result result = mAggregator.build(new int[0]);
+
+        assertThat(result.mItems).hasSize(2);
+        final AppItem userItem = result.mItems.get(0).category == AppItem.CATEGORY_USER
+                ? result.mItems.get(0) : result.mItems.get(1);
+        assertThat(userItem.key).isEqualTo(UidDetailProvider.buildKeyForUser(MANAGED_USER_ID));
+        assertThat(userItem.total).isEqualTo(100);
+    }
+
+    @Test
+    public void build_removedUser_looksUpUserOnce() {
+        mAggregator.add(UserHandle.getUid(REMOVED_USER_ID, APP_ID), 100);
+        mAggregator.add(UserHandle.getUid(REMOVED_USER_ID, APP_ID + 1), 50);
+
+        final AppDataUsageAggregator.Result result = mAggregator.build(new int[0]);
+
+        verify(mUserManager, times(1)).getUserInfo(REMOVED_USER_ID);
+        assertThat(result.mItems).hasSize(1);
+        assertThat(result.mItems.get(0).key).isEqualTo(UID_REMOVED);
+        assertThat(result.mItems.get(0).total).isEqualTo(150);
+    }
+
+    @Test
+    public void build_restrictedUidWithoutUsage_addsRestrictedItem() {
+        mAggregator.add(APP_ID, 100);
+
+        final AppDataUsageAggregator.Result result = mAggregator.build(new int[] {APP_ID + 1});
+
+        assertThat(result.mItems).hasSize(2);
+        final AppItem restrictedItem = result.mItems.get(1);
+        assertThat(restrictedItem.key).isEqualTo(APP_ID + 1);
+        assertThat(restrictedItem.restricted).isTrue();
+        assertThat(restrictedItem.total).isEqualTo(-1);
+    }
+}
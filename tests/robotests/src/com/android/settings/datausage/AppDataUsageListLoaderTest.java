@@ -0,0 +1,100 @@
+/*
+ * Copyright (C) 2022 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.settings.datausage;
+
+import static android.net.NetworkPolicyManager.POLICY_REJECT_METERED_BACKGROUND;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.when;
+
+import android.content.Context;
+import android.net.NetworkPolicyManager;
+import android.net.NetworkTemplate;
+import android.os.UserHandle;
+import android.os.UserManager;
+import android.text.format.DateUtils;
+import android.util.SparseLongArray;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+
+import java.util.List;
+
+@RunWith(RobolectricTestRunner.class)
+public class AppDataUsageListLoaderTest {
+    private static final int APP_ID = 10123;
+
+    private final NetworkTemplate mTemplate =
+            new NetworkTemplate.Builder(NetworkTemplate.MATCH_WIFI).build();
+
+    @Mock
+    private NetworkPolicyManager mNetworkPolicyManager;
+    @Mock
+    private UserManager mUserManager;
+
+    private Context mContext;
+    private long mStart;
+    private long mEnd;
+
+    @Before
+    public void setUp() {
+        MockitoAnnotations.initMocks(this);
+        mContext = spy(RuntimeEnvironment.application);
+        doReturn(mNetworkPolicyManager).when(mContext)
+                .getSystemService(Context.NETWORK_POLICY_SERVICE);
+        doReturn(mUserManager).when(mContext).getSystemService(Context.USER_SERVICE);
+        when(mUserManager.getUserProfiles()).thenReturn(List.of(UserHandle.of(0)));
+
+        mEnd = System.currentTimeMillis() - DateUtils.DAY_IN_MILLIS;
+        mStart = mEnd - DateUtils.WEEK_IN_MILLIS;
+        final SparseLongArray uidBytes = new SparseLongArray();
+        uidBytes.put(APP_ID, 100);
+        NetworkStatsResultCache.getInstance().put(
+                NetworkStatsResultCache.Key.forAppUsage(mTemplate, mStart, mEnd), uidBytes);
+    }
+
+    @After
+    public void tearDown() {
+        NetworkStatsResultCache.getInstance().clear();
+    }
+
+    @Test
+    public void loadInBackground_cachedUsage_appliesCurrentRestrictions() {
+        final AppDataUsageListLoader loader =
+                new AppDataUsageListLoader(mContext, mTemplate, mStart, mEnd);
+        when(mNetworkPolicyManager.getUidsWithPolicy(POLICY_REJECT_METERED_BACKGROUND))
+                .thenReturn(new int[] {APP_ID});
+
+        assertThat(loader.loadInBackground().mItems.get(0).restricted).isTrue();
+
+        when(mNetworkPolicyManager.getUidsWithPolicy(POLICY_REJECT_METERED_BACKGROUND))
+                .thenReturn(new int[0]);
+
+        final AppDataUsageAggregator.Result result = loader.loadInBackground();
+        assertThat(result.mItems.get(0).total).isEqualTo(100);
+        assertThat(result.mItems.get(0).restricted).isFalse();
+    }
+}
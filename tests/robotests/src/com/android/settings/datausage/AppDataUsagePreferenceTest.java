@@ -101,4 +101,28 @@ public class AppDataUsagePreferenceTest {
 
         assertThat(progressBar.getContentDescription()).isEqualTo(FIFTY_PERCENT);
     }
+
+    @Test
+    public void setItem_newUsage_shouldUpdateSummaryAndPercentage() {
+        when(mUidDetailProvider.getUidDetail(mAppItem.key, false /* blocking */))
+                .thenReturn(mUidDetail);
+        mPreference = new AppDataUsagePreference(RuntimeEnvironment.application, mAppItem,
+                10 /* percent */, mUidDetailProvider);
+        final AppItem newItem = new AppItem(mAppItem.key);
+        newItem.total = 2048;
+        final View view = LayoutInflater.from(RuntimeEnvironment.application).inflate(
+                com.android.settingslib.R.layout.preference_app, null);
+        final PreferenceViewHolder preferenceViewHolder =
+                PreferenceViewHolder.createInstanceForTests(view);
+        final ProgressBar progressBar = (ProgressBar) preferenceViewHolder.findViewById(
+                android.R.id.progress);
+
+        mPreference.setItem(newItem, 50 /* percent */);
+        mPreference.onBindViewHolder(preferenceViewHolder);
+
+        assertThat(mPreference.getItem()).isSameInstanceAs(newItem);
+        assertThat(mPreference.getSummary().toString()).isEqualTo(
+                DataUsageUtils.formatDataUsage(RuntimeEnvironment.application, 2048).toString());
+        assertThat(progressBar.getContentDescription()).isEqualTo(FIFTY_PERCENT);
+    }
 }
@@ -341,7 +341,8 @@ public class AppDataUsageTest {
         final long start = end - (DateUtils.WEEK_IN_MILLIS * 4);
 
         final NetworkCycleDataForUidLoader loader = (NetworkCycleDataForUidLoader)
-                mFragment.mUidDataCallbacks.onCreateLoader(0, Bundle.EMPTY);
+                ((CachedNetworkStatsLoader<List<NetworkCycleDataForUid>>) mFragment
+                        .mUidDataCallbacks.onCreateLoader(0, Bundle.EMPTY)).getDelegate();
 
         final List<Integer> uids = loader.getUids();
         assertThat(uids).hasSize(1);
@@ -369,7 +370,8 @@ public class AppDataUsageTest {
         final long start = end - (DateUtils.WEEK_IN_MILLIS * 4);
 
         final NetworkCycleDataForUidLoader loader = (NetworkCycleDataForUidLoader)
-                mFragment.mUidDataCallbacks.onCreateLoader(0, Bundle.EMPTY);
+                ((CachedNetworkStatsLoader<List<NetworkCycleDataForUid>>) mFragment
+                        .mUidDataCallbacks.onCreateLoader(0, Bundle.EMPTY)).getDelegate();
 
         final List<Integer> uids = loader.getUids();
         assertThat(uids).hasSize(3);
@@ -401,7 +403,9 @@ public class AppDataUsageTest {
                 new NetworkTemplate.Builder(NetworkTemplate.MATCH_WIFI).build());
 
         final NetworkCycleDataForUidLoader loader = (NetworkCycleDataForUidLoader)
-                mFragment.mUidDataCallbacks.onCreateLoader(0 /* id */, Bundle.EMPTY /* args */);
+                ((CachedNetworkStatsLoader<List<NetworkCycleDataForUid>>) mFragment
+                        .mUidDataCallbacks.onCreateLoader(0 /* id */, Bundle.EMPTY /* args */))
+                        .getDelegate();
 
         final ArrayList<Long> cycles = loader.getCycles();
         assertThat(cycles).hasSize(2);
@@ -0,0 +1,121 @@
+/*
+ * Copyright (C) 2022 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.settings.datausage;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import android.net.NetworkTemplate;
+import android.text.format.DateUtils;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.shadows.ShadowSystemClock;
+
+import java.time.Duration;
+import java.util.List;
+
+@RunWith(RobolectricTestRunner.class)
+public class NetworkStatsResultCacheTest {
+
+    private final NetworkTemplate mTemplate =
+            new NetworkTemplate.Builder(NetworkTemplate.MATCH_WIFI).build();
+    private NetworkStatsResultCache mCache;
+
+    @Before
+    public void setUp() {
+        mCache = new NetworkStatsResultCache(2 /* maxEntries */);
+    }
+
+    @Test
+    public void get_currentRange_expiresAfterTtl() {
+        final NetworkStatsResultCache.Key key = NetworkStatsResultCache.Key.forAppUsage(
+                mTemplate, 0L, System.currentTimeMillis() + DateUtils.DAY_IN_MILLIS);
+        final Object result = new Object();
+        mCache.put(key, result);
+
+        assertThat((Object) mCache.get(key)).isSameInstanceAs(result);
+
+        ShadowSystemClock.advanceBy(
+                Duration.ofMillis(NetworkStatsResultCache.CURRENT_RANGE_TTL_MS + 1));
+
+        assertThat((Object) mCache.get(key)).isNull();
+    }
+
+    @Test
+    public void get_endedRange_neverExpires() {
+        final long end = System.currentTimeMillis() - DateUtils.DAY_IN_MILLIS;
+        final NetworkStatsResultCache.Key key = NetworkStatsResultCache.Key.forAppUsage(
+                mTemplate, end - DateUtils.WEEK_IN_MILLIS, end);
+        final Object result = new Object();
+        mCache.put(key, result);
+
+        ShadowSystemClock.advanceBy(
+                Duration.ofMillis(NetworkStatsResultCache.CURRENT_RANGE_TTL_MS + 1));
+
+        assertThat((Object) mCache.get(key)).isSameInstanceAs(result);
+    }
+
+    @Test
+    public void get_recentlyEndedRange_expiresAfterTtl() {
+        final long end = System.currentTimeMillis()
+                - NetworkStatsResultCache.FINAL_RANGE_MARGIN_MS / 2;
+        final NetworkStatsResultCache.Key key = NetworkStatsResultCache.Key.forAppUsage(
+                mTemplate, end - DateUtils.WEEK_IN_MILLIS, end);
+        mCache.put(key, new Object());
+
+        ShadowSystemClock.advanceBy(
+                Duration.ofMillis(NetworkStatsResultCache.CURRENT_RANGE_TTL_MS + 1));
+
+        assertThat((Object) mCache.get(key)).isNull();
+    }
+
+    @Test
+    public void get_sameParameters_sharesResult() {
+        final List<Long> cycles = List.of(2000L, 1000L);
+        mCache.put(NetworkStatsResultCache.Key.forUids(mTemplate, List.of(1, 2), cycles,
+                true /* retrieveDetail */), "result");
+
+        assertThat((Object) mCache.get(NetworkStatsResultCache.Key.forUids(mTemplate,
+                List.of(1, 2), List.of(2000L, 1000L), true /* retrieveDetail */)))
+                .isEqualTo("result");
+        assertThat((Object) mCache.get(NetworkStatsResultCache.Key.forUids(mTemplate,
+                List.of(1, 2), cycles, false /* retrieveDetail */))).isNull();
+        assertThat((Object) mCache.get(NetworkStatsResultCache.Key.forUids(mTemplate,
+                List.of(1), cycles, true /* retrieveDetail */))).isNull();
+    }
+
+    @Test
+    public void put_overMaxEntries_evictsLeastRecentlyUsed() {
+        final NetworkStatsResultCache.Key key1 =
+                NetworkStatsResultCache.Key.forAppUsage(mTemplate, 0L, 1000L);
+        final NetworkStatsResultCache.Key key2 =
+                NetworkStatsResultCache.Key.forAppUsage(mTemplate, 1000L, 2000L);
+        final NetworkStatsResultCache.Key key3 =
+                NetworkStatsResultCache.Key.forAppUsage(mTemplate, 2000L, 3000L);
+        mCache.put(key1, "result1");
+        mCache.put(key2, "result2");
+        mCache.get(key1);
+
+        mCache.put(key3, "result3");
+
+        assertThat((Object) mCache.get(key1)).isEqualTo("result1");
+        assertThat((Object) mCache.get(key2)).isNull();
+        assertThat((Object) mCache.get(key3)).isEqualTo("result3");
+    }
+}
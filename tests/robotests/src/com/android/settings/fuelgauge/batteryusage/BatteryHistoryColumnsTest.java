@@ -0,0 +1,135 @@
+/*
+ * Copyright (C) 2022 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.settings.fuelgauge.batteryusage;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import android.content.ContentValues;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.util.HashMap;
+import java.util.Map;
+
+@RunWith(RobolectricTestRunner.class)
+public class BatteryHistoryColumnsTest {
+
+    @Test
+    public void fromHistoryMap_sortsSlotsAndAveragesLevels() {
+        final Map<Long, Map<String, BatteryHistEntry>> historyMap = new HashMap<>();
+        historyMap.put(3000L, createEntryMap(createEntry(1L, 5.0, 50), createEntry(2L, 1.0, 53)));
+        historyMap.put(1000L, createEntryMap(createEntry(1L, 1.0, 90)));
+        historyMap.put(2000L, new HashMap<>());
+
+        final BatteryHistoryColumns columns = BatteryHistoryColumns.fromHistoryMap(historyMap);
+
+        assertThat(columns.getTimestamps()).isEqualTo(new long[] {1000L, 2000L, 3000L});
+        assertThat(columns.getKeyCount()).isEqualTo(2);
+        assertThat(columns.getBatteryLevel(0)).isEqualTo(90);
+        assertThat(columns.hasEntries(1)).isFalse();
+        assertThat(columns.getBatteryLevel(1)).isNull();
+        assertThat(columns.getBatteryLevel(2)).isEqualTo(52);
+        assertThat(columns.indexOfSlot(1500L)).isLessThan(0);
+    }
+
+    @Test
+    public void getValues_missingKey_returnsZeroAndNoEntry() {
+        final BatteryHistEntry entry = createEntry(1L, 5.0, 50);
+        final Map<Long, Map<String, BatteryHistEntry>> historyMap = new HashMap<>();
+        historyMap.put(1000L, createEntryMap(entry));
+        historyMap.put(2000L, createEntryMap(createEntry(2L, 3.0, 40)));
+
+        final BatteryHistoryColumns columns = BatteryHistoryColumns.fromHistoryMap(historyMap);
+        final int key = indexOfKey(columns, entry.getKey());
+
+        assertThat(columns.getEntry(0, key)).isSameInstanceAs(entry);
+        assertThat(columns.getConsumePower(0, key)).isEqualTo(5.0);
+        assertThat(columns.getEntry(1, key)).isNull();
+        assertThat(columns.getConsumePower(1, key)).isEqualTo(0.0);
+    }
+
+    @Test
+    public void set_existingCell_replacesValuesAndLevel() {
+        final BatteryHistEntry entry = createEntry(1L, 5.0, 50);
+        final Map<Long, Map<String, BatteryHistEntry>> historyMap = new HashMap<>();
+        historyMap.put(1000L, createEntryMap(entry));
+        final BatteryHistoryColumns columns = BatteryHistoryColumns.fromHistoryMap(historyMap);
+
+        columns.set(/*slot=*/ 0, entry.getKey(), entry, /*totalPower=*/ 12.5,
+                /*consumePower=*/ 2.5,
+                /*foregroundUsageTimeInMs=*/ 10L, /*backgroundUsageTimeInMs=*/ 20L,
+                /*batteryLevel=*/ 70);
+
+        final int key = indexOfKey(columns, entry.getKey());
+        assertThat(columns.getBatteryLevel(0)).isEqualTo(70);
+        assertThat(columns.getTotalPower(0, key)).isEqualTo(12.5);
+        assertThat(columns.getConsumePower(0, key)).isEqualTo(2.5);
+        assertThat(columns.getForegroundUsageTimeInMs(0, key)).isEqualTo(10L);
+        assertThat(columns.getBackgroundUsageTimeInMs(0, key)).isEqualTo(20L);
+    }
+
+    @Test
+    public void toHistoryMap_returnsCellValuesAtSlotTimestamps() {
+        final BatteryHistEntry entry = createEntry(1L, 5.0, 50);
+        final Map<Long, Map<String, BatteryHistEntry>> historyMap = new HashMap<>();
+        historyMap.put(1000L, createEntryMap(entry));
+        historyMap.put(2000L, new HashMap<>());
+        final BatteryHistoryColumns columns = BatteryHistoryColumns.fromHistoryMap(historyMap);
+        columns.set(/*slot=*/ 1, entry.getKey(), entry, /*totalPower=*/ 17.0,
+                /*consumePower=*/ 7.0,
+                /*foregroundUsageTimeInMs=*/ 1L, /*backgroundUsageTimeInMs=*/ 2L,
+                /*batteryLevel=*/ 45);
+
+        final Map<Long, Map<String, BatteryHistEntry>> resultMap = columns.toHistoryMap();
+
+        assertThat(resultMap).hasSize(2);
+        final BatteryHistEntry resultEntry = resultMap.get(2000L).get(entry.getKey());
+        assertThat(resultEntry.mTimestamp).isEqualTo(2000L);
+        assertThat(resultEntry.mUid).isEqualTo(1L);
+        assertThat(resultEntry.mTotalPower).isEqualTo(17.0);
+        assertThat(resultEntry.mConsumePower).isEqualTo(7.0);
+        assertThat(resultEntry.mBatteryLevel).isEqualTo(45);
+    }
+
+    private static int indexOfKey(BatteryHistoryColumns columns, String key) {
+        for (int index = 0; index < columns.getKeyCount(); index++) {
+            if (columns.getKey(index).equals(key)) {
+                return index;
+            }
+        }
+        return -1;
+    }
+
+    private static Map<String, BatteryHistEntry> createEntryMap(BatteryHistEntry... entries) {
+        final Map<String, BatteryHistEntry> entryMap = new HashMap<>();
+        for (BatteryHistEntry entry : entries) {
+            entryMap.put(entry.getKey(), entry);
+        }
+        return entryMap;
+    }
+
+    private static BatteryHistEntry createEntry(long uid, double consumePower, int batteryLevel) {
+        final ContentValues values = new ContentValues();
+        values.put(BatteryHistEntry.KEY_UID, uid);
+        values.put(BatteryHistEntry.KEY_CONSUMER_TYPE, ConvertUtils.CONSUMER_TYPE_UID_BATTERY);
+        values.put(BatteryHistEntry.KEY_CONSUME_POWER, consumePower);
+        values.put(BatteryHistEntry.KEY_BATTERY_LEVEL, batteryLevel);
+        return new BatteryHistEntry(values);
+    }
+}
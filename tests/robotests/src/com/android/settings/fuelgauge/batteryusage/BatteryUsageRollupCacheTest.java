@@ -0,0 +1,141 @@
+/*
+ * Copyright (C) 2022 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.settings.fuelgauge.batteryusage;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import android.content.ContentValues;
+import android.content.Context;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+@RunWith(RobolectricTestRunner.class)
+public class BatteryUsageRollupCacheTest {
+
+    private Context mContext;
+    private File mFile;
+
+    @Before
+    public void setUp() {
+        mContext = RuntimeEnvironment.application;
+        mFile = new File(mContext.getCacheDir(), BatteryUsageRollupCache.FILE_NAME);
+        mFile.delete();
+    }
+
+    @Test
+    public void save_readFromNewInstance_returnsSameUsage() {
+        final BatteryUsageRollupCache cache = new BatteryUsageRollupCache(mFile);
+        cache.setUsers(/*userId=*/ 0, /*workProfileUserId=*/ 10);
+        cache.put(1000L, createDiffData());
+        cache.save(/*oldestSlotTimestamp=*/ 0L);
+
+        final BatteryUsageRollupCache reloadedCache = new BatteryUsageRollupCache(mFile);
+        reloadedCache.setUsers(/*userId=*/ 0, /*workProfileUserId=*/ 10);
+
+        assertThat(reloadedCache.contains(1000L)).isTrue();
+        final BatteryDiffData diffData = reloadedCache.get(mContext, 1000L);
+        assertThat(diffData.getAppDiffEntryList()).hasSize(1);
+        assertThat(diffData.getSystemDiffEntryList()).hasSize(1);
+        final BatteryDiffEntry appEntry = diffData.getAppDiffEntryList().get(0);
+        assertThat(appEntry.getPackageName()).isEqualTo("package1");
+        assertThat(appEntry.mBatteryHistEntry.mUid).isEqualTo(1L);
+        assertThat(appEntry.mForegroundUsageTimeInMs).isEqualTo(10L);
+        assertThat(appEntry.mBackgroundUsageTimeInMs).isEqualTo(20L);
+        assertThat(appEntry.getPercentOfTotal()).isEqualTo(75.0);
+        final BatteryDiffEntry systemEntry = diffData.getSystemDiffEntryList().get(0);
+        assertThat(systemEntry.mBatteryHistEntry.mDrainType).isEqualTo(3);
+        assertThat(systemEntry.getPercentOfTotal()).isEqualTo(25.0);
+    }
+
+    @Test
+    public void get_slotWithoutUsage_returnsNull() {
+        final BatteryUsageRollupCache cache = new BatteryUsageRollupCache(mFile);
+        cache.put(1000L, /*diffData=*/ null);
+        cache.save(/*oldestSlotTimestamp=*/ 0L);
+
+        final BatteryUsageRollupCache reloadedCache = new BatteryUsageRollupCache(mFile);
+
+        assertThat(reloadedCache.contains(1000L)).isTrue();
+        assertThat(reloadedCache.get(mContext, 1000L)).isNull();
+        assertThat(reloadedCache.contains(2000L)).isFalse();
+    }
+
+    @Test
+    public void setUsers_differentUsers_clearsCache() {
+        final BatteryUsageRollupCache cache = new BatteryUsageRollupCache(mFile);
+        cache.setUsers(/*userId=*/ 0, /*workProfileUserId=*/ 10);
+        cache.put(1000L, createDiffData());
+
+        cache.setUsers(/*userId=*/ 0, /*workProfileUserId=*/ Integer.MIN_VALUE);
+
+        assertThat(cache.size()).isEqualTo(0);
+    }
+
+    @Test
+    public void save_dropsSlotsBeforeOldestSlot() {
+        final BatteryUsageRollupCache cache = new BatteryUsageRollupCache(mFile);
+        cache.put(1000L, createDiffData());
+        cache.put(2000L, createDiffData());
+        cache.put(3000L, /*diffData=*/ null);
+
+        cache.save(/*oldestSlotTimestamp=*/ 2000L);
+
+        final BatteryUsageRollupCache reloadedCache = new BatteryUsageRollupCache(mFile);
+        assertThat(reloadedCache.size()).isEqualTo(2);
+        assertThat(reloadedCache.contains(1000L)).isFalse();
+        assertThat(reloadedCache.contains(2000L)).isTrue();
+    }
+
+    @Test
+    public void getInstance_sameContext_returnsSameInstance() {
+        assertThat(BatteryUsageRollupCache.getInstance(mContext))
+                .isSameInstanceAs(BatteryUsageRollupCache.getInstance(mContext));
+    }
+
+    private BatteryDiffData createDiffData() {
+        final List<BatteryDiffEntry> appEntries = new ArrayList<>();
+        appEntries.add(new BatteryDiffEntry(mContext, /*foregroundUsageTimeInMs=*/ 10L,
+                /*backgroundUsageTimeInMs=*/ 20L, /*consumePower=*/ 3.0,
+                createBatteryHistEntry(/*uid=*/ 1L, "package1", /*drainType=*/ 0,
+                        ConvertUtils.CONSUMER_TYPE_UID_BATTERY)));
+        final List<BatteryDiffEntry> systemEntries = new ArrayList<>();
+        systemEntries.add(new BatteryDiffEntry(mContext, /*foregroundUsageTimeInMs=*/ 30L,
+                /*backgroundUsageTimeInMs=*/ 0L, /*consumePower=*/ 1.0,
+                createBatteryHistEntry(/*uid=*/ 0L, /*packageName=*/ null, /*drainType=*/ 3,
+                        ConvertUtils.CONSUMER_TYPE_SYSTEM_BATTERY)));
+        return new BatteryDiffData(appEntries, systemEntries, /*totalConsumePower=*/ 4.0);
+    }
+
+    private static BatteryHistEntry createBatteryHistEntry(
+            long uid, String packageName, int drainType, int consumerType) {
+        final ContentValues values = new ContentValues();
+        values.put(BatteryHistEntry.KEY_UID, uid);
+        values.put(BatteryHistEntry.KEY_USER_ID, 0L);
+        values.put(BatteryHistEntry.KEY_PACKAGE_NAME, packageName);
+        values.put(BatteryHistEntry.KEY_DRAIN_TYPE, drainType);
+        values.put(BatteryHistEntry.KEY_CONSUMER_TYPE, consumerType);
+        return new BatteryHistEntry(values);
+    }
+}
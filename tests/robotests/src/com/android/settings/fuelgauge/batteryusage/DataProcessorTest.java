@@ -182,6 +182,58 @@ public class DataProcessorTest {
         }
     }
 
+    @Test
+    public void getHistoryMapWithExpectedTimestamps_interpolatesTotalPower() {
+        // Timezone GMT+8
+        final long[] timestamps = {
+                1640966700000L, // 2022-01-01 00:05:00
+                1640970180000L, // 2022-01-01 01:03:00
+        };
+        final double[] totalPowers = {100.0, 158.0};
+        final Map<Long, Map<String, BatteryHistEntry>> batteryHistoryMap = new HashMap<>();
+        for (int index = 0; index < timestamps.length; index++) {
+            final ContentValues values = new ContentValues();
+            values.put(BatteryHistEntry.KEY_BATTERY_LEVEL, 100);
+            values.put(BatteryHistEntry.KEY_TOTAL_POWER, totalPowers[index]);
+            final Map<String, BatteryHistEntry> entryMap = new HashMap<>();
+            entryMap.put(FAKE_ENTRY_KEY, new BatteryHistEntry(values));
+            batteryHistoryMap.put(timestamps[index], entryMap);
+        }
+
+        final Map<Long, Map<String, BatteryHistEntry>> resultMap =
+                DataProcessor.getHistoryMapWithExpectedTimestamps(mContext, batteryHistoryMap);
+
+        // 2022-01-01 01:00:00 is 55 of the 58 minutes between the two entries.
+        assertThat(resultMap.get(1640970000000L).get(FAKE_ENTRY_KEY).mTotalPower)
+                .isWithin(0.001).of(155.0);
+    }
+
+    @Test
+    public void getHistoryMapWithExpectedTimestamps_cachedSlot_skipsSlotOnlyReadByCache() {
+        // Timezone GMT+8
+        final long[] timestamps = {
+                1640966700000L, // 2022-01-01 00:05:00
+                1640981400000L, // 2022-01-01 04:10:00
+                1640995800000L  // 2022-01-01 08:10:00
+        };
+        final int[] levels = {100, 80, 60};
+        final BatteryUsageRollupCache rollupCache = BatteryUsageRollupCache.getInstance(mContext);
+        rollupCache.setUsers(mContext.getUserId(), Integer.MIN_VALUE);
+        // Caches the complete time slot from 2022-01-01 02:00:00 to 04:00:00.
+        rollupCache.put(1640973600000L, null);
+
+        final Map<Long, Map<String, BatteryHistEntry>> resultMap =
+                DataProcessor.getHistoryMapWithExpectedTimestamps(
+                        mContext, createHistoryMap(timestamps, levels));
+
+        // Only the cached usage reads 03:00:00, while 02:00:00 and 04:00:00 hold chart levels.
+        assertThat(resultMap.get(1640977200000L)).isEmpty();
+        assertThat(resultMap.get(1640973600000L)).containsKey(FAKE_ENTRY_KEY);
+        assertThat(resultMap.get(1640980800000L)).containsKey(FAKE_ENTRY_KEY);
+        assertThat(resultMap.get(1640970000000L)).containsKey(FAKE_ENTRY_KEY);
+        assertThat(resultMap.get(1640984400000L)).containsKey(FAKE_ENTRY_KEY);
+    }
+
     @Test
     public void getLevelDataThroughProcessedHistoryMap_notEnoughData_returnNull() {
         final long[] timestamps = {100L};
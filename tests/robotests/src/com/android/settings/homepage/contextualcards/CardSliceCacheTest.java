@@ -0,0 +1,111 @@
+/*
+ * Copyright (C) 2022 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.settings.homepage.contextualcards;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import android.content.ContentResolver;
+import android.content.Context;
+import android.net.Uri;
+
+import androidx.slice.Slice;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.Shadows;
+import org.robolectric.shadows.ShadowSystemClock;
+
+import java.time.Duration;
+
+@RunWith(RobolectricTestRunner.class)
+public class CardSliceCacheTest {
+
+    private static final Uri TEST_SLICE_URI = Uri.parse("content://test/test");
+
+    private ContentResolver mContentResolver;
+    private CardSliceCache mCache;
+    private Slice mSlice;
+
+    @Before
+    public void setUp() {
+        final Context context = RuntimeEnvironment.application;
+        mContentResolver = context.getContentResolver();
+        mCache = new CardSliceCache(context);
+        mSlice = new Slice.Builder(TEST_SLICE_URI).build();
+    }
+
+    @Test
+    public void get_afterPut_returnsSlice() {
+        mCache.put(TEST_SLICE_URI, mSlice);
+
+        assertThat(mCache.get(TEST_SLICE_URI)).isSameInstanceAs(mSlice);
+    }
+
+    @Test
+    public void get_sliceChanged_returnsNull() {
+        mCache.put(TEST_SLICE_URI, mSlice);
+
+        mContentResolver.notifyChange(TEST_SLICE_URI, null /* observer */);
+
+        assertThat(mCache.get(TEST_SLICE_URI)).isNull();
+    }
+
+    @Test
+    public void remove_shouldUnregisterObserver() {
+        mCache.put(TEST_SLICE_URI, mSlice);
+
+        mCache.remove(TEST_SLICE_URI);
+
+        assertThat(Shadows.shadowOf(mContentResolver).getContentObservers(TEST_SLICE_URI))
+                .isEmpty();
+    }
+
+    @Test
+    public void evictExpired_expiredEntry_shouldRemoveEntryAndUnregisterObserver() {
+        mCache.put(TEST_SLICE_URI, mSlice);
+
+        ShadowSystemClock.advanceBy(Duration.ofMillis(CardSliceCache.TTL_MS + 1));
+        mCache.evictExpired();
+
+        assertThat(Shadows.shadowOf(mContentResolver).getContentObservers(TEST_SLICE_URI))
+                .isEmpty();
+        assertThat(mCache.get(TEST_SLICE_URI)).isNull();
+    }
+
+    @Test
+    public void evictExpired_freshEntry_shouldKeepEntry() {
+        mCache.put(TEST_SLICE_URI, mSlice);
+
+        mCache.evictExpired();
+
+        assertThat(mCache.get(TEST_SLICE_URI)).isSameInstanceAs(mSlice);
+    }
+
+    @Test
+    public void clear_shouldUnregisterObservers() {
+        mCache.put(TEST_SLICE_URI, mSlice);
+
+        mCache.clear();
+
+        assertThat(Shadows.shadowOf(mContentResolver).getContentObservers(TEST_SLICE_URI))
+                .isEmpty();
+        assertThat(mCache.get(TEST_SLICE_URI)).isNull();
+    }
+}
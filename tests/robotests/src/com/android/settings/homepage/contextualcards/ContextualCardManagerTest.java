@@ -328,6 +328,30 @@ public class ContextualCardManagerTest {
         verify(manager, never()).onContextualCardUpdated(anyMap());
     }
 
+    @Test
+    public void onFinishCardLoading_slowLoadAfterPartialCards_shouldShowFinalCards() {
+        mManager.mStartTime = System.currentTimeMillis();
+        mManager.setListener(mListener);
+        final List<ContextualCard> partialCards = new ArrayList<>();
+        partialCards.add(buildContextualCard(TEST_SLICE_URI));
+        mManager.onCardLoadingProgress(partialCards);
+        final ContextualCard newCard =
+                new ContextualCard.Builder()
+                        .setName("test_name2")
+                        .setCardType(ContextualCard.CardType.SLICE)
+                        .setSliceUri(Uri.parse("content://test/test2"))
+                        .build();
+        final List<ContextualCard> loadedCards = new ArrayList<>();
+        loadedCards.add(buildContextualCard(TEST_SLICE_URI));
+        loadedCards.add(newCard);
+        mManager.mStartTime = 0;
+
+        mManager.onFinishCardLoading(loadedCards);
+
+        assertThat(mManager.mContextualCards).hasSize(2);
+        assertThat(mManager.mHasPartialCards).isFalse();
+    }
+
     @Test
     public void onFinishCardLoading_newLaunch_twoLoadedCards_shouldShowTwoCards() {
         mManager.mStartTime = System.currentTimeMillis();
@@ -341,6 +365,31 @@ public class ContextualCardManagerTest {
         assertThat(mManager.mContextualCards).hasSize(2);
     }
 
+    @Test
+    public void onCardLoadingProgress_newLaunch_shouldShowCardsAndKeepFirstLaunch() {
+        mManager.mStartTime = System.currentTimeMillis();
+        mManager.setListener(mListener);
+        final List<ContextualCard> cards = new ArrayList<>();
+        cards.add(buildContextualCard(TEST_SLICE_URI));
+
+        mManager.onCardLoadingProgress(cards);
+
+        assertThat(mManager.mContextualCards).hasSize(1);
+        assertThat(mManager.mIsFirstLaunch).isTrue();
+    }
+
+    @Test
+    public void onCardLoadingProgress_notFirstLaunch_shouldSkipOnContextualCardUpdated() {
+        mManager.mStartTime = System.currentTimeMillis();
+        mManager.mIsFirstLaunch = false;
+        final ContextualCardManager manager = spy(mManager);
+        doNothing().when(manager).onContextualCardUpdated(anyMap());
+
+        manager.onCardLoadingProgress(new ArrayList<>());
+
+        verify(manager, never()).onContextualCardUpdated(anyMap());
+    }
+
     @Test
     public void onFinishCardLoading_newLaunch_shouldSetIsFirstLaunchBackToFalse() {
         assertThat(mManager.mIsFirstLaunch).isTrue();
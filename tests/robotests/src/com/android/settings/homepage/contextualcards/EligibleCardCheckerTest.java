@@ -22,7 +22,9 @@ import static com.google.common.truth.Truth.assertThat;
 
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.verify;
 
 import android.app.Activity;
 import android.app.PendingIntent;
@@ -131,6 +133,30 @@ public class EligibleCardCheckerTest {
         assertThat(mEligibleCardChecker.mCard.getSlice()).isNotNull();
     }
 
+    @Test
+    public void isCardEligibleToDisplay_sliceCached_shouldNotBindSlice() {
+        final CardSliceCache sliceCache = new CardSliceCache(mContext);
+        sliceCache.put(TEST_SLICE_URI, buildSlice());
+        final EligibleCardChecker checker = spy(new EligibleCardChecker(mContext,
+                getContextualCard(TEST_SLICE_URI), sliceCache));
+
+        assertThat(checker.isCardEligibleToDisplay(getContextualCard(TEST_SLICE_URI))).isTrue();
+        verify(checker, never()).bindSlice(any(Uri.class));
+    }
+
+    @Test
+    public void isCardEligibleToDisplay_sliceBound_shouldCacheSlice() {
+        final CardSliceCache sliceCache = new CardSliceCache(mContext);
+        final EligibleCardChecker checker = spy(new EligibleCardChecker(mContext,
+                getContextualCard(TEST_SLICE_URI), sliceCache));
+        final Slice slice = buildSlice();
+        doReturn(slice).when(checker).bindSlice(any(Uri.class));
+
+        checker.isCardEligibleToDisplay(getContextualCard(TEST_SLICE_URI));
+
+        assertThat(sliceCache.get(TEST_SLICE_URI)).isSameInstanceAs(slice);
+    }
+
     private ContextualCard getContextualCard(Uri sliceUri) {
         return new ContextualCard.Builder()
                 .setName("test_card")
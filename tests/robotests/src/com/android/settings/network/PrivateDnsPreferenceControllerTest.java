@@ -62,6 +62,7 @@ import androidx.preference.Preference;
 import androidx.preference.PreferenceScreen;
 
 import com.android.settings.R;
+import com.android.settings.core.BasePreferenceController;
 import com.android.settings.testutils.shadow.ShadowDevicePolicyManager;
 import com.android.settings.testutils.shadow.ShadowUserManager;
 import com.android.settingslib.core.lifecycle.Lifecycle;
@@ -312,6 +313,37 @@ public class PrivateDnsPreferenceControllerTest {
         verify(mPreference).setEnabled(true);
     }
 
+    @Test
+    public void controller_loadsStateInBackground() {
+        assertThat(mController)
+                .isInstanceOf(BasePreferenceController.BackgroundStateLoader.class);
+    }
+
+    @Test
+    public void updateState_afterLoadStateInBackground_setsLoadedState() {
+        ConnectivitySettingsManager.setPrivateDnsMode(mContext, PRIVATE_DNS_MODE_OFF);
+        mController.loadStateInBackground();
+        ConnectivitySettingsManager.setPrivateDnsMode(mContext, PRIVATE_DNS_MODE_OPPORTUNISTIC);
+
+        mController.updateState(mPreference);
+
+        verify(mPreference).setSummary(getResourceString(R.string.private_dns_mode_off));
+        verify(mPreference).setEnabled(true);
+    }
+
+    @Test
+    public void updateState_loadedStateConsumed_computesFreshSummary() {
+        ConnectivitySettingsManager.setPrivateDnsMode(mContext, PRIVATE_DNS_MODE_OFF);
+        mController.loadStateInBackground();
+        mController.updateState(mPreference);
+        reset(mPreference);
+
+        ConnectivitySettingsManager.setPrivateDnsMode(mContext, PRIVATE_DNS_MODE_OPPORTUNISTIC);
+        mController.updateState(mPreference);
+
+        verify(mPreference).setSummary(getResourceString(R.string.private_dns_mode_opportunistic));
+    }
+
     private void setPrivateDnsMode(String mode) {
         Settings.Global.putString(mContentResolver, PRIVATE_DNS_MODE, mode);
     }
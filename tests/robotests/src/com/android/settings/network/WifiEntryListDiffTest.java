@@ -0,0 +1,100 @@
+/*
+ * Copyright (C) 2022 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.settings.network;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import com.android.wifitrackerlib.WifiEntry;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+@RunWith(RobolectricTestRunner.class)
+public class WifiEntryListDiffTest {
+
+    @Test
+    public void compute_sameEntries_isEmpty() {
+        final WifiEntry a = mockWifiEntry("a");
+        final WifiEntry b = mockWifiEntry("b");
+
+        final WifiEntryListDiff diff =
+                WifiEntryListDiff.compute(Arrays.asList(a, b), Arrays.asList(a, b));
+
+        assertThat(diff.mInserted).isEmpty();
+        assertThat(diff.mRemovedKeys).isEmpty();
+        assertThat(diff.mRebound).isEmpty();
+        assertThat(diff.mMoved).isEmpty();
+    }
+
+    @Test
+    public void compute_newInstanceOfSameKey_isRebound() {
+        final WifiEntry a = mockWifiEntry("a");
+        final WifiEntry newA = mockWifiEntry("a");
+
+        final WifiEntryListDiff diff =
+                WifiEntryListDiff.compute(Collections.singletonList(a),
+                        Collections.singletonList(newA));
+
+        assertThat(diff.mRebound).containsExactly(newA);
+        assertThat(diff.mInserted).isEmpty();
+        assertThat(diff.mRemovedKeys).isEmpty();
+    }
+
+    @Test
+    public void compute_insertedRemovedAndMoved_reportsEachChange() {
+        final WifiEntry a = mockWifiEntry("a");
+        final WifiEntry b = mockWifiEntry("b");
+        final WifiEntry c = mockWifiEntry("c");
+        final WifiEntry d = mockWifiEntry("d");
+
+        final WifiEntryListDiff diff =
+                WifiEntryListDiff.compute(Arrays.asList(a, b, c), Arrays.asList(d, c, a));
+
+        assertThat(diff.mInserted).containsExactly(d);
+        assertThat(diff.mRemovedKeys).containsExactly("b");
+        assertThat(diff.mMoved).containsExactly(c, a);
+        assertThat(diff.mRebound).isEmpty();
+    }
+
+    @Test
+    public void compute_movedAndInserted_listsThemInNewOrder() {
+        final WifiEntry a = mockWifiEntry("a");
+        final WifiEntry b = mockWifiEntry("b");
+        final WifiEntry c = mockWifiEntry("c");
+        final WifiEntry d = mockWifiEntry("d");
+        final WifiEntry e = mockWifiEntry("e");
+
+        final WifiEntryListDiff diff =
+                WifiEntryListDiff.compute(Arrays.asList(a, b, c), Arrays.asList(e, c, a, d, b));
+
+        assertThat(diff.mMoved).containsExactly(c, a, b).inOrder();
+        assertThat(diff.mInserted).containsExactly(e, d).inOrder();
+    }
+
+    private static WifiEntry mockWifiEntry(String key) {
+        final WifiEntry wifiEntry = mock(WifiEntry.class);
+        when(wifiEntry.getKey()).thenReturn(key);
+        return wifiEntry;
+    }
+}
@@ -22,7 +22,10 @@ import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 import static org.mockito.ArgumentMatchers.anyInt;
 import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 import android.app.INotificationManager;
@@ -32,6 +35,7 @@ import android.bluetooth.BluetoothAdapter;
 import android.companion.AssociationInfo;
 import android.companion.ICompanionDeviceManager;
 import android.content.ComponentName;
+import android.content.Context;
 import android.content.pm.ApplicationInfo;
 import android.content.pm.PackageInfo;
 import android.content.pm.PackageManager;
@@ -57,6 +61,7 @@ import org.robolectric.RuntimeEnvironment;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 
 @RunWith(RobolectricTestRunner.class)
 public class NotificationBackendTest {
@@ -268,6 +273,37 @@ public class NotificationBackendTest {
                 mCdm, mBm, mCn.getPackageName(), 0).toString()).isEqualTo("Device 1, Device 2");
     }
 
+    @Test
+    public void getBlockStates_readsPackagesOnce() throws Exception {
+        final Context context = mock(Context.class);
+        final PackageManager pm = mock(PackageManager.class);
+        when(context.getPackageManager()).thenReturn(pm);
+        final List<ApplicationInfo> apps = new ArrayList<>();
+        final List<PackageInfo> packages = new ArrayList<>();
+        for (String pkg : new String[] {"blocked", "locked"}) {
+            final PackageInfo pi = new PackageInfo();
+            pi.packageName = pkg;
+            pi.applicationInfo = new ApplicationInfo();
+            pi.applicationInfo.packageName = pkg;
+            pi.applicationInfo.uid = 123;
+            packages.add(pi);
+            apps.add(pi.applicationInfo);
+        }
+        when(pm.getInstalledPackagesAsUser(anyInt(), eq(0))).thenReturn(packages);
+        when(mInm.areNotificationsEnabledForPackage("blocked", 123)).thenReturn(false);
+        when(mInm.areNotificationsEnabledForPackage("locked", 123)).thenReturn(true);
+        when(mInm.isImportanceLocked("locked", 123)).thenReturn(true);
+
+        final Map<String, NotificationBackend.BlockState> states =
+                mNotificationBackend.getBlockStates(context, 0, apps);
+
+        assertTrue(states.get("blocked").blocked);
+        assertTrue(states.get("blocked").blockable);
+        assertFalse(states.get("locked").blocked);
+        assertFalse(states.get("locked").blockable);
+        verify(pm, never()).getPackageInfo(anyString(), anyInt());
+    }
+
     private ImmutableList<AssociationInfo> mockAssociations(String... macAddresses) {
         final AssociationInfo[] associations = new AssociationInfo[macAddresses.length];
         for (int index = 0; index < macAddresses.length; index++) {
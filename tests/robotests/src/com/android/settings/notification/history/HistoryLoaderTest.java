@@ -0,0 +1,210 @@
+/*
+ * Copyright (C) 2026 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.settings.notification.history;
+
+import static com.android.settings.notification.history.HistoryLoader.PAGE_SIZE;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import android.app.NotificationHistory;
+import android.app.NotificationHistory.HistoricalNotification;
+import android.content.Context;
+import android.content.pm.ApplicationInfo;
+import android.content.pm.PackageManager;
+import android.graphics.Color;
+import android.graphics.drawable.ColorDrawable;
+import android.graphics.drawable.Drawable;
+import android.os.Parcel;
+import android.os.UserHandle;
+
+import com.android.settings.notification.NotificationBackend;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@RunWith(RobolectricTestRunner.class)
+public class HistoryLoaderTest {
+
+    private static final String PACKAGE = "com.android.test";
+    private static final int UID = 10001;
+
+    @Mock
+    private NotificationBackend mBackend;
+    @Mock
+    private PackageManager mPm;
+
+    private Context mContext;
+    private HistoryLoader.AppCache mAppCache;
+    private String mSourceDir;
+    private final List<List<NotificationHistoryPackage>> mPages = new ArrayList<>();
+
+    @Before
+    public void setUp() throws Exception {
+        MockitoAnnotations.initMocks(this);
+        mContext = RuntimeEnvironment.application;
+        mAppCache = new HistoryLoader.AppCache();
+        mSourceDir = "/data/app/test-1/base.apk";
+
+        when(mPm.getApplicationInfoAsUser(anyString(), anyInt(), anyInt())).thenAnswer(
+                invocation -> {
+                    final ApplicationInfo info = new ApplicationInfo();
+                    info.packageName = invocation.getArgument(0);
+                    info.sourceDir = mSourceDir;
+                    return info;
+                });
+        when(mPm.getApplicationIcon(any(ApplicationInfo.class)))
+                .thenReturn(new ColorDrawable(Color.RED));
+        when(mPm.getUserBadgedIcon(any(Drawable.class), any(UserHandle.class)))
+                .thenAnswer(invocation -> invocation.getArgument(0));
+        when(mPm.getApplicationLabel(any(ApplicationInfo.class))).thenReturn("Test");
+    }
+
+    @Test
+    public void load_emptyHistory_deliversSingleEmptyPage() {
+        setPackageCount(0);
+
+        load();
+
+        assertThat(mPages).hasSize(1);
+        assertThat(mPages.get(0)).isEmpty();
+    }
+
+    @Test
+    public void load_morePackagesThanPage_deliversPagesMostRecentFirst() {
+        setPackageCount(PAGE_SIZE * 2 + 1);
+
+        load();
+
+        assertThat(mPages).hasSize(3);
+        assertThat(mPages.get(0)).hasSize(PAGE_SIZE);
+        assertThat(mPages.get(1)).hasSize(PAGE_SIZE);
+        assertThat(mPages.get(2)).hasSize(1);
+        long previous = Long.MAX_VALUE;
+        for (List<NotificationHistoryPackage> page : mPages) {
+            for (NotificationHistoryPackage nhp : page) {
+                assertThat(nhp.getMostRecent()).isLessThan(previous);
+                assertThat(nhp.label.toString()).isEqualTo("Test");
+                previous = nhp.getMostRecent();
+            }
+        }
+    }
+
+    @Test
+    public void load_canceled_deliversNothing() {
+        setPackageCount(PAGE_SIZE + 1);
+        final HistoryLoader loader = new HistoryLoader(mContext, mBackend, mPm, mAppCache);
+
+        loader.cancel();
+        loader.load(mPages::add);
+
+        assertThat(mPages).isEmpty();
+    }
+
+    @Test
+    public void load_sharedAppCache_resolvesEachAppOnce() {
+        setPackageCount(1);
+
+        load();
+        load();
+
+        verify(mPm, times(1)).getApplicationLabel(any(ApplicationInfo.class));
+        assertThat(mPages).hasSize(2);
+        assertThat(mPages.get(1).get(0).label.toString()).isEqualTo("Test");
+        // Each load gets its own drawable, so that it can be shown by a new view.
+        assertThat(mPages.get(1).get(0).icon).isNotSameInstanceAs(mPages.get(0).get(0).icon);
+    }
+
+    @Test
+    public void load_appUpdated_resolvesAppAgain() {
+        setPackageCount(1);
+
+        load();
+        mSourceDir = "/data/app/test-2/base.apk";
+        load();
+
+        verify(mPm, times(2)).getApplicationLabel(any(ApplicationInfo.class));
+    }
+
+    @Test
+    public void load_appMissing_usesDefaultIcon() throws Exception {
+        final Drawable defaultIcon = new ColorDrawable(Color.BLUE);
+        when(mPm.getDefaultActivityIcon()).thenReturn(defaultIcon);
+        when(mPm.getApplicationInfoAsUser(eq(PACKAGE + 0), anyInt(), anyInt()))
+                .thenThrow(new PackageManager.NameNotFoundException());
+        setPackageCount(1);
+
+        load();
+
+        assertThat(mPages.get(0).get(0).icon).isSameInstanceAs(defaultIcon);
+    }
+
+    private void load() {
+        new HistoryLoader(mContext, mBackend, mPm, mAppCache).load(mPages::add);
+    }
+
+    /**
+     * Makes the backend return a history with one notification for each of {@code count}
+     * packages, the package with the highest index being the most recent.
+     */
+    private void setPackageCount(int count) {
+        when(mBackend.getNotificationHistory(anyString(), any()))
+                .thenAnswer(invocation -> createHistory(count));
+    }
+
+    private static NotificationHistory createHistory(int packageCount) {
+        final NotificationHistory history = new NotificationHistory();
+        for (int i = 0; i < packageCount; i++) {
+            history.addNotificationToWrite(new HistoricalNotification.Builder()
+                    .setPackage(PACKAGE + i)
+                    .setChannelName("channel")
+                    .setChannelId("channel")
+                    .setUid(UID)
+                    .setUserId(0)
+                    .setPostedTimeMs(1000L + i)
+                    .setTitle("title")
+                    .setText("text")
+                    .build());
+        }
+        history.poolStringsFromNotifications();
+
+        // The history is only readable once parceled, as it is when returned by the service.
+        final Parcel parcel = Parcel.obtain();
+        try {
+            history.writeToParcel(parcel, 0 /* flags */);
+            parcel.setDataPosition(0);
+            return NotificationHistory.CREATOR.createFromParcel(parcel);
+        } finally {
+            parcel.recycle();
+        }
+    }
+}
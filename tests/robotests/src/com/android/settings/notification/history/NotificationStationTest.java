@@ -0,0 +1,153 @@
+/*
+ * Copyright (C) 2026 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.settings.notification.history;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.robolectric.Shadows.shadowOf;
+
+import android.content.Context;
+import android.os.Looper;
+import android.service.notification.NotificationListenerService.RankingMap;
+
+import androidx.preference.PreferenceManager;
+import androidx.preference.PreferenceScreen;
+
+import com.android.settings.notification.history.NotificationStation.HistoricalNotificationInfo;
+import com.android.settings.notification.history.NotificationStation.HistoricalNotificationPreference;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.shadows.ShadowLooper;
+import org.robolectric.util.ReflectionHelpers;
+
+import java.util.LinkedList;
+
+@RunWith(RobolectricTestRunner.class)
+public class NotificationStationTest {
+
+    private static final String KEY = "0|com.android.test|1|null|10001";
+    private static final long TIMESTAMP = 1000L;
+
+    private Context mContext;
+    private PreferenceScreen mScreen;
+    private NotificationStation mFragment;
+
+    @Before
+    public void setUp() {
+        mContext = RuntimeEnvironment.application;
+        mScreen = new PreferenceManager(mContext).createPreferenceScreen(mContext);
+        mFragment = new NotificationStation() {
+            @Override
+            public PreferenceScreen getPreferenceScreen() {
+                return mScreen;
+            }
+        };
+    }
+
+    @Test
+    public void addOrUpdateNotification_sameKeyNotAlerting_rebindsExistingPreference() {
+        final HistoricalNotificationInfo info = createInfo("title");
+        final HistoricalNotificationPreference preference = addPreference(info);
+
+        final HistoricalNotificationInfo update = createInfo("new title");
+        update.timestamp = TIMESTAMP + 1;
+        mFragment.addOrUpdateNotification(update);
+
+        assertThat(mScreen.getPreferenceCount()).isEqualTo(1);
+        assertThat(mFragment.mLatestPreferences.get(KEY)).isSameInstanceAs(preference);
+        assertThat(info.title.toString()).isEqualTo("new title");
+        verify(preference).updatePreference(info);
+    }
+
+    @Test
+    public void showNotifications_unchangedContent_doesNotRebind() {
+        final HistoricalNotificationPreference preference = addPreference(createInfo("title"));
+        setNotificationInfos(createInfo("title"));
+
+        mFragment.showNotifications();
+
+        assertThat(mScreen.getPreferenceCount()).isEqualTo(1);
+        assertThat(mFragment.mLatestPreferences.get(KEY)).isSameInstanceAs(preference);
+        verify(preference, never()).updatePreference(any(HistoricalNotificationInfo.class));
+    }
+
+    @Test
+    public void showNotifications_changedContent_rebindsExistingPreference() {
+        final HistoricalNotificationPreference preference = addPreference(createInfo("title"));
+        final HistoricalNotificationInfo update = createInfo("new title");
+        setNotificationInfos(update);
+
+        mFragment.showNotifications();
+
+        assertThat(mScreen.getPreferenceCount()).isEqualTo(1);
+        verify(preference).updatePreference(update);
+    }
+
+    @Test
+    public void onNotificationRankingUpdate_burst_refreshesOnce() {
+        final RankingMap ranking = mock(RankingMap.class);
+        when(ranking.getOrderedKeys()).thenReturn(new String[0]);
+        final ShadowLooper looper = shadowOf(Looper.getMainLooper());
+        looper.idle();
+
+        mFragment.mListener.onNotificationRankingUpdate(ranking);
+        mFragment.mListener.onNotificationRankingUpdate(ranking);
+        mFragment.mListener.onNotificationRankingUpdate(ranking);
+
+        assertThat(looper.isIdle()).isFalse();
+        looper.runOneTask();
+        assertThat(looper.isIdle()).isTrue();
+    }
+
+    private HistoricalNotificationPreference addPreference(HistoricalNotificationInfo info) {
+        final HistoricalNotificationPreference preference =
+                spy(new HistoricalNotificationPreference(mContext, info, 0 /* order */));
+        mScreen.addPreference(preference);
+        mFragment.mLatestPreferences.put(info.key, preference);
+        return preference;
+    }
+
+    private void setNotificationInfos(HistoricalNotificationInfo... infos) {
+        final LinkedList<HistoricalNotificationInfo> list = new LinkedList<>();
+        for (HistoricalNotificationInfo info : infos) {
+            list.add(info);
+        }
+        ReflectionHelpers.setField(mFragment, "mNotificationInfos", list);
+    }
+
+    private static HistoricalNotificationInfo createInfo(String title) {
+        final HistoricalNotificationInfo info = new HistoricalNotificationInfo();
+        info.key = KEY;
+        info.pkg = "com.android.test";
+        info.pkgname = "Test";
+        info.title = title;
+        info.text = "text";
+        info.timestamp = TIMESTAMP;
+        info.active = true;
+        return info;
+    }
+}
@@ -0,0 +1,148 @@
+/*
+ * Copyright (C) 2022 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.settings.search;
+
+import static com.android.settings.search.SearchIndexableChangeFeed.CHANGE_ADDED;
+import static com.android.settings.search.SearchIndexableChangeFeed.CHANGE_REMOVED;
+import static com.android.settings.search.SearchIndexableChangeFeed.CHANGE_UPDATED;
+import static com.android.settings.search.SearchIndexableChangeFeed.EXTRA_FULL_SNAPSHOT;
+import static com.android.settings.search.SearchIndexableChangeFeed.EXTRA_GENERATION;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import android.database.Cursor;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+@RunWith(RobolectricTestRunner.class)
+public class SearchIndexableChangeFeedTest {
+
+    private static final String[] COLUMNS = new String[]{"key", "title"};
+    private static final long BASE_GENERATION = 100;
+    private static final int CALLER_UID = 10001;
+    private static final int OTHER_CALLER_UID = 10002;
+
+    private SearchIndexableChangeFeed mFeed;
+
+    @Before
+    public void setUp() {
+        mFeed = new SearchIndexableChangeFeed(COLUMNS, row -> (String) row[0], BASE_GENERATION);
+    }
+
+    @Test
+    public void update_unknownGeneration_returnsFullSnapshot() {
+        try (Cursor cursor = mFeed.update(rows("a", "A", "b", "B"), -1, CALLER_UID)) {
+            assertThat(cursor.getCount()).isEqualTo(2);
+            assertThat(cursor.getExtras().getBoolean(EXTRA_FULL_SNAPSHOT)).isTrue();
+            assertThat(cursor.getExtras().getLong(EXTRA_GENERATION))
+                    .isEqualTo(BASE_GENERATION + 1);
+        }
+    }
+
+    @Test
+    public void update_sinceLastGeneration_returnsOnlyChanges() {
+        mFeed.update(rows("a", "A", "b", "B", "c", "C"), -1, CALLER_UID).close();
+        final long generation = mFeed.getGeneration();
+
+        try (Cursor cursor = mFeed.update(rows("a", "A", "b", "B2", "d", "D"), generation,
+                CALLER_UID)) {
+            assertThat(cursor.getExtras().getBoolean(EXTRA_FULL_SNAPSHOT)).isFalse();
+            assertThat(getChanges(cursor)).containsExactly(
+                    "b:" + CHANGE_UPDATED, "c:" + CHANGE_REMOVED, "d:" + CHANGE_ADDED);
+        }
+    }
+
+    @Test
+    public void update_nothingChanged_keepsGenerationAndReturnsNoRows() {
+        mFeed.update(rows("a", "A"), -1, CALLER_UID).close();
+        final long generation = mFeed.getGeneration();
+
+        try (Cursor cursor = mFeed.update(rows("a", "A"), generation, CALLER_UID)) {
+            assertThat(cursor.getCount()).isEqualTo(0);
+            assertThat(mFeed.getGeneration()).isEqualTo(generation);
+        }
+    }
+
+    @Test
+    public void update_duplicateKeys_keepsEveryRow() {
+        try (Cursor cursor = mFeed.update(rows("a", "A1", "a", "A2", "b", "B"), -1,
+                CALLER_UID)) {
+            assertThat(cursor.getCount()).isEqualTo(3);
+        }
+        final long generation = mFeed.getGeneration();
+
+        try (Cursor cursor = mFeed.update(rows("a", "A1", "b", "B"), generation, CALLER_UID)) {
+            assertThat(getChanges(cursor)).containsExactly("a:" + CHANGE_REMOVED);
+        }
+    }
+
+    @Test
+    public void update_tombstoneNotAcknowledgedByEveryCaller_isKept() {
+        mFeed.update(rows("a", "A", "b", "B"), -1, CALLER_UID).close();
+        mFeed.update(rows("a", "A", "b", "B"), -1, OTHER_CALLER_UID).close();
+        final long generation = mFeed.getGeneration();
+        mFeed.update(rows("a", "A"), generation, CALLER_UID).close();
+        mFeed.update(rows("a", "A"), mFeed.getGeneration(), CALLER_UID).close();
+
+        try (Cursor cursor = mFeed.update(rows("a", "A"), generation, OTHER_CALLER_UID)) {
+            assertThat(cursor.getExtras().getBoolean(EXTRA_FULL_SNAPSHOT)).isFalse();
+            assertThat(getChanges(cursor)).containsExactly("b:" + CHANGE_REMOVED);
+        }
+    }
+
+    @Test
+    public void update_tombstoneAcknowledgedByEveryCaller_isPurged() {
+        mFeed.update(rows("a", "A", "b", "B"), -1, CALLER_UID).close();
+        mFeed.update(rows("a", "A", "b", "B"), -1, OTHER_CALLER_UID).close();
+        final long generation = mFeed.getGeneration();
+        mFeed.update(rows("a", "A"), generation, CALLER_UID).close();
+        final long removedGeneration = mFeed.getGeneration();
+        mFeed.update(rows("a", "A"), removedGeneration, CALLER_UID).close();
+        mFeed.update(rows("a", "A"), removedGeneration, OTHER_CALLER_UID).close();
+
+        // Resuming from before the purged tombstone can't be served as changes anymore.
+        try (Cursor cursor = mFeed.update(rows("a", "A"), generation, CALLER_UID)) {
+            assertThat(cursor.getExtras().getBoolean(EXTRA_FULL_SNAPSHOT)).isTrue();
+            assertThat(getChanges(cursor)).containsExactly("a:" + CHANGE_ADDED);
+        }
+    }
+
+    private static List<String> getChanges(Cursor cursor) {
+        final List<String> changes = new ArrayList<>();
+        final int changeTypeIndex = cursor.getColumnIndex(
+                SearchIndexableChangeFeed.COLUMN_CHANGE_TYPE);
+        while (cursor.moveToNext()) {
+            changes.add(cursor.getString(0) + ":" + cursor.getInt(changeTypeIndex));
+        }
+        return changes;
+    }
+
+    private static List<Object[]> rows(String... keyAndTitles) {
+        final List<Object[]> rows = new ArrayList<>();
+        for (int i = 0; i < keyAndTitles.length; i += 2) {
+            rows.add(Arrays.copyOfRange(keyAndTitles, i, i + 2, Object[].class));
+        }
+        return rows;
+    }
+}
@@ -15,6 +15,7 @@ import android.content.pm.ProviderInfo;
 import android.database.Cursor;
 import android.net.Uri;
 import android.os.Bundle;
+import android.os.SystemClock;
 import android.provider.SearchIndexablesContract;
 
 import com.android.settings.R;
@@ -39,9 +40,13 @@ import org.robolectric.annotation.Implementation;
 import org.robolectric.annotation.Implements;
 import org.robolectric.annotation.Resetter;
 
+import java.io.PrintWriter;
+import java.io.StringWriter;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
 
 @RunWith(RobolectricTestRunner.class)
 @Config(shadows = SettingsSearchIndexablesProviderTest.ShadowCategoryManager.class)
@@ -49,6 +54,7 @@ public class SettingsSearchIndexablesProviderTest {
 
     private static final String PACKAGE_NAME = "com.android.settings";
     private static final String BASE_AUTHORITY = "content://" + PACKAGE_NAME + "/";
+    private static final String SLOW_PROVIDER_KEY = "slow_provider_key";
 
     private Context mContext;
     private SettingsSearchIndexablesProvider mProvider;
@@ -205,6 +211,121 @@ public class SettingsSearchIndexablesProviderTest {
         assertThat(mProvider.isEligibleForIndexing(PACKAGE_NAME, activityTile)).isTrue();
     }
 
+    @Test
+    public void nonIndexablesQuery_slowProviderWithoutCachedKeys_waitsForKeys() {
+        final BaseSearchIndexProvider slowProvider = new BaseSearchIndexProvider() {
+            @Override
+            public List<String> getNonIndexableKeys(Context context) {
+                SystemClock.sleep(SettingsSearchIndexablesProvider.PROVIDER_TIMEOUT_MS * 2);
+                return new ArrayList<>(Arrays.asList(SLOW_PROVIDER_KEY));
+            }
+        };
+        mFakeFeatureFactory.searchFeatureProvider.getSearchIndexableResources()
+                .getProviderValues().add(new SearchIndexableData(SlowFragment.class, slowProvider));
+        final Uri rawUri = Uri.parse(
+                BASE_AUTHORITY + SearchIndexablesContract.NON_INDEXABLES_KEYS_PATH);
+
+        final List<String> keys = new ArrayList<>();
+        try (Cursor cursor = mProvider.query(rawUri,
+                SearchIndexablesContract.NON_INDEXABLES_KEYS_COLUMNS, null, null, null)) {
+            while (cursor.moveToNext()) {
+                keys.add(cursor.getString(0));
+            }
+        }
+
+        assertThat(keys).contains(SLOW_PROVIDER_KEY);
+    }
+
+    @Test
+    public void nonIndexablesQuery_slowProviderWithCachedKeys_usesCachedKeysAndStopsProvider()
+            throws Exception {
+        final CountDownLatch interrupted = new CountDownLatch(1);
+        final BaseSearchIndexProvider slowProvider = new BaseSearchIndexProvider() {
+            private boolean mComputed;
+
+            @Override
+            public List<String> getNonIndexableKeys(Context context) {
+                if (mComputed) {
+                    try {
+                        new CountDownLatch(1).await();
+                    } catch (InterruptedException e) {
+                        interrupted.countDown();
+                    }
+                    return new ArrayList<>();
+                }
+                mComputed = true;
+                return new ArrayList<>(Arrays.asList(SLOW_PROVIDER_KEY));
+            }
+        };
+        mFakeFeatureFactory.searchFeatureProvider.getSearchIndexableResources()
+                .getProviderValues().add(new SearchIndexableData(SlowFragment.class, slowProvider));
+        final Uri rawUri = Uri.parse(
+                BASE_AUTHORITY + SearchIndexablesContract.NON_INDEXABLES_KEYS_PATH);
+        mProvider.query(rawUri, SearchIndexablesContract.NON_INDEXABLES_KEYS_COLUMNS, null, null,
+                null).close();
+
+        final List<String> keys = new ArrayList<>();
+        try (Cursor cursor = mProvider.query(rawUri,
+                SearchIndexablesContract.NON_INDEXABLES_KEYS_COLUMNS, null, null, null)) {
+            while (cursor.moveToNext()) {
+                keys.add(cursor.getString(0));
+            }
+        }
+
+        assertThat(keys).contains(SLOW_PROVIDER_KEY);
+        assertThat(interrupted.await(5, TimeUnit.SECONDS)).isTrue();
+    }
+
+    @Test
+    public void changesQuery_sinceLastGeneration_returnsOnlyChanges() {
+        final Uri changesUri = Uri.parse(BASE_AUTHORITY
+                + SearchIndexablesContract.INDEXABLES_XML_RES_PATH + "_changes");
+
+        final long generation;
+        try (Cursor cursor = mProvider.query(changesUri,
+                SearchIndexablesContract.INDEXABLES_XML_RES_COLUMNS, null, null, null)) {
+            assertThat(cursor.getCount()).isEqualTo(1);
+            assertThat(cursor.getExtras().getBoolean(
+                    SearchIndexableChangeFeed.EXTRA_FULL_SNAPSHOT)).isTrue();
+            cursor.moveToFirst();
+            assertThat(cursor.getInt(1)).isEqualTo(R.xml.display_settings);
+            assertThat(cursor.getInt(cursor.getColumnIndex(
+                    SearchIndexableChangeFeed.COLUMN_CHANGE_TYPE)))
+                    .isEqualTo(SearchIndexableChangeFeed.CHANGE_ADDED);
+            generation = cursor.getExtras().getLong(SearchIndexableChangeFeed.EXTRA_GENERATION);
+        }
+
+        final Uri sinceUri = changesUri.buildUpon()
+                .appendQueryParameter(SearchIndexableChangeFeed.QUERY_PARAMETER_SINCE,
+                        String.valueOf(generation))
+                .build();
+        try (Cursor cursor = mProvider.query(sinceUri,
+                SearchIndexablesContract.INDEXABLES_XML_RES_COLUMNS, null, null, null)) {
+            assertThat(cursor.getCount()).isEqualTo(0);
+            assertThat(cursor.getExtras().getBoolean(
+                    SearchIndexableChangeFeed.EXTRA_FULL_SNAPSHOT)).isFalse();
+            assertThat(cursor.getExtras().getLong(SearchIndexableChangeFeed.EXTRA_GENERATION))
+                    .isEqualTo(generation);
+        }
+    }
+
+    @Test
+    @Config(qualifiers = "mcc999")
+    public void dump_afterNonIndexablesQuery_containsProviderTiming() {
+        final Uri rawUri = Uri.parse(
+                BASE_AUTHORITY + SearchIndexablesContract.NON_INDEXABLES_KEYS_PATH);
+        mProvider.query(rawUri, SearchIndexablesContract.NON_INDEXABLES_KEYS_COLUMNS, null,
+                null, null).close();
+        final StringWriter stringWriter = new StringWriter();
+
+        mProvider.dump(null /* fd */, new PrintWriter(stringWriter), new String[0]);
+
+        assertThat(stringWriter.toString()).contains(FakeSettingsFragment.class.getName());
+    }
+
+    private static class SlowFragment {
+    }
+
     @Implements(CategoryManager.class)
     public static class ShadowCategoryManager {
 
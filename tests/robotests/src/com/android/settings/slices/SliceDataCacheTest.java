@@ -0,0 +1,125 @@
+/*
+ * Copyright (C) 2022 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.settings.slices;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import android.net.Uri;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.util.Arrays;
+import java.util.Locale;
+
+@RunWith(RobolectricTestRunner.class)
+public class SliceDataCacheTest {
+
+    private Locale mDefaultLocale;
+    private SliceDataCache mCache;
+
+    @Before
+    public void setUp() {
+        mDefaultLocale = Locale.getDefault();
+        Locale.setDefault(Locale.US);
+        mCache = new SliceDataCache(2 /* maxSize */);
+    }
+
+    @After
+    public void tearDown() {
+        Locale.setDefault(mDefaultLocale);
+    }
+
+    @Test
+    public void get_countsHitsAndMisses() {
+        final SliceData data = getData("key");
+        mCache.put(data.getUri(), data);
+
+        assertThat(mCache.get(data.getUri())).isEqualTo(data);
+        assertThat(mCache.get(getUri("other"))).isNull();
+        assertThat(mCache.getHitCount()).isEqualTo(1);
+        assertThat(mCache.getMissCount()).isEqualTo(1);
+    }
+
+    @Test
+    public void peek_doesNotCountHitsOrMisses() {
+        final SliceData data = getData("key");
+        mCache.put(data.getUri(), data);
+
+        assertThat(mCache.peek(data.getUri())).isEqualTo(data);
+        assertThat(mCache.peek(getUri("other"))).isNull();
+        assertThat(mCache.getHitCount()).isEqualTo(0);
+        assertThat(mCache.getMissCount()).isEqualTo(0);
+    }
+
+    @Test
+    public void put_overMaxSize_evictsLeastRecentlyUsed() {
+        final SliceData first = getData("first");
+        final SliceData second = getData("second");
+        final SliceData third = getData("third");
+
+        mCache.put(first.getUri(), first);
+        mCache.put(second.getUri(), second);
+        mCache.get(first.getUri());
+        mCache.put(third.getUri(), third);
+
+        assertThat(mCache.size()).isEqualTo(2);
+        assertThat(mCache.get(second.getUri())).isNull();
+        assertThat(mCache.get(first.getUri())).isEqualTo(first);
+    }
+
+    @Test
+    public void putAll_marksCacheWarm() {
+        mCache.putAll(Arrays.asList(getData("first"), getData("second")));
+
+        assertThat(mCache.isWarm()).isTrue();
+        assertThat(mCache.size()).isEqualTo(2);
+    }
+
+    @Test
+    public void localeChanged_dropsCache() {
+        mCache.putAll(Arrays.asList(getData("key")));
+
+        Locale.setDefault(Locale.FRANCE);
+
+        assertThat(mCache.isWarm()).isFalse();
+        assertThat(mCache.size()).isEqualTo(0);
+    }
+
+    private static Uri getUri(String key) {
+        return new Uri.Builder()
+                .scheme("content")
+                .authority("com.android.settings.slices")
+                .appendPath("action")
+                .appendPath(key)
+                .build();
+    }
+
+    private static SliceData getData(String key) {
+        return new SliceData.Builder()
+                .setKey(key)
+                .setTitle("title")
+                .setFragmentName("fragment")
+                .setScreenTitle("screen")
+                .setUri(getUri(key))
+                .setPreferenceControllerClassName("controller")
+                .build();
+    }
+}
@@ -28,11 +28,13 @@ import android.content.Context;
 import android.content.pm.PackageManager;
 import android.content.pm.ResolveInfo;
 import android.content.pm.ServiceInfo;
+import android.provider.SearchIndexableResource;
 import android.text.TextUtils;
 
 import com.android.settings.R;
 import com.android.settings.accessibility.AccessibilitySettings;
 import com.android.settings.accessibility.AccessibilitySlicePreferenceController;
+import com.android.settings.search.BaseSearchIndexProvider;
 import com.android.settings.search.SearchFeatureProvider;
 import com.android.settings.search.SearchFeatureProviderImpl;
 import com.android.settings.testutils.FakeFeatureFactory;
@@ -49,6 +51,7 @@ import org.robolectric.annotation.Config;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 
 @RunWith(RobolectricTestRunner.class)
 public class SliceDataConverterTest {
@@ -114,6 +117,31 @@ public class SliceDataConverterTest {
         }
     }
 
+    @Test
+    @Config(qualifiers = "mcc999")
+    public void getSliceDataBySource_providerThrows_marksSourceAsFailed() {
+        final BaseSearchIndexProvider throwingProvider = new BaseSearchIndexProvider() {
+            @Override
+            public List<SearchIndexableResource> getXmlResourcesToIndex(Context context,
+                    boolean enabled) {
+                throw new IllegalStateException("broken provider");
+            }
+        };
+        mSearchFeatureProvider.getSearchIndexableResources().getProviderValues().clear();
+        mSearchFeatureProvider.getSearchIndexableResources().getProviderValues()
+                .add(new SearchIndexableData(FakeIndexProvider.class,
+                        FakeIndexProvider.SEARCH_INDEX_DATA_PROVIDER));
+        mSearchFeatureProvider.getSearchIndexableResources().getProviderValues()
+                .add(new SearchIndexableData(AccessibilitySettings.class, throwingProvider));
+        doReturn(getFakeService()).when(mSliceDataConverter).getAccessibilityServiceInfoList();
+
+        final Map<String, List<SliceData>> sliceData = mSliceDataConverter.getSliceDataBySource();
+
+        assertThat(sliceData).containsKey(AccessibilitySettings.class.getName());
+        assertThat(sliceData.get(AccessibilitySettings.class.getName())).isNull();
+        assertThat(sliceData.get(FAKE_FRAGMENT_CLASSNAME)).hasSize(1);
+    }
+
     private void assertFakeSlice(SliceData fakeSlice) {
         assertThat(fakeSlice.getKey()).isEqualTo(FAKE_KEY);
         assertThat(fakeSlice.getTitle()).isEqualTo(FAKE_TITLE);
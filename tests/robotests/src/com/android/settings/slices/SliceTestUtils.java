@@ -54,17 +54,17 @@ class SliceTestUtils {
     public static void insertSliceToDb(Context context, String key, boolean isPlatformSlice,
             String customizedUnavailableSliceSubtitle, boolean isPublicSlice) {
         final SQLiteDatabase db = SlicesDatabaseHelper.getInstance(context).getWritableDatabase();
+        final Uri uri = new Uri.Builder()
+                .scheme(ContentResolver.SCHEME_CONTENT)
+                .authority(isPlatformSlice
+                        ? SettingsSlicesContract.AUTHORITY
+                        : SettingsSliceProvider.SLICE_AUTHORITY)
+                .appendPath(SettingsSlicesContract.PATH_SETTING_ACTION)
+                .appendPath(key)
+                .build();
         ContentValues values = new ContentValues();
         values.put(SlicesDatabaseHelper.IndexColumns.KEY, key);
-        values.put(SlicesDatabaseHelper.IndexColumns.SLICE_URI,
-                new Uri.Builder()
-                        .scheme(ContentResolver.SCHEME_CONTENT)
-                        .authority(isPlatformSlice
-                                ? SettingsSlicesContract.AUTHORITY
-                                : SettingsSliceProvider.SLICE_AUTHORITY)
-                        .appendPath(SettingsSlicesContract.PATH_SETTING_ACTION)
-                        .appendPath(key)
-                        .build().toString());
+        values.put(SlicesDatabaseHelper.IndexColumns.SLICE_URI, uri.toString());
         values.put(SlicesDatabaseHelper.IndexColumns.TITLE, FAKE_TITLE);
         values.put(SlicesDatabaseHelper.IndexColumns.SUMMARY, FAKE_SUMMARY);
         values.put(SlicesDatabaseHelper.IndexColumns.SCREENTITLE, FAKE_SCREEN_TITLE);
@@ -80,6 +80,15 @@ class SliceTestUtils {
                 FAKE_HIGHLIGHT_MENU_RES);
 
         db.replaceOrThrow(SlicesDatabaseHelper.Tables.TABLE_SLICES_INDEX, null, values);
+
+        final ContentValues uriValues = new ContentValues();
+        uriValues.put(SlicesDatabaseHelper.UriColumns.KEY, key);
+        uriValues.put(SlicesDatabaseHelper.UriColumns.SLICE_URI, uri.toString());
+        uriValues.put(SlicesDatabaseHelper.UriColumns.AUTHORITY, uri.getAuthority());
+        uriValues.put(SlicesDatabaseHelper.UriColumns.PATH, uri.getPath());
+        uriValues.put(SlicesDatabaseHelper.UriColumns.PUBLIC_SLICE, isPublicSlice);
+        db.replaceOrThrow(SlicesDatabaseHelper.Tables.TABLE_SLICES_URIS, null, uriValues);
+        SlicesDatabaseHelper.getInstance(context).invalidateSliceUris();
         db.close();
     }
 }
@@ -264,6 +264,39 @@ public class SlicesDatabaseAccessorTest {
         assertThat(uri).containsExactly(expectedUri);
     }
 
+    @Test
+    public void getSliceUris_calledTwice_returnsCachedList() {
+        SliceTestUtils.insertSliceToDb(mContext, "test_public", false /* isPlatformSlice */,
+                null /* customizedUnavailableSliceSubtitle */, true /* isPublicSlice */);
+
+        final List<Uri> first = mAccessor.getSliceUris(SettingsSliceProvider.SLICE_AUTHORITY,
+                true /* isPublicSlice */);
+        final List<Uri> second = mAccessor.getSliceUris(SettingsSliceProvider.SLICE_AUTHORITY,
+                true /* isPublicSlice */);
+
+        assertThat(second).isSameInstanceAs(first);
+    }
+
+    @Test
+    public void getSliceUris_afterReindex_readsDatabaseAgain() {
+        SliceTestUtils.insertSliceToDb(mContext, "test_public", false /* isPlatformSlice */,
+                null /* customizedUnavailableSliceSubtitle */, true /* isPublicSlice */);
+        mAccessor.getSliceUris(SettingsSliceProvider.SLICE_AUTHORITY, true /* isPublicSlice */);
+
+        SliceTestUtils.insertSliceToDb(mContext, "test_public_2", false /* isPlatformSlice */,
+                null /* customizedUnavailableSliceSubtitle */, true /* isPublicSlice */);
+        final List<Uri> uris = mAccessor.getSliceUris(SettingsSliceProvider.SLICE_AUTHORITY,
+                true /* isPublicSlice */);
+
+        assertThat(uris).hasSize(2);
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void getSliceUris_returnsImmutableList() {
+        mAccessor.getSliceUris(SettingsSliceProvider.SLICE_AUTHORITY, true /* isPublicSlice */)
+                .add(Uri.EMPTY);
+    }
+
     @Test
     @Config(qualifiers = "mcc999")
     @Ignore
@@ -18,14 +18,20 @@ package com.android.settings.slices;
 
 import static com.google.common.truth.Truth.assertThat;
 
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.doReturn;
 import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 
 import android.content.ContentValues;
 import android.content.Context;
 import android.database.Cursor;
 import android.database.sqlite.SQLiteDatabase;
 import android.net.Uri;
+import android.util.ArrayMap;
 
 import com.android.settings.slices.SlicesDatabaseHelper.IndexColumns;
 import com.android.settings.testutils.DatabaseTestUtils;
@@ -40,6 +46,7 @@ import org.robolectric.RuntimeEnvironment;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 
 @RunWith(RobolectricTestRunner.class)
 public class SlicesIndexerTest {
@@ -56,6 +63,8 @@ public class SlicesIndexerTest {
     private static final int SLICE_TYPE = SliceData.SliceType.SLIDER;
     private static final String UNAVAILABLE_SLICE_SUBTITLE = "subtitleOfUnavailableSlice";
     private static final int HIGHLIGHT_MENU_KEY = 5678; // I declare a thumb war
+    private static final String SOURCE = "source";
+    private static final String OTHER_SOURCE = "other source";
 
     private Context mContext;
 
@@ -100,7 +109,7 @@ public class SlicesIndexerTest {
     public void testInsertSliceData_indexedStateSet() {
         final SlicesDatabaseHelper helper = SlicesDatabaseHelper.getInstance(mContext);
         helper.setIndexedState();
-        doReturn(new ArrayList<SliceData>()).when(mManager).getSliceData();
+        doReturn(new ArrayMap<String, List<SliceData>>()).when(mManager).getSliceDataBySource();
 
         mManager.run();
 
@@ -111,7 +120,7 @@ public class SlicesIndexerTest {
     @Ignore
     public void testInsertSliceData_nonPublicSlice_mockDataInserted() {
         final List<SliceData> sliceData = getMockIndexableData(false);
-        doReturn(sliceData).when(mManager).getSliceData();
+        doReturn(asSourceMap(sliceData)).when(mManager).getSliceDataBySource();
 
         mManager.run();
 
@@ -160,7 +169,7 @@ public class SlicesIndexerTest {
     @Ignore
     public void insertSliceData_publicSlice_mockDataInserted() {
         final List<SliceData> sliceData = getMockIndexableData(true);
-        doReturn(sliceData).when(mManager).getSliceData();
+        doReturn(asSourceMap(sliceData)).when(mManager).getSliceDataBySource();
 
         mManager.run();
 
@@ -205,6 +214,152 @@ public class SlicesIndexerTest {
         }
     }
 
+    @Test
+    public void indexSliceData_unchangedSource_notRewritten() {
+        final SlicesDatabaseHelper helper = SlicesDatabaseHelper.getInstance(mContext);
+        final Map<String, List<SliceData>> indexData = new ArrayMap<>();
+        indexData.put(SOURCE, getMockIndexableData(false));
+        indexData.put(OTHER_SOURCE, getMockIndexableData(true));
+        doReturn(indexData).when(mManager).getSliceDataBySource();
+        mManager.run();
+        helper.clearIndexedState();
+
+        final Map<String, List<SliceData>> newIndexData = new ArrayMap<>();
+        newIndexData.put(SOURCE, getMockIndexableData(false));
+        newIndexData.put(OTHER_SOURCE, getMockIndexableData(false));
+        doReturn(newIndexData).when(mManager).getSliceDataBySource();
+        mManager.run();
+
+        verify(mManager).insertSliceData(any(SQLiteDatabase.class), eq(SOURCE), anyList());
+        verify(mManager, times(2))
+                .insertSliceData(any(SQLiteDatabase.class), eq(OTHER_SOURCE), anyList());
+        assertThat(helper.isSliceDataIndexed()).isTrue();
+    }
+
+    @Test
+    public void indexSliceData_failedSource_appliesOtherSourcesAndStaysIncomplete() {
+        final SlicesDatabaseHelper helper = SlicesDatabaseHelper.getInstance(mContext);
+        final Map<String, List<SliceData>> indexData = new ArrayMap<>();
+        indexData.put(SOURCE, getMockIndexableData(false));
+        indexData.put(OTHER_SOURCE, getMockIndexableData(false));
+        doReturn(indexData).when(mManager).getSliceDataBySource();
+        mManager.run();
+        helper.clearIndexedState();
+
+        // OTHER_SOURCE failed to parse, and SOURCE changed.
+        final Map<String, List<SliceData>> newIndexData = new ArrayMap<>();
+        newIndexData.put(SOURCE, getMockIndexableData(true));
+        newIndexData.put(OTHER_SOURCE, null);
+        doReturn(newIndexData).when(mManager).getSliceDataBySource();
+        mManager.run();
+
+        verify(mManager).insertSliceData(any(SQLiteDatabase.class), eq(OTHER_SOURCE), anyList());
+        verify(mManager, times(2))
+                .insertSliceData(any(SQLiteDatabase.class), eq(SOURCE), anyList());
+        assertThat(helper.isSliceDataIndexed()).isFalse();
+        final SQLiteDatabase db = helper.getReadableDatabase();
+        try (Cursor cursor = db.rawQuery("SELECT * FROM slices_index", null)) {
+            assertThat(cursor.getCount()).isEqualTo(KEYS.length * 2);
+        }
+        try (Cursor cursor = db.rawQuery(
+                "SELECT * FROM slices_index WHERE public_slice = 1", null)) {
+            assertThat(cursor.getCount()).isEqualTo(KEYS.length);
+        }
+    }
+
+    @Test
+    public void indexSliceData_failedSourceRetried_onlyFailedSourceChecked() {
+        final SlicesDatabaseHelper helper = SlicesDatabaseHelper.getInstance(mContext);
+        final Map<String, List<SliceData>> indexData = new ArrayMap<>();
+        indexData.put(SOURCE, getMockIndexableData(false));
+        indexData.put(OTHER_SOURCE, null);
+        doReturn(indexData).when(mManager).getSliceDataBySource();
+        mManager.run();
+
+        final Map<String, List<SliceData>> retryIndexData = new ArrayMap<>();
+        retryIndexData.put(SOURCE, getMockIndexableData(false));
+        retryIndexData.put(OTHER_SOURCE, getMockIndexableData(true));
+        doReturn(retryIndexData).when(mManager).getSliceDataBySource();
+        mManager.run();
+
+        verify(mManager).insertSliceData(any(SQLiteDatabase.class), eq(SOURCE), anyList());
+        verify(mManager).insertSliceData(any(SQLiteDatabase.class), eq(OTHER_SOURCE), anyList());
+        assertThat(helper.isSliceDataIndexed()).isTrue();
+        final SQLiteDatabase db = helper.getReadableDatabase();
+        try (Cursor cursor = db.rawQuery("SELECT * FROM slices_index", null)) {
+            assertThat(cursor.getCount()).isEqualTo(KEYS.length * 2);
+        }
+    }
+
+    @Test
+    public void deleteSource_removesOnlyRowsOfSource() {
+        final SlicesDatabaseHelper helper = SlicesDatabaseHelper.getInstance(mContext);
+        final Map<String, List<SliceData>> indexData = new ArrayMap<>();
+        indexData.put(SOURCE, getMockIndexableData(false));
+        indexData.put(OTHER_SOURCE, getMockIndexableData(true));
+        doReturn(indexData).when(mManager).getSliceDataBySource();
+        mManager.run();
+
+        final SQLiteDatabase db = helper.getWritableDatabase();
+        helper.deleteSource(db, SOURCE);
+
+        try (Cursor cursor = db.rawQuery("SELECT public_slice FROM slices_index", null)) {
+            assertThat(cursor.getCount()).isEqualTo(KEYS.length);
+            while (cursor.moveToNext()) {
+                assertThat(cursor.getInt(0)).isEqualTo(1);
+            }
+        }
+        try (Cursor cursor = db.rawQuery("SELECT * FROM slices_uris", null)) {
+            assertThat(cursor.getCount()).isEqualTo(KEYS.length);
+        }
+        assertThat(helper.getIndexedSourceHashes(db)).containsKey(OTHER_SOURCE);
+        assertThat(helper.getIndexedSourceHashes(db)).doesNotContainKey(SOURCE);
+    }
+
+    @Test
+    public void indexSliceData_sourceChanged_clearsSliceDataCache() {
+        final SlicesDatabaseHelper helper = SlicesDatabaseHelper.getInstance(mContext);
+        final List<SliceData> sliceData = getMockIndexableData(false);
+        doReturn(asSourceMap(sliceData)).when(mManager).getSliceDataBySource();
+        mManager.run();
+        helper.clearIndexedState();
+        helper.getSliceDataCache().putAll(sliceData);
+
+        doReturn(asSourceMap(getMockIndexableData(true))).when(mManager).getSliceDataBySource();
+        mManager.run();
+
+        assertThat(helper.getSliceDataCache().peek(URI)).isNull();
+    }
+
+    @Test
+    public void indexSliceData_nothingChanged_keepsSliceDataCache() {
+        final SlicesDatabaseHelper helper = SlicesDatabaseHelper.getInstance(mContext);
+        final List<SliceData> sliceData = getMockIndexableData(false);
+        doReturn(asSourceMap(sliceData)).when(mManager).getSliceDataBySource();
+        mManager.run();
+        helper.clearIndexedState();
+        helper.getSliceDataCache().putAll(sliceData);
+
+        doReturn(asSourceMap(getMockIndexableData(false))).when(mManager).getSliceDataBySource();
+        mManager.run();
+
+        assertThat(helper.getSliceDataCache().peek(URI)).isNotNull();
+    }
+
+    @Test
+    public void computeContentHash_differentData_differentHash() {
+        assertThat(SlicesIndexer.computeContentHash(getMockIndexableData(false)))
+                .isEqualTo(SlicesIndexer.computeContentHash(getMockIndexableData(false)));
+        assertThat(SlicesIndexer.computeContentHash(getMockIndexableData(false)))
+                .isNotEqualTo(SlicesIndexer.computeContentHash(getMockIndexableData(true)));
+    }
+
+    private static Map<String, List<SliceData>> asSourceMap(List<SliceData> sliceData) {
+        final Map<String, List<SliceData>> indexData = new ArrayMap<>();
+        indexData.put(SOURCE, sliceData);
+        return indexData;
+    }
+
     private void insertSpecialCase(String key, String title) {
         final ContentValues values = new ContentValues();
         values.put(IndexColumns.KEY, key);
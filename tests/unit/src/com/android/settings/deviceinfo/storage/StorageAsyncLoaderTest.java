@@ -35,6 +35,7 @@ import android.content.pm.UserInfo;
 import android.content.res.Resources;
 import android.os.UserHandle;
 import android.os.UserManager;
+import android.provider.MediaStore.Files.FileColumns;
 import android.util.DataUnit;
 import android.util.SparseArray;
 
@@ -208,6 +209,36 @@ public class StorageAsyncLoaderTest {
         assertThat(result.get(PRIMARY_USER_ID).allAppsExceptGamesSize).isEqualTo(33L);
     }
 
+    @Test
+    public void testSharedCodeIsDuplicateForLaterUsers() throws Exception {
+        addPackage(PACKAGE_NAME_1, 0, 1, 10, ApplicationInfo.CATEGORY_UNDEFINED);
+        UserInfo info = new UserInfo();
+        info.id = SECONDARY_USER_ID;
+        mUsers.add(0, info);
+
+        SparseArray<StorageAsyncLoader.StorageResult> result = mLoader.loadInBackground();
+
+        assertThat(result.size()).isEqualTo(2);
+        assertThat(result.get(PRIMARY_USER_ID).duplicateCodeSize).isEqualTo(0L);
+        assertThat(result.get(SECONDARY_USER_ID).duplicateCodeSize).isEqualTo(1L);
+    }
+
+    @Test
+    public void testFilesSizesAreGroupedByMediaType() {
+        StorageAsyncLoader.FilesResult result = new StorageAsyncLoader.FilesResult();
+
+        StorageAsyncLoader.addFilesSize(result, FileColumns.MEDIA_TYPE_IMAGE, 1L);
+        StorageAsyncLoader.addFilesSize(result, FileColumns.MEDIA_TYPE_VIDEO, 10L);
+        StorageAsyncLoader.addFilesSize(result, FileColumns.MEDIA_TYPE_AUDIO, 100L);
+        StorageAsyncLoader.addFilesSize(result, FileColumns.MEDIA_TYPE_DOCUMENT, 1000L);
+        StorageAsyncLoader.addFilesSize(result, FileColumns.MEDIA_TYPE_NONE, 10000L);
+
+        assertThat(result.mImagesSize).isEqualTo(1L);
+        assertThat(result.mVideosSize).isEqualTo(10L);
+        assertThat(result.mAudioSize).isEqualTo(100L);
+        assertThat(result.mDocumentsAndOtherSize).isEqualTo(11000L);
+    }
+
     private ApplicationInfo addPackage(String packageName, long cacheSize, long codeSize,
             long dataSize, int category) throws Exception {
         StorageStatsSource.AppStorageStats storageStats =
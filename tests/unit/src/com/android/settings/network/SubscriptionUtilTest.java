@@ -22,6 +22,8 @@ import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 import android.content.Context;
@@ -72,6 +74,7 @@ public class SubscriptionUtilTest {
         when(mContext.getSystemService(SubscriptionManager.class)).thenReturn(mSubMgr);
         when(mContext.getSystemService(TelephonyManager.class)).thenReturn(mTelMgr);
         when(mTelMgr.getUiccSlotsInfo()).thenReturn(null);
+        SubscriptionUtil.invalidateUniqueSubscriptionDisplayNames();
     }
 
     @Ignore
@@ -404,6 +407,42 @@ public class SubscriptionUtilTest {
         assertTrue(TextUtils.isEmpty(name));
     }
 
+    @Test
+    public void getUniqueDisplayNames_calledTwice_subscriptionsQueriedOnce() {
+        final SubscriptionInfo info1 = mock(SubscriptionInfo.class);
+        when(info1.getSubscriptionId()).thenReturn(SUBID_1);
+        when(info1.getDisplayName()).thenReturn(CARRIER_1);
+        when(mSubMgr.getAvailableSubscriptionInfoList()).thenReturn(Arrays.asList(info1));
+
+        final Map<Integer, CharSequence> first =
+                SubscriptionUtil.getUniqueSubscriptionDisplayNames(mContext);
+        final Map<Integer, CharSequence> second =
+                SubscriptionUtil.getUniqueSubscriptionDisplayNames(mContext);
+
+        assertThat(second).isSameInstanceAs(first);
+        verify(mSubMgr, times(1)).getAvailableSubscriptionInfoList();
+    }
+
+    @Test
+    public void getUniqueDisplayNames_subscriptionsChanged_namesRecomputed() {
+        final SubscriptionInfo info1 = mock(SubscriptionInfo.class);
+        when(info1.getSubscriptionId()).thenReturn(SUBID_1);
+        when(info1.getDisplayName()).thenReturn(CARRIER_1);
+        when(mSubMgr.getAvailableSubscriptionInfoList()).thenReturn(Arrays.asList(info1));
+        SubscriptionUtil.getUniqueSubscriptionDisplayNames(mContext);
+
+        final SubscriptionInfo info2 = mock(SubscriptionInfo.class);
+        when(info2.getSubscriptionId()).thenReturn(SUBID_2);
+        when(info2.getDisplayName()).thenReturn(CARRIER_2);
+        when(mSubMgr.getAvailableSubscriptionInfoList()).thenReturn(Arrays.asList(info1, info2));
+        SubscriptionDisplayNameCache.getListener().onSubscriptionsChanged();
+
+        final Map<Integer, CharSequence> names =
+                SubscriptionUtil.getUniqueSubscriptionDisplayNames(mContext);
+
+        assertThat(names).containsExactly(SUBID_1, CARRIER_1, SUBID_2, CARRIER_2);
+    }
+
     @Ignore
     @Test
     public void getUniqueDisplayName_fullSubscriptionInfo_correctNameReturned() {